@@ -20,6 +20,9 @@ import java.lang.annotation.RetentionPolicy;
 
 import org.springframework.stereotype.Component;
 
+import com.xtivia.xsf.core.cache.CachePartition;
+import com.xtivia.xsf.core.cache.CacheScope;
+
 /**
  * class Route: Annotation defining the route.
  */
@@ -55,4 +58,127 @@ public @interface Route  {
 	 * authenticated: Flag indicating whether authenticated access is required or not (public guest accessable).
 	 */
     boolean  authenticated() default true;
+
+	/**
+	 * maxBodySize: Maximum size in bytes of the request body, larger requests are rejected with a 413. A negative
+	 * value uses the controller's default limit.
+	 */
+    long     maxBodySize()   default -1;
+
+	/**
+	 * stateless: Flag indicating whether the route runs without an HTTP session, i.e. never creates one and only
+	 * sees an existing one.
+	 */
+    boolean  stateless()     default false;
+
+	/**
+	 * cacheTtl: Time in seconds the responses of a cached GET route are kept in the server-side response cache,
+	 * 0 to not cache them on the server.
+	 */
+    int      cacheTtl()       default 0;
+
+	/**
+	 * cacheParams: Names of the request parameters that are part of the server-side cache key. Any other
+	 * parameter does not affect the cached response.
+	 */
+    String[] cacheParams()    default {};
+
+	/**
+	 * cachePartition: Whether server-side cached responses are shared by all callers or kept per user or role.
+	 */
+    CachePartition cachePartition() default CachePartition.NONE;
+
+	/**
+	 * maxAge: Seconds the response of a cached route is fresh (Cache-Control max-age), negative to not declare it.
+	 */
+    int      maxAge()         default -1;
+
+	/**
+	 * sMaxAge: Seconds the response of a cached route is fresh in shared caches (Cache-Control s-maxage), negative
+	 * to not declare it.
+	 */
+    int      sMaxAge()        default -1;
+
+	/**
+	 * staleWhileRevalidate: Seconds a stale response may still be served while it is revalidated (Cache-Control
+	 * stale-while-revalidate), negative to not allow it.
+	 */
+    int      staleWhileRevalidate() default -1;
+
+	/**
+	 * cacheScope: Whether shared caches may keep the response of a cached route (Cache-Control public/private).
+	 */
+    CacheScope cacheScope()   default CacheScope.DEFAULT;
+
+	/**
+	 * vary: Names of the request headers the response of a cached route varies on (Vary).
+	 */
+    String[] vary()           default {};
+
+	/**
+	 * compress: Flag indicating whether responses may be compressed when the marshaller compresses responses.
+	 */
+    boolean  compress()       default true;
+
+	/**
+	 * streamInput: Flag indicating whether the request body is a JSON array (or newline delimited JSON) of
+	 * inputClass items, handed to the command as a StreamedInput parsed while the command consumes it.
+	 */
+    boolean  streamInput()    default false;
+
+	/**
+	 * lazyInput: Flag indicating whether the request body is only parsed once the command looks its input up in
+	 * the context, rather than before the command executes. Needs a marshaller implementing IStreamingMarshaller.
+	 */
+    boolean  lazyInput()      default false;
+
+	/**
+	 * async: Flag indicating whether the command runs on an executor rather than the container's request thread,
+	 * using Servlet 3.0 asynchronous processing.
+	 */
+    boolean  async()          default false;
+
+	/**
+	 * executor: Name of the Spring bean (an Executor, normally a CommandExecutor) running the command of an async
+	 * route. Empty for the controller's default executor.
+	 */
+    String   executor()       default "";
+
+	/**
+	 * asyncTimeout: Time in milliseconds an async route may take before it is answered with a 503. Zero uses the
+	 * controller's default timeout.
+	 */
+    long     asyncTimeout()   default 0;
+
+	/**
+	 * bulkhead: Name of the bulkhead the route's commands run in, isolating them from routes in other bulkheads.
+	 * Implies async. A CommandExecutor bean of that name configures the bulkhead, otherwise the controller creates
+	 * one with default settings. Empty for none.
+	 */
+    String   bulkhead()       default "";
+
+	/**
+	 * timeout: Time in milliseconds the route has to answer a request, after which the request's deadline has
+	 * passed and it is stopped as soon as possible. A client X-Request-Timeout header may shorten it. Zero uses the
+	 * controller's default.
+	 */
+    long     timeout()        default 0;
+
+	/**
+	 * coalesce: Flag indicating whether concurrent identical GET requests (same path, query and, for partitioned
+	 * routes, caller) share one command execution and response. Authenticated routes are only coalesced when
+	 * partitioned by user or role. Needs a marshaller implementing IRenderingMarshaller.
+	 */
+    boolean  coalesce()       default false;
+
+	/**
+	 * limitConcurrency: Flag indicating whether the number of requests processed at once is limited by the
+	 * controller's ConcurrencyLimiter, requests over the (adaptive) limit being rejected with a 503.
+	 */
+    boolean  limitConcurrency() default false;
+
+	/**
+	 * maxConcurrency: The highest the concurrency limit of the route may grow to. Zero uses the limiter's maximum.
+	 */
+    int      maxConcurrency() default 0;
 }
\ No newline at end of file
@@ -40,7 +40,7 @@ public class DefaultAuthorizer implements IAuthorizer {
         if (!route.isAuthenticated()) {
             return true;  // public routes always pass authentication check
         } else {
-    		HttpServletRequest request = context.find(ICommandKeys.HTTP_REQUEST);
+    		HttpServletRequest request = context.find(ICommandKeys.HTTP_REQUEST_KEY);
             if (request.getRemoteUser() == null) {
             	return false;
             }
@@ -0,0 +1,34 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.cache;
+
+/**
+ * enum CachePartition: How cached responses of a route are partitioned between callers.
+ */
+public enum CachePartition {
+	/**
+	 * NONE: All callers share the cached responses.
+	 */
+	NONE,
+	/**
+	 * USER: Each user has their own cached responses.
+	 */
+	USER,
+	/**
+	 * ROLE: Users with the same set of roles share cached responses.
+	 */
+	ROLE
+}
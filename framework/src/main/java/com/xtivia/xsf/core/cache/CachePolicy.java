@@ -0,0 +1,80 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.cache;
+
+/**
+ * class CachePolicy: HTTP caching policy of a cached route. The Cache-Control and Vary header values are rendered
+ * once when the policy is created, so applying the policy to a response is a matter of setting two headers.
+ */
+public final class CachePolicy {
+
+	/**
+	 * cacheControl: The rendered Cache-Control header value.
+	 */
+	private final String cacheControl;
+	/**
+	 * vary: The rendered Vary header value or <code>null</code>.
+	 */
+	private final String vary;
+
+	/**
+	 * CachePolicy: Constructor.
+	 * @param scope Which caches may keep the response, must not be DEFAULT.
+	 * @param maxAge Seconds the response is fresh, negative to leave it to the caches.
+	 * @param sMaxAge Seconds the response is fresh in shared caches, negative to use maxAge.
+	 * @param staleWhileRevalidate Seconds a stale response may be served while it is revalidated, negative for none.
+	 * @param vary Names of the request headers the response varies on.
+	 */
+	public CachePolicy(CacheScope scope, int maxAge, int sMaxAge, int staleWhileRevalidate, String[] vary) {
+		StringBuilder sb = new StringBuilder(scope == CacheScope.PRIVATE ? "private" : "public");
+		if (maxAge >= 0) sb.append(", max-age=").append(maxAge);
+		// shared caches do not keep private responses at all.
+		if (sMaxAge >= 0 && scope != CacheScope.PRIVATE) sb.append(", s-maxage=").append(sMaxAge);
+		if (staleWhileRevalidate >= 0) sb.append(", stale-while-revalidate=").append(staleWhileRevalidate);
+		this.cacheControl = sb.toString();
+
+		StringBuilder v = new StringBuilder();
+		if (vary != null) {
+			for (String name : vary) {
+				if (name == null || name.trim().length() == 0) continue;
+				if (v.length() > 0) v.append(", ");
+				v.append(name.trim());
+			}
+		}
+		this.vary = (v.length() > 0 ? v.toString() : null);
+	}
+
+	/**
+	 * getCacheControl: Returns the Cache-Control header value.
+	 * @return String The header value.
+	 */
+	public String getCacheControl() {
+		return cacheControl;
+	}
+
+	/**
+	 * getVary: Returns the Vary header value.
+	 * @return String The header value or <code>null</code> if the response does not vary on request headers.
+	 */
+	public String getVary() {
+		return vary;
+	}
+
+	@Override
+	public String toString() {
+		return "CachePolicy[" + cacheControl + (vary != null ? "; Vary: " + vary : "") + "]";
+	}
+}
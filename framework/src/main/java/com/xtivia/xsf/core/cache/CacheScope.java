@@ -0,0 +1,34 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.cache;
+
+/**
+ * enum CacheScope: Which caches may keep the response of a cached route.
+ */
+public enum CacheScope {
+	/**
+	 * DEFAULT: Private for routes requiring authentication or partitioning their cached responses, public otherwise.
+	 */
+	DEFAULT,
+	/**
+	 * PUBLIC: Shared caches (proxies, CDNs) may keep the response.
+	 */
+	PUBLIC,
+	/**
+	 * PRIVATE: Only the caller's own (browser) cache may keep the response.
+	 */
+	PRIVATE
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.cache;
+
+import java.security.Principal;
+
+import javax.servlet.http.HttpServletRequest;
+
+import com.xtivia.xsf.core.commands.IContext;
+import com.xtivia.xsf.core.web.ICommandKeys;
+
+/**
+ * class DefaultCachePartitioner: Partitions by the servlet user principal. Roles cannot be enumerated through the
+ * servlet API, so role partitioning falls back to partitioning by user.
+ */
+public class DefaultCachePartitioner implements ICachePartitioner {
+
+	/**
+	 * GUEST: Partition shared by all unauthenticated callers.
+	 */
+	public static final String GUEST = "guest";
+
+	/**
+	 * getPartition: Returns the name of the user principal.
+	 * @param partition The kind of partitioning declared by the route.
+	 * @param context Context for the request.
+	 * @return String The partition.
+	 */
+	@Override
+	public String getPartition(CachePartition partition, IContext context) {
+		if (partition == CachePartition.NONE) return "";
+
+		HttpServletRequest request = context.find(ICommandKeys.HTTP_REQUEST_KEY);
+		Principal principal = (request != null ? request.getUserPrincipal() : null);
+		return (principal != null ? "user:" + principal.getName() : GUEST);
+	}
+}
@@ -0,0 +1,306 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.xtivia.xsf.core.commands.IContext;
+import com.xtivia.xsf.core.web.AbstractRoute;
+import com.xtivia.xsf.core.web.ICommandKeys;
+import com.xtivia.xsf.core.web.IRoute;
+import com.xtivia.xsf.core.web.RenderedResponse;
+
+/**
+ * class DefaultResponseCache: In-memory response cache bounded by the number of entries and the total size of the
+ * cached bodies. The least recently used responses are evicted first once either bound is reached.
+ */
+@Component("responseCache")
+public class DefaultResponseCache implements IResponseCache {
+
+	private static final Logger _logger = LoggerFactory.getLogger(DefaultResponseCache.class);
+
+	/**
+	 * maxEntries: The maximum number of cached responses.
+	 */
+	private int  maxEntries = 10000;
+	/**
+	 * maxBytes: The maximum total size of the cached bodies.
+	 */
+	private long maxBytes   = 32L * 1024 * 1024;
+
+	/**
+	 * partitioner: Determines the partition of callers for partitioned routes.
+	 */
+	private ICachePartitioner partitioner = new DefaultCachePartitioner();
+
+	/**
+	 * entries: The cached responses, in access order.
+	 */
+	private final LinkedHashMap<ResponseCacheKey,Entry> entries =
+			new LinkedHashMap<ResponseCacheKey,Entry>(256, 0.75f, true);
+	/**
+	 * bytes: The total size of the cached bodies.
+	 */
+	private long bytes = 0;
+
+	/**
+	 * hits, misses, evictions: Cache statistics.
+	 */
+	private final AtomicLong hits      = new AtomicLong();
+	private final AtomicLong misses    = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * createKey: Creates the cache key from the route, requested path, cache key parameters, partition and
+	 * representation. A route declaring no cache key parameters is keyed on its full query string.
+	 * @param context Context for the request.
+	 * @param route The route being requested.
+	 * @param routeUri The requested path.
+	 * @param variant The representation rendered for the request or <code>null</code>.
+	 * @return ResponseCacheKey The key.
+	 */
+	@Override
+	public ResponseCacheKey createKey(IContext context, IRoute route, String routeUri, String variant) {
+		String params = null;
+
+		AbstractRoute options = AbstractRoute.of(route);
+		String[] names = options.getCacheParams();
+		if (names != null && names.length > 0) {
+			HttpServletRequest request = context.find(ICommandKeys.HTTP_REQUEST_KEY);
+
+			// parameters are taken in declaration order, so their order in the query string does not matter.
+			StringBuilder sb = new StringBuilder();
+			for (String name : names) {
+				String[] values = (request != null ? request.getParameterValues(name) : null);
+				if (values == null) continue;
+				for (String value : values) {
+					if (sb.length() > 0) sb.append('&');
+					sb.append(name).append('=').append(value);
+				}
+			}
+			params = sb.toString();
+		} else {
+			HttpServletRequest request = context.find(ICommandKeys.HTTP_REQUEST_KEY);
+			params = (request != null ? request.getQueryString() : null);
+		}
+
+		CachePartition partition = options.getCachePartition();
+		String partitionName = (partition != null && partition != CachePartition.NONE ?
+				                partitioner.getPartition(partition, context) : null);
+
+		return new ResponseCacheKey(ResponseCacheKey.routeKey(route.getHttpMethod(), route.getUri()),
+				                    routeUri, params, partitionName, variant);
+	}
+
+	/**
+	 * get: Returns a cached response.
+	 * @param key The key of the response.
+	 * @return RenderedResponse The response or <code>null</code> if it is not cached (or expired).
+	 */
+	@Override
+	public RenderedResponse get(ResponseCacheKey key) {
+		synchronized (entries) {
+			Entry entry = entries.get(key);
+			if (entry != null && entry.expires <= System.currentTimeMillis()) {
+				remove(key);
+				entry = null;
+			}
+
+			if (entry == null) {
+				misses.incrementAndGet();
+				return null;
+			}
+
+			hits.incrementAndGet();
+			return entry.response;
+		}
+	}
+
+	/**
+	 * put: Caches a response, evicting the least recently used ones as needed.
+	 * @param key The key of the response.
+	 * @param response The response.
+	 * @param timeToLive The time in milliseconds the response may be served from the cache.
+	 */
+	@Override
+	public void put(ResponseCacheKey key, RenderedResponse response, long timeToLive) {
+		// a response which would push everything else out is not worth caching.
+		if (response.getSize() > maxBytes / 4) {
+			if (_logger.isDebugEnabled()) {
+				_logger.debug(String.format("Response of %d bytes for %s is too large to cache", response.getSize(), key));
+			}
+			return;
+		}
+
+		Entry entry = new Entry(response, System.currentTimeMillis() + timeToLive);
+		synchronized (entries) {
+			remove(key);
+			entries.put(key, entry);
+			bytes += response.getSize();
+
+			// evict from the least recently used end.
+			Iterator<Map.Entry<ResponseCacheKey,Entry>> iter = entries.entrySet().iterator();
+			while ((entries.size() > maxEntries || bytes > maxBytes) && iter.hasNext()) {
+				Map.Entry<ResponseCacheKey,Entry> eldest = iter.next();
+				bytes -= eldest.getValue().response.getSize();
+				iter.remove();
+				evictions.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * evictRoute: Drops all cached responses of a route.
+	 * @param method The HTTP method of the route.
+	 * @param uri The URI template of the route.
+	 */
+	@Override
+	public void evictRoute(String method, String uri) {
+		String route = ResponseCacheKey.routeKey(method, uri);
+		synchronized (entries) {
+			for (Iterator<Map.Entry<ResponseCacheKey,Entry>> iter = entries.entrySet().iterator(); iter.hasNext();) {
+				Map.Entry<ResponseCacheKey,Entry> e = iter.next();
+				if (e.getKey().getRoute().equals(route)) {
+					bytes -= e.getValue().response.getSize();
+					iter.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * evictPath: Drops all cached responses for a requested path.
+	 * @param routeUri The requested path.
+	 */
+	@Override
+	public void evictPath(String routeUri) {
+		synchronized (entries) {
+			for (Iterator<Map.Entry<ResponseCacheKey,Entry>> iter = entries.entrySet().iterator(); iter.hasNext();) {
+				Map.Entry<ResponseCacheKey,Entry> e = iter.next();
+				if (e.getKey().getPath().equals(routeUri)) {
+					bytes -= e.getValue().response.getSize();
+					iter.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * clear: Drops all cached responses.
+	 */
+	@Override
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+			bytes = 0;
+		}
+	}
+
+	private void remove(ResponseCacheKey key) {
+		Entry old = entries.remove(key);
+		if (old != null) bytes -= old.response.getSize();
+	}
+
+	/**
+	 * setPartitioner: Sets the component determining the partition of callers.
+	 * @param partitioner
+	 */
+	@Autowired(required = false)
+	public void setPartitioner(ICachePartitioner partitioner) {
+		this.partitioner = partitioner;
+	}
+
+	public ICachePartitioner getPartitioner() {
+		return partitioner;
+	}
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	public void setMaxEntries(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * size: Returns the number of cached responses.
+	 * @return int The size.
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * getBytes: Returns the total size of the cached bodies.
+	 * @return long The number of bytes.
+	 */
+	public long getBytes() {
+		synchronized (entries) {
+			return bytes;
+		}
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("DefaultResponseCache[size=%d, bytes=%d, hits=%d, misses=%d, evictions=%d]",
+				             size(), getBytes(), getHits(), getMisses(), getEvictions());
+	}
+
+	/**
+	 * class Entry: A cached response.
+	 */
+	private static final class Entry {
+		final RenderedResponse response;
+		final long             expires;
+
+		Entry(RenderedResponse response, long expires) {
+			this.response = response;
+			this.expires = expires;
+		}
+	}
+}
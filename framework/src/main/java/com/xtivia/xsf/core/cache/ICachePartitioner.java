@@ -0,0 +1,32 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.cache;
+
+import com.xtivia.xsf.core.commands.IContext;
+
+/**
+ * class ICachePartitioner: Interface defining a component which determines the cache partition of a caller.
+ */
+public interface ICachePartitioner {
+
+	/**
+	 * getPartition: Returns the partition of the caller making the current request.
+	 * @param partition The kind of partitioning declared by the route.
+	 * @param context Context for the request.
+	 * @return String The partition, equal for callers that may share cached responses.
+	 */
+	String getPartition(CachePartition partition, IContext context);
+}
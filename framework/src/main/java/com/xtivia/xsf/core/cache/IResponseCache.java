@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.cache;
+
+import com.xtivia.xsf.core.commands.IContext;
+import com.xtivia.xsf.core.web.IRoute;
+import com.xtivia.xsf.core.web.RenderedResponse;
+
+/**
+ * class IResponseCache: Interface defining the server-side cache of serialized responses for cached routes.
+ * Commands changing the data behind cached routes can have the cache drop the affected responses through the
+ * evict methods.
+ */
+public interface IResponseCache {
+
+	/**
+	 * createKey: Creates the cache key for the current request.
+	 * @param context Context for the request.
+	 * @param route The route being requested.
+	 * @param routeUri The requested path.
+	 * @param variant The representation rendered for the request or <code>null</code>.
+	 * @return ResponseCacheKey The key.
+	 */
+	ResponseCacheKey createKey(IContext context, IRoute route, String routeUri, String variant);
+
+	/**
+	 * get: Returns a cached response.
+	 * @param key The key of the response.
+	 * @return RenderedResponse The response or <code>null</code> if it is not cached (or expired).
+	 */
+	RenderedResponse get(ResponseCacheKey key);
+
+	/**
+	 * put: Caches a response.
+	 * @param key The key of the response.
+	 * @param response The response.
+	 * @param timeToLive The time in milliseconds the response may be served from the cache.
+	 */
+	void put(ResponseCacheKey key, RenderedResponse response, long timeToLive);
+
+	/**
+	 * evictRoute: Drops all cached responses of a route.
+	 * @param method The HTTP method of the route.
+	 * @param uri The URI template of the route, as declared in @Route.
+	 */
+	void evictRoute(String method, String uri);
+
+	/**
+	 * evictPath: Drops all cached responses for a requested path, whatever the route, parameters or partition.
+	 * @param routeUri The requested path, e.g. <code>/catalog/42</code>.
+	 */
+	void evictPath(String routeUri);
+
+	/**
+	 * clear: Drops all cached responses.
+	 */
+	void clear();
+}
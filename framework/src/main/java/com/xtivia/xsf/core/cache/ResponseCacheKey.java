@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.cache;
+
+/**
+ * class ResponseCacheKey: Key of a cached response. Identifies the route (by method and URI template), the
+ * requested path (which carries the path parameters), the values of the route's cache key parameters, the
+ * caller's partition and the representation rendered.
+ */
+public final class ResponseCacheKey {
+
+	/**
+	 * route: The route's method and URI template.
+	 */
+	private final String route;
+	/**
+	 * path: The requested path.
+	 */
+	private final String path;
+	/**
+	 * params: The values of the cache key parameters.
+	 */
+	private final String params;
+	/**
+	 * partition: The caller's partition.
+	 */
+	private final String partition;
+	/**
+	 * variant: The representation rendered.
+	 */
+	private final String variant;
+	/**
+	 * hash: The precomputed hash code.
+	 */
+	private final int    hash;
+
+	/**
+	 * ResponseCacheKey: Constructor.
+	 * @param route The route's method and URI template.
+	 * @param path The requested path.
+	 * @param params The values of the cache key parameters.
+	 * @param partition The caller's partition.
+	 */
+	public ResponseCacheKey(String route, String path, String params, String partition) {
+		this(route, path, params, partition, null);
+	}
+
+	/**
+	 * ResponseCacheKey: Constructor.
+	 * @param route The route's method and URI template.
+	 * @param path The requested path.
+	 * @param params The values of the cache key parameters.
+	 * @param partition The caller's partition.
+	 * @param variant The representation rendered.
+	 */
+	public ResponseCacheKey(String route, String path, String params, String partition, String variant) {
+		this.route = route;
+		this.path = path;
+		this.params = (params != null ? params : "");
+		this.partition = (partition != null ? partition : "");
+		this.variant = (variant != null ? variant : "");
+
+		int h = route.hashCode();
+		h = 31 * h + path.hashCode();
+		h = 31 * h + this.params.hashCode();
+		h = 31 * h + this.partition.hashCode();
+		h = 31 * h + this.variant.hashCode();
+		this.hash = h;
+	}
+
+	/**
+	 * routeKey: Returns the identity of a route as used in keys.
+	 * @param method The HTTP method.
+	 * @param uri The URI template.
+	 * @return String The route identity.
+	 */
+	public static String routeKey(String method, String uri) {
+		return method + ' ' + uri;
+	}
+
+	public String getRoute() {
+		return route;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public String getParams() {
+		return params;
+	}
+
+	public String getPartition() {
+		return partition;
+	}
+
+	public String getVariant() {
+		return variant;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof ResponseCacheKey)) return false;
+		ResponseCacheKey k = (ResponseCacheKey) o;
+		return hash == k.hash && route.equals(k.route) && path.equals(k.path) &&
+			   params.equals(k.params) && partition.equals(k.partition) && variant.equals(k.variant);
+	}
+
+	@Override
+	public String toString() {
+		return route + " " + path + (params.length() > 0 ? "?" + params : "") +
+			   (partition.length() > 0 ? " [" + partition + "]" : "") + (variant.length() > 0 ? " " + variant : "");
+	}
+}
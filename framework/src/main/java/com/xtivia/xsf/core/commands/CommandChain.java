@@ -22,6 +22,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
 
 import com.xtivia.xsf.core.auth.IAuthorized;
 
@@ -32,7 +34,7 @@ import com.xtivia.xsf.core.auth.IAuthorized;
  * When processing the commands, the first command failure results in a failure of the chain.
  *
  */
-public class CommandChain implements ICommand, IAuthorized {
+public class CommandChain implements ICommand, IAuthorized, ApplicationListener<ContextRefreshedEvent> {
 	private static final Logger logger = LoggerFactory.getLogger(CommandChain.class);
 
 	/**
@@ -79,6 +81,8 @@ public class CommandChain implements ICommand, IAuthorized {
 	 * When processing is complete walk chain in reverse order and give any
 	 * commands that implement the IFilter interface a chance to do post
 	 * processing.
+	 *
+	 * Once the request's deadline has passed no further command is started.
 	 * @param ctx Context for the command.
 	 * @return CommandResult The result of the command execution.
 	 */
@@ -90,8 +94,18 @@ public class CommandChain implements ICommand, IAuthorized {
 		// create a command result
 		CommandResult commandResult = new CommandResult().setSucceeded(false);
 
+		Deadline deadline = Deadline.of(ctx);
+
 		// for each command in the list
 		for (ICommand command : _commands) {
+			// the caller has stopped waiting, do not start any further steps.
+			if (deadline != null && deadline.isExpired()) {
+				logger.warn("Stopping command chain before [" + command.getClass().getName() + "]: " + deadline);
+				DeadlineExceededException e = new DeadlineExceededException("The request did not complete in time");
+				walkbackCommands(lastSuccess,commandResult,e);
+				throw e;
+			}
+
 			try {
 				// execute the command.
 			    commandResult  = command.execute(ctx);
@@ -152,6 +166,30 @@ public class CommandChain implements ICommand, IAuthorized {
 		}
 	}
 
+	/**
+	 * onApplicationEvent: Re-resolves the beans behind any command proxies when our Spring context is refreshed.
+	 * @param event
+	 */
+	@Override
+	public void onApplicationEvent(ContextRefreshedEvent event) {
+		// ignore refreshes of other (e.g. parent or child) contexts.
+		if (applicationContext == null || event.getApplicationContext() != applicationContext) {
+			return;
+		}
+		for (ICommand command : _commands) {
+			if (command instanceof CommandProxy) {
+				CommandProxy proxy = (CommandProxy) command;
+				proxy.reset();
+				try {
+					proxy.resolve();
+				} catch (Exception e) {
+					// leave it to be resolved (and reported) on first use.
+					logger.warn("Unable to resolve chained command: " + e.getMessage());
+				}
+			}
+		}
+	}
+
 	/**
 	 * authorize: Proxies the auth check to the commands in the chain in order to give them a chance to determine auth.
 	 * @param context Context for the authorization check.
@@ -189,11 +227,10 @@ public class CommandChain implements ICommand, IAuthorized {
 		 */
 		private final String _commandName;
 		/**
-		 * isFilter: Flag indicating whether the bean supports a filter or not.
+		 * loadedBean: The resolved bean, published as a whole so that concurrent requests either see
+		 * nothing (and resolve the bean themselves) or a fully resolved bean.
 		 */
-		private boolean isFilter = false;
-
-		private ICommand loadedBean;
+		private volatile ResolvedBean loadedBean;
 
 		/**
 		 * CommandProxy: Constructor for the instance.
@@ -204,12 +241,13 @@ public class CommandChain implements ICommand, IAuthorized {
 		}
 
 		/**
-		 * getCommand: Utility method to retrieve the command, possibly from the Spring context.
-		 * @return ICommand The retrieved command.
+		 * resolve: Utility method to retrieve the bean and its capabilities, possibly from the Spring context.
+		 * @return ResolvedBean The retrieved bean.
 		 */
-		protected ICommand getCommand() {
+		protected ResolvedBean resolve() {
 			// return the loaded bean if we have it already.
-			if (loadedBean != null) return loadedBean;
+			ResolvedBean resolved = loadedBean;
+			if (resolved != null) return resolved;
 
 			// get the bean being proxied.
 			Object bean = applicationContext.getBean(_commandName);
@@ -222,14 +260,25 @@ public class CommandChain implements ICommand, IAuthorized {
 				throw new IllegalArgumentException(String.format("Bean with name=%s is not a command ",_commandName));
 			}
 
-			loadedBean = (ICommand) bean;
+			// check the interfaces supported by the bean once and cache the result.
+			resolved = new ResolvedBean((ICommand) bean);
+			loadedBean = resolved;
+			return resolved;
+		}
 
-			// check if the bean supports the IFilter interface and cache the result.
-			if ((bean instanceof IFilter)) {
-				isFilter = true;
-			}
+		/**
+		 * reset: Drops the resolved bean so that it is looked up again on next use.
+		 */
+		protected void reset() {
+			loadedBean = null;
+		}
 
-			return loadedBean;
+		/**
+		 * getCommand: Utility method to retrieve the command, possibly from the Spring context.
+		 * @return ICommand The retrieved command.
+		 */
+		protected ICommand getCommand() {
+			return resolve().command;
 		}
 
 		/**
@@ -254,8 +303,9 @@ public class CommandChain implements ICommand, IAuthorized {
 		 */
        @Override
 		public void postProcess(CommandResult cr, Exception e) {
-			if (isFilter) {
-				((IFilter) getCommand()).postProcess(cr, e);
+			ResolvedBean resolved = resolve();
+			if (resolved.filter) {
+				((IFilter) resolved.command).postProcess(cr, e);
 			}
 		}
 
@@ -267,16 +317,32 @@ public class CommandChain implements ICommand, IAuthorized {
 		@Override
 		public boolean authorize(IContext context) {
 			// get the bean being proxied.
-			Object bean = getCommand();
+			ResolvedBean resolved = resolve();
 
 			// if the bean implements the interface
-			if (bean instanceof IAuthorized) {
+			if (resolved.authorized) {
 				// let it check the auth result.
-				return ((IAuthorized) bean).authorize(context);
+				return ((IAuthorized) resolved.command).authorize(context);
 			}
 
 			// this bean doesn't have an auth override, allow access.
 			return true;
 		}
 	}
+
+	/**
+	 * class ResolvedBean: Immutable holder for a proxied bean and the interfaces it supports.
+	 */
+	protected static final class ResolvedBean {
+
+		private final ICommand command;
+		private final boolean  filter;
+		private final boolean  authorized;
+
+		private ResolvedBean(ICommand command) {
+			this.command = command;
+			this.filter = command instanceof IFilter;
+			this.authorized = command instanceof IAuthorized;
+		}
+	}
 }
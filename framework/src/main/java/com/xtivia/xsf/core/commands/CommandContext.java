@@ -15,19 +15,46 @@
  */
 package com.xtivia.xsf.core.commands;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * class CommandContext: Concrete implementation of IContext for managing command context.
+ *
+ * Values for typed keys (see ContextKey) are also held in an array indexed by the key's slot, kept in step with
+ * the map entry under the key's name. The entries live in a private HashMap and every change goes through put(),
+ * remove(), clear() or the entry set, so that the Map methods built on top of them (putIfAbsent(), merge(), the
+ * removal through key and value views, ...) keep the slots in step as well.
  */
-@SuppressWarnings({"serial", "rawtypes"})
-public class CommandContext extends HashMap implements IContext {
+@SuppressWarnings({"serial", "rawtypes", "unchecked"})
+public class CommandContext extends AbstractMap implements IContext, Cloneable, Serializable {
 
 	private static final Logger _logger = LoggerFactory.getLogger(CommandContext.class);
 
+	/**
+	 * map: The entries.
+	 */
+	private HashMap map = new HashMap();
+	/**
+	 * slots: Values of the typed keys, by slot. Slots are numbered per JVM, so they are rebuilt on deserialization.
+	 */
+	private transient Object[] slots = new Object[ContextKey.getSlotCount()];
+	/**
+	 * entrySet: The view of the entries, created on first use.
+	 */
+	private transient Set entrySet;
+
 	/**
 	 * find: Implementation of the find() method from the IContext interface.
 	 * @param key The key for the value to find.
@@ -51,4 +78,277 @@ public class CommandContext extends HashMap implements IContext {
 
 		return null;
 	}
+
+	/**
+	 * find: Finds the value for a typed key. The slot is checked first, otherwise the value is looked up by the
+	 * key's name (through the whole lookup chain of subclasses) and remembered in the slot.
+	 * @param key The key for the value to find.
+	 * @param <T> The type of the value.
+	 * @return T The found object or <code>null</code>.
+	 */
+	@Override
+	public <T> T find(ContextKey<T> key) {
+		int slot = key.getSlot();
+		Object entity = (slot < slots.length ? slots[slot] : null);
+
+		if (entity == null) {
+			entity = find(key.getName());
+			if (entity == null) return null;
+			setSlot(slot, entity);
+		}
+
+		if (!key.getType().isInstance(entity)) {
+			_logger.error(String.format("Cannot cast %s to %s for key %s in context",
+					                    entity.getClass().getName(), key.getType().getName(), key.getName()));
+			return null;
+		}
+		return key.getType().cast(entity);
+	}
+
+	/**
+	 * peek: Returns the value held in the slot of a typed key, without any further lookup.
+	 * @param key The key for the value.
+	 * @param <T> The type of the value.
+	 * @return T The slot value or <code>null</code>.
+	 */
+	protected <T> T peek(ContextKey<T> key) {
+		int slot = key.getSlot();
+		Object entity = (slot < slots.length ? slots[slot] : null);
+		return (key.getType().isInstance(entity) ? key.getType().cast(entity) : null);
+	}
+
+	/**
+	 * set: Sets the value for a typed key.
+	 * @param key The key for the value.
+	 * @param value The value, <code>null</code> to remove it.
+	 * @param <T> The type of the value.
+	 */
+	@Override
+	public <T> void set(ContextKey<T> key, T value) {
+		if (value == null) {
+			remove(key.getName());
+		} else {
+			put(key.getName(), value);
+		}
+	}
+
+	@Override
+	public Object get(Object key) {
+		return map.get(key);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return map.containsKey(key);
+	}
+
+	@Override
+	public boolean containsValue(Object value) {
+		return map.containsValue(value);
+	}
+
+	@Override
+	public int size() {
+		return map.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return map.isEmpty();
+	}
+
+	/**
+	 * put: Puts an object into the map, filling the slot when the key names a typed key.
+	 * @param key
+	 * @param value
+	 * @return Object The previous value.
+	 */
+	@Override
+	public Object put(Object key, Object value) {
+		ContextKey<?> contextKey = toContextKey(key);
+		if (contextKey != null) setSlot(contextKey.getSlot(), value);
+		return map.put(key, value);
+	}
+
+	/**
+	 * putAll: Puts all entries through put() so that slots are filled.
+	 * @param map
+	 */
+	@Override
+	public void putAll(Map map) {
+		for (Iterator iter = map.entrySet().iterator(); iter.hasNext();) {
+			Map.Entry entry = (Map.Entry) iter.next();
+			put(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * remove: Removes an object from the map and its slot.
+	 * @param key
+	 * @return Object The removed value.
+	 */
+	@Override
+	public Object remove(Object key) {
+		ContextKey<?> contextKey = toContextKey(key);
+		if (contextKey != null) setSlot(contextKey.getSlot(), null);
+		return map.remove(key);
+	}
+
+	/**
+	 * clear: Clears the map and all slots.
+	 */
+	@Override
+	public void clear() {
+		Arrays.fill(slots, null);
+		map.clear();
+	}
+
+	/**
+	 * entrySet: Returns the entries. Removing an entry or setting its value updates the slot of its key.
+	 * @return Set The entries.
+	 */
+	@Override
+	public Set entrySet() {
+		if (entrySet == null) entrySet = new EntrySet();
+		return entrySet;
+	}
+
+	/**
+	 * clone: Clones the context, giving the clone its own entries and slots.
+	 * @return Object The clone.
+	 */
+	@Override
+	public Object clone() {
+		CommandContext clone;
+		try {
+			clone = (CommandContext) super.clone();
+		} catch (CloneNotSupportedException e) {
+			// not possible, the class is Cloneable.
+			throw new IllegalStateException(e);
+		}
+		clone.map = (HashMap) map.clone();
+		clone.slots = slots.clone();
+		clone.entrySet = null;
+		return clone;
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		slots = new Object[ContextKey.getSlotCount()];
+		for (Object o : map.entrySet()) {
+			Map.Entry entry = (Map.Entry) o;
+			ContextKey<?> contextKey = toContextKey(entry.getKey());
+			if (contextKey != null) setSlot(contextKey.getSlot(), entry.getValue());
+		}
+	}
+
+	private static ContextKey<?> toContextKey(Object key) {
+		return (key instanceof String ? ContextKey.forName((String) key) : null);
+	}
+
+	private void setSlot(int slot, Object value) {
+		if (slot >= slots.length) {
+			// the key was created after this context.
+			if (value == null) return;
+			slots = Arrays.copyOf(slots, Math.max(slot + 1, ContextKey.getSlotCount()));
+		}
+		slots[slot] = value;
+	}
+
+	/**
+	 * class EntrySet: View of the entries that keeps the slots in step with removals and new values.
+	 */
+	private class EntrySet extends AbstractSet {
+
+		@Override
+		public Iterator iterator() {
+			final Iterator entries = map.entrySet().iterator();
+			return new Iterator() {
+				private Map.Entry last;
+
+				@Override
+				public boolean hasNext() {
+					return entries.hasNext();
+				}
+
+				@Override
+				public Object next() {
+					last = (Map.Entry) entries.next();
+					return new Entry(last);
+				}
+
+				@Override
+				public void remove() {
+					entries.remove();
+					ContextKey<?> contextKey = toContextKey(last.getKey());
+					if (contextKey != null) setSlot(contextKey.getSlot(), null);
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return map.size();
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return map.entrySet().contains(o);
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			if (!contains(o)) return false;
+			CommandContext.this.remove(((Map.Entry) o).getKey());
+			return true;
+		}
+
+		@Override
+		public void clear() {
+			CommandContext.this.clear();
+		}
+	}
+
+	/**
+	 * class Entry: An entry whose setValue() also sets the slot of its key.
+	 */
+	private class Entry implements Map.Entry {
+		private final Map.Entry entry;
+
+		Entry(Map.Entry entry) {
+			this.entry = entry;
+		}
+
+		@Override
+		public Object getKey() {
+			return entry.getKey();
+		}
+
+		@Override
+		public Object getValue() {
+			return entry.getValue();
+		}
+
+		@Override
+		public Object setValue(Object value) {
+			ContextKey<?> contextKey = toContextKey(entry.getKey());
+			if (contextKey != null) setSlot(contextKey.getSlot(), value);
+			return entry.setValue(value);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return entry.equals(o);
+		}
+
+		@Override
+		public int hashCode() {
+			return entry.hashCode();
+		}
+
+		@Override
+		public String toString() {
+			return entry.toString();
+		}
+	}
 }
@@ -15,6 +15,8 @@
  */
 package com.xtivia.xsf.core.commands;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 /**
  * class CommandResult: Container for the result information from a command execution.
  */
@@ -32,6 +34,10 @@ public class CommandResult {
 	 * message: A message generated by the command.
 	 */
 	private  String  message = "";
+	/**
+	 * version: Version token of the data, used as the response ETag. Not part of the serialized result.
+	 */
+	private  String  version = null;
 
 	/**
 	 * CommandResult: Parameterless constructor.
@@ -122,4 +128,24 @@ public class CommandResult {
 		this.message = message;
 		return this;
 	}
+
+	/**
+	 * getVersion: Returns the version token of the data.
+	 * @return String The version or <code>null</code>.
+	 */
+	@JsonIgnore
+	public String getVersion() {
+		return version;
+	}
+
+	/**
+	 * setVersion: Sets a version token for the data, which is then used as the response ETag instead of a hash of
+	 * the response. The token must change whenever the data does.
+	 * @param version
+	 * @return CommandResult The current instance to support method chaining.
+	 */
+	public CommandResult setVersion(String version) {
+		this.version = version;
+		return this;
+	}
 }
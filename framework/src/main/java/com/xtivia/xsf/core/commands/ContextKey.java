@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.commands;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * class ContextKey: Typed key for a context value. Each key owns a fixed slot in every CommandContext, so that
+ * looking it up is an array access rather than a hash lookup, and its value is returned already typed.
+ *
+ * A key also has a name, under which its value is visible through the plain Map API: putting a value under the
+ * name fills the slot and vice versa, so commands using string keys keep working unchanged. Keys are meant to be
+ * constants; there is exactly one key per name.
+ * @param <T> The type of the value.
+ */
+public final class ContextKey<T> {
+
+	/**
+	 * keys: All keys created so far, by name.
+	 */
+	private static final ConcurrentMap<String,ContextKey<?>> keys = new ConcurrentHashMap<String,ContextKey<?>>();
+	/**
+	 * slots: The number of slots handed out so far.
+	 */
+	private static final AtomicInteger slots = new AtomicInteger();
+
+	/**
+	 * name: The name of the key in the Map API.
+	 */
+	private final String   name;
+	/**
+	 * type: The type of the value.
+	 */
+	private final Class<T> type;
+	/**
+	 * slot: The index of the key's slot.
+	 */
+	private final int      slot;
+
+	/**
+	 * ContextKey: Constructor.
+	 * @param name
+	 * @param type
+	 * @param slot
+	 */
+	private ContextKey(String name, Class<T> type, int slot) {
+		this.name = name;
+		this.type = type;
+		this.slot = slot;
+	}
+
+	/**
+	 * of: Returns the key for the given name, creating it on first use.
+	 * @param name The name of the key in the Map API.
+	 * @param type The type of the value.
+	 * @param <T> The type of the value.
+	 * @return ContextKey The key.
+	 * @throws IllegalArgumentException if the name is already used by a key of a different type.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> ContextKey<T> of(String name, Class<T> type) {
+		if (name == null || type == null) {
+			throw new IllegalArgumentException("A context key needs a name and a type");
+		}
+
+		ContextKey<?> key = keys.get(name);
+		if (key == null) {
+			synchronized (keys) {
+				key = keys.get(name);
+				if (key == null) {
+					key = new ContextKey<T>(name, type, slots.getAndIncrement());
+					keys.put(name, key);
+				}
+			}
+		}
+
+		if (key.type != type) {
+			throw new IllegalArgumentException(String.format("Context key %s is already defined for type %s",
+					                                         name, key.type.getName()));
+		}
+		return (ContextKey<T>) key;
+	}
+
+	/**
+	 * forName: Returns the key with the given name, if one has been created.
+	 * @param name
+	 * @return ContextKey The key or <code>null</code>.
+	 */
+	static ContextKey<?> forName(String name) {
+		return keys.get(name);
+	}
+
+	/**
+	 * getSlotCount: Returns the number of slots handed out so far.
+	 * @return int The slot count.
+	 */
+	static int getSlotCount() {
+		return slots.get();
+	}
+
+	/**
+	 * getName: Returns the name of the key in the Map API.
+	 * @return String The name.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * getType: Returns the type of the value.
+	 * @return Class The type.
+	 */
+	public Class<T> getType() {
+		return type;
+	}
+
+	/**
+	 * getSlot: Returns the index of the key's slot.
+	 * @return int The slot index.
+	 */
+	int getSlot() {
+		return slot;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.commands;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * class Deadline: The point in time by which a request must be answered, after which its caller has stopped
+ * waiting. The deadline of a request is found in its context under KEY; long running commands can check it
+ * between steps of their own, or hand the remaining time on to downstream calls, and CommandChain checks it
+ * before each step.
+ *
+ * A deadline is also cancelled once the request is known to be abandoned (e.g. it timed out or the client went
+ * away), in which case it counts as expired right away.
+ */
+public final class Deadline {
+
+	/**
+	 * KEY: Typed key of the request's deadline in the context.
+	 */
+	public static final ContextKey<Deadline> KEY = ContextKey.of("_deadline_", Deadline.class);
+
+	/**
+	 * timeout: The time allowed for the request in milliseconds.
+	 */
+	private final long timeout;
+	/**
+	 * expiresAt: The deadline as System.nanoTime().
+	 */
+	private final long expiresAt;
+	/**
+	 * cancelled: Flag indicating whether the request was abandoned.
+	 */
+	private volatile boolean cancelled = false;
+
+	private Deadline(long timeout) {
+		this.timeout = timeout;
+		this.expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+	}
+
+	/**
+	 * after: Creates the deadline for a request allowed the given time from now.
+	 * @param timeout The time in milliseconds.
+	 * @return Deadline The deadline.
+	 */
+	public static Deadline after(long timeout) {
+		return new Deadline(timeout);
+	}
+
+	/**
+	 * of: Returns the deadline of a request.
+	 * @param ctx Context for the request.
+	 * @return Deadline The deadline or <code>null</code> if the request has none.
+	 */
+	public static Deadline of(IContext ctx) {
+		return ctx != null ? ctx.find(KEY) : null;
+	}
+
+	/**
+	 * check: Stops a request whose deadline passed.
+	 * @param ctx Context for the request.
+	 * @throws DeadlineExceededException if the request has a deadline and it passed.
+	 */
+	public static void check(IContext ctx) {
+		Deadline deadline = of(ctx);
+		if (deadline != null) deadline.check();
+	}
+
+	/**
+	 * check: Stops the request if the deadline passed.
+	 * @throws DeadlineExceededException if the deadline passed.
+	 */
+	public void check() {
+		if (isExpired()) {
+			throw new DeadlineExceededException(cancelled ? "The request was cancelled" :
+				                                "The request did not complete within " + timeout + " ms");
+		}
+	}
+
+	/**
+	 * isExpired: Returns whether the deadline passed or the request was cancelled.
+	 * @return boolean <code>true</code> if the caller stopped waiting.
+	 */
+	public boolean isExpired() {
+		return cancelled || System.nanoTime() - expiresAt >= 0;
+	}
+
+	/**
+	 * getRemainingMillis: Returns the time left until the deadline.
+	 * @return long The time in milliseconds, zero once expired.
+	 */
+	public long getRemainingMillis() {
+		if (cancelled) return 0;
+		return Math.max(0, TimeUnit.NANOSECONDS.toMillis(expiresAt - System.nanoTime()));
+	}
+
+	/**
+	 * getTimeout: Returns the time allowed for the request.
+	 * @return long The time in milliseconds.
+	 */
+	public long getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * cancel: Marks the request as abandoned.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	@Override
+	public String toString() {
+		return "Deadline[timeout=" + timeout + ", remaining=" + getRemainingMillis() + (cancelled ? ", cancelled]" : "]");
+	}
+}
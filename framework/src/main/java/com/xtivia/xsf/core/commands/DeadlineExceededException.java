@@ -0,0 +1,32 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.commands;
+
+/**
+ * class DeadlineExceededException: Exception raised when a request is stopped because its deadline passed. It is
+ * reported through IMarshaller.onException, DefaultMarshaller answers it with a 504.
+ */
+@SuppressWarnings("serial")
+public class DeadlineExceededException extends RuntimeException {
+
+	/**
+	 * DeadlineExceededException: Constructor.
+	 * @param message
+	 */
+	public DeadlineExceededException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,32 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.commands;
+
+import java.util.List;
+
+/**
+ * class IBatchHandler: Processes the items of a StreamedInput a batch at a time.
+ * @param <T> The type of the items.
+ */
+public interface IBatchHandler<T> {
+
+	/**
+	 * handle: Processes a batch of items.
+	 * @param batch The items, the list is reused for the next batch once the handler returns.
+	 * @throws Exception
+	 */
+	void handle(List<T> batch) throws Exception;
+}
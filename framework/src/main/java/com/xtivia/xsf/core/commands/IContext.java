@@ -30,5 +30,21 @@ public interface IContext extends Map {
 	 * @return T The found object from the context or <code>null</code> if not defined.
 	 */
 	<T> T find(String key);
+
+	/**
+	 * find: Finds the value for the given typed key.
+	 * @param key The key for the value to find.
+	 * @param <T> The type of the value.
+	 * @return T The found object from the context or <code>null</code> if not defined.
+	 */
+	<T> T find(ContextKey<T> key);
+
+	/**
+	 * set: Sets the value for the given typed key, which is also visible under the key's name.
+	 * @param key The key for the value.
+	 * @param value The value, <code>null</code> to remove it.
+	 * @param <T> The type of the value.
+	 */
+	<T> void set(ContextKey<T> key, T value);
 }
 
@@ -0,0 +1,32 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.commands;
+
+/**
+ * class IDataStream: Result data produced incrementally. A command returning a large result can set an IDataStream
+ * (or an Iterator or java.util.stream.Stream) as the data of its CommandResult instead of a fully built list, and
+ * the items are written to the response as they are produced rather than being held in memory together.
+ */
+public interface IDataStream {
+
+	/**
+	 * writeItems: Produces the items of the result, handing each to the writer. Called once, after the command
+	 * has returned, while the response is being written.
+	 * @param writer The writer for the items.
+	 * @throws Exception
+	 */
+	void writeItems(IItemWriter writer) throws Exception;
+}
@@ -0,0 +1,33 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.commands;
+
+import java.io.IOException;
+
+/**
+ * class IItemWriter: Receives the items of a streamed result one at a time, serializing each straight into the
+ * response.
+ */
+public interface IItemWriter {
+
+	/**
+	 * write: Writes an item of the result.
+	 * @param item The item.
+	 * @throws IOException if the item cannot be written, e.g. because the client has gone away. The data stream
+	 * should stop producing items when this happens.
+	 */
+	void write(Object item) throws IOException;
+}
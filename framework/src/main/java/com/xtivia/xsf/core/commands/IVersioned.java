@@ -0,0 +1,32 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.commands;
+
+/**
+ * class IVersioned: Implemented by commands that can cheaply tell the version of the data they would return. For a
+ * GET carrying If-None-Match the version is checked before the command executes, and a 304 is returned without
+ * executing it when the caller already has that version.
+ */
+public interface IVersioned {
+
+	/**
+	 * getVersion: Returns the version of the data the command would return for the request.
+	 * @param context Context for the request.
+	 * @return String The version token or <code>null</code> if it cannot be determined.
+	 * @throws Exception
+	 */
+	String getVersion(IContext context) throws Exception;
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.commands;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+
+/**
+ * class StreamedInput: The input of a route declaring streamInput, placed in the context instead of a single input
+ * object. The request body, a JSON array or newline delimited JSON of the route's input class, is parsed an item at
+ * a time as the command consumes it, so only the items the command holds on to are in memory. Reading is driven by
+ * the command, so a command processing slowly simply reads the request slowly.
+ *
+ * An item that cannot be parsed surfaces as an IllegalArgumentException naming its position. The framework closes
+ * the input once the request is done.
+ * @param <T> The type of the items.
+ */
+public class StreamedInput<T> implements Iterator<T>, Closeable {
+
+	/**
+	 * items: The iterator parsing the items from the request.
+	 */
+	private final MappingIterator<T> items;
+	/**
+	 * count: The number of items read so far.
+	 */
+	private int count = 0;
+
+	/**
+	 * StreamedInput: Constructor.
+	 * @param items The iterator parsing the items from the request.
+	 */
+	public StreamedInput(MappingIterator<T> items) {
+		this.items = items;
+	}
+
+	/**
+	 * hasNext: Returns whether the request holds another item, parsing ahead to its start.
+	 * @return boolean <code>true</code> if there is another item.
+	 */
+	@Override
+	public boolean hasNext() {
+		try {
+			return items.hasNextValue();
+		} catch (IOException e) {
+			throw parseError(e);
+		}
+	}
+
+	/**
+	 * next: Parses the next item.
+	 * @return T The item.
+	 */
+	@Override
+	public T next() {
+		if (!hasNext()) throw new NoSuchElementException();
+		try {
+			T item = items.nextValue();
+			count++;
+			return item;
+		} catch (IOException e) {
+			throw parseError(e);
+		}
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * nextBatch: Parses up to the given number of items.
+	 * @param max The maximum number of items.
+	 * @return List<T> The items, empty once the input is exhausted.
+	 */
+	public List<T> nextBatch(int max) {
+		List<T> batch = new ArrayList<T>(Math.min(max, 1024));
+		while (batch.size() < max && hasNext()) {
+			batch.add(next());
+		}
+		return batch;
+	}
+
+	/**
+	 * forEachBatch: Hands all items to a handler in batches, parsing each batch only once the previous one has been
+	 * processed.
+	 * @param size The number of items per batch.
+	 * @param handler The handler.
+	 * @return int The number of items processed.
+	 * @throws Exception Any exception thrown by the handler.
+	 */
+	public int forEachBatch(int size, IBatchHandler<T> handler) throws Exception {
+		if (size <= 0) throw new IllegalArgumentException("Batch size must be positive");
+
+		int processed = 0;
+		List<T> batch = new ArrayList<T>(Math.min(size, 1024));
+		while (hasNext()) {
+			batch.add(next());
+			if (batch.size() == size) {
+				handler.handle(batch);
+				processed += batch.size();
+				batch.clear();
+			}
+		}
+		if (!batch.isEmpty()) {
+			handler.handle(batch);
+			processed += batch.size();
+		}
+		return processed;
+	}
+
+	/**
+	 * getCount: Returns the number of items read so far.
+	 * @return int The number of items.
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * close: Stops parsing, the rest of the request body is left unread.
+	 * @throws IOException
+	 */
+	@Override
+	public void close() throws IOException {
+		items.close();
+	}
+
+	private RuntimeException parseError(IOException e) {
+		if (e instanceof JsonProcessingException) {
+			return new IllegalArgumentException(String.format("Error parsing input item %d: %s",
+					                            count + 1, ((JsonProcessingException) e).getOriginalMessage()), e);
+		}
+		return new IllegalStateException(String.format("Error reading input item %d", count + 1), e);
+	}
+}
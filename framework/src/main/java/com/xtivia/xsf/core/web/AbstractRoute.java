@@ -0,0 +1,402 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import com.xtivia.xsf.core.cache.CachePartition;
+import com.xtivia.xsf.core.cache.CachePolicy;
+
+/**
+ * class AbstractRoute: Base class for routes, holding the options a route can declare beyond those of IRoute (body
+ * size limit, session mode, caching, compression, input handling, async processing, deadlines and concurrency limits)
+ * along with the counters kept for it. The framework reads these options through of(), so routes implementing IRoute
+ * directly keep working and simply run with the defaults.
+ */
+public abstract class AbstractRoute implements IRoute {
+
+	/**
+	 * maxBodySize: Maximum size of the request body in bytes, negative to use the controller's default.
+	 */
+	private long       maxBodySize=-1;
+	/**
+	 * stateless: Flag indicating whether the route runs without creating an HTTP session.
+	 */
+	private boolean    stateless=false;
+	/**
+	 * cacheTtl: Time in seconds responses are kept in the server-side response cache, 0 for none.
+	 */
+	private int        cacheTtl=0;
+	/**
+	 * cacheParams: Names of the request parameters that are part of the cache key.
+	 */
+	private String[]   cacheParams=new String[0];
+	/**
+	 * cachePartition: How cached responses are partitioned between callers.
+	 */
+	private CachePartition cachePartition=CachePartition.NONE;
+	/**
+	 * cachePolicy: The HTTP caching policy for the route, <code>null</code> if none is declared.
+	 */
+	private CachePolicy cachePolicy=null;
+	/**
+	 * compress: Flag indicating whether responses of the route may be compressed.
+	 */
+	private boolean    compress=true;
+	/**
+	 * streamInput: Flag indicating whether the request body is streamed to the command item by item.
+	 */
+	private boolean    streamInput=false;
+	/**
+	 * lazyInput: Flag indicating whether the request body is only parsed once the command asks for its input.
+	 */
+	private boolean    lazyInput=false;
+	/**
+	 * async: Flag indicating whether the command runs on an executor rather than the request thread.
+	 */
+	private boolean    async=false;
+	/**
+	 * executor: The name of the executor bean, <code>null</code> for the default executor.
+	 */
+	private String     executor=null;
+	/**
+	 * asyncTimeout: The time in milliseconds an async request may take, zero for the default.
+	 */
+	private long       asyncTimeout=0;
+	/**
+	 * bulkhead: The name of the bulkhead the commands run in, <code>null</code> for none.
+	 */
+	private String     bulkhead=null;
+	/**
+	 * timeout: The time in milliseconds the route has to answer a request, zero for the default.
+	 */
+	private long       timeout=0;
+	/**
+	 * coalesce: Flag indicating whether concurrent identical GET requests share one command execution.
+	 */
+	private boolean    coalesce=false;
+	/**
+	 * limitConcurrency: Flag indicating whether the number of requests processed at once is limited.
+	 */
+	private boolean    limitConcurrency=false;
+	/**
+	 * maxConcurrency: The highest the concurrency limit may grow to, zero for the limiter's maximum.
+	 */
+	private int        maxConcurrency=0;
+	/**
+	 * metrics: The counters kept for the route.
+	 */
+	private final RouteMetrics metrics = new RouteMetrics();
+
+	/**
+	 * of: Returns the options of a route: the route itself when it extends AbstractRoute, otherwise a copy of it with
+	 * the default options. Counters kept on such a copy do not outlive it.
+	 * @param route The route or <code>null</code>.
+	 * @return AbstractRoute The route with its options or <code>null</code> if the route is <code>null</code>.
+	 */
+	public static AbstractRoute of(IRoute route) {
+		if (route == null || route instanceof AbstractRoute) return (AbstractRoute) route;
+
+		DefaultRoute copy = new DefaultRoute();
+		copy.setUri(route.getUri());
+		copy.setHttpMethod(route.getHttpMethod());
+		copy.setCommandName(route.getCommandName());
+		copy.setInputClass(route.getInputClass());
+		copy.setInputName(route.getInputName());
+		copy.setCached(route.isCached());
+		copy.setAuthenticated(route.isAuthenticated());
+		copy.setMethod(route.getMethod());
+		return copy;
+	}
+
+	/**
+	 * getMaxBodySize: Returns the maximum request body size in bytes.
+	 * @return long The maximum size, negative to use the controller's default.
+	 */
+	public long getMaxBodySize() {
+		return this.maxBodySize;
+	}
+
+	/**
+	 * setMaxBodySize: Sets the maximum request body size in bytes.
+	 * @param maxBodySize
+	 */
+	public void setMaxBodySize(long maxBodySize) {
+		this.maxBodySize = maxBodySize;
+	}
+
+	/**
+	 * isStateless: Returns the value of the stateless flag.
+	 * @return boolean <code>true</code> if the route runs without creating an HTTP session.
+	 */
+	public boolean isStateless() {
+		return this.stateless;
+	}
+
+	/**
+	 * setStateless: Sets the stateless flag.
+	 * @param stateless
+	 */
+	public void setStateless(boolean stateless) {
+		this.stateless = stateless;
+	}
+
+	/**
+	 * getCacheTtl: Returns the time in seconds responses are kept in the server-side response cache.
+	 * @return int The time to live, 0 if responses are not cached on the server.
+	 */
+	public int getCacheTtl() {
+		return this.cacheTtl;
+	}
+
+	/**
+	 * setCacheTtl: Sets the time in seconds responses are kept in the server-side response cache.
+	 * @param cacheTtl
+	 */
+	public void setCacheTtl(int cacheTtl) {
+		this.cacheTtl = cacheTtl;
+	}
+
+	/**
+	 * getCacheParams: Returns the names of the request parameters that are part of the cache key.
+	 * @return String[] The parameter names.
+	 */
+	public String[] getCacheParams() {
+		return this.cacheParams;
+	}
+
+	/**
+	 * setCacheParams: Sets the names of the request parameters that are part of the cache key.
+	 * @param cacheParams
+	 */
+	public void setCacheParams(String[] cacheParams) {
+		this.cacheParams = (cacheParams != null ? cacheParams : new String[0]);
+	}
+
+	/**
+	 * getCachePartition: Returns how cached responses are partitioned between callers.
+	 * @return CachePartition The partitioning.
+	 */
+	public CachePartition getCachePartition() {
+		return this.cachePartition;
+	}
+
+	/**
+	 * setCachePartition: Sets how cached responses are partitioned between callers.
+	 * @param cachePartition
+	 */
+	public void setCachePartition(CachePartition cachePartition) {
+		this.cachePartition = (cachePartition != null ? cachePartition : CachePartition.NONE);
+	}
+
+	/**
+	 * getCachePolicy: Returns the HTTP caching policy.
+	 * @return CachePolicy The policy or <code>null</code> if none is declared.
+	 */
+	public CachePolicy getCachePolicy() {
+		return this.cachePolicy;
+	}
+
+	/**
+	 * setCachePolicy: Sets the HTTP caching policy.
+	 * @param cachePolicy
+	 */
+	public void setCachePolicy(CachePolicy cachePolicy) {
+		this.cachePolicy = cachePolicy;
+	}
+
+	/**
+	 * isCompress: Returns whether responses of the route may be compressed.
+	 * @return boolean <code>true</code> if compression is allowed.
+	 */
+	public boolean isCompress() {
+		return this.compress;
+	}
+
+	/**
+	 * setCompress: Sets whether responses of the route may be compressed.
+	 * @param compress
+	 */
+	public void setCompress(boolean compress) {
+		this.compress = compress;
+	}
+
+	/**
+	 * isStreamInput: Returns whether the request body is streamed to the command as a StreamedInput of the input class.
+	 * @return boolean <code>true</code> if the input is streamed.
+	 */
+	public boolean isStreamInput() {
+		return this.streamInput;
+	}
+
+	/**
+	 * setStreamInput: Sets whether the request body is streamed to the command as a StreamedInput of the input class.
+	 * @param streamInput
+	 */
+	public void setStreamInput(boolean streamInput) {
+		this.streamInput = streamInput;
+	}
+
+	/**
+	 * isLazyInput: Returns whether the request body is only parsed once the command asks for its input.
+	 * @return boolean <code>true</code> if the input is parsed lazily.
+	 */
+	public boolean isLazyInput() {
+		return this.lazyInput;
+	}
+
+	/**
+	 * setLazyInput: Sets whether the request body is only parsed once the command asks for its input.
+	 * @param lazyInput
+	 */
+	public void setLazyInput(boolean lazyInput) {
+		this.lazyInput = lazyInput;
+	}
+
+	/**
+	 * isAsync: Returns whether the command runs on an executor rather than the request thread.
+	 * @return boolean <code>true</code> if the route is processed asynchronously.
+	 */
+	public boolean isAsync() {
+		return this.async;
+	}
+
+	/**
+	 * setAsync: Sets whether the command runs on an executor rather than the request thread.
+	 * @param async
+	 */
+	public void setAsync(boolean async) {
+		this.async = async;
+	}
+
+	/**
+	 * getExecutor: Returns the name of the executor bean for the route.
+	 * @return String The bean name or <code>null</code> for the default executor.
+	 */
+	public String getExecutor() {
+		return this.executor;
+	}
+
+	/**
+	 * setExecutor: Sets the name of the executor bean for the route.
+	 * @param executor
+	 */
+	public void setExecutor(String executor) {
+		this.executor = (executor != null && executor.length() > 0 ? executor : null);
+	}
+
+	/**
+	 * getAsyncTimeout: Returns the time an async request may take.
+	 * @return long The time in milliseconds, zero for the controller default.
+	 */
+	public long getAsyncTimeout() {
+		return this.asyncTimeout;
+	}
+
+	/**
+	 * setAsyncTimeout: Sets the time an async request may take.
+	 * @param asyncTimeout The time in milliseconds, zero for the controller default.
+	 */
+	public void setAsyncTimeout(long asyncTimeout) {
+		this.asyncTimeout = asyncTimeout;
+	}
+
+	/**
+	 * getTimeout: Returns the time the route has to answer a request.
+	 * @return long The time in milliseconds, zero for the controller default.
+	 */
+	public long getTimeout() {
+		return this.timeout;
+	}
+
+	/**
+	 * setTimeout: Sets the time the route has to answer a request.
+	 * @param timeout The time in milliseconds, zero for the controller default.
+	 */
+	public void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+
+	/**
+	 * isCoalesce: Returns whether concurrent identical GET requests share one command execution.
+	 * @return boolean <code>true</code> if requests are coalesced.
+	 */
+	public boolean isCoalesce() {
+		return this.coalesce;
+	}
+
+	/**
+	 * setCoalesce: Sets whether concurrent identical GET requests share one command execution.
+	 * @param coalesce
+	 */
+	public void setCoalesce(boolean coalesce) {
+		this.coalesce = coalesce;
+	}
+
+	/**
+	 * getBulkhead: Returns the name of the bulkhead the commands run in.
+	 * @return String The bulkhead name or <code>null</code>.
+	 */
+	public String getBulkhead() {
+		return this.bulkhead;
+	}
+
+	/**
+	 * setBulkhead: Sets the name of the bulkhead the commands run in.
+	 * @param bulkhead
+	 */
+	public void setBulkhead(String bulkhead) {
+		this.bulkhead = (bulkhead != null && bulkhead.length() > 0 ? bulkhead : null);
+	}
+
+	/**
+	 * isLimitConcurrency: Returns whether the number of requests processed at once is limited.
+	 * @return boolean <code>true</code> if the route is limited.
+	 */
+	public boolean isLimitConcurrency() {
+		return this.limitConcurrency;
+	}
+
+	/**
+	 * setLimitConcurrency: Sets whether the number of requests processed at once is limited.
+	 * @param limitConcurrency
+	 */
+	public void setLimitConcurrency(boolean limitConcurrency) {
+		this.limitConcurrency = limitConcurrency;
+	}
+
+	/**
+	 * getMaxConcurrency: Returns the highest the concurrency limit may grow to.
+	 * @return int The number of requests, zero for the limiter's maximum.
+	 */
+	public int getMaxConcurrency() {
+		return this.maxConcurrency;
+	}
+
+	/**
+	 * setMaxConcurrency: Sets the highest the concurrency limit may grow to.
+	 * @param maxConcurrency The number of requests, zero for the limiter's maximum.
+	 */
+	public void setMaxConcurrency(int maxConcurrency) {
+		this.maxConcurrency = maxConcurrency;
+	}
+
+	/**
+	 * getMetrics: Returns the counters kept for the route.
+	 * @return RouteMetrics The counters.
+	 */
+	public RouteMetrics getMetrics() {
+		return this.metrics;
+	}
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * class BoundedInputStream: Input stream wrapper that fails with a 413 HttpStatusException as soon as more than
+ * the allowed number of bytes has been read, so oversized request bodies are rejected while they are being
+ * parsed rather than after they have been buffered.
+ */
+public class BoundedInputStream extends FilterInputStream {
+
+	/**
+	 * HTTP_ENTITY_TOO_LARGE: Status code for an oversized request body.
+	 */
+	public static final int HTTP_ENTITY_TOO_LARGE = 413;
+
+	/**
+	 * maxSize: The maximum number of bytes that may be read.
+	 */
+	private final long maxSize;
+	/**
+	 * count: The number of bytes read so far.
+	 */
+	private long count = 0;
+
+	/**
+	 * BoundedInputStream: Constructor.
+	 * @param in The stream to read from.
+	 * @param maxSize The maximum number of bytes that may be read.
+	 */
+	public BoundedInputStream(InputStream in, long maxSize) {
+		super(in);
+		this.maxSize = maxSize;
+	}
+
+	@Override
+	public int read() throws IOException {
+		int b = super.read();
+		if (b != -1) count(1);
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int n = super.read(b, off, len);
+		if (n > 0) count(n);
+		return n;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = super.skip(n);
+		if (skipped > 0) count(skipped);
+		return skipped;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	private void count(long n) {
+		count += n;
+		if (count > maxSize) {
+			throw tooLarge(maxSize);
+		}
+	}
+
+	/**
+	 * tooLarge: Creates the exception reported for a body larger than the given size.
+	 * @param maxSize
+	 * @return HttpStatusException The exception.
+	 */
+	public static HttpStatusException tooLarge(long maxSize) {
+		return new HttpStatusException(HTTP_ENTITY_TOO_LARGE,
+				String.format("Request body exceeds the maximum size of %d bytes", maxSize));
+	}
+}
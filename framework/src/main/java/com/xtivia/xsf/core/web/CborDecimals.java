@@ -0,0 +1,161 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.NumberDeserializers;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdScalarSerializer;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import com.fasterxml.jackson.dataformat.cbor.CBORParser;
+
+/**
+ * class CborDecimals: BigDecimal handling for the CBOR format. jackson-dataformat-cbor 2.6 writes a BigDecimal as
+ * <code>tag 5 [scale, unscaled value]</code>, which per RFC 7049 is a binary bigfloat of a different value, and
+ * cannot read it back (for a negative decimal the bytes are not even valid CBOR). The CBOR format instead writes the
+ * decimal fraction the RFC defines, <code>tag 4 [-scale, unscaled value]</code>, with unscaled values beyond 64 bits
+ * as RFC bignums, and reads both.
+ *
+ * Only loaded once jackson-dataformat-cbor is known to be on the classpath.
+ */
+final class CborDecimals {
+
+	/**
+	 * DECIMAL_FRACTION: The CBOR tag of a decimal fraction.
+	 */
+	private static final int DECIMAL_FRACTION = 4;
+	/**
+	 * JACKSON_DECIMAL: The CBOR tag jackson-dataformat-cbor writes decimals under.
+	 */
+	private static final int JACKSON_DECIMAL  = 5;
+	/**
+	 * POSITIVE_BIGNUM, NEGATIVE_BIGNUM: The CBOR tags of integers too large for 64 bits, which the parser hands out
+	 * as their bytes.
+	 */
+	private static final int POSITIVE_BIGNUM  = 2;
+	private static final int NEGATIVE_BIGNUM  = 3;
+
+	private CborDecimals() {
+	}
+
+	/**
+	 * module: Returns the module registering the BigDecimal serializer and deserializer.
+	 * @return Module The module.
+	 */
+	static Module module() {
+		SimpleModule module = new SimpleModule("xsf-cbor-decimals");
+		module.addSerializer(BigDecimal.class, new DecimalSerializer());
+		module.addDeserializer(BigDecimal.class, new DecimalDeserializer());
+		return module;
+	}
+
+	/**
+	 * class DecimalSerializer: Writes a BigDecimal as a decimal fraction.
+	 */
+	@SuppressWarnings("serial")
+	static class DecimalSerializer extends StdScalarSerializer<BigDecimal> {
+
+		DecimalSerializer() {
+			super(BigDecimal.class);
+		}
+
+		@Override
+		public void serialize(BigDecimal value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+			if (!(gen instanceof CBORGenerator)) {
+				gen.writeNumber(value);
+				return;
+			}
+			CBORGenerator cbor = (CBORGenerator) gen;
+			cbor.writeTag(DECIMAL_FRACTION);
+			cbor.writeStartArray(2);
+			cbor.writeNumber(-value.scale());
+			BigInteger mantissa = value.unscaledValue();
+			if (mantissa.bitLength() < 64) {
+				cbor.writeNumber(mantissa.longValue());
+			} else if (mantissa.signum() > 0) {
+				cbor.writeTag(POSITIVE_BIGNUM);
+				cbor.writeBinary(magnitude(mantissa));
+			} else {
+				// a negative bignum holds -1 - n.
+				cbor.writeTag(NEGATIVE_BIGNUM);
+				cbor.writeBinary(magnitude(mantissa.negate().subtract(BigInteger.ONE)));
+			}
+			cbor.writeEndArray();
+		}
+	}
+
+	/**
+	 * magnitude: Returns the unsigned big-endian bytes of a positive integer.
+	 * @param n The integer.
+	 * @return byte[] The bytes, without a leading sign byte.
+	 */
+	private static byte[] magnitude(BigInteger n) {
+		byte[] bytes = n.toByteArray();
+		return (bytes[0] == 0 && bytes.length > 1 ? Arrays.copyOfRange(bytes, 1, bytes.length) : bytes);
+	}
+
+	/**
+	 * class DecimalDeserializer: Reads a BigDecimal from a decimal fraction, from a decimal as written by
+	 * jackson-dataformat-cbor, or from any number.
+	 */
+	@SuppressWarnings("serial")
+	static class DecimalDeserializer extends NumberDeserializers.BigDecimalDeserializer {
+
+		@Override
+		public BigDecimal deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+			if (p.getCurrentToken() != JsonToken.START_ARRAY || !(p instanceof CBORParser)) {
+				return super.deserialize(p, ctxt);
+			}
+
+			int tag = ((CBORParser) p).getCurrentTag();
+			if (tag != DECIMAL_FRACTION && tag != JACKSON_DECIMAL) {
+				throw ctxt.mappingException("Cannot read a decimal from an array tagged " + tag);
+			}
+			if (p.nextToken() != JsonToken.VALUE_NUMBER_INT) {
+				throw ctxt.mappingException("Decimal needs an integer exponent");
+			}
+			int exponent = p.getIntValue();
+			BigInteger mantissa = readMantissa((CBORParser) p, ctxt);
+			if (p.nextToken() != JsonToken.END_ARRAY) {
+				throw ctxt.mappingException("Decimal has more than two elements");
+			}
+			// jackson-dataformat-cbor writes the scale where the exponent belongs.
+			return new BigDecimal(mantissa, tag == DECIMAL_FRACTION ? -exponent : exponent);
+		}
+
+		private static BigInteger readMantissa(CBORParser p, DeserializationContext ctxt) throws IOException {
+			JsonToken token = p.nextToken();
+			if (token == JsonToken.VALUE_NUMBER_INT) return p.getBigIntegerValue();
+
+			int tag = p.getCurrentTag();
+			if (token == JsonToken.VALUE_EMBEDDED_OBJECT && (tag == POSITIVE_BIGNUM || tag == NEGATIVE_BIGNUM)) {
+				BigInteger n = new BigInteger(1, p.getBinaryValue());
+				return (tag == POSITIVE_BIGNUM ? n : n.negate().subtract(BigInteger.ONE));
+			}
+			throw ctxt.mappingException("Decimal needs an integer mantissa");
+		}
+	}
+}
@@ -0,0 +1,444 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.BeanNameAware;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * class CommandExecutor: Bounded thread pool running the commands of asynchronous routes. The pool and its queue
+ * are bounded so that slow backends cannot pile up an unlimited number of requests; a request arriving when both
+ * are full is rejected. The executor counts the tasks it runs and rejects and the time they spend queued and running.
+ *
+ * Executors can be declared as Spring beans and named by routes in @Route(executor), the controller creates a
+ * default one for async routes naming none. The pool is created on first use, after its properties are set.
+ *
+ * With virtualThreads set, and on Java 21 or newer, each command runs on a virtual thread of its own instead, which
+ * makes commands blocking on service calls, JDBC or remote HTTP cheap to run by the thousands. The number of
+ * commands running at once is then bounded by maxVirtualThreads and there is no queue. On older JVMs the executor
+ * falls back to the thread pool.
+ *
+ * Executors also serve as bulkheads, isolating groups of routes (e.g. cheap lookups and heavy reports) on pools of
+ * their own. With a queueTimeout a command that waited longer than that for a thread is not run anymore; tasks
+ * implementing Expirable are told so, to answer their request.
+ */
+public class CommandExecutor implements Executor, BeanNameAware, DisposableBean {
+
+	private static final Logger _logger = LoggerFactory.getLogger(CommandExecutor.class);
+
+	/**
+	 * name: The name of the executor, used for its thread names.
+	 */
+	private String name = "xsf-async";
+	/**
+	 * corePoolSize: The number of threads started with the pool.
+	 */
+	private int corePoolSize = 8;
+	/**
+	 * maxPoolSize: The maximum number of threads.
+	 */
+	private int maxPoolSize = 32;
+	/**
+	 * queueCapacity: The number of tasks that can wait for a thread.
+	 */
+	private int queueCapacity = 256;
+	/**
+	 * keepAliveSeconds: The time threads are kept when idle.
+	 */
+	private int keepAliveSeconds = 60;
+	/**
+	 * virtualThreads: Flag indicating whether commands run on virtual threads where the JVM supports them.
+	 */
+	private boolean virtualThreads = false;
+	/**
+	 * maxVirtualThreads: The maximum number of commands running at once on virtual threads.
+	 */
+	private int maxVirtualThreads = 10000;
+	/**
+	 * queueTimeout: The time in milliseconds a command may wait for a thread before it expires, zero for no limit.
+	 */
+	private long queueTimeout = 0;
+
+	/**
+	 * pool: The thread pool or virtual thread executor, created on first use.
+	 */
+	private volatile ExecutorService pool;
+	/**
+	 * permits: Bounds the commands running on virtual threads, <code>null</code> for the thread pool.
+	 */
+	private volatile Semaphore permits;
+
+	private final AtomicInteger active     = new AtomicInteger();
+	private final AtomicLong submitted     = new AtomicLong();
+	private final AtomicLong rejected      = new AtomicLong();
+	private final AtomicLong completed     = new AtomicLong();
+	private final AtomicLong failed        = new AtomicLong();
+	private final AtomicLong expired       = new AtomicLong();
+	private final AtomicLong maxQueuedNanos = new AtomicLong();
+	private final AtomicLong queuedNanos   = new AtomicLong();
+	private final AtomicLong runningNanos  = new AtomicLong();
+
+	/**
+	 * execute: Runs a task on the pool.
+	 * @param task The task.
+	 * @throws RejectedExecutionException if the pool and its queue are full, or the executor was shut down.
+	 */
+	@Override
+	public void execute(final Runnable task) {
+		final long queuedAt = System.nanoTime();
+		submitted.incrementAndGet();
+		ExecutorService p = getPool();
+
+		// virtual threads are not pooled, the permits take the place of the pool and queue bounds.
+		final Semaphore s = permits;
+		if (s != null && !s.tryAcquire()) {
+			rejected.incrementAndGet();
+			throw new RejectedExecutionException("Executor " + name + " is running " + maxVirtualThreads + " commands");
+		}
+
+		try {
+			p.execute(new Runnable() {
+				@Override
+				public void run() {
+					long startedAt = System.nanoTime();
+					long waited = startedAt - queuedAt;
+					queuedNanos.addAndGet(waited);
+					updateMaxQueued(waited);
+
+					// the caller has likely given up on a command that waited too long, drop it.
+					if (queueTimeout > 0 && waited > TimeUnit.MILLISECONDS.toNanos(queueTimeout)) {
+						expired.incrementAndGet();
+						try {
+							if (task instanceof Expirable) ((Expirable) task).expire();
+						} finally {
+							if (s != null) s.release();
+						}
+						return;
+					}
+
+					active.incrementAndGet();
+					try {
+						task.run();
+						completed.incrementAndGet();
+					} catch (RuntimeException e) {
+						failed.incrementAndGet();
+						throw e;
+					} catch (Error e) {
+						failed.incrementAndGet();
+						throw e;
+					} finally {
+						active.decrementAndGet();
+						runningNanos.addAndGet(System.nanoTime() - startedAt);
+						if (s != null) s.release();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			if (s != null) s.release();
+			rejected.incrementAndGet();
+			throw e;
+		}
+	}
+
+	private void updateMaxQueued(long waited) {
+		long max;
+		while (waited > (max = maxQueuedNanos.get()) && !maxQueuedNanos.compareAndSet(max, waited)) {
+			// retry.
+		}
+	}
+
+	/**
+	 * getPool: Returns the thread pool or virtual thread executor, creating it on first use.
+	 * @return ExecutorService The pool.
+	 */
+	protected ExecutorService getPool() {
+		ExecutorService p = pool;
+		if (p == null) {
+			synchronized (this) {
+				p = pool;
+				if (p == null) {
+					if (virtualThreads) {
+						p = createVirtualPool();
+						if (p != null) {
+							permits = new Semaphore(maxVirtualThreads);
+							_logger.info(String.format("Started executor %s on virtual threads, running up to %d commands",
+									                   name, maxVirtualThreads));
+						} else {
+							_logger.warn(String.format("Virtual threads are not available on Java %s, executor %s " +
+									                   "falls back to a thread pool", System.getProperty("java.version"), name));
+						}
+					}
+					if (p == null) {
+						p = createPool();
+						_logger.info(String.format("Started executor %s with up to %d threads and a queue of %d",
+								                   name, Math.max(corePoolSize, maxPoolSize), queueCapacity));
+					}
+					pool = p;
+				}
+			}
+		}
+		return p;
+	}
+
+	/**
+	 * createVirtualPool: Creates an executor starting a virtual thread per command. The executor is looked up
+	 * reflectively since the framework is built for Java 7.
+	 * @return ExecutorService The executor, or <code>null</code> if the JVM has no virtual threads (before Java 21).
+	 */
+	protected ExecutorService createVirtualPool() {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name + "-", 1L);
+			ThreadFactory threadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+			return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+					                                .invoke(null, threadFactory);
+		} catch (Exception e) {
+			// no such methods, or virtual threads still a preview feature (Java 19 and 20).
+			return null;
+		}
+	}
+
+	/**
+	 * isVirtual: Returns whether commands run on virtual threads.
+	 * @return boolean <code>true</code> once the executor has started on virtual threads.
+	 */
+	public boolean isVirtual() {
+		return pool != null && permits != null;
+	}
+
+	/**
+	 * createPool: Creates the thread pool. A ThreadPoolExecutor only grows past its core size once its queue is
+	 * full, so the pool is given maxPoolSize core threads, which are stopped when idle for keepAliveSeconds: commands
+	 * get a thread of their own up to maxPoolSize before any is queued.
+	 * @return ThreadPoolExecutor The pool.
+	 */
+	protected ThreadPoolExecutor createPool() {
+		final String prefix = name + "-";
+		ThreadFactory threadFactory = new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, prefix + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+
+		int size = Math.max(corePoolSize, maxPoolSize);
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(size, size, keepAliveSeconds, TimeUnit.SECONDS,
+				                                             new ArrayBlockingQueue<Runnable>(queueCapacity), threadFactory,
+				                                             new ThreadPoolExecutor.AbortPolicy());
+		if (keepAliveSeconds > 0) executor.allowCoreThreadTimeOut(true);
+		for (int i = 0; i < corePoolSize; i++) {
+			executor.prestartCoreThread();
+		}
+		return executor;
+	}
+
+	/**
+	 * destroy: Shuts the pool down, letting running commands finish.
+	 */
+	@Override
+	public void destroy() {
+		ExecutorService p = pool;
+		if (p != null) {
+			p.shutdown();
+			_logger.info("Stopped executor " + this);
+		}
+	}
+
+	/**
+	 * setBeanName: Takes the bean name as the executor name.
+	 * @param name
+	 */
+	@Override
+	public void setBeanName(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public int getCorePoolSize() {
+		return corePoolSize;
+	}
+
+	public void setCorePoolSize(int corePoolSize) {
+		this.corePoolSize = corePoolSize;
+	}
+
+	public int getMaxPoolSize() {
+		return maxPoolSize;
+	}
+
+	public void setMaxPoolSize(int maxPoolSize) {
+		this.maxPoolSize = maxPoolSize;
+	}
+
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	public void setQueueCapacity(int queueCapacity) {
+		this.queueCapacity = queueCapacity;
+	}
+
+	public int getKeepAliveSeconds() {
+		return keepAliveSeconds;
+	}
+
+	public void setKeepAliveSeconds(int keepAliveSeconds) {
+		this.keepAliveSeconds = keepAliveSeconds;
+	}
+
+	public boolean isVirtualThreads() {
+		return virtualThreads;
+	}
+
+	public void setVirtualThreads(boolean virtualThreads) {
+		this.virtualThreads = virtualThreads;
+	}
+
+	public int getMaxVirtualThreads() {
+		return maxVirtualThreads;
+	}
+
+	public void setMaxVirtualThreads(int maxVirtualThreads) {
+		this.maxVirtualThreads = maxVirtualThreads;
+	}
+
+	public long getQueueTimeout() {
+		return queueTimeout;
+	}
+
+	public void setQueueTimeout(long queueTimeout) {
+		this.queueTimeout = queueTimeout;
+	}
+
+	public long getSubmitted() {
+		return submitted.get();
+	}
+
+	public long getRejected() {
+		return rejected.get();
+	}
+
+	public long getCompleted() {
+		return completed.get();
+	}
+
+	public long getFailed() {
+		return failed.get();
+	}
+
+	public long getExpired() {
+		return expired.get();
+	}
+
+	/**
+	 * getUtilization: Returns the share of the executor's threads (or virtual thread permits) running a command.
+	 * @return double The utilization from 0 to 1.
+	 */
+	public double getUtilization() {
+		int capacity = isVirtual() ? maxVirtualThreads : Math.max(corePoolSize, maxPoolSize);
+		return capacity > 0 ? (double) getActiveCount() / capacity : 0d;
+	}
+
+	/**
+	 * getActiveCount: Returns the number of threads running a command.
+	 * @return int The number of threads.
+	 */
+	public int getActiveCount() {
+		return active.get();
+	}
+
+	/**
+	 * getQueueSize: Returns the number of commands waiting for a thread.
+	 * @return int The number of commands.
+	 */
+	public int getQueueSize() {
+		ExecutorService p = pool;
+		return p instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) p).getQueue().size() : 0;
+	}
+
+	/**
+	 * getAverageQueueMillis: Returns the average time commands waited for a thread.
+	 * @return double The time in milliseconds.
+	 */
+	public double getAverageQueueMillis() {
+		long started = completed.get() + failed.get() + expired.get();
+		return started > 0 ? queuedNanos.get() / 1e6 / started : 0d;
+	}
+
+	/**
+	 * getMaxQueueMillis: Returns the longest time a command waited for a thread.
+	 * @return double The time in milliseconds.
+	 */
+	public double getMaxQueueMillis() {
+		return maxQueuedNanos.get() / 1e6;
+	}
+
+	/**
+	 * getAverageRunMillis: Returns the average time commands ran.
+	 * @return double The time in milliseconds.
+	 */
+	public double getAverageRunMillis() {
+		long finished = completed.get() + failed.get();
+		return finished > 0 ? runningNanos.get() / 1e6 / finished : 0d;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("CommandExecutor[%s%s, active=%d, queued=%d, submitted=%d, rejected=%d, completed=%d, " +
+				             "failed=%d, expired=%d, utilization=%.2f, avgQueueMs=%.1f, maxQueueMs=%.1f, " +
+				             "avgRunMs=%.1f]",
+				             name, isVirtual() ? " (virtual)" : "", getActiveCount(), getQueueSize(), getSubmitted(),
+				             getRejected(), getCompleted(), getFailed(), getExpired(), getUtilization(),
+				             getAverageQueueMillis(), getMaxQueueMillis(), getAverageRunMillis());
+	}
+
+	/**
+	 * interface Expirable: A task to be told when it waited longer than the queue timeout and will not be run.
+	 */
+	public interface Expirable extends Runnable {
+
+		/**
+		 * expire: Called instead of run() on a task that waited too long.
+		 */
+		void expire();
+	}
+}
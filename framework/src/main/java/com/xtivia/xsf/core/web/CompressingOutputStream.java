@@ -0,0 +1,260 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * class CompressingOutputStream: Streaming gzip/deflate compressor. Unlike GZIPOutputStream it takes its Deflater
+ * and output buffer from pools, so that compressing a response allocates neither native zlib state nor buffers.
+ *
+ * Instances are not thread safe; finish() completes the compressed stream and release() must be called once the
+ * stream is no longer used, whether or not it was finished.
+ */
+public class CompressingOutputStream extends FilterOutputStream {
+
+	/**
+	 * BUFFER_SIZE: The size of the output buffers.
+	 */
+	private static final int BUFFER_SIZE = 8192;
+	/**
+	 * MAX_POOLED: The maximum number of idle deflaters and buffers kept for reuse.
+	 */
+	private static final int MAX_POOLED = 32;
+
+	/**
+	 * GZIP_HEADER: The fixed gzip member header (no name, no time stamp, unknown OS).
+	 */
+	private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+	private static final Queue<Deflater> rawDeflaters  = new ConcurrentLinkedQueue<Deflater>();
+	private static final Queue<Deflater> zlibDeflaters = new ConcurrentLinkedQueue<Deflater>();
+	private static final Queue<byte[]>   buffers       = new ConcurrentLinkedQueue<byte[]>();
+
+	/**
+	 * encoding: The coding produced.
+	 */
+	private final ContentEncoding encoding;
+	/**
+	 * deflater: The pooled deflater.
+	 */
+	private Deflater deflater;
+	/**
+	 * buffer: The pooled output buffer.
+	 */
+	private byte[]   buffer;
+	/**
+	 * crc: Checksum of the uncompressed data, for the gzip trailer.
+	 */
+	private final CRC32 crc;
+	/**
+	 * pending: Flag indicating whether data was written since the last flush.
+	 */
+	private boolean  pending = false;
+	/**
+	 * finished: Flag indicating whether finish() has been called.
+	 */
+	private boolean  finished = false;
+
+	/**
+	 * CompressingOutputStream: Constructor compressing at the zlib default level.
+	 * @param out The stream the compressed data is written to.
+	 * @param encoding The coding to produce.
+	 * @throws IOException
+	 */
+	public CompressingOutputStream(OutputStream out, ContentEncoding encoding) throws IOException {
+		this(out, encoding, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * CompressingOutputStream: Constructor.
+	 * @param out The stream the compressed data is written to.
+	 * @param encoding The coding to produce.
+	 * @param level A level between 1 (fastest) and 9 (best), or -1 for the zlib default.
+	 * @throws IOException
+	 */
+	public CompressingOutputStream(OutputStream out, ContentEncoding encoding, int level) throws IOException {
+		super(out);
+		this.encoding = encoding;
+
+		boolean gzip = (encoding == ContentEncoding.GZIP);
+		this.deflater = take(gzip ? rawDeflaters : zlibDeflaters, gzip, level);
+		this.buffer = buffers.poll();
+		if (this.buffer == null) this.buffer = new byte[BUFFER_SIZE];
+		this.crc = (gzip ? new CRC32() : null);
+
+		// the pooled deflater and buffer must not leak when the stream cannot even be started.
+		if (gzip) {
+			try {
+				out.write(GZIP_HEADER);
+			} catch (IOException e) {
+				release();
+				throw e;
+			} catch (RuntimeException e) {
+				release();
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * compress: Compresses a complete body.
+	 * @param body
+	 * @param encoding
+	 * @param level A level between 1 (fastest) and 9 (best), or -1 for the zlib default.
+	 * @return byte[] The compressed body.
+	 */
+	public static byte[] compress(byte[] body, ContentEncoding encoding, int level) {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+		CompressingOutputStream cos = null;
+		try {
+			cos = new CompressingOutputStream(bos, encoding, level);
+			cos.write(body, 0, body.length);
+			cos.finish();
+		} catch (IOException e) {
+			// not possible when writing to memory.
+			throw new IllegalStateException(e);
+		} finally {
+			if (cos != null) cos.release();
+		}
+		return bos.toByteArray();
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (finished) throw new IOException("Compressed stream already finished");
+		if (len == 0) return;
+
+		if (crc != null) crc.update(b, off, len);
+		pending = true;
+		deflater.setInput(b, off, len);
+		while (!deflater.needsInput()) {
+			drain();
+		}
+	}
+
+	/**
+	 * flush: Forces the data written so far out of the deflater (a zlib sync flush) and flushes the underlying
+	 * stream, so that the client can decompress everything sent until now. Each flush costs some compression, so
+	 * callers flush only when the data has to reach the client.
+	 * @throws IOException
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (pending && !finished) {
+			pending = false;
+			int n;
+			do {
+				n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+				if (n > 0) out.write(buffer, 0, n);
+			} while (n == buffer.length);
+		}
+		out.flush();
+	}
+
+	/**
+	 * finish: Completes the compressed data, without closing the underlying stream.
+	 * @throws IOException
+	 */
+	public void finish() throws IOException {
+		if (finished) return;
+		finished = true;
+
+		deflater.finish();
+		while (!deflater.finished()) {
+			drain();
+		}
+
+		if (crc != null) {
+			writeInt((int) crc.getValue());
+			writeInt((int) deflater.getBytesRead());
+		}
+		out.flush();
+	}
+
+	/**
+	 * close: Finishes the compressed data and closes the underlying stream.
+	 * @throws IOException
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			finish();
+			out.close();
+		} finally {
+			release();
+		}
+	}
+
+	/**
+	 * release: Returns the deflater and buffer to their pools. The instance must not be used afterwards.
+	 */
+	public void release() {
+		if (deflater != null) {
+			deflater.reset();
+			Queue<Deflater> pool = (encoding == ContentEncoding.GZIP ? rawDeflaters : zlibDeflaters);
+			if (pool.size() < MAX_POOLED) pool.offer(deflater);
+			else deflater.end();
+			deflater = null;
+		}
+		if (buffer != null) {
+			if (buffers.size() < MAX_POOLED) buffers.offer(buffer);
+			buffer = null;
+		}
+	}
+
+	/**
+	 * getEncoding: Returns the coding produced.
+	 * @return ContentEncoding The coding.
+	 */
+	public ContentEncoding getEncoding() {
+		return encoding;
+	}
+
+	private void drain() throws IOException {
+		int n = deflater.deflate(buffer, 0, buffer.length);
+		if (n > 0) out.write(buffer, 0, n);
+	}
+
+	private void writeInt(int i) throws IOException {
+		// gzip trailer fields are little endian.
+		out.write(i & 0xff);
+		out.write((i >> 8) & 0xff);
+		out.write((i >> 16) & 0xff);
+		out.write((i >> 24) & 0xff);
+	}
+
+	private static Deflater take(Queue<Deflater> pool, boolean nowrap, int level) {
+		Deflater d = pool.poll();
+		if (d == null) return new Deflater(level, nowrap);
+
+		// pooled deflaters are shared by streams of any level, a reset deflater takes the new one from its first input.
+		d.setLevel(level);
+		return d;
+	}
+}
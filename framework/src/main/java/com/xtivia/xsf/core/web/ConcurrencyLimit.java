@@ -0,0 +1,209 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * class ConcurrencyLimit: Adaptive limit on the number of requests a route processes at once. The limit follows the
+ * gradient between the route's long-term and current latency: while requests take as long as usual the limit grows
+ * by about its square root, once they slow down because the backend is saturated it shrinks in proportion. Requests
+ * that time out or are dropped cut the limit by a tenth.
+ *
+ * The limit only grows while at least half of it is in use, so an idle route does not build up a limit it never
+ * proved it could handle.
+ */
+public class ConcurrencyLimit {
+
+	/**
+	 * BACKOFF: Factor applied to the limit for a dropped request.
+	 */
+	private static final double BACKOFF = 0.9;
+	/**
+	 * LONG_WINDOW: Number of samples the long-term latency is averaged over.
+	 */
+	private static final int LONG_WINDOW = 600;
+
+	private final int    minLimit;
+	private final int    maxLimit;
+	private final double smoothing;
+	private final double tolerance;
+
+	/**
+	 * limit: The current limit.
+	 */
+	private volatile double limit;
+	/**
+	 * longRtt: The long-term (exponentially averaged) latency in nanoseconds.
+	 */
+	private double longRtt = 0;
+	/**
+	 * lastRtt: The latency of the last sample in nanoseconds.
+	 */
+	private volatile long lastRtt = 0;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicLong    admitted = new AtomicLong();
+	private final AtomicLong    rejected = new AtomicLong();
+	private final AtomicLong    dropped  = new AtomicLong();
+
+	/**
+	 * ConcurrencyLimit: Constructor.
+	 * @param initialLimit The limit to start with.
+	 * @param minLimit The lowest limit.
+	 * @param maxLimit The highest limit.
+	 * @param smoothing The weight (0 to 1) of each new sample in the limit.
+	 * @param tolerance How much slower than the long-term latency requests may get before the limit shrinks.
+	 */
+	public ConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double smoothing, double tolerance) {
+		this.minLimit = Math.max(1, minLimit);
+		this.maxLimit = Math.max(this.minLimit, maxLimit);
+		this.smoothing = smoothing;
+		this.tolerance = tolerance;
+		this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+	}
+
+	/**
+	 * tryAcquire: Admits a request if the route is below its limit.
+	 * @return Permit The permit to release once the request is done, or <code>null</code> if the request is rejected.
+	 */
+	public Permit tryAcquire() {
+		while (true) {
+			int current = inFlight.get();
+			if (current >= (int) limit) {
+				rejected.incrementAndGet();
+				return null;
+			}
+			if (inFlight.compareAndSet(current, current + 1)) {
+				admitted.incrementAndGet();
+				return new Permit(System.nanoTime(), current + 1);
+			}
+		}
+	}
+
+	/**
+	 * sample: Adjusts the limit to the latency of a finished request.
+	 * @param rtt The time the request took in nanoseconds.
+	 * @param inFlightAtStart The number of requests in flight when it was admitted.
+	 * @param drop Flag indicating whether the request timed out or was dropped.
+	 */
+	private synchronized void sample(long rtt, int inFlightAtStart, boolean drop) {
+		if (drop) {
+			dropped.incrementAndGet();
+			limit = Math.max(minLimit, limit * BACKOFF);
+			return;
+		}
+
+		lastRtt = rtt;
+		longRtt = (longRtt == 0 ? rtt : longRtt + (rtt - longRtt) / LONG_WINDOW);
+
+		// under sustained overload the long-term latency drifts up to the current one, pull it back down.
+		if (longRtt > rtt * 2) longRtt *= 0.95;
+
+		// the route does not use its limit, nothing learnt about how far it could go.
+		if (inFlightAtStart < limit / 2) return;
+
+		double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / rtt));
+		double newLimit = limit * gradient + Math.sqrt(limit);
+		newLimit = limit * (1 - smoothing) + newLimit * smoothing;
+		limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+	}
+
+	/**
+	 * getLimit: Returns the current limit.
+	 * @return int The number of requests the route may process at once.
+	 */
+	public int getLimit() {
+		return (int) limit;
+	}
+
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	public long getAdmitted() {
+		return admitted.get();
+	}
+
+	public long getRejected() {
+		return rejected.get();
+	}
+
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * getLongRttMillis: Returns the long-term latency the limit is measured against.
+	 * @return double The time in milliseconds.
+	 */
+	public synchronized double getLongRttMillis() {
+		return longRtt / 1e6;
+	}
+
+	/**
+	 * getLastRttMillis: Returns the latency of the last request.
+	 * @return double The time in milliseconds.
+	 */
+	public double getLastRttMillis() {
+		return lastRtt / 1e6;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ConcurrencyLimit[limit=%d, inFlight=%d, admitted=%d, rejected=%d, dropped=%d, " +
+				             "longRttMs=%.1f, lastRttMs=%.1f]",
+				             getLimit(), getInFlight(), getAdmitted(), getRejected(), getDropped(),
+				             getLongRttMillis(), getLastRttMillis());
+	}
+
+	/**
+	 * class Permit: An admitted request. Releasing it more than once has no effect.
+	 */
+	public class Permit {
+		private final long          startedAt;
+		private final int           inFlightAtStart;
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		Permit(long startedAt, int inFlightAtStart) {
+			this.startedAt = startedAt;
+			this.inFlightAtStart = inFlightAtStart;
+		}
+
+		/**
+		 * release: Releases the permit of a request that was processed, sampling its latency.
+		 */
+		public void release() {
+			done(false);
+		}
+
+		/**
+		 * drop: Releases the permit of a request that timed out or could not be processed.
+		 */
+		public void drop() {
+			done(true);
+		}
+
+		private void done(boolean drop) {
+			if (!released.compareAndSet(false, true)) return;
+
+			inFlight.decrementAndGet();
+			sample(System.nanoTime() - startedAt, inFlightAtStart, drop);
+		}
+	}
+}
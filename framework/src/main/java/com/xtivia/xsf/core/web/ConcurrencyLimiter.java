@@ -0,0 +1,176 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * class ConcurrencyLimiter: Admission control in front of command execution. Each limited route gets an adaptive
+ * ConcurrencyLimit, and a request arriving while its route is at the limit is rejected with a 503 and a Retry-After
+ * header before its body is read, so that one overloaded route cannot take up all of the container's threads.
+ *
+ * Declare the limiter as a Spring bean to enable it. Routes are limited when they declare @Route(limitConcurrency),
+ * or all of them when limitAll is set; @Route(maxConcurrency) caps the limit of a route.
+ */
+public class ConcurrencyLimiter {
+
+	private static final Logger _logger = LoggerFactory.getLogger(ConcurrencyLimiter.class);
+
+	/**
+	 * HTTP_UNAVAILABLE: Status for rejected requests.
+	 */
+	private static final int HTTP_UNAVAILABLE = 503;
+
+	/**
+	 * limitAll: Flag indicating whether all routes are limited rather than only those declaring it.
+	 */
+	private boolean limitAll = false;
+	/**
+	 * initialLimit: The limit routes start with.
+	 */
+	private int initialLimit = 20;
+	/**
+	 * minLimit: The lowest limit of a route.
+	 */
+	private int minLimit = 1;
+	/**
+	 * maxLimit: The highest limit of a route not declaring its own.
+	 */
+	private int maxLimit = 200;
+	/**
+	 * smoothing: The weight (0 to 1) of each request's latency in the limit.
+	 */
+	private double smoothing = 0.2;
+	/**
+	 * tolerance: How much slower than usual requests may get before the limit shrinks.
+	 */
+	private double tolerance = 1.5;
+	/**
+	 * retryAfter: Seconds a rejected client is asked to wait before retrying.
+	 */
+	private int retryAfter = 1;
+	/**
+	 * limits: The limit of each route, created on first use.
+	 */
+	private final ConcurrentMap<IRoute,ConcurrencyLimit> limits = new ConcurrentHashMap<IRoute,ConcurrencyLimit>();
+
+	/**
+	 * acquire: Admits a request for a route.
+	 * @param route The route.
+	 * @return ConcurrencyLimit.Permit The permit to release once the request is done, or <code>null</code> if the
+	 * route is not limited.
+	 * @throws HttpStatusException with a 503 if the route is at its limit.
+	 */
+	public ConcurrencyLimit.Permit acquire(IRoute route) {
+		if (!isLimited(route)) return null;
+
+		ConcurrencyLimit limit = getLimit(route);
+		ConcurrencyLimit.Permit permit = limit.tryAcquire();
+		if (permit == null) {
+			if (_logger.isDebugEnabled()) {
+				_logger.debug(String.format("Rejecting request for route=%s: %s", route.getUri(), limit));
+			}
+			throw new HttpStatusException(HTTP_UNAVAILABLE, "The server is too busy to process the request", retryAfter);
+		}
+		return permit;
+	}
+
+	/**
+	 * isLimited: Returns whether the requests of a route are limited.
+	 * @param route
+	 * @return boolean <code>true</code> if the route is limited.
+	 */
+	protected boolean isLimited(IRoute route) {
+		return limitAll || AbstractRoute.of(route).isLimitConcurrency();
+	}
+
+	/**
+	 * getLimit: Returns the limit of a route, creating it on first use.
+	 * @param route
+	 * @return ConcurrencyLimit The limit.
+	 */
+	public ConcurrencyLimit getLimit(IRoute route) {
+		ConcurrencyLimit limit = limits.get(route);
+		if (limit == null) {
+			int routeMax = AbstractRoute.of(route).getMaxConcurrency();
+			int max = routeMax > 0 ? routeMax : maxLimit;
+			limit = new ConcurrencyLimit(Math.min(initialLimit, max), minLimit, max, smoothing, tolerance);
+			ConcurrencyLimit existing = limits.putIfAbsent(route, limit);
+			if (existing != null) limit = existing;
+		}
+		return limit;
+	}
+
+	public boolean isLimitAll() {
+		return limitAll;
+	}
+
+	public void setLimitAll(boolean limitAll) {
+		this.limitAll = limitAll;
+	}
+
+	public int getInitialLimit() {
+		return initialLimit;
+	}
+
+	public void setInitialLimit(int initialLimit) {
+		this.initialLimit = initialLimit;
+	}
+
+	public int getMinLimit() {
+		return minLimit;
+	}
+
+	public void setMinLimit(int minLimit) {
+		this.minLimit = minLimit;
+	}
+
+	public int getMaxLimit() {
+		return maxLimit;
+	}
+
+	public void setMaxLimit(int maxLimit) {
+		this.maxLimit = maxLimit;
+	}
+
+	public double getSmoothing() {
+		return smoothing;
+	}
+
+	public void setSmoothing(double smoothing) {
+		this.smoothing = smoothing;
+	}
+
+	public double getTolerance() {
+		return tolerance;
+	}
+
+	public void setTolerance(double tolerance) {
+		this.tolerance = tolerance;
+	}
+
+	public int getRetryAfter() {
+		return retryAfter;
+	}
+
+	public void setRetryAfter(int retryAfter) {
+		this.retryAfter = retryAfter;
+	}
+}
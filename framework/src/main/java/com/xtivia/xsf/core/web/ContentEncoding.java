@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+/**
+ * enum ContentEncoding: The response compression codings the framework can produce.
+ */
+public enum ContentEncoding {
+	/**
+	 * GZIP: The gzip coding.
+	 */
+	GZIP("gzip"),
+	/**
+	 * DEFLATE: The deflate (zlib) coding.
+	 */
+	DEFLATE("deflate");
+
+	/**
+	 * token: The coding's name in Accept-Encoding and Content-Encoding.
+	 */
+	private final String token;
+
+	private ContentEncoding(String token) {
+		this.token = token;
+	}
+
+	/**
+	 * getToken: Returns the coding's name in Accept-Encoding and Content-Encoding.
+	 * @return String The name.
+	 */
+	public String getToken() {
+		return token;
+	}
+
+	/**
+	 * negotiate: Picks the coding to use for an Accept-Encoding header, preferring gzip.
+	 * @param acceptEncoding The header value or <code>null</code>.
+	 * @return ContentEncoding The coding or <code>null</code> if the response should not be compressed.
+	 */
+	public static ContentEncoding negotiate(String acceptEncoding) {
+		if (acceptEncoding == null || acceptEncoding.length() == 0) return null;
+
+		float gzip = 0f, deflate = 0f, any = -1f;
+		for (String part : acceptEncoding.split(",")) {
+			String coding = part;
+			float q = 1f;
+
+			int semi = part.indexOf(';');
+			if (semi >= 0) {
+				coding = part.substring(0, semi);
+				q = quality(part.substring(semi + 1));
+			}
+
+			coding = coding.trim();
+			if (coding.equalsIgnoreCase("gzip") || coding.equalsIgnoreCase("x-gzip")) gzip = q;
+			else if (coding.equalsIgnoreCase("deflate")) deflate = q;
+			else if (coding.equals("*")) any = q;
+		}
+
+		// a wildcard covers the codings not listed explicitly.
+		if (any >= 0f && !acceptEncoding.toLowerCase().contains("gzip")) gzip = any;
+		if (any >= 0f && !acceptEncoding.toLowerCase().contains("deflate")) deflate = any;
+
+		if (gzip > 0f && gzip >= deflate) return GZIP;
+		if (deflate > 0f) return DEFLATE;
+		return null;
+	}
+
+	private static float quality(String params) {
+		for (String param : params.split(";")) {
+			param = param.trim();
+			if (param.startsWith("q=")) {
+				try {
+					return Float.parseFloat(param.substring(2).trim());
+				} catch (NumberFormatException e) {
+					return 0f;
+				}
+			}
+		}
+		return 1f;
+	}
+}
@@ -15,26 +15,48 @@
  */
 package com.xtivia.xsf.core.web;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.StringWriter;
+import java.io.PushbackInputStream;
 import java.net.HttpURLConnection;
+import java.nio.charset.Charset;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.xtivia.xsf.core.cache.CachePolicy;
 import com.xtivia.xsf.core.commands.CommandResult;
+import com.xtivia.xsf.core.commands.DeadlineExceededException;
 import com.xtivia.xsf.core.commands.IContext;
+import com.xtivia.xsf.core.commands.IItemWriter;
+import com.xtivia.xsf.core.commands.StreamedInput;
 
 /**
  * class DefaultMarshaller: Default implementation of the IMarshaller interface.
  */
-public class DefaultMarshaller implements IMarshaller {
+public class DefaultMarshaller implements IStreamingMarshaller, IRenderingMarshaller {
 	
 	private static final Logger _logger = LoggerFactory.getLogger(DefaultMarshaller.class);
 
@@ -43,9 +65,9 @@ public class DefaultMarshaller implements IMarshaller {
 	 */
 	private static final String JSON_DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss";
 	/**
-	 * CONTENT_TYPE_JSON: Static string for the json content mime type.
+	 * UTF8: The charset JSON is written in.
 	 */
-	private static final String CONTENT_TYPE_JSON = "application/json";
+	protected static final Charset UTF8 = Charset.forName("UTF-8");
 
 	/**
 	 * logInOut: Flag indicating whether to log entry and exit points in the marshaller.
@@ -55,6 +77,146 @@ public class DefaultMarshaller implements IMarshaller {
 	 * rawJson: Flag indicating whether raw JSON is the expected input object.
 	 */
 	private boolean rawJson  = false;
+	/**
+	 * responseBufferSize: The size of the pooled response buffers. Responses up to this size are sent with a
+	 * Content-Length, larger ones are streamed.
+	 */
+	private int responseBufferSize = 16 * 1024;
+	/**
+	 * etags: Flag indicating whether GET responses carry an ETag computed from their body. Results carrying a
+	 * version token always get an ETag derived from it.
+	 */
+	private boolean etags = false;
+	/**
+	 * compression: Flag indicating whether responses are compressed for callers accepting gzip or deflate.
+	 */
+	private boolean compression = false;
+	/**
+	 * compressionMinSize: Responses smaller than this many bytes are not compressed.
+	 */
+	private int compressionMinSize = 1024;
+	/**
+	 * compressionLevel: The deflate compression level of compressed responses.
+	 */
+	private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+	/**
+	 * streamFlushInterval: The number of items of a streamed result after which the response is flushed.
+	 */
+	private int streamFlushInterval = 1000;
+
+	/**
+	 * json: The JSON format, holding the Jackson mapper shared by all requests. Jackson clones the configured
+	 * date format for each read and write, so sharing the SimpleDateFormat is thread safe, and keeping the mapper
+	 * keeps Jackson's serializer and deserializer caches warm.
+	 */
+	private WireFormat json;
+
+	/**
+	 * DefaultMarshaller: Constructor.
+	 */
+	public DefaultMarshaller() {
+		ObjectMapper objectMapper = new ObjectMapper();
+		objectMapper.setDateFormat(new SimpleDateFormat(JSON_DATE_FORMAT));
+		setObjectMapper(objectMapper);
+	}
+
+	/**
+	 * getObjectMapper: Returns the Jackson mapper used by the marshaller.
+	 * @return ObjectMapper The mapper.
+	 */
+	public ObjectMapper getObjectMapper() {
+		return json.getMapper();
+	}
+
+	/**
+	 * setObjectMapper: Replaces the Jackson mapper used by the marshaller, e.g. to register modules. Any
+	 * readers and writers built from the previous mapper are discarded.
+	 * @param mapper
+	 */
+	public void setObjectMapper(ObjectMapper mapper) {
+		this.json = WireFormat.json(mapper);
+	}
+
+	/**
+	 * setRouter: Builds the readers for the input classes of all routes known to the router up front, in every
+	 * format the marshaller reads. Routers that cannot list their routes have the readers built on first use.
+	 * @param router
+	 */
+	@Autowired(required = false)
+	public void setRouter(IRouter router) {
+		if (!(router instanceof IListableRouter)) return;
+
+		WireFormat[] formats = getFormats();
+		for (IRoute route : ((IListableRouter) router).getRoutes()) {
+			if (route.getInputClass() != null) {
+				for (WireFormat format : formats) {
+					format.getReader(route.getInputClass());
+				}
+			}
+		}
+	}
+
+	/**
+	 * getJsonFormat: Returns the JSON format.
+	 * @return WireFormat The format.
+	 */
+	protected WireFormat getJsonFormat() {
+		return json;
+	}
+
+	/**
+	 * getFormats: Returns the formats the marshaller reads and writes, the default one first.
+	 * @return WireFormat[] The formats.
+	 */
+	protected WireFormat[] getFormats() {
+		return new WireFormat[] { json };
+	}
+
+	/**
+	 * getRequestFormat: Returns the format of the request body.
+	 * @param context
+	 * @return WireFormat The format.
+	 */
+	protected WireFormat getRequestFormat(IContext context) {
+		return json;
+	}
+
+	/**
+	 * getResponseFormat: Returns the format the response is written in.
+	 * @param context
+	 * @return WireFormat The format.
+	 */
+	protected WireFormat getResponseFormat(IContext context) {
+		return json;
+	}
+
+	/**
+	 * getVariant: Returns the representation rendered for the request, <code>null</code> as there is only JSON.
+	 * @param context Context for the request.
+	 * @return String The variant.
+	 */
+	@Override
+	public String getVariant(IContext context) {
+		return null;
+	}
+
+	/**
+	 * getReader: Returns the JSON reader for an input class, building it on first use.
+	 * @param clazz
+	 * @return ObjectReader The reader.
+	 */
+	protected ObjectReader getReader(Class<?> clazz) {
+		return json.getReader(clazz);
+	}
+
+	/**
+	 * getWriter: Returns the JSON writer for an output object, building it on first use for its type.
+	 * @param data
+	 * @return ObjectWriter The writer.
+	 */
+	protected ObjectWriter getWriter(Object data) {
+		return json.getWriter(data);
+	}
 
 	/**
 	 * isLogInOut: Returns the logInOut flag.
@@ -72,6 +234,116 @@ public class DefaultMarshaller implements IMarshaller {
 		this.logInOut = logInOut;
 	}
 
+	/**
+	 * isEtags: Returns whether GET responses carry an ETag computed from their body.
+	 * @return boolean The ETag mode.
+	 */
+	public boolean isEtags() {
+		return etags;
+	}
+
+	/**
+	 * setEtags: Sets whether GET responses carry an ETag computed from their body, allowing conditional requests
+	 * to be answered with a 304.
+	 * @param etags
+	 */
+	public void setEtags(boolean etags) {
+		this.etags = etags;
+	}
+
+	/**
+	 * isCompression: Returns whether responses are compressed for callers accepting it.
+	 * @return boolean The compression flag.
+	 */
+	public boolean isCompression() {
+		return compression;
+	}
+
+	/**
+	 * setCompression: Sets whether responses are compressed for callers accepting gzip or deflate. Routes can
+	 * opt out with @Route(compress=false).
+	 * @param compression
+	 */
+	public void setCompression(boolean compression) {
+		this.compression = compression;
+	}
+
+	/**
+	 * getCompressionMinSize: Returns the size below which responses are not compressed.
+	 * @return int The size in bytes.
+	 */
+	public int getCompressionMinSize() {
+		return compressionMinSize;
+	}
+
+	/**
+	 * setCompressionMinSize: Sets the size below which responses are not compressed.
+	 * @param compressionMinSize The size in bytes.
+	 */
+	public void setCompressionMinSize(int compressionMinSize) {
+		this.compressionMinSize = compressionMinSize;
+	}
+
+	/**
+	 * getCompressionLevel: Returns the deflate compression level.
+	 * @return int The level.
+	 */
+	public int getCompressionLevel() {
+		return compressionLevel;
+	}
+
+	/**
+	 * setCompressionLevel: Sets the deflate compression level.
+	 * @param compressionLevel A level between 1 (fastest) and 9 (best), or -1 for the zlib default.
+	 */
+	public void setCompressionLevel(int compressionLevel) {
+		if (compressionLevel != Deflater.DEFAULT_COMPRESSION &&
+				(compressionLevel < Deflater.BEST_SPEED || compressionLevel > Deflater.BEST_COMPRESSION)) {
+			throw new IllegalArgumentException("compressionLevel must be between 1 and 9, or -1");
+		}
+		this.compressionLevel = compressionLevel;
+	}
+
+	/**
+	 * getStreamFlushInterval: Returns the number of items of a streamed result after which the response is flushed.
+	 * @return int The number of items.
+	 */
+	public int getStreamFlushInterval() {
+		return streamFlushInterval;
+	}
+
+	/**
+	 * setStreamFlushInterval: Sets the number of items of a streamed result after which the response is flushed,
+	 * so that clients receive a long export progressively.
+	 * @param streamFlushInterval The number of items.
+	 */
+	public void setStreamFlushInterval(int streamFlushInterval) {
+		if (streamFlushInterval <= 0) {
+			throw new IllegalArgumentException("streamFlushInterval must be positive");
+		}
+		this.streamFlushInterval = streamFlushInterval;
+	}
+
+	/**
+	 * getResponseBufferSize: Returns the size of the response buffers.
+	 * @return int The buffer size in bytes.
+	 */
+	public int getResponseBufferSize() {
+		return responseBufferSize;
+	}
+
+	/**
+	 * setResponseBufferSize: Sets the size of the response buffers, i.e. the largest response that is sent
+	 * with a Content-Length.
+	 * @param responseBufferSize The buffer size in bytes.
+	 */
+	public void setResponseBufferSize(int responseBufferSize) {
+		if (responseBufferSize <= 0) {
+			throw new IllegalArgumentException("responseBufferSize must be positive");
+		}
+		this.responseBufferSize = responseBufferSize;
+	}
+
 	/**
 	 * isRawJson: Returns the rawJson flag.
 	 * @return boolean
@@ -117,42 +389,165 @@ public class DefaultMarshaller implements IMarshaller {
 				return new ProcessedInput(true,null);
 			}
 
-			// convert the request body into a string.
-			String json = new String(requestBody);
-
 			// if logInOut log the json input
-			if (logInOut) logInput(json);
+			WireFormat format = getRequestFormat(context);
+			if (isPayloadLoggingEnabled() && format.isText()) logInput(new String(requestBody, UTF8));
 
-			// create a new Jackson JSON object mapper
-			ObjectMapper mapper = new ObjectMapper();
-
-			//NOTE: SimpleDateFormat is not thread safe so it must be a new one each time
-			mapper.setDateFormat(new SimpleDateFormat(JSON_DATE_FORMAT));
-
-			// read the input data from the object mapper and set the continue flag.
-		    processedInput.setInputData(mapper.readValue(json,clazz));
+			// read the input data with the reader for the input class and set the continue flag.
+		    processedInput.setInputData(format.getReader(clazz).readValue(requestBody));
 		    processedInput.setCanContinue(true);
 		    
 		} catch (Exception e) {
+			onParseError(context, routeUri, e);
+		}
 
-			// log the error
-			_logger.error(String.format("Error parsing input for uri=%s",
-					                    routeUri),e);
-			setResponseStatus(context, HttpURLConnection.HTTP_OK);
-			setResponseContentType(context, CONTENT_TYPE_JSON);
-			try {
-				// write the failure response.
-				writeResponse(context, HttpURLConnection.HTTP_OK, CONTENT_TYPE_JSON, new CommandResult(false, null, "Error parsing input JSON"));
+		// return the processed input result.
+		return processedInput;
+	}
 
-			} catch (IOException ex) {
-				// This is a bad case - an error in extracting the input and an error in reporting the error back to the caller.
-				_logger.error(String.format("IO Exception in parsing error response for uri=%s",
-	                          routeUri),ex);
+	/**
+	 * fromRequest: Marshals the request body stream into the ProcessedInput, parsing it incrementally so the
+	 * body is never held in memory as a whole (unless payload logging needs a copy of it).
+	 * @param context Context for the request.
+	 * @param routeUri URI for the request.
+	 * @param route The route for the request.
+	 * @param requestBody The request body stream.
+	 * @param charset The declared character encoding or <code>null</code>.
+	 * @return ProcessedInput The input object.
+	 */
+	@Override
+	public ProcessedInput fromRequest(IContext    context,
+			                          String      routeUri,
+			                          IRoute      route,
+			                          InputStream requestBody,
+			                          String      charset) {
+
+		// without an input class there is nothing to parse the body into, so leave it unread.
+		Class<?> clazz = route.getInputClass();
+		if (clazz == null || requestBody == null) {
+			return fromRequest(context, routeUri, (byte[]) null, clazz);
+		}
+
+		try {
+			// the items of a streamed input are parsed while the command consumes them.
+			if (AbstractRoute.of(route).isStreamInput()) {
+				return new ProcessedInput(true, readStreamed(context, routeUri, clazz, requestBody, charset));
 			}
+
+			return new ProcessedInput(true, readInput(context, routeUri, route, requestBody, charset));
+
+		} catch (HttpStatusException e) {
+			// an oversized body is not a parse error, let the controller report it.
+			throw e;
+		} catch (Exception e) {
+			onParseError(context, routeUri, e);
+			return new ProcessedInput(false, null);
 		}
+	}
 
-		// return the processed input result.
-		return processedInput;
+	/**
+	 * readInput: Parses the request body stream into the route's input class, incrementally so the body is never
+	 * held in memory as a whole (unless payload logging needs a copy of it).
+	 * @param context Context for the request.
+	 * @param routeUri URI for the request.
+	 * @param route The route for the request.
+	 * @param requestBody The request body stream.
+	 * @param charset The declared character encoding or <code>null</code>.
+	 * @return Object The input or <code>null</code> if the body is empty.
+	 * @throws IOException
+	 */
+	@Override
+	public Object readInput(IContext    context,
+			                String      routeUri,
+			                IRoute      route,
+			                InputStream requestBody,
+			                String      charset) throws IOException {
+
+		if (logInOut) {
+			logInput(String.format("Received services request %s %s",getRequestMethod(context),routeUri));
+		}
+
+		Class<?> clazz = route.getInputClass();
+		if (clazz == null || requestBody == null) return null;
+
+		// peek at the first byte to find out whether there is a body at all.
+		PushbackInputStream in = new PushbackInputStream(requestBody, 1);
+		int first = in.read();
+		if (first == -1) return null;
+		in.unread(first);
+
+		WireFormat format = getRequestFormat(context);
+
+		// logging needs the body as a whole anyway.
+		if (isPayloadLoggingEnabled() && format.isText()) {
+			byte[] body = IOUtils.toByteArray(in);
+			logInput(new String(body, UTF8));
+			return format.getReader(clazz).readValue(body);
+		}
+
+		// Jackson detects the Unicode encodings itself, anything else needs to be decoded first. Binary
+		// formats have no charset.
+		if (!format.isText() || charset == null || UTF8.name().equalsIgnoreCase(charset)) {
+			return format.getReader(clazz).readValue(in);
+		}
+		return format.getReader(clazz).readValue(new InputStreamReader(in, charset));
+	}
+
+	/**
+	 * readStreamed: Opens a request body holding a JSON array (or a sequence of values, such as newline delimited
+	 * JSON) of items for a route declaring streamInput. Only the start of the body is read here.
+	 * @param context Context for the request.
+	 * @param routeUri URI for the request.
+	 * @param clazz The class of the items.
+	 * @param in The request body stream.
+	 * @param charset The declared character encoding or <code>null</code>.
+	 * @return StreamedInput The items.
+	 * @throws IOException
+	 */
+	protected StreamedInput<Object> readStreamed(IContext    context,
+			                                     String      routeUri,
+			                                     Class<?>    clazz,
+			                                     InputStream in,
+			                                     String      charset) throws IOException {
+
+		if (logInOut) {
+			logInput(String.format("Received streamed services request %s %s",getRequestMethod(context),routeUri));
+		}
+
+		WireFormat format = getRequestFormat(context);
+		ObjectReader reader = format.getReader(clazz);
+		MappingIterator<Object> items;
+		if (!format.isText() || charset == null || UTF8.name().equalsIgnoreCase(charset)) {
+			items = reader.readValues(in);
+		} else {
+			items = reader.readValues(new InputStreamReader(in, charset));
+		}
+		return new StreamedInput<Object>(items);
+	}
+
+	/**
+	 * onParseError: Reports a request body that could not be parsed back to the caller.
+	 * @param context
+	 * @param routeUri
+	 * @param e
+	 */
+	protected void onParseError(IContext context, String routeUri, Exception e) {
+
+		// log the error
+		_logger.error(String.format("Error parsing input for uri=%s",
+				                    routeUri),e);
+		String type = getResponseFormat(context).getMediaType();
+		setResponseStatus(context, HttpURLConnection.HTTP_OK);
+		setResponseContentType(context, type);
+		try {
+			// write the failure response.
+			writeResponse(context, HttpURLConnection.HTTP_OK, type, new CommandResult(false, null, "Error parsing input JSON"));
+
+		} catch (IOException ex) {
+			// This is a bad case - an error in extracting the input and an error in reporting the error back to the caller.
+			_logger.error(String.format("IO Exception in parsing error response for uri=%s",
+                          routeUri),ex);
+		}
 	}
 
 	/**
@@ -177,6 +572,21 @@ public class DefaultMarshaller implements IMarshaller {
 	 * @throws IOException
 	 */
 	protected void writeResponse(final IContext context, final int status, final String type, final boolean addCacheHeaders, final boolean logOut, final Object data) throws IOException {
+		writeResponse(context, status, type, addCacheHeaders, logOut, data, null);
+	}
+
+	/**
+	 * writeResponse: Utility method to write the response, compressing it if it is large enough.
+	 * @param context
+	 * @param status
+	 * @param type
+	 * @param addCacheHeaders
+	 * @param logOut
+	 * @param data
+	 * @param encoding The negotiated coding or <code>null</code> to not compress the response.
+	 * @throws IOException
+	 */
+	protected void writeResponse(final IContext context, final int status, final String type, final boolean addCacheHeaders, final boolean logOut, final Object data, final ContentEncoding encoding) throws IOException {
 
 		setResponseStatus(context, status);
 		setResponseContentType(context, type);
@@ -185,35 +595,84 @@ public class DefaultMarshaller implements IMarshaller {
 
 		// get the output stream to write into
 		OutputStream os = getResponseOutputStream(context);
+		if (os == null) return;
 
-		// create a new Jackson JSON object mapper
-		ObjectMapper mapper = new ObjectMapper();
+		// only keep a copy of the payload when it will actually be logged.
+		WireFormat format = getResponseFormat(context);
+		boolean capture = logOut && isPayloadLoggingEnabled() && format.isText();
 
-		//NOTE: SimpleDateFormat is not thread safe so it must be a new one each time
-		mapper.setDateFormat(new SimpleDateFormat(JSON_DATE_FORMAT));
+		ResponseTarget target = new ResponseTarget(context, os, encoding);
+		ResponseBuffer buffer = new ResponseBuffer(target, responseBufferSize, capture);
+		try {
+			// serialize the value, bodies larger than the buffer are streamed as they are generated.
+			format.getWriter(data).writeValue(buffer, data);
+
+			if (capture) {
+				logOutput(buffer.toString(UTF8));
+			}
 
-		if (logOut) {
-			// create a string writer for the data
-			StringWriter sw = new StringWriter();
+			// write what is left and flush the response
+			buffer.finish();
+		} finally {
+			buffer.release();
+			target.release();
+		}
+	}
 
-			// write the value into the string writer
-			mapper.writeValue(sw, data);
+	/**
+	 * class ResponseTarget: Opens the response stream for a ResponseBuffer. A body that fit into the buffer goes
+	 * out with its length; bodies at least compressionMinSize long (or too large for the buffer) are compressed when
+	 * a coding was negotiated. A body that fit into the buffer is compressed in memory first, so that it still goes
+	 * out with its length rather than chunked.
+	 */
+	private class ResponseTarget implements ResponseBuffer.Target {
+		private final IContext        context;
+		private final OutputStream    os;
+		private final ContentEncoding encoding;
+		private CompressingOutputStream compressor;
+		private ByteArrayOutputStream   compressed;
 
-			// extract the value from the string writer
-			String s = sw.toString();
+		ResponseTarget(IContext context, OutputStream os, ContentEncoding encoding) {
+			this.context = context;
+			this.os = os;
+			this.encoding = encoding;
+		}
 
-			// log it
-			logOutput(s);
+		@Override
+		public OutputStream open(boolean complete, int size) throws IOException {
+			if (encoding == null || (complete && size < compressionMinSize)) {
+				if (complete) setResponseContentLength(context, size);
+				return os;
+			}
 
-			// and then write to the output stream.
-			os.write(s.getBytes());
-		} else {
-			// write JSON to the output stream by converting the command result.
-			mapper.writeValue(os, data);
+			setResponseHeader(context, "Content-Encoding", encoding.getToken());
+			if (complete) {
+				compressed = new ByteArrayOutputStream(Math.max(64, size / 4));
+				compressor = new CompressingOutputStream(compressed, encoding, compressionLevel);
+			} else {
+				compressor = new CompressingOutputStream(os, encoding, compressionLevel);
+			}
+			return compressor;
 		}
 
-		// flush the response
-		os.flush();
+		@Override
+		public void finish(OutputStream out) throws IOException {
+			if (compressor == null) {
+				out.flush();
+				return;
+			}
+
+			compressor.finish();
+			if (compressed != null) {
+				setResponseContentLength(context, compressed.size());
+				compressed.writeTo(os);
+				os.flush();
+			}
+		}
+
+		void release() {
+			if (compressor != null) compressor.release();
+		}
 	}
 
 	/**
@@ -229,17 +688,305 @@ public class DefaultMarshaller implements IMarshaller {
 					       IRoute        route,
 					       CommandResult commandResult) {
 
+		// streamed data is written item by item as it is produced.
+		if (StreamedData.isStreamed(commandResult.getData())) {
+			writeStreamed(context, routeUri, route, commandResult);
+			return;
+		}
+
+		// responses with an ETag are rendered first, the tag has to be known before the body is written.
+		if (commandResult.getVersion() != null || (etags && isGetRequest(context))) {
+			try {
+				writeRendered(context, routeUri, route, render(context, routeUri, route, commandResult));
+			} catch (IOException ex) {
+				_logger.error(String.format("IO Exception in writing response for uri=%s",routeUri),ex);
+			}
+			return;
+		}
+
 		// get the return object, either the raw unparsed json or the command result object.
 		Object toReturn = rawJson ? commandResult.getData() : commandResult;
 
 		try {
 			// write the object to the response
-			writeResponse(context,HttpURLConnection.HTTP_OK,CONTENT_TYPE_JSON,!route.isCached(),logInOut, toReturn);
+			writeCacheHeaders(context, route, HttpURLConnection.HTTP_OK, commandResult.isSucceeded());
+			writeResponse(context,HttpURLConnection.HTTP_OK,getResponseFormat(context).getMediaType(),false,logInOut, toReturn,
+					      getContentEncoding(context, route));
 		} catch (IOException ex) {
 			_logger.error(String.format("IO Exception in writing response for uri=%s",routeUri),ex);
 		}
 	}
 
+	/**
+	 * writeStreamed: Writes a command result whose data is streamed (an IDataStream, Iterator or Stream). The items
+	 * are serialized one at a time into a JSON array in the data of the result, or (raw JSON) as the whole body, or
+	 * as newline delimited JSON for callers accepting application/x-ndjson. Only the response buffer is held in
+	 * memory, and the response is flushed every streamFlushInterval items. Writing stops when the client goes away.
+	 * @param context Context for the command.
+	 * @param routeUri URI for the command.
+	 * @param route The route for the command.
+	 * @param commandResult The command result object.
+	 */
+	protected void writeStreamed(IContext      context,
+			                     String        routeUri,
+			                     IRoute        route,
+			                     CommandResult commandResult) {
+
+		Object data = commandResult.getData();
+		WireFormat format = getResponseFormat(context);
+		String accept = getRequestHeader(context, "Accept");
+		boolean ndjson = format.isText() && accept != null && accept.contains(WireFormat.NDJSON_TYPE);
+
+		OutputStream os;
+		try {
+			os = getResponseOutputStream(context);
+		} catch (IOException ex) {
+			_logger.error(String.format("IO Exception in writing response for uri=%s",routeUri),ex);
+			StreamedData.close(data);
+			return;
+		}
+		if (os == null) {
+			StreamedData.close(data);
+			return;
+		}
+
+		if (logInOut) {
+			logOutput(String.format("Streaming response %s %s",getRequestMethod(context),routeUri));
+		}
+
+		setResponseStatus(context, HttpURLConnection.HTTP_OK);
+		setResponseContentType(context, ndjson ? WireFormat.NDJSON_TYPE : format.getMediaType());
+		writeCacheHeaders(context, route, HttpURLConnection.HTTP_OK, commandResult.isSucceeded());
+		addVaryHeader(context, "Accept");
+
+		ResponseTarget target = new ResponseTarget(context, os, getContentEncoding(context, route));
+		ResponseBuffer buffer = new ResponseBuffer(target, responseBufferSize, false);
+		ItemWriter items = null;
+		try {
+			JsonGenerator generator = format.getMapper().getFactory().createGenerator(buffer);
+			// flushing the generator must not flush the response, that happens every streamFlushInterval items.
+			generator.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+			generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			items = new ItemWriter(context, format, generator, buffer, ndjson);
+
+			boolean envelope = !ndjson && !rawJson;
+			if (envelope) {
+				generator.writeStartObject();
+				generator.writeBooleanField("succeeded", commandResult.isSucceeded());
+				generator.writeFieldName("data");
+			}
+			if (!ndjson) generator.writeStartArray();
+
+			StreamedData.writeItems(data, items);
+
+			if (!ndjson) generator.writeEndArray();
+			if (envelope) {
+				generator.writeStringField("message", commandResult.getMessage());
+				generator.writeEndObject();
+			}
+			generator.flush();
+			buffer.finish();
+
+		} catch (Exception e) {
+			if (items != null && items.isBroken()) {
+				// the client went away, there is no one left to report to.
+				if (_logger.isDebugEnabled()) {
+					_logger.debug(String.format("Client went away while streaming response for uri=%s: %s",
+							                    routeUri, e.getMessage()));
+				}
+			} else if (!buffer.isSpilled()) {
+				// nothing has been sent yet, so the failure can still be reported.
+				onException(context, routeUri, route, e);
+			} else {
+				// the response is committed and can only be cut short.
+				_logger.error(String.format("Exception streaming response for uri=%s",routeUri),e);
+			}
+		} finally {
+			buffer.release();
+			target.release();
+		}
+	}
+
+	/**
+	 * class ItemWriter: Serializes the items of a streamed result into the generator, flushing the response every
+	 * streamFlushInterval items.
+	 */
+	private class ItemWriter implements IItemWriter {
+		private final IContext       context;
+		private final WireFormat     format;
+		private final JsonGenerator  generator;
+		private final ResponseBuffer buffer;
+		private final boolean        ndjson;
+		private int     count = 0;
+		private boolean broken = false;
+
+		ItemWriter(IContext context, WireFormat format, JsonGenerator generator, ResponseBuffer buffer, boolean ndjson) {
+			this.context = context;
+			this.format = format;
+			this.generator = generator;
+			this.buffer = buffer;
+			this.ndjson = ndjson;
+			if (ndjson) generator.setRootValueSeparator(null);
+		}
+
+		@Override
+		public void write(Object item) throws IOException {
+			try {
+				format.getWriter(item).writeValue(generator, item);
+				if (ndjson) generator.writeRaw('\n');
+
+				if (++count % streamFlushInterval == 0) {
+					generator.flush();
+					buffer.push();
+					// a response held back to be written without blocking goes out as it is produced.
+					flushResponse(context);
+				}
+			} catch (JsonProcessingException e) {
+				throw e;
+			} catch (IOException e) {
+				// anything else failing is the response stream.
+				broken = true;
+				throw e;
+			}
+		}
+
+		boolean isBroken() {
+			return broken;
+		}
+	}
+
+	/**
+	 * render: Serializes the command result (or its raw data) in the response format.
+	 * @param context Context for the command.
+	 * @param routeUri URI for the command.
+	 * @param route The route for the command.
+	 * @param commandResult The command result object.
+	 * @return RenderedResponse The serialized response.
+	 * @throws IOException
+	 */
+	@Override
+	public RenderedResponse render(IContext      context,
+			                       String        routeUri,
+			                       IRoute        route,
+			                       CommandResult commandResult) throws IOException {
+
+		// get the return object, either the raw unparsed json or the command result object.
+		Object toReturn = rawJson ? commandResult.getData() : commandResult;
+
+		WireFormat format = getResponseFormat(context);
+		byte[] body = format.getWriter(toReturn).writeValueAsBytes(toReturn);
+
+		// the version supplied by the command is preferred over hashing the body.
+		String etag = null;
+		if (commandResult.getVersion() != null) {
+			etag = ETags.fromVersion(commandResult.getVersion());
+		} else if (etags) {
+			etag = ETags.fromBody(body);
+		}
+
+		return new RenderedResponse(HttpURLConnection.HTTP_OK, format.getMediaType(), body, etag,
+				                    commandResult.isSucceeded());
+	}
+
+	/**
+	 * writeRendered: Writes a serialized response with its length.
+	 * @param context Context for the command.
+	 * @param routeUri URI for the command.
+	 * @param route The route for the command.
+	 * @param rendered The serialized response.
+	 * @throws IOException
+	 */
+	@Override
+	public void writeRendered(IContext         context,
+			                  String           routeUri,
+			                  IRoute           route,
+			                  RenderedResponse rendered) throws IOException {
+
+		// the caller may already have this response.
+		String etag = rendered.getETag();
+		if (etag != null && rendered.getStatus() == HttpURLConnection.HTTP_OK && rendered.isSucceeded() &&
+			isGetRequest(context) && ETags.matches(getRequestHeader(context, "If-None-Match"), etag)) {
+			// the 304 carries the tag the 200 would have, that of the compressed body if it would be compressed.
+			ContentEncoding encoding = getContentEncoding(context, route);
+			if (encoding != null && rendered.getBody().length >= compressionMinSize) {
+				etag = ETags.forEncoding(etag, encoding);
+			}
+			sendNotModified(context, routeUri, route, etag);
+			return;
+		}
+
+		setResponseStatus(context, rendered.getStatus());
+		setResponseContentType(context, rendered.getContentType());
+
+		writeCacheHeaders(context, route, rendered.getStatus(), rendered.isSucceeded());
+
+		if (logInOut && isPayloadLoggingEnabled() && getResponseFormat(context).isText()) {
+			logOutput(new String(rendered.getBody(), UTF8));
+		}
+
+		// compressed bodies are kept with the rendered response, so a cached response is only compressed once.
+		byte[] body = rendered.getBody();
+		ContentEncoding encoding = getContentEncoding(context, route);
+		if (encoding != null && body.length >= compressionMinSize) {
+			body = rendered.getEncodedBody(encoding, compressionLevel);
+			setResponseHeader(context, "Content-Encoding", encoding.getToken());
+			if (etag != null) etag = ETags.forEncoding(etag, encoding);
+		}
+		if (etag != null) setResponseHeader(context, "ETag", etag);
+
+		OutputStream os = getResponseOutputStream(context);
+		if (os == null) return;
+
+		setResponseContentLength(context, body.length);
+		os.write(body);
+		os.flush();
+	}
+
+	/**
+	 * writeNotModified: Answers with a bodiless 304 carrying the entity tag, that of the compressed representation
+	 * when the caller holds that one. Without the body it is not known whether it would be compressed, so the tag the
+	 * caller sent back tells which representation it has.
+	 * @param context Context for the command.
+	 * @param routeUri URI for the command.
+	 * @param route The route for the command.
+	 * @param etag The entity tag of the current (uncompressed) response.
+	 */
+	@Override
+	public void writeNotModified(IContext context,
+			                     String   routeUri,
+			                     IRoute   route,
+			                     String   etag) {
+
+		ContentEncoding encoding = getContentEncoding(context, route);
+		if (encoding != null) {
+			String encoded = ETags.forEncoding(etag, encoding);
+			if (ETags.isListed(getRequestHeader(context, "If-None-Match"), encoded)) etag = encoded;
+		}
+		sendNotModified(context, routeUri, route, etag);
+	}
+
+	/**
+	 * sendNotModified: Answers with a bodiless 304 carrying the entity tag as it is.
+	 * @param context Context for the command.
+	 * @param routeUri URI for the command.
+	 * @param route The route for the command.
+	 * @param etag The entity tag of the representation the caller has.
+	 */
+	protected void sendNotModified(IContext context,
+			                       String   routeUri,
+			                       IRoute   route,
+			                       String   etag) {
+
+		if (logInOut) {
+			logOutput(String.format("Not modified %s %s",getRequestMethod(context),routeUri));
+		}
+
+		setResponseStatus(context, HttpURLConnection.HTTP_NOT_MODIFIED);
+		setResponseHeader(context, "ETag", etag);
+		writeCacheHeaders(context, route, HttpURLConnection.HTTP_NOT_MODIFIED, true);
+		if (isCompressible(route)) addVaryHeader(context, "Accept-Encoding");
+	}
+
 	/**
 	 * onRouteNotFound: Called when the route was not found.
 	 * @param context Context for the command.
@@ -273,6 +1020,19 @@ public class DefaultMarshaller implements IMarshaller {
 			                IRoute    route,
 			                Exception exception) {
 
+		// the framework asked for a specific status, e.g. a 413 for an oversized body.
+		if (exception instanceof HttpStatusException) {
+			onHttpStatus(context, routeUri, route, (HttpStatusException) exception);
+			return;
+		}
+
+		// the request ran out of time.
+		if (exception instanceof DeadlineExceededException) {
+			onHttpStatus(context, routeUri, route, new HttpStatusException(HttpURLConnection.HTTP_GATEWAY_TIMEOUT,
+			                                                             exception.getMessage()));
+			return;
+		}
+
 		// if raw json to be returned, just set the response status and return.
 		if (rawJson) {
 		    setResponseStatus(context, HttpURLConnection.HTTP_INTERNAL_ERROR);
@@ -299,6 +1059,41 @@ public class DefaultMarshaller implements IMarshaller {
 		toResponse(context, routeUri, route, cr);
 	}
 
+	/**
+	 * onHttpStatus: Answers the request with the status carried by the exception and, unless returning raw
+	 * JSON, a failed command result holding its message.
+	 * @param context Context for the route.
+	 * @param routeUri URI for the command.
+	 * @param route Route that was being processed.
+	 * @param exception The exception.
+	 */
+	protected void onHttpStatus(IContext            context,
+			                    String              routeUri,
+			                    IRoute              route,
+			                    HttpStatusException exception) {
+
+		if (_logger.isDebugEnabled()) {
+			_logger.debug(String.format("Status %d on route=%s: %s",exception.getStatus(),routeUri,exception.getMessage()));
+		}
+
+		// tell a rejected client when to come back.
+		if (exception.getRetryAfter() > 0) {
+			setResponseHeader(context, "Retry-After", String.valueOf(exception.getRetryAfter()));
+		}
+
+		if (rawJson) {
+		    setResponseStatus(context, exception.getStatus());
+		    return;
+		}
+
+		try {
+			writeResponse(context, exception.getStatus(), getResponseFormat(context).getMediaType(), true, false,
+					      new CommandResult(false, exception.getMessage()));
+		} catch (IOException ex) {
+			_logger.error(String.format("IO Exception in writing response for uri=%s",routeUri),ex);
+		}
+	}
+
 	/**
 	 * onAuthorizationFailure: Called when there is an authorization failure accessing the route.
 	 * @param context Context for the route.
@@ -326,6 +1121,16 @@ public class DefaultMarshaller implements IMarshaller {
     /*
     Optional logging of input and output
      */
+
+	/**
+	 * isPayloadLoggingEnabled: Returns whether request and response bodies will actually be logged, so that
+	 * copies of them are only made when needed.
+	 * @return boolean <code>true</code> if payloads are logged.
+	 */
+    protected boolean isPayloadLoggingEnabled() {
+    	return logInOut && _logger.isDebugEnabled();
+    }
+
     protected void logInput(String toLog) {
 		    if (_logger.isDebugEnabled())
 		    _logger.debug(toLog);
@@ -341,13 +1146,61 @@ public class DefaultMarshaller implements IMarshaller {
     overriden when we need to deal with Portal Request/Responses in the context
     */
 
+	/**
+	 * writeCacheHeaders: Sets the caching headers for a response of a route: the route's cache policy if it is
+	 * cached and the response is a successful 200 or 304, otherwise the cache suppression headers. A failure must
+	 * not be kept by a browser or proxy in place of the data.
+	 * @param context The context.
+	 * @param route The route.
+	 * @param status The status of the response.
+	 * @param succeeded Whether the response holds a successful command result.
+	 */
+	protected void writeCacheHeaders(IContext context, IRoute route, int status, boolean succeeded) {
+		boolean cacheable = succeeded &&
+				            (status == HttpURLConnection.HTTP_OK || status == HttpURLConnection.HTTP_NOT_MODIFIED);
+		if (!cacheable || !route.isCached()) {
+			writeCacheSuppressionHeaders(context);
+			return;
+		}
+
+		// the header values were rendered when the route was loaded.
+		CachePolicy policy = AbstractRoute.of(route).getCachePolicy();
+		if (policy == null) return;
+
+		setResponseHeader(context, "Cache-Control", policy.getCacheControl());
+		if (policy.getVary() != null) addVaryHeader(context, policy.getVary());
+	}
+
+	/**
+	 * isCompressible: Returns whether responses of a route are compressed for callers accepting it.
+	 * @param route
+	 * @return boolean <code>true</code> if the response depends on Accept-Encoding.
+	 */
+	protected boolean isCompressible(IRoute route) {
+		return compression && route != null && AbstractRoute.of(route).isCompress();
+	}
+
+	/**
+	 * getContentEncoding: Negotiates the coding for a response of a route, and notes in the Vary header that the
+	 * response depends on Accept-Encoding.
+	 * @param context
+	 * @param route
+	 * @return ContentEncoding The coding or <code>null</code> if the response is not to be compressed.
+	 */
+	protected ContentEncoding getContentEncoding(IContext context, IRoute route) {
+		if (!isCompressible(route)) return null;
+
+		addVaryHeader(context, "Accept-Encoding");
+		return ContentEncoding.negotiate(getRequestHeader(context, "Accept-Encoding"));
+	}
+
 	/**
 	 * writeCacheSuppressionHeaders: Sets the cache suspension headers in the response.
 	 * @param context The context.
 	 */
 	protected void writeCacheSuppressionHeaders(IContext context) {
 		// get the response object from the context
-        HttpServletResponse response = context.find(ICommandKeys.HTTP_RESPONSE);
+        HttpServletResponse response = context.find(ICommandKeys.HTTP_RESPONSE_KEY);
 
 		if (response == null) return;
 
@@ -363,10 +1216,30 @@ public class DefaultMarshaller implements IMarshaller {
 	 * @return String The request method.
 	 */
     protected String getRequestMethod(IContext context) {
-        HttpServletRequest request = context.find(ICommandKeys.HTTP_REQUEST);
+        HttpServletRequest request = context.find(ICommandKeys.HTTP_REQUEST_KEY);
         return request != null ? request.getMethod() : null;
     }
 
+	/**
+	 * isGetRequest: Returns whether the request is a GET.
+	 * @param context
+	 * @return boolean <code>true</code> for a GET request.
+	 */
+    protected boolean isGetRequest(IContext context) {
+        return "GET".equals(getRequestMethod(context));
+    }
+
+	/**
+	 * getRequestHeader: Returns a request header.
+	 * @param context
+	 * @param name
+	 * @return String The header value or <code>null</code>.
+	 */
+    protected String getRequestHeader(IContext context, String name) {
+        HttpServletRequest request = context.find(ICommandKeys.HTTP_REQUEST_KEY);
+        return request != null ? request.getHeader(name) : null;
+    }
+
 	/**
 	 * getResponseOutputStream: Returns the response output stream.
 	 * @param context
@@ -374,7 +1247,7 @@ public class DefaultMarshaller implements IMarshaller {
 	 * @throws IOException
 	 */
     protected OutputStream getResponseOutputStream(IContext context) throws IOException {
-        HttpServletResponse response = context.find(ICommandKeys.HTTP_RESPONSE);
+        HttpServletResponse response = context.find(ICommandKeys.HTTP_RESPONSE_KEY);
         return (response != null ? response.getOutputStream() : null);
     }
 
@@ -384,17 +1257,94 @@ public class DefaultMarshaller implements IMarshaller {
 	 * @param status
 	 */
     protected void setResponseStatus(IContext context, int status) {
-        HttpServletResponse response = context.find(ICommandKeys.HTTP_RESPONSE);
+        HttpServletResponse response = context.find(ICommandKeys.HTTP_RESPONSE_KEY);
         if (response != null) response.setStatus(status);
     }
 
+	/**
+	 * setResponseHeader: Sets a response header.
+	 * @param context
+	 * @param name
+	 * @param value
+	 */
+    protected void setResponseHeader(IContext context, String name, String value) {
+        HttpServletResponse response = context.find(ICommandKeys.HTTP_RESPONSE_KEY);
+        if (response != null) response.setHeader(name, value);
+    }
+
+	/**
+	 * addResponseHeader: Adds a response header value.
+	 * @param context
+	 * @param name
+	 * @param value
+	 */
+    protected void addResponseHeader(IContext context, String name, String value) {
+        HttpServletResponse response = context.find(ICommandKeys.HTTP_RESPONSE_KEY);
+        if (response != null) response.addHeader(name, value);
+    }
+
+	/**
+	 * addVaryHeader: Adds request headers to the Vary header, merged into a single value with those already listed.
+	 * @param context
+	 * @param names Comma separated header names.
+	 */
+    protected void addVaryHeader(IContext context, String names) {
+        HttpServletResponse response = context.find(ICommandKeys.HTTP_RESPONSE_KEY);
+        if (response != null) response.setHeader("Vary", mergeVary(response.getHeaders("Vary"), names));
+    }
+
+	/**
+	 * mergeVary: Merges Vary header values, dropping names listed more than once (ignoring case).
+	 * @param current The values already set.
+	 * @param names Comma separated header names to add.
+	 * @return String The merged value, "*" if any of the values is.
+	 */
+    static String mergeVary(Collection<String> current, String names) {
+    	List<String> values = new ArrayList<String>(current);
+    	values.add(names);
+
+    	StringBuilder merged = new StringBuilder();
+    	Set<String> seen = new HashSet<String>();
+    	for (String value : values) {
+    		if (value == null) continue;
+    		for (String name : value.split(",")) {
+    			name = name.trim();
+    			if ("*".equals(name)) return "*";
+    			if (name.length() == 0 || !seen.add(name.toLowerCase(Locale.ENGLISH))) continue;
+    			if (merged.length() > 0) merged.append(", ");
+    			merged.append(name);
+    		}
+    	}
+    	return merged.toString();
+    }
+
+	/**
+	 * setResponseContentLength: Sets the content length of the response.
+	 * @param context
+	 * @param length
+	 */
+    protected void setResponseContentLength(IContext context, int length) {
+        HttpServletResponse response = context.find(ICommandKeys.HTTP_RESPONSE_KEY);
+        if (response != null) response.setContentLength(length);
+    }
+
+	/**
+	 * flushResponse: Commits the response and sends what has been written of it to the client.
+	 * @param context
+	 * @throws IOException
+	 */
+    protected void flushResponse(IContext context) throws IOException {
+        HttpServletResponse response = context.find(ICommandKeys.HTTP_RESPONSE_KEY);
+        if (response != null) response.flushBuffer();
+    }
+
 	/**
 	 * setResponseContentType: Sets the content type in the response.
 	 * @param context
 	 * @param contentType
 	 */
     protected void setResponseContentType(IContext context, String contentType) {
-        HttpServletResponse response = context.find(ICommandKeys.HTTP_RESPONSE);
+        HttpServletResponse response = context.find(ICommandKeys.HTTP_RESPONSE_KEY);
         if (response != null) response.setContentType(contentType);
     }
 
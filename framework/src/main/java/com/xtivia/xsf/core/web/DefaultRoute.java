@@ -22,7 +22,7 @@ import org.apache.commons.lang.Validate;
 /**
  * class DefaultRoute: The default route.
  */
-public class DefaultRoute implements IRoute {
+public class DefaultRoute extends AbstractRoute {
 
 	/**
 	 * uri: URI for the route that this object manages.
@@ -17,6 +17,7 @@ package com.xtivia.xsf.core.web;
 
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -24,16 +25,18 @@ import java.util.Map.Entry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.util.AntPathMatcher;
 
 import com.xtivia.xsf.core.annotation.Route;
+import com.xtivia.xsf.core.cache.CachePartition;
+import com.xtivia.xsf.core.cache.CachePolicy;
+import com.xtivia.xsf.core.cache.CacheScope;
 import com.xtivia.xsf.core.commands.CommandResult;
 import com.xtivia.xsf.core.commands.ICommand;
 
 /**
  * class DefaultRouter: Default router implementation.
  */
-public class DefaultRouter implements IRouter  {
+public class DefaultRouter implements IListableRouter  {
 	
 	private static final Logger logger = LoggerFactory.getLogger(DefaultRouter.class);
 
@@ -42,6 +45,11 @@ public class DefaultRouter implements IRouter  {
 	 */
 	private List<IRoute> _routes = new ArrayList<IRoute> ();
 
+	/**
+	 * _trie: The routes compiled into a segment trie for matching requests.
+	 */
+	private volatile RouteTrie _trie = new RouteTrie();
+
 	/**
 	 * DefaultRouter: Constructor.
 	 * @param commands
@@ -49,6 +57,7 @@ public class DefaultRouter implements IRouter  {
 	@Autowired
 	public DefaultRouter(Map<String,ICommand> commands) {
 	  loadRoutes(commands);
+	  compileRoutes();
 	}
 
 	/**
@@ -60,38 +69,42 @@ public class DefaultRouter implements IRouter  {
 	 */
 	public RoutingInfo getRoutingInfo(String requestUri, String httpMethod) {
 
-		// create a new path matcher instance.
-		AntPathMatcher matcher = new AntPathMatcher();
-
-		// define a map to hold parameter versions.
-		Map<String, String> pathParams = null;
-
-		// for each defined route
-		for (IRoute route : _routes) {
-
-			// extract the URI.
-			String routeUri = route.getUri();
-
-			// if the defined route uses the given http method and the URIs match
-			if (httpMethod.equals(route.getHttpMethod()) && matcher.match(routeUri, requestUri)) {
+		// walk the compiled trie, this also captures the path parameters.
+		return _trie.match(requestUri, httpMethod);
+	}
 
-				// extract the template parameters from the uri.
-				pathParams = matcher.extractUriTemplateVariables(routeUri, requestUri);
+	/**
+	 * getRoutes: Returns the loaded routes.
+	 * @return List The unmodifiable list of routes.
+	 */
+	public List<IRoute> getRoutes() {
+		return Collections.unmodifiableList(_routes);
+	}
 
-				// define a new routing info object
-				RoutingInfo routingInfo = new RoutingInfo();
+	/**
+	 * compileRoutes: Compiles the loaded routes into the trie used to match requests. Subclasses that
+	 * add routes after construction must call this again for the new routes to be matched.
+	 */
+	protected void compileRoutes() {
 
-				// set the values
-				routingInfo.setRoute(route);
-				routingInfo.setPathParameters(pathParams);
+		RouteTrie trie = new RouteTrie();
 
-				// return the instance
-				return routingInfo;
+		// for each defined route
+		for (IRoute route : _routes) {
+			if (route.getUri() == null || route.getHttpMethod() == null) {
+				logger.warn("Route for command bean [" + route.getCommandName() + 
+						    "] has no URI or HTTP method and will not be processed.");
+				continue;
 			}
+			trie.add(route);
 		}
 
-		// if we get here, no match.
-		return null;
+		if (logger.isDebugEnabled()) {
+			logger.debug("Compiled " + trie.size() + " routes.");
+		}
+
+		// publish the new trie to the request threads.
+		_trie = trie;
 	}
 
 	/**
@@ -151,6 +164,23 @@ public class DefaultRouter implements IRouter  {
 		newRoute.setHttpMethod(annotation.method());
 		newRoute.setUri(annotation.uri());
         newRoute.setAuthenticated(annotation.authenticated());
+        newRoute.setMaxBodySize(annotation.maxBodySize());
+        newRoute.setStateless(annotation.stateless());
+        newRoute.setCacheTtl(annotation.cacheTtl());
+        newRoute.setCacheParams(annotation.cacheParams());
+        newRoute.setCachePartition(annotation.cachePartition());
+        newRoute.setCachePolicy(createCachePolicy(newRoute, annotation, null));
+        newRoute.setCompress(annotation.compress());
+        newRoute.setStreamInput(annotation.streamInput());
+        newRoute.setLazyInput(annotation.lazyInput());
+        newRoute.setAsync(annotation.async());
+        newRoute.setExecutor(annotation.executor());
+        newRoute.setAsyncTimeout(annotation.asyncTimeout());
+        newRoute.setBulkhead(annotation.bulkhead());
+        newRoute.setTimeout(annotation.timeout());
+        newRoute.setCoalesce(annotation.coalesce());
+        newRoute.setLimitConcurrency(annotation.limitConcurrency());
+        newRoute.setMaxConcurrency(annotation.maxConcurrency());
 
 		String inputKey = annotation.inputKey();
         String inputClass = annotation.inputClass();
@@ -225,7 +255,7 @@ public class DefaultRouter implements IRouter  {
 	protected boolean isDispatchable(Method method) {
 		
 		Class<?>[] paramTypes = method.getParameterTypes();
-		if (paramTypes.length > 1) return false;
+		if (paramTypes.length != 1) return false;
 		if (!paramTypes[0].getName().equals("com.xtivia.xsf.core.commands.IContext")) return false;
 
 		Class<?> returnType = method.getReturnType();
@@ -253,5 +283,109 @@ public class DefaultRouter implements IRouter  {
 		} else {
 			route.setAuthenticated(classAnnotation.authenticated());
 		}
+
+		// the other settings are only held by routes extending AbstractRoute
+		if (!(route instanceof AbstractRoute)) return;
+		AbstractRoute options = (AbstractRoute) route;
+
+		// a body size limit on the method wins over one on the class
+		if (methodAnnotation.maxBodySize() < 0) {
+			options.setMaxBodySize(classAnnotation.maxBodySize());
+		}
+
+		// a route is stateless if either annotation says so
+		if (classAnnotation.stateless()) {
+			options.setStateless(true);
+		}
+
+		// server-side caching settings on the method win over those on the class
+		if (methodAnnotation.cacheTtl() == 0) {
+			options.setCacheTtl(classAnnotation.cacheTtl());
+		}
+		if (methodAnnotation.cacheParams().length == 0) {
+			options.setCacheParams(classAnnotation.cacheParams());
+		}
+		if (methodAnnotation.cachePartition() == CachePartition.NONE) {
+			options.setCachePartition(classAnnotation.cachePartition());
+		}
+
+		// compression can be turned off on either annotation
+		if (!classAnnotation.compress()) {
+			options.setCompress(false);
+		}
+
+		// a route is async if either annotation says so, the method's executor and timeout win over the class'
+		if (classAnnotation.async()) {
+			options.setAsync(true);
+		}
+		if (methodAnnotation.executor().length() == 0) {
+			options.setExecutor(classAnnotation.executor());
+		}
+		if (methodAnnotation.asyncTimeout() == 0) {
+			options.setAsyncTimeout(classAnnotation.asyncTimeout());
+		}
+
+		// a route is coalesced if either annotation says so
+		if (classAnnotation.coalesce()) {
+			options.setCoalesce(true);
+		}
+
+		// a timeout on the method wins over one on the class
+		if (methodAnnotation.timeout() == 0) {
+			options.setTimeout(classAnnotation.timeout());
+		}
+
+		// a bulkhead on the method wins over one on the class
+		if (methodAnnotation.bulkhead().length() == 0) {
+			options.setBulkhead(classAnnotation.bulkhead());
+		}
+
+		// a route is limited if either annotation says so, the method's maximum wins over the class'
+		if (classAnnotation.limitConcurrency()) {
+			options.setLimitConcurrency(true);
+		}
+		if (methodAnnotation.maxConcurrency() == 0) {
+			options.setMaxConcurrency(classAnnotation.maxConcurrency());
+		}
+
+		// the cache policy depends on the merged settings
+		options.setCachePolicy(createCachePolicy(route, methodAnnotation, classAnnotation));
+	}
+
+	/**
+	 * createCachePolicy: Creates the HTTP caching policy declared for a route, taking each setting from the
+	 * annotation or, where it does not declare it, from the fallback annotation.
+	 * @param route The route, with its authentication and partitioning already set.
+	 * @param annotation The annotation declaring the route.
+	 * @param fallback The enclosing class annotation or <code>null</code>.
+	 * @return CachePolicy The policy or <code>null</code> if none is declared.
+	 */
+	protected CachePolicy createCachePolicy(IRoute route, Route annotation, Route fallback) {
+		int maxAge = annotation.maxAge();
+		int sMaxAge = annotation.sMaxAge();
+		int staleWhileRevalidate = annotation.staleWhileRevalidate();
+		CacheScope scope = annotation.cacheScope();
+		String[] vary = annotation.vary();
+
+		if (fallback != null) {
+			if (maxAge < 0) maxAge = fallback.maxAge();
+			if (sMaxAge < 0) sMaxAge = fallback.sMaxAge();
+			if (staleWhileRevalidate < 0) staleWhileRevalidate = fallback.staleWhileRevalidate();
+			if (scope == CacheScope.DEFAULT) scope = fallback.cacheScope();
+			if (vary.length == 0) vary = fallback.vary();
+		}
+
+		// nothing declared, keep the plain cached behavior.
+		if (maxAge < 0 && sMaxAge < 0 && staleWhileRevalidate < 0 && scope == CacheScope.DEFAULT && vary.length == 0) {
+			return null;
+		}
+
+		// responses for a particular user must stay out of shared caches.
+		if (scope == CacheScope.DEFAULT) {
+			boolean personal = route.isAuthenticated() || AbstractRoute.of(route).getCachePartition() != CachePartition.NONE;
+			scope = (personal ? CacheScope.PRIVATE : CacheScope.PUBLIC);
+		}
+
+		return new CachePolicy(scope, maxAge, sMaxAge, staleWhileRevalidate, vary);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * class ETags: Utility functions for creating and matching entity tags.
+ */
+public final class ETags {
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private ETags() {
+	}
+
+	/**
+	 * fromVersion: Creates the entity tag for a version token.
+	 * @param version
+	 * @return String The quoted entity tag.
+	 */
+	public static String fromVersion(String version) {
+		StringBuilder sb = new StringBuilder(version.length() + 4);
+		sb.append("\"v");
+		for (int i = 0; i < version.length(); i++) {
+			// quotes and backslashes are not allowed in an entity tag.
+			char c = version.charAt(i);
+			sb.append(c == '"' || c == '\\' || c < 0x21 ? '_' : c);
+		}
+		return sb.append('"').toString();
+	}
+
+	/**
+	 * fromBody: Creates the entity tag for a response body from its MD5 digest.
+	 * @param body
+	 * @return String The quoted entity tag.
+	 */
+	public static String fromBody(byte[] body) {
+		byte[] digest;
+		try {
+			digest = MessageDigest.getInstance("MD5").digest(body);
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform is required to support MD5.
+			throw new IllegalStateException(e);
+		}
+
+		char[] chars = new char[digest.length * 2 + 2];
+		chars[0] = '"';
+		for (int i = 0; i < digest.length; i++) {
+			chars[i * 2 + 1] = HEX[(digest[i] >> 4) & 0xf];
+			chars[i * 2 + 2] = HEX[digest[i] & 0xf];
+		}
+		chars[chars.length - 1] = '"';
+		return new String(chars);
+	}
+
+	/**
+	 * forEncoding: Returns the entity tag of a compressed representation, which must differ from that of the
+	 * uncompressed one.
+	 * @param etag The quoted entity tag of the uncompressed response.
+	 * @param encoding The coding applied.
+	 * @return String The quoted entity tag.
+	 */
+	public static String forEncoding(String etag, ContentEncoding encoding) {
+		return etag.substring(0, etag.length() - 1) + '-' + encoding.getToken() + '"';
+	}
+
+	/**
+	 * matches: Returns whether an If-None-Match header matches an entity tag, using the weak comparison and
+	 * ignoring content codings.
+	 * @param ifNoneMatch The header value or <code>null</code>.
+	 * @param etag The quoted entity tag.
+	 * @return boolean <code>true</code> if the caller already has the entity.
+	 */
+	public static boolean matches(String ifNoneMatch, String etag) {
+		if (ifNoneMatch == null || etag == null) return false;
+
+		String opaque = opaque(etag);
+		for (String candidate : ifNoneMatch.split(",")) {
+			candidate = candidate.trim();
+			if (candidate.equals("*") || opaque(candidate).equals(opaque)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * isListed: Returns whether an If-None-Match header lists exactly an entity tag, including its content coding.
+	 * @param ifNoneMatch The header value or <code>null</code>.
+	 * @param etag The quoted entity tag.
+	 * @return boolean <code>true</code> if the caller sent that tag.
+	 */
+	public static boolean isListed(String ifNoneMatch, String etag) {
+		if (ifNoneMatch == null || etag == null) return false;
+
+		for (String candidate : ifNoneMatch.split(",")) {
+			candidate = candidate.trim();
+			if (candidate.startsWith("W/")) candidate = candidate.substring(2);
+			if (candidate.equals(etag)) return true;
+		}
+		return false;
+	}
+
+	private static String opaque(String etag) {
+		if (etag.startsWith("W/")) etag = etag.substring(2);
+
+		// a tag sent back for a compressed representation still identifies the same response.
+		for (ContentEncoding encoding : ContentEncoding.values()) {
+			String suffix = "-" + encoding.getToken() + '"';
+			if (etag.endsWith(suffix)) {
+				return etag.substring(0, etag.length() - suffix.length()) + '"';
+			}
+		}
+		return etag;
+	}
+}
@@ -0,0 +1,313 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Locale;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * class GuardedResponse: Response handed to a command running asynchronously. Everything written goes straight to the
+ * response until the request is answered by someone else (a timeout or an expired queue wait), after which the
+ * response belongs to the container again and whatever the command still writes is dropped.
+ *
+ * Writes and close() exclude each other, so close() waits for a write in progress and none starts after it.
+ */
+public class GuardedResponse extends HttpServletResponseWrapper {
+	private final Object lock = new Object();
+	private boolean closed = false;
+	private ServletOutputStream out;
+	private PrintWriter writer;
+
+	public GuardedResponse(HttpServletResponse response) {
+		super(response);
+	}
+
+	/**
+	 * close: Detaches the command from the response, waiting for a write in progress.
+	 */
+	public void close() {
+		synchronized (lock) {
+			closed = true;
+		}
+	}
+
+	/**
+	 * isClosed: Returns whether writes are dropped.
+	 * @return boolean
+	 */
+	public boolean isClosed() {
+		synchronized (lock) {
+			return closed;
+		}
+	}
+
+	@Override
+	public ServletOutputStream getOutputStream() throws IOException {
+		synchronized (lock) {
+			if (out == null) {
+				final ServletOutputStream target = (closed ? null : super.getOutputStream());
+				out = new ServletOutputStream() {
+					@Override
+					public void write(int b) throws IOException {
+						synchronized (lock) {
+							if (!closed) target.write(b);
+						}
+					}
+
+					@Override
+					public void write(byte[] b, int off, int len) throws IOException {
+						synchronized (lock) {
+							if (!closed) target.write(b, off, len);
+						}
+					}
+
+					@Override
+					public void flush() throws IOException {
+						synchronized (lock) {
+							if (!closed) target.flush();
+						}
+					}
+
+					@Override
+					public void close() throws IOException {
+						synchronized (lock) {
+							if (!closed) target.close();
+						}
+					}
+				};
+			}
+			return out;
+		}
+	}
+
+	@Override
+	public PrintWriter getWriter() throws IOException {
+		synchronized (lock) {
+			if (writer == null) {
+				final PrintWriter target = (closed ? null : super.getWriter());
+				writer = new PrintWriter(new Writer() {
+					@Override
+					public void write(char[] cbuf, int off, int len) {
+						synchronized (lock) {
+							if (!closed) target.write(cbuf, off, len);
+						}
+					}
+
+					@Override
+					public void flush() {
+						synchronized (lock) {
+							if (!closed) target.flush();
+						}
+					}
+
+					@Override
+					public void close() {
+						synchronized (lock) {
+							if (!closed) target.close();
+						}
+					}
+				});
+			}
+			return writer;
+		}
+	}
+
+	@Override
+	public void flushBuffer() throws IOException {
+		synchronized (lock) {
+			if (!closed) super.flushBuffer();
+		}
+	}
+
+	@Override
+	public void resetBuffer() {
+		synchronized (lock) {
+			if (!closed) super.resetBuffer();
+		}
+	}
+
+	@Override
+	public void reset() {
+		synchronized (lock) {
+			if (!closed) super.reset();
+		}
+	}
+
+	@Override
+	public boolean isCommitted() {
+		synchronized (lock) {
+			// once closed the response is as good as committed for the command, it can no longer change it.
+			return closed || super.isCommitted();
+		}
+	}
+
+	@Override
+	public void setBufferSize(int size) {
+		synchronized (lock) {
+			if (!closed) super.setBufferSize(size);
+		}
+	}
+
+	@Override
+	public void setCharacterEncoding(String charset) {
+		synchronized (lock) {
+			if (!closed) super.setCharacterEncoding(charset);
+		}
+	}
+
+	@Override
+	public void setContentLength(int len) {
+		synchronized (lock) {
+			if (!closed) super.setContentLength(len);
+		}
+	}
+
+	@Override
+	public void setContentType(String type) {
+		synchronized (lock) {
+			if (!closed) super.setContentType(type);
+		}
+	}
+
+	@Override
+	public void setLocale(Locale locale) {
+		synchronized (lock) {
+			if (!closed) super.setLocale(locale);
+		}
+	}
+
+	@Override
+	public void addCookie(Cookie cookie) {
+		synchronized (lock) {
+			if (!closed) super.addCookie(cookie);
+		}
+	}
+
+	@Override
+	public void sendError(int sc, String msg) throws IOException {
+		synchronized (lock) {
+			if (!closed) super.sendError(sc, msg);
+		}
+	}
+
+	@Override
+	public void sendError(int sc) throws IOException {
+		synchronized (lock) {
+			if (!closed) super.sendError(sc);
+		}
+	}
+
+	@Override
+	public void sendRedirect(String location) throws IOException {
+		synchronized (lock) {
+			if (!closed) super.sendRedirect(location);
+		}
+	}
+
+	@Override
+	public void setDateHeader(String name, long date) {
+		synchronized (lock) {
+			if (!closed) super.setDateHeader(name, date);
+		}
+	}
+
+	@Override
+	public void addDateHeader(String name, long date) {
+		synchronized (lock) {
+			if (!closed) super.addDateHeader(name, date);
+		}
+	}
+
+	@Override
+	public void setHeader(String name, String value) {
+		synchronized (lock) {
+			if (!closed) super.setHeader(name, value);
+		}
+	}
+
+	@Override
+	public void addHeader(String name, String value) {
+		synchronized (lock) {
+			if (!closed) super.addHeader(name, value);
+		}
+	}
+
+	@Override
+	public void setIntHeader(String name, int value) {
+		synchronized (lock) {
+			if (!closed) super.setIntHeader(name, value);
+		}
+	}
+
+	@Override
+	public void addIntHeader(String name, int value) {
+		synchronized (lock) {
+			if (!closed) super.addIntHeader(name, value);
+		}
+	}
+
+	@Override
+	public void setStatus(int sc) {
+		synchronized (lock) {
+			if (!closed) super.setStatus(sc);
+		}
+	}
+
+	@Override
+	@SuppressWarnings("deprecation")
+	public void setStatus(int sc, String sm) {
+		synchronized (lock) {
+			if (!closed) super.setStatus(sc, sm);
+		}
+	}
+
+	@Override
+	public boolean containsHeader(String name) {
+		synchronized (lock) {
+			return !closed && super.containsHeader(name);
+		}
+	}
+
+	@Override
+	public String getHeader(String name) {
+		synchronized (lock) {
+			return (closed ? null : super.getHeader(name));
+		}
+	}
+
+	@Override
+	public Collection<String> getHeaders(String name) {
+		synchronized (lock) {
+			return (closed ? Collections.<String>emptyList() : super.getHeaders(name));
+		}
+	}
+
+	@Override
+	public Collection<String> getHeaderNames() {
+		synchronized (lock) {
+			return (closed ? Collections.<String>emptyList() : super.getHeaderNames());
+		}
+	}
+}
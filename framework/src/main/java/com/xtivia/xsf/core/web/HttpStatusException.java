@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+/**
+ * class HttpStatusException: Exception raised by the framework when a request must be answered with a specific
+ * HTTP status (e.g. 413 for an oversized body). It is reported through IMarshaller.onException like any other
+ * exception, and DefaultMarshaller uses the status instead of its generic error response.
+ */
+@SuppressWarnings("serial")
+public class HttpStatusException extends RuntimeException {
+
+	/**
+	 * status: The HTTP status code for the response.
+	 */
+	private final int status;
+	/**
+	 * retryAfter: Seconds the caller is asked to wait before retrying, zero for none.
+	 */
+	private final int retryAfter;
+
+	/**
+	 * HttpStatusException: Constructor.
+	 * @param status The HTTP status code.
+	 * @param message Message returned to the caller.
+	 */
+	public HttpStatusException(int status, String message) {
+		this(status, message, 0);
+	}
+
+	/**
+	 * HttpStatusException: Constructor.
+	 * @param status The HTTP status code.
+	 * @param message Message returned to the caller.
+	 * @param retryAfter Seconds to send in a Retry-After header, zero for none.
+	 */
+	public HttpStatusException(int status, String message, int retryAfter) {
+		super(message);
+		this.status = status;
+		this.retryAfter = retryAfter;
+	}
+
+	/**
+	 * getStatus: Returns the HTTP status code for the response.
+	 * @return int The status code.
+	 */
+	public int getStatus() {
+		return status;
+	}
+
+	/**
+	 * getRetryAfter: Returns the seconds the caller is asked to wait before retrying.
+	 * @return int The seconds, zero for none.
+	 */
+	public int getRetryAfter() {
+		return retryAfter;
+	}
+}
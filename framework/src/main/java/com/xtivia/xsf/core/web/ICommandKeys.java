@@ -15,6 +15,14 @@
  */
 package com.xtivia.xsf.core.web;
 
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.xtivia.xsf.core.commands.ContextKey;
+import com.xtivia.xsf.core.commands.Deadline;
+
 /**
  * class ICommandKeys: Defines constant key values for the objects that may be in the context.
  */
@@ -49,4 +57,30 @@ public interface ICommandKeys {
 	 * ROUTING_INFO: Key for the routing info object. Contains matched IRoute and path parameters.
 	 */
 	String ROUTING_INFO  = "_routing_info_";
+
+	/**
+	 * HTTP_REQUEST_KEY: Typed key for the HTTP request object.
+	 */
+	ContextKey<HttpServletRequest>  HTTP_REQUEST_KEY    = ContextKey.of(HTTP_REQUEST, HttpServletRequest.class);
+
+	/**
+	 * HTTP_RESPONSE_KEY: Typed key for the HTTP response object.
+	 */
+	ContextKey<HttpServletResponse> HTTP_RESPONSE_KEY   = ContextKey.of(HTTP_RESPONSE, HttpServletResponse.class);
+
+	/**
+	 * PATH_PARAMETERS_KEY: Typed key for the path parameters map object.
+	 */
+	@SuppressWarnings("rawtypes")
+	ContextKey<Map>                 PATH_PARAMETERS_KEY = ContextKey.of(PATH_PARAMETERS, Map.class);
+
+	/**
+	 * ROUTING_INFO_KEY: Typed key for the routing info object.
+	 */
+	ContextKey<RoutingInfo>         ROUTING_INFO_KEY    = ContextKey.of(ROUTING_INFO, RoutingInfo.class);
+
+	/**
+	 * DEADLINE_KEY: Typed key for the deadline of the request, present when the route or the client set a timeout.
+	 */
+	ContextKey<Deadline>            DEADLINE_KEY        = Deadline.KEY;
 }
@@ -0,0 +1,32 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import java.util.List;
+
+/**
+ * class IListableRouter: Optional extension of IRouter for routers that can list the routes they know. When the
+ * configured router implements it the controller binds every route to its command bean up front and the marshaller
+ * builds the readers for their input classes; otherwise both happen on the first request for a route.
+ */
+public interface IListableRouter extends IRouter {
+
+	/**
+	 * getRoutes: Returns all of the routes known to the router.
+	 * @return List The routes.
+	 */
+	List<IRoute> getRoutes();
+}
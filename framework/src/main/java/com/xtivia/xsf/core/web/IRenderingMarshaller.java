@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import java.io.IOException;
+
+import com.xtivia.xsf.core.commands.CommandResult;
+import com.xtivia.xsf.core.commands.IContext;
+
+/**
+ * class IRenderingMarshaller: Extension of IMarshaller for marshallers that can serialize a command result into a
+ * RenderedResponse and write it separately, which is what allows responses to be cached and replayed.
+ */
+public interface IRenderingMarshaller extends IMarshaller {
+
+	/**
+	 * render: Serializes a command result.
+	 * @param context Context for the command.
+	 * @param routeUri URI for the command.
+	 * @param route The route for the command.
+	 * @param commandResult The command result object.
+	 * @return RenderedResponse The serialized response.
+	 * @throws IOException
+	 */
+	RenderedResponse render(IContext      context,
+			                String        routeUri,
+			                IRoute        route,
+			                CommandResult commandResult) throws IOException;
+
+	/**
+	 * writeRendered: Writes a serialized response.
+	 * @param context Context for the command.
+	 * @param routeUri URI for the command.
+	 * @param route The route for the command.
+	 * @param rendered The serialized response.
+	 * @throws IOException
+	 */
+	void writeRendered(IContext         context,
+			           String           routeUri,
+			           IRoute           route,
+			           RenderedResponse rendered) throws IOException;
+
+	/**
+	 * writeNotModified: Answers a conditional request with a 304, the caller already has the current response.
+	 * @param context Context for the command.
+	 * @param routeUri URI for the command.
+	 * @param route The route for the command.
+	 * @param etag The entity tag of the current response.
+	 */
+	void writeNotModified(IContext context,
+			              String   routeUri,
+			              IRoute   route,
+			              String   etag);
+
+	/**
+	 * getVariant: Returns the representation rendered for the request when the marshaller negotiates between
+	 * several, so that cached responses are kept apart per representation.
+	 * @param context Context for the request.
+	 * @return String The variant (e.g. the media type) or <code>null</code> if there is only one representation.
+	 */
+	String getVariant(IContext context);
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.xtivia.xsf.core.commands.IContext;
+
+/**
+ * class IStreamingMarshaller: Optional extension of IMarshaller for marshallers that can parse the request body
+ * directly from the request stream. When the configured marshaller implements it the controller never buffers
+ * the body; otherwise the body is read into a byte array and passed to IMarshaller.fromRequest.
+ */
+public interface IStreamingMarshaller extends IMarshaller {
+
+	/**
+	 * fromRequest: Marshals the request body stream into a format usable by the command.
+	 * @param context Context for the request.
+	 * @param routeUri URI for the request.
+	 * @param route The route for the request, providing the input class.
+	 * @param requestBody The request body stream, bounded to the route's maximum body size. It may be empty.
+	 * @param charset The character encoding declared by the request or <code>null</code> if none was declared.
+	 * @return ProcessedInput The parsed and processed input from the request.
+	 */
+	ProcessedInput fromRequest(IContext    context,
+			                   String      routeUri,
+			                   IRoute      route,
+			                   InputStream requestBody,
+			                   String      charset);
+
+	/**
+	 * readInput: Parses the request body stream into the route's input class. Unlike fromRequest, a body that
+	 * cannot be parsed is not reported to the caller but thrown, which is what lazily parsed inputs need.
+	 * @param context Context for the request.
+	 * @param routeUri URI for the request.
+	 * @param route The route for the request, providing the input class.
+	 * @param requestBody The request body stream, bounded to the route's maximum body size. It may be empty.
+	 * @param charset The character encoding declared by the request or <code>null</code> if none was declared.
+	 * @return Object The input or <code>null</code> if the body is empty.
+	 * @throws IOException if the body cannot be read or parsed.
+	 */
+	Object readInput(IContext    context,
+			         String      routeUri,
+			         IRoute      route,
+			         InputStream requestBody,
+			         String      charset) throws IOException;
+}
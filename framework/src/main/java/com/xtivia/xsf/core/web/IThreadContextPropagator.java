@@ -0,0 +1,44 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+/**
+ * interface IThreadContextPropagator: Carries thread-bound state of the container thread, such as the current user
+ * of the portal, over to the thread an asynchronous route's command runs on.
+ *
+ * Propagators are picked up from the Spring context by the services controller.
+ */
+public interface IThreadContextPropagator {
+
+	/**
+	 * capture: Captures the state of the current (container) thread.
+	 * @return Object The captured state.
+	 */
+	Object capture();
+
+	/**
+	 * apply: Sets the captured state on the current (worker) thread.
+	 * @param captured The state returned by capture().
+	 * @return Object The state the worker thread had before, for restore().
+	 */
+	Object apply(Object captured);
+
+	/**
+	 * restore: Puts back the state of the worker thread once the command is done.
+	 * @param previous The state returned by apply().
+	 */
+	void restore(Object previous);
+}
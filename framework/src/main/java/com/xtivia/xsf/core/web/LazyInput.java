@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.io.IOUtils;
+
+import com.xtivia.xsf.core.commands.IContext;
+
+/**
+ * class LazyInput: Placeholder for the input of a route declaring lazyInput. The request body is left unread in the
+ * request stream until the input is first looked up in the context, so a command rejecting the request (e.g. on its
+ * path parameters or the user) before looking at its input never pays for parsing it. WebCommandContext replaces
+ * the placeholder with the parsed input on the first lookup.
+ *
+ * A body that cannot be parsed surfaces as an IllegalArgumentException from that lookup.
+ */
+public class LazyInput implements Closeable {
+
+	private final IStreamingMarshaller marshaller;
+	private final IContext             context;
+	private final String               routeUri;
+	private final IRoute               route;
+	private final RouteMetrics         metrics;
+	private final String               charset;
+	/**
+	 * body: The unread request body, <code>null</code> once read or closed.
+	 */
+	private InputStream                body;
+	/**
+	 * value: The parsed input.
+	 */
+	private Object                     value;
+	/**
+	 * failure: The exception parsing the input failed with.
+	 */
+	private RuntimeException           failure;
+
+	/**
+	 * LazyInput: Constructor.
+	 * @param marshaller The marshaller to parse the body with.
+	 * @param context Context for the request.
+	 * @param routeUri URI for the request.
+	 * @param route The route for the request, providing the input class.
+	 * @param body The request body stream.
+	 * @param charset The declared character encoding or <code>null</code>.
+	 */
+	public LazyInput(IStreamingMarshaller marshaller,
+			         IContext             context,
+			         String               routeUri,
+			         IRoute               route,
+			         InputStream          body,
+			         String               charset) {
+		this.marshaller = marshaller;
+		this.context = context;
+		this.routeUri = routeUri;
+		this.route = route;
+		this.metrics = AbstractRoute.of(route).getMetrics();
+		this.body = body;
+		this.charset = charset;
+		metrics.lazyInput();
+	}
+
+	/**
+	 * get: Returns the input, parsing the request body on the first call.
+	 * @return Object The input or <code>null</code> if the request had no body.
+	 */
+	public Object get() {
+		if (failure != null) throw failure;
+		if (body == null) return value;
+
+		InputStream in = body;
+		body = null;
+		metrics.lazyParse();
+		try {
+			value = marshaller.readInput(context, routeUri, route, in, charset);
+			return value;
+		} catch (HttpStatusException e) {
+			failure = e;
+			throw e;
+		} catch (IOException e) {
+			failure = new IllegalArgumentException("Error parsing input JSON", e);
+			throw failure;
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+	/**
+	 * isRead: Returns whether the request body has been parsed (or closed).
+	 * @return boolean <code>true</code> if the body is no longer pending.
+	 */
+	public boolean isRead() {
+		return body == null;
+	}
+
+	/**
+	 * close: Closes the request body if it was never asked for.
+	 */
+	@Override
+	public void close() {
+		if (body == null) return;
+		metrics.parseAvoided();
+		IOUtils.closeQuietly(body);
+		body = null;
+	}
+}
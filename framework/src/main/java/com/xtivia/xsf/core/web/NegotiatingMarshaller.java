@@ -0,0 +1,226 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.xtivia.xsf.core.commands.ContextKey;
+import com.xtivia.xsf.core.commands.IContext;
+
+/**
+ * class NegotiatingMarshaller: A DefaultMarshaller that, besides JSON, reads and writes the binary Smile and CBOR
+ * formats. The request body format is taken from the Content-Type header and the response format negotiated from
+ * the Accept header, falling back to JSON. All formats share the JSON mapper's databinding, so input classes and
+ * command results bind the same way in each of them.
+ *
+ * Smile and CBOR need jackson-dataformat-smile and jackson-dataformat-cbor on the classpath, formats whose module
+ * is missing are not offered.
+ */
+public class NegotiatingMarshaller extends DefaultMarshaller {
+
+	private static final Logger _logger = LoggerFactory.getLogger(NegotiatingMarshaller.class);
+
+	/**
+	 * RESPONSE_FORMAT_KEY: Context key holding the response format negotiated for the request.
+	 */
+	private static final ContextKey<WireFormat> RESPONSE_FORMAT_KEY =
+			ContextKey.of("xsf.responseFormat", WireFormat.class);
+
+	/**
+	 * smile: Flag indicating whether Smile is offered.
+	 */
+	private boolean smile = true;
+	/**
+	 * cbor: Flag indicating whether CBOR is offered.
+	 */
+	private boolean cbor  = true;
+
+	/**
+	 * formats: The formats derived from the current JSON format, JSON first.
+	 */
+	private volatile WireFormat[] formats;
+
+	public boolean isSmile() {
+		return smile;
+	}
+
+	/**
+	 * setSmile: Sets whether Smile is offered.
+	 * @param smile
+	 */
+	public void setSmile(boolean smile) {
+		this.smile = smile;
+		this.formats = null;
+	}
+
+	public boolean isCbor() {
+		return cbor;
+	}
+
+	/**
+	 * setCbor: Sets whether CBOR is offered.
+	 * @param cbor
+	 */
+	public void setCbor(boolean cbor) {
+		this.cbor = cbor;
+		this.formats = null;
+	}
+
+	/**
+	 * getFormats: Returns the formats offered, deriving them again whenever the object mapper was replaced.
+	 * @return WireFormat[] The formats, JSON first.
+	 */
+	@Override
+	protected WireFormat[] getFormats() {
+		WireFormat json = getJsonFormat();
+		WireFormat[] current = formats;
+		if (current != null && current[0] == json) return current;
+
+		List<WireFormat> list = new ArrayList<WireFormat>(3);
+		list.add(json);
+		if (smile) addFormat(list, WireFormat.smile(json));
+		if (cbor) addFormat(list, WireFormat.cbor(json));
+
+		current = list.toArray(new WireFormat[list.size()]);
+		formats = current;
+		return current;
+	}
+
+	private void addFormat(List<WireFormat> list, WireFormat format) {
+		if (format == null) return;
+		list.add(format);
+		if (_logger.isInfoEnabled()) {
+			_logger.info(String.format("Marshaller supports %s", format.getMediaType()));
+		}
+	}
+
+	/**
+	 * getRequestFormat: Returns the format named by the request's Content-Type, JSON if it names none offered.
+	 * @param context
+	 * @return WireFormat The format.
+	 */
+	@Override
+	protected WireFormat getRequestFormat(IContext context) {
+		WireFormat[] offered = getFormats();
+		String contentType = getRequestHeader(context, "Content-Type");
+		for (int i = 1; i < offered.length; i++) {
+			if (offered[i].matches(contentType)) return offered[i];
+		}
+		return offered[0];
+	}
+
+	/**
+	 * getResponseFormat: Returns the format negotiated from the request's Accept header, JSON unless the caller
+	 * prefers another format offered. The outcome is kept in the context for the rest of the request.
+	 * @param context
+	 * @return WireFormat The format.
+	 */
+	@Override
+	protected WireFormat getResponseFormat(IContext context) {
+		WireFormat format = context.find(RESPONSE_FORMAT_KEY);
+		if (format == null) {
+			format = negotiate(getFormats(), getRequestHeader(context, "Accept"));
+			context.set(RESPONSE_FORMAT_KEY, format);
+		}
+		return format;
+	}
+
+	/**
+	 * getVariant: Returns the media type of the negotiated response format.
+	 * @param context Context for the request.
+	 * @return String The variant.
+	 */
+	@Override
+	public String getVariant(IContext context) {
+		return getResponseFormat(context).getMediaType();
+	}
+
+	/**
+	 * writeCacheHeaders: Adds to the route's caching headers that the response depends on the Accept header.
+	 * @param context The context.
+	 * @param route The route.
+	 * @param status The status of the response.
+	 * @param succeeded Whether the response holds a successful command result.
+	 */
+	@Override
+	protected void writeCacheHeaders(IContext context, IRoute route, int status, boolean succeeded) {
+		super.writeCacheHeaders(context, route, status, succeeded);
+		addVaryHeader(context, "Accept");
+	}
+
+	/**
+	 * negotiate: Picks the format with the highest quality in an Accept header. Wildcards count for JSON, and of
+	 * formats with the same quality the one listed first wins.
+	 * @param offered The formats offered, JSON first.
+	 * @param accept The header value or <code>null</code>.
+	 * @return WireFormat The format.
+	 */
+	static WireFormat negotiate(WireFormat[] offered, String accept) {
+		WireFormat json = offered[0];
+		if (offered.length == 1 || accept == null || accept.length() == 0) return json;
+
+		WireFormat best = null;
+		float bestQ = 0f;
+		for (String part : accept.split(",")) {
+			String type = part;
+			float q = 1f;
+
+			int semi = part.indexOf(';');
+			if (semi >= 0) {
+				type = part.substring(0, semi);
+				q = quality(part.substring(semi + 1));
+			}
+			if (q <= bestQ) continue;
+
+			type = type.trim();
+			WireFormat format = null;
+			if (type.equals("*/*") || type.equalsIgnoreCase("application/*")) {
+				format = json;
+			} else {
+				for (WireFormat candidate : offered) {
+					if (candidate.matches(type)) {
+						format = candidate;
+						break;
+					}
+				}
+			}
+
+			if (format != null) {
+				best = format;
+				bestQ = q;
+			}
+		}
+		return best != null ? best : json;
+	}
+
+	private static float quality(String params) {
+		for (String param : params.split(";")) {
+			param = param.trim();
+			if (param.startsWith("q=")) {
+				try {
+					return Float.parseFloat(param.substring(2).trim());
+				} catch (NumberFormatException e) {
+					return 0f;
+				}
+			}
+		}
+		return 1f;
+	}
+}
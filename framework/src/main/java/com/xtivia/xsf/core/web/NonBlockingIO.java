@@ -0,0 +1,429 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * class NonBlockingIO: Servlet 3.1 non-blocking reading of request bodies and writing of response bodies, for
+ * asynchronous requests. The body is read through a ReadListener as the client sends it and the response drained
+ * through a WriteListener as the client accepts it, so no thread waits on a slow client in either direction; the
+ * command itself runs in between on a buffered request and response.
+ *
+ * The framework is built against the Servlet 3.0 API, so the listeners are implemented as dynamic proxies and
+ * registered reflectively. On a 3.0 container isSupported() is <code>false</code> and requests keep using
+ * blocking I/O.
+ */
+public final class NonBlockingIO {
+
+	private static final Logger _logger = LoggerFactory.getLogger(NonBlockingIO.class);
+
+	/**
+	 * CHUNK_SIZE: The size of the chunks bodies are read and buffered in.
+	 */
+	private static final int CHUNK_SIZE = 8192;
+
+	private static final Class<?> READ_LISTENER;
+	private static final Class<?> WRITE_LISTENER;
+	private static final Method   SET_READ_LISTENER;
+	private static final Method   SET_WRITE_LISTENER;
+	private static final Method   INPUT_READY;
+	private static final Method   OUTPUT_READY;
+
+	static {
+		Class<?> readListener = null, writeListener = null;
+		Method setReadListener = null, setWriteListener = null, inputReady = null, outputReady = null;
+		try {
+			readListener = Class.forName("javax.servlet.ReadListener");
+			writeListener = Class.forName("javax.servlet.WriteListener");
+			setReadListener = ServletInputStream.class.getMethod("setReadListener", readListener);
+			setWriteListener = ServletOutputStream.class.getMethod("setWriteListener", writeListener);
+			inputReady = ServletInputStream.class.getMethod("isReady");
+			outputReady = ServletOutputStream.class.getMethod("isReady");
+		} catch (Exception e) {
+			// a Servlet 3.0 container.
+			readListener = null;
+		}
+		READ_LISTENER = readListener;
+		WRITE_LISTENER = writeListener;
+		SET_READ_LISTENER = setReadListener;
+		SET_WRITE_LISTENER = setWriteListener;
+		INPUT_READY = inputReady;
+		OUTPUT_READY = outputReady;
+	}
+
+	private NonBlockingIO() {
+	}
+
+	/**
+	 * isSupported: Returns whether the container supports non-blocking I/O.
+	 * @return boolean <code>true</code> on a Servlet 3.1 container.
+	 */
+	public static boolean isSupported() {
+		return READ_LISTENER != null;
+	}
+
+	/**
+	 * interface BodyHandler: Receives a request body read without blocking.
+	 */
+	public interface BodyHandler {
+
+		/**
+		 * onBody: Called once the whole body has been read.
+		 * @param body The body, empty if the request has none.
+		 */
+		void onBody(byte[] body);
+
+		/**
+		 * onError: Called when the body cannot be read, or exceeds the maximum size (with an HttpStatusException).
+		 * @param t The failure.
+		 */
+		void onError(Throwable t);
+	}
+
+	/**
+	 * readBody: Reads a request body through a ReadListener. Must be called on an asynchronous request; the
+	 * handler is called on a container thread once the body is complete.
+	 * @param in The request input stream.
+	 * @param maxSize The maximum body size in bytes, negative for no limit.
+	 * @param handler The handler for the body.
+	 * @throws IOException
+	 */
+	public static void readBody(final ServletInputStream in, final long maxSize, final BodyHandler handler)
+			throws IOException {
+
+		final ByteArrayOutputStream body = new ByteArrayOutputStream();
+		final byte[] chunk = new byte[CHUNK_SIZE];
+
+		Object listener = listener(READ_LISTENER, new ListenerHandler() {
+			private boolean failed = false;
+
+			@Override
+			void on(String event, Object[] args) throws IOException {
+				if (failed) return;
+
+				if ("onDataAvailable".equals(event)) {
+					// read what has arrived, the container calls again once there is more.
+					int n;
+					while (isReady(INPUT_READY, in) && (n = in.read(chunk)) != -1) {
+						body.write(chunk, 0, n);
+						if (maxSize >= 0 && body.size() > maxSize) {
+							failed = true;
+							handler.onError(BoundedInputStream.tooLarge(maxSize));
+							return;
+						}
+					}
+				} else if ("onAllDataRead".equals(event)) {
+					handler.onBody(body.toByteArray());
+				} else if ("onError".equals(event)) {
+					failed = true;
+					handler.onError((Throwable) args[0]);
+				}
+			}
+		});
+		invoke(SET_READ_LISTENER, in, listener);
+	}
+
+	/**
+	 * writeBody: Writes buffered response chunks through a WriteListener, then runs the completion callback. Must be
+	 * called on an asynchronous request.
+	 * @param out The response output stream.
+	 * @param chunks The body.
+	 * @param done Run on a container thread once the body has been written, or writing it failed.
+	 * @throws IOException
+	 */
+	public static void writeBody(final ServletOutputStream out, final List<byte[]> chunks, final Runnable done)
+			throws IOException {
+
+		Object listener = listener(WRITE_LISTENER, new ListenerHandler() {
+			private int next = 0;
+
+			@Override
+			void on(String event, Object[] args) throws IOException {
+				if ("onWritePossible".equals(event)) {
+					// write while the client keeps up, the container calls again once it can take more.
+					while (isReady(OUTPUT_READY, out)) {
+						if (next == chunks.size()) {
+							done.run();
+							return;
+						}
+						out.write(chunks.get(next++));
+					}
+				} else if ("onError".equals(event)) {
+					if (_logger.isDebugEnabled()) {
+						_logger.debug("Error writing response: " + args[0]);
+					}
+					done.run();
+				}
+			}
+		});
+		invoke(SET_WRITE_LISTENER, out, listener);
+	}
+
+	/**
+	 * class ListenerHandler: Dispatches the calls to a listener proxy by method name.
+	 */
+	private abstract static class ListenerHandler implements InvocationHandler {
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if (method.getDeclaringClass() == Object.class) {
+				if ("equals".equals(method.getName())) return proxy == args[0];
+				if ("hashCode".equals(method.getName())) return System.identityHashCode(proxy);
+				return "NonBlockingIO$" + method.getDeclaringClass().getSimpleName();
+			}
+			on(method.getName(), args);
+			return null;
+		}
+
+		abstract void on(String event, Object[] args) throws IOException;
+	}
+
+	private static Object listener(Class<?> type, ListenerHandler handler) {
+		return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler);
+	}
+
+	private static boolean isReady(Method isReady, Object stream) throws IOException {
+		return (Boolean) invoke(isReady, stream);
+	}
+
+	private static Object invoke(Method method, Object target, Object... args) throws IOException {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) throw (IOException) cause;
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			throw new IllegalStateException(cause);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * class BufferedRequest: Request whose body has already been read.
+	 */
+	public static class BufferedRequest extends HttpServletRequestWrapper {
+		private final byte[] body;
+
+		public BufferedRequest(HttpServletRequest request, byte[] body) {
+			super(request);
+			this.body = body;
+		}
+
+		@Override
+		public ServletInputStream getInputStream() {
+			final ByteArrayInputStream in = new ByteArrayInputStream(body);
+			return new ServletInputStream() {
+				@Override
+				public int read() {
+					return in.read();
+				}
+
+				@Override
+				public int read(byte[] b, int off, int len) {
+					return in.read(b, off, len);
+				}
+			};
+		}
+
+		@Override
+		public BufferedReader getReader() throws IOException {
+			String charset = getCharacterEncoding();
+			return new BufferedReader(new InputStreamReader(getInputStream(), charset != null ? charset : "ISO-8859-1"));
+		}
+	}
+
+	/**
+	 * class BufferedResponse: Response whose body is collected in chunks, to be written with writeBody() once the
+	 * command is done. Headers go straight to the response, which stays uncommitted until the body is written.
+	 *
+	 * Only a bounded part of the body is held: once more than maxBuffered bytes are collected, or the command flushes
+	 * the response (as for a streamed result), the collected chunks and everything written after them go straight to
+	 * the response with blocking writes on the command's thread, as without non-blocking I/O.
+	 */
+	public static class BufferedResponse extends HttpServletResponseWrapper {
+		private final List<byte[]> chunks = new ArrayList<byte[]>();
+		private final int maxBuffered;
+		private int buffered = 0;
+		private boolean streaming = false;
+		private ServletOutputStream out;
+		private PrintWriter writer;
+
+		/**
+		 * BufferedResponse: Constructor.
+		 * @param response The response.
+		 * @param maxBuffered The most bytes held before the body is written with blocking writes.
+		 */
+		public BufferedResponse(HttpServletResponse response, int maxBuffered) {
+			super(response);
+			this.maxBuffered = maxBuffered;
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() {
+			if (out == null) {
+				out = new ServletOutputStream() {
+					private byte[] chunk = new byte[CHUNK_SIZE];
+					private int count = 0;
+
+					@Override
+					public void write(int b) throws IOException {
+						if (count == chunk.length) collect();
+						chunk[count++] = (byte) b;
+					}
+
+					@Override
+					public void write(byte[] b, int off, int len) throws IOException {
+						if (streaming) {
+							collect();
+							getResponse().getOutputStream().write(b, off, len);
+							return;
+						}
+						while (len > 0) {
+							if (count == chunk.length) collect();
+							int n = Math.min(len, chunk.length - count);
+							System.arraycopy(b, off, chunk, count, n);
+							count += n;
+							off += n;
+							len -= n;
+						}
+					}
+
+					@Override
+					public void flush() throws IOException {
+						collect();
+						if (streaming) getResponse().getOutputStream().flush();
+					}
+
+					/**
+					 * collect: Passes on the bytes in the current chunk, keeping them unless streaming.
+					 */
+					private void collect() throws IOException {
+						if (count == 0) return;
+						if (streaming) {
+							getResponse().getOutputStream().write(chunk, 0, count);
+							count = 0;
+							return;
+						}
+						chunks.add(count == chunk.length ? chunk : Arrays.copyOf(chunk, count));
+						buffered += count;
+						if (count == chunk.length) chunk = new byte[CHUNK_SIZE];
+						count = 0;
+						if (buffered > maxBuffered) stream();
+					}
+				};
+			}
+			return out;
+		}
+
+		@Override
+		public PrintWriter getWriter() throws IOException {
+			if (writer == null) {
+				writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+			}
+			return writer;
+		}
+
+		/**
+		 * flushBuffer: Commits the response, the body written so far and from now on goes straight to the client.
+		 */
+		@Override
+		public void flushBuffer() throws IOException {
+			if (writer != null) writer.flush();
+			if (out != null) out.flush();
+			stream();
+			super.flushBuffer();
+		}
+
+		@Override
+		public void resetBuffer() {
+			super.resetBuffer();
+			chunks.clear();
+			buffered = 0;
+			out = null;
+			writer = null;
+		}
+
+		@Override
+		public void reset() {
+			super.reset();
+			chunks.clear();
+			buffered = 0;
+			out = null;
+			writer = null;
+		}
+
+		/**
+		 * stream: Writes the collected chunks to the response, switching to blocking writes.
+		 * @throws IOException
+		 */
+		private void stream() throws IOException {
+			if (streaming) return;
+			streaming = true;
+
+			ServletOutputStream os = getResponse().getOutputStream();
+			for (byte[] c : chunks) {
+				os.write(c);
+			}
+			chunks.clear();
+			buffered = 0;
+		}
+
+		/**
+		 * isStreaming: Returns whether the body went straight to the response, rather than being collected.
+		 * @return boolean <code>true</code> if there is nothing left for writeBody().
+		 */
+		public boolean isStreaming() {
+			return streaming;
+		}
+
+		/**
+		 * getChunks: Returns the body written, once the command is done. Empty when the body went straight to
+		 * the response.
+		 * @return List<byte[]> The body.
+		 * @throws IOException
+		 */
+		public List<byte[]> getChunks() throws IOException {
+			if (writer != null) writer.flush();
+			if (out != null) out.flush();
+			return chunks;
+		}
+	}
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+/**
+ * class RenderedResponse: A fully serialized response, ready to be written (possibly more than once, e.g. from
+ * the response cache). The body must not be modified once the instance has been created.
+ */
+public final class RenderedResponse {
+
+	/**
+	 * status: The HTTP status code.
+	 */
+	private final int    status;
+	/**
+	 * contentType: The content type of the body.
+	 */
+	private final String contentType;
+	/**
+	 * body: The serialized body.
+	 */
+	private final byte[] body;
+	/**
+	 * etag: The entity tag of the response or <code>null</code>.
+	 */
+	private final String etag;
+	/**
+	 * succeeded: Flag indicating whether the response holds a successful command result.
+	 */
+	private final boolean succeeded;
+	/**
+	 * gzip, deflate: The compressed bodies, created on first use.
+	 */
+	private volatile byte[] gzip;
+	private volatile byte[] deflate;
+
+	/**
+	 * RenderedResponse: Constructor.
+	 * @param status
+	 * @param contentType
+	 * @param body
+	 */
+	public RenderedResponse(int status, String contentType, byte[] body) {
+		this(status, contentType, body, null);
+	}
+
+	/**
+	 * RenderedResponse: Constructor.
+	 * @param status
+	 * @param contentType
+	 * @param body
+	 * @param etag
+	 */
+	public RenderedResponse(int status, String contentType, byte[] body, String etag) {
+		this(status, contentType, body, etag, true);
+	}
+
+	/**
+	 * RenderedResponse: Constructor.
+	 * @param status
+	 * @param contentType
+	 * @param body
+	 * @param etag
+	 * @param succeeded
+	 */
+	public RenderedResponse(int status, String contentType, byte[] body, String etag, boolean succeeded) {
+		this.status = status;
+		this.contentType = contentType;
+		this.body = body;
+		this.etag = etag;
+		this.succeeded = succeeded;
+	}
+
+	/**
+	 * getStatus: Returns the HTTP status code.
+	 * @return int The status code.
+	 */
+	public int getStatus() {
+		return status;
+	}
+
+	/**
+	 * getContentType: Returns the content type of the body.
+	 * @return String The content type.
+	 */
+	public String getContentType() {
+		return contentType;
+	}
+
+	/**
+	 * getBody: Returns the serialized body.
+	 * @return byte[] The body.
+	 */
+	public byte[] getBody() {
+		return body;
+	}
+
+	/**
+	 * getEncodedBody: Returns the body compressed with the given coding. The compressed body is created once and
+	 * then reused, e.g. every time the response is served from a cache.
+	 * @param encoding The coding.
+	 * @param level The compression level used when the body is first compressed.
+	 * @return byte[] The compressed body.
+	 */
+	public byte[] getEncodedBody(ContentEncoding encoding, int level) {
+		if (encoding == ContentEncoding.GZIP) {
+			byte[] b = gzip;
+			if (b == null) gzip = b = CompressingOutputStream.compress(body, encoding, level);
+			return b;
+		}
+		byte[] b = deflate;
+		if (b == null) deflate = b = CompressingOutputStream.compress(body, encoding, level);
+		return b;
+	}
+
+	/**
+	 * getETag: Returns the entity tag of the response.
+	 * @return String The quoted entity tag or <code>null</code>.
+	 */
+	public String getETag() {
+		return etag;
+	}
+
+	/**
+	 * isSucceeded: Returns whether the response holds a successful command result. Only successful responses are
+	 * cacheable.
+	 * @return boolean <code>true</code> if the command succeeded.
+	 */
+	public boolean isSucceeded() {
+		return succeeded;
+	}
+
+	/**
+	 * getSize: Returns the size of the body.
+	 * @return int The number of bytes in the body.
+	 */
+	public int getSize() {
+		return body.length;
+	}
+}
@@ -0,0 +1,198 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.xtivia.xsf.core.cache.ResponseCacheKey;
+
+/**
+ * class RequestCoalescer: Lets concurrent identical requests share one command execution. The first request for a
+ * key leads a flight and executes the command; requests for the same key arriving while it is in flight wait for
+ * its rendered response and write that instead of executing the command again. Only successful responses are
+ * shared.
+ *
+ * Unlike the response cache nothing is kept: a flight ends once the leader is done, and the next request executes
+ * the command again. Followers wait at most maxWait, and execute the command themselves if the leader fails or
+ * takes longer than that.
+ */
+public class RequestCoalescer {
+
+	/**
+	 * flights: The flights in progress, by key.
+	 */
+	private final ConcurrentMap<ResponseCacheKey,Flight> flights = new ConcurrentHashMap<ResponseCacheKey,Flight>();
+
+	/**
+	 * maxWait: The time in milliseconds a request waits for the leader of its flight.
+	 */
+	private long maxWait = 5000;
+
+	private final AtomicLong leaders   = new AtomicLong();
+	private final AtomicLong coalesced = new AtomicLong();
+	private final AtomicLong fallbacks = new AtomicLong();
+
+	/**
+	 * join: Joins the flight for a key, starting one if none is in progress.
+	 * @param key The key of the request.
+	 * @return Ticket The caller's place in the flight: its leader if the caller started it, a follower otherwise.
+	 */
+	public Ticket join(ResponseCacheKey key) {
+		Flight flight = new Flight(key);
+		Flight existing = flights.putIfAbsent(key, flight);
+		if (existing == null) {
+			leaders.incrementAndGet();
+			return new Ticket(flight, true);
+		}
+		return new Ticket(existing, false);
+	}
+
+	public long getMaxWait() {
+		return maxWait;
+	}
+
+	public void setMaxWait(long maxWait) {
+		this.maxWait = maxWait;
+	}
+
+	/**
+	 * getLeaders: Returns the number of flights started, i.e. the command executions.
+	 * @return long The number of flights.
+	 */
+	public long getLeaders() {
+		return leaders.get();
+	}
+
+	/**
+	 * getCoalesced: Returns the number of requests answered with the response of another request.
+	 * @return long The number of requests.
+	 */
+	public long getCoalesced() {
+		return coalesced.get();
+	}
+
+	/**
+	 * getFallbacks: Returns the number of requests that joined a flight but executed the command themselves,
+	 * because the leader failed or did not answer in time.
+	 * @return long The number of requests.
+	 */
+	public long getFallbacks() {
+		return fallbacks.get();
+	}
+
+	/**
+	 * getInFlight: Returns the number of flights in progress.
+	 * @return int The number of flights.
+	 */
+	public int getInFlight() {
+		return flights.size();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("RequestCoalescer[inFlight=%d, leaders=%d, coalesced=%d, fallbacks=%d]",
+				             getInFlight(), getLeaders(), getCoalesced(), getFallbacks());
+	}
+
+	/**
+	 * class Ticket: A request's place in a flight. The leader executes the command and ends the flight, followers wait
+	 * for its response.
+	 */
+	public class Ticket {
+		private final Flight  flight;
+		private final boolean leader;
+
+		Ticket(Flight flight, boolean leader) {
+			this.flight = flight;
+			this.leader = leader;
+		}
+
+		/**
+		 * isLeader: Returns whether the request leads the flight, and must execute the command and end the flight.
+		 * @return boolean <code>true</code> for the leader.
+		 */
+		public boolean isLeader() {
+			return leader;
+		}
+
+		/**
+		 * await: Waits for the leader's response.
+		 * @param timeout The longest time to wait in milliseconds, capped at maxWait.
+		 * @return RenderedResponse The response, or <code>null</code> if the caller must execute the command itself.
+		 */
+		public RenderedResponse await(long timeout) {
+			return flight.await(timeout);
+		}
+
+		/**
+		 * complete: Ends the flight with a successful response, handed to the requests waiting for it. Only the leader
+		 * ends the flight.
+		 * @param response
+		 */
+		public void complete(RenderedResponse response) {
+			if (leader) flight.complete(response);
+		}
+
+		/**
+		 * finish: Ends the flight without a response (e.g. the command failed), the requests waiting for it execute
+		 * the command themselves. Only the leader ends the flight, and does nothing once it has ended.
+		 */
+		public void finish() {
+			if (leader) flight.finish();
+		}
+	}
+
+	/**
+	 * class Flight: The execution of a command shared by identical requests.
+	 */
+	private class Flight {
+		private final ResponseCacheKey key;
+		private final CountDownLatch   done = new CountDownLatch(1);
+		private volatile RenderedResponse response;
+
+		Flight(ResponseCacheKey key) {
+			this.key = key;
+		}
+
+		RenderedResponse await(long timeout) {
+			try {
+				if (done.await(Math.min(timeout, maxWait), TimeUnit.MILLISECONDS) && response != null) {
+					coalesced.incrementAndGet();
+					return response;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			fallbacks.incrementAndGet();
+			return null;
+		}
+
+		void complete(RenderedResponse response) {
+			this.response = response;
+			finish();
+		}
+
+		void finish() {
+			if (done.getCount() == 0) return;
+			flights.remove(key, this);
+			done.countDown();
+		}
+	}
+}
@@ -0,0 +1,272 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * class ResponseBuffer: Output stream used to serialize a response body. The body is collected in a pooled
+ * buffer so that small responses can be sent with a Content-Length; once the body outgrows the buffer it is
+ * passed on to the target stream as it is written and the response is streamed (chunked) instead.
+ *
+ * When a copy of the payload is needed for logging the buffer grows instead of spilling, so the whole body
+ * is available once serialization is done.
+ *
+ * The stream the body goes to is only opened once it is known whether the body fits the buffer, and how large it
+ * is if it does, so that headers depending on that (Content-Length, Content-Encoding) can still be set.
+ *
+ * Instances are not thread safe and must be released once the response has been written.
+ */
+public class ResponseBuffer extends OutputStream {
+
+	/**
+	 * MAX_POOLED: The maximum number of idle buffers kept for reuse.
+	 */
+	private static final int MAX_POOLED = 64;
+
+	/**
+	 * pool: Idle buffers available for reuse.
+	 */
+	private static final Queue<byte[]> pool = new ConcurrentLinkedQueue<byte[]>();
+	/**
+	 * pooled: The number of buffers in the pool.
+	 */
+	private static final AtomicInteger pooled = new AtomicInteger();
+
+	/**
+	 * target: Opens the stream the body is written to.
+	 */
+	private final Target       target;
+	/**
+	 * out: The stream the body is written to, once opened.
+	 */
+	private OutputStream       out;
+	/**
+	 * bufferSize: The size of the pooled buffers.
+	 */
+	private final int          bufferSize;
+	/**
+	 * capture: Flag indicating whether the whole body must be kept.
+	 */
+	private final boolean      capture;
+	/**
+	 * buffer: The buffer holding the body written so far (or the part not yet passed on once spilled).
+	 */
+	private byte[]             buffer;
+	/**
+	 * count: The number of bytes held in the buffer.
+	 */
+	private int                count = 0;
+	/**
+	 * spilled: Flag indicating whether the body has outgrown the buffer and is being streamed.
+	 */
+	private boolean            spilled = false;
+
+	/**
+	 * ResponseBuffer: Constructor.
+	 * @param target The stream to write the body to.
+	 * @param bufferSize The buffer size, i.e. the largest body that is sent with a Content-Length.
+	 * @param capture Flag indicating whether the whole body must be kept for logging.
+	 */
+	public ResponseBuffer(final OutputStream target, int bufferSize, boolean capture) {
+		this(new Target() {
+			@Override
+			public OutputStream open(boolean complete, int size) {
+				return target;
+			}
+
+			@Override
+			public void finish(OutputStream out) throws IOException {
+				out.flush();
+			}
+		}, bufferSize, capture);
+	}
+
+	/**
+	 * ResponseBuffer: Constructor.
+	 * @param target Opens the stream to write the body to.
+	 * @param bufferSize The buffer size, i.e. the largest body that is sent with a Content-Length.
+	 * @param capture Flag indicating whether the whole body must be kept for logging.
+	 */
+	public ResponseBuffer(Target target, int bufferSize, boolean capture) {
+		this.target = target;
+		this.bufferSize = bufferSize;
+		this.capture = capture;
+		this.buffer = acquire(bufferSize);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (count == buffer.length) makeRoom(1);
+		buffer[count++] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (len > buffer.length - count) {
+			makeRoom(len);
+			// too large to be worth copying, hand it straight on.
+			if (spilled && len >= buffer.length) {
+				out.write(b, off, len);
+				return;
+			}
+		}
+		System.arraycopy(b, off, buffer, count, len);
+		count += len;
+	}
+
+	/**
+	 * flush: Does nothing, the body is only passed on when it outgrows the buffer or on finish().
+	 */
+	@Override
+	public void flush() {
+	}
+
+	/**
+	 * close: Does nothing, the target stream belongs to the response.
+	 */
+	@Override
+	public void close() {
+	}
+
+	/**
+	 * makeRoom: Called when a write does not fit into the buffer. Either grows the buffer (when capturing) or
+	 * passes the buffered bytes on to the target stream, switching to streaming.
+	 * @param len The length of the pending write.
+	 * @throws IOException
+	 */
+	private void makeRoom(int len) throws IOException {
+		if (capture) {
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, count + len));
+			return;
+		}
+		if (!spilled) {
+			spilled = true;
+			out = target.open(false, count);
+		}
+		out.write(buffer, 0, count);
+		count = 0;
+	}
+
+	/**
+	 * push: Passes the buffered bytes on to the target stream and flushes it, switching to streaming. Used to get
+	 * the start of a body produced over a long time to the client. Does nothing when capturing.
+	 * @throws IOException
+	 */
+	public void push() throws IOException {
+		if (capture) return;
+		if (!spilled) {
+			spilled = true;
+			out = target.open(false, count);
+		}
+		if (count > 0) out.write(buffer, 0, count);
+		count = 0;
+		out.flush();
+	}
+
+	/**
+	 * isSpilled: Returns whether the body has outgrown the buffer, in which case its length is not known.
+	 * @return boolean <code>true</code> if the body is being streamed.
+	 */
+	public boolean isSpilled() {
+		return spilled;
+	}
+
+	/**
+	 * size: Returns the length of the body when it has not spilled.
+	 * @return int The number of buffered bytes.
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * toString: Decodes the captured body.
+	 * @param charset The charset of the body.
+	 * @return String The body, or only its unwritten tail when the body has spilled.
+	 */
+	public String toString(Charset charset) {
+		return new String(buffer, 0, count, charset);
+	}
+
+	/**
+	 * finish: Writes the remaining buffered bytes to the target stream and finishes it.
+	 * @throws IOException
+	 */
+	public void finish() throws IOException {
+		if (out == null) out = target.open(true, count);
+		if (count > 0) out.write(buffer, 0, count);
+		count = 0;
+		target.finish(out);
+	}
+
+	/**
+	 * release: Returns the buffer to the pool. The instance must not be used afterwards.
+	 */
+	public void release() {
+		byte[] b = buffer;
+		buffer = null;
+		// buffers grown for capturing are left to the garbage collector.
+		if (b != null && b.length == bufferSize && pooled.incrementAndGet() <= MAX_POOLED) {
+			pool.offer(b);
+		} else if (b != null && b.length == bufferSize) {
+			pooled.decrementAndGet();
+		}
+	}
+
+	/**
+	 * acquire: Takes a buffer of the given size from the pool, or allocates one.
+	 * @param size
+	 * @return byte[] The buffer.
+	 */
+	private static byte[] acquire(int size) {
+		byte[] b;
+		while ((b = pool.poll()) != null) {
+			pooled.decrementAndGet();
+			// buffers of an earlier size setting are dropped.
+			if (b.length == size) return b;
+		}
+		return new byte[size];
+	}
+
+	/**
+	 * interface Target: Opens and finishes the stream a response body is written to.
+	 */
+	public interface Target {
+
+		/**
+		 * open: Opens the stream, called once before the first byte is written to it.
+		 * @param complete <code>true</code> if the whole body is buffered, <code>false</code> if it outgrew the buffer.
+		 * @param size The number of buffered bytes, the length of the body when complete.
+		 * @return OutputStream The stream to write the body to.
+		 * @throws IOException
+		 */
+		OutputStream open(boolean complete, int size) throws IOException;
+
+		/**
+		 * finish: Completes the stream once the whole body has been written to it.
+		 * @param out The stream returned by open().
+		 * @throws IOException
+		 */
+		void finish(OutputStream out) throws IOException;
+	}
+}
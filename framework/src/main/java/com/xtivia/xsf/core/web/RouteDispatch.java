@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.BeanFactory;
+
+import com.xtivia.xsf.core.auth.IAuthorized;
+import com.xtivia.xsf.core.commands.ICommand;
+import com.xtivia.xsf.core.commands.IFilter;
+import com.xtivia.xsf.core.commands.IVersioned;
+
+/**
+ * class RouteDispatch: Immutable dispatch entry for a route. Holds the command bean resolved from Spring
+ * along with its filter and authorization capabilities so that the controller does not need to look the
+ * bean up or inspect its type on every request.
+ *
+ * Prototype scoped command beans are still obtained from Spring for each request so that their scope is
+ * honored, but their capabilities are determined once from the bean type.
+ */
+public final class RouteDispatch {
+
+	private static final Logger _logger = LoggerFactory.getLogger(RouteDispatch.class);
+
+	/**
+	 * UNBOUND: Entry the controller keeps for routes without a usable command bean, so that it does not look the
+	 * bean up again on every request for them.
+	 */
+	static final RouteDispatch UNBOUND = new RouteDispatch(null, null, null, Object.class);
+
+	/**
+	 * commandName: The name of the Spring bean implementing the command.
+	 */
+	private final String      commandName;
+	/**
+	 * command: The resolved command bean, <code>null</code> for prototype beans.
+	 */
+	private final ICommand    command;
+	/**
+	 * beanFactory: Factory used to obtain prototype beans, <code>null</code> for singletons.
+	 */
+	private final BeanFactory beanFactory;
+	/**
+	 * filter: Flag indicating whether the command implements IFilter.
+	 */
+	private final boolean     filter;
+	/**
+	 * authorized: Flag indicating whether the command implements IAuthorized.
+	 */
+	private final boolean     authorized;
+	/**
+	 * versioned: Flag indicating whether the command implements IVersioned.
+	 */
+	private final boolean     versioned;
+
+	/**
+	 * RouteDispatch: Constructor.
+	 * @param commandName
+	 * @param command
+	 * @param beanFactory
+	 * @param commandClass
+	 */
+	private RouteDispatch(String      commandName,
+			              ICommand    command,
+			              BeanFactory beanFactory,
+			              Class<?>    commandClass) {
+		this.commandName = commandName;
+		this.command = command;
+		this.beanFactory = beanFactory;
+		this.filter = IFilter.class.isAssignableFrom(commandClass);
+		this.authorized = IAuthorized.class.isAssignableFrom(commandClass);
+		this.versioned = IVersioned.class.isAssignableFrom(commandClass);
+	}
+
+	/**
+	 * bind: Resolves the command bean for a route.
+	 * @param route The route to bind.
+	 * @param beanFactory The Spring bean factory holding the command beans.
+	 * @return RouteDispatch The dispatch entry or <code>null</code> if no usable command bean exists.
+	 */
+	public static RouteDispatch bind(IRoute route, BeanFactory beanFactory) {
+
+		String commandName = route.getCommandName();
+		if (commandName == null || !beanFactory.containsBean(commandName)) {
+			if (_logger.isDebugEnabled()) {
+				_logger.debug(String.format("Could not locate command bean named %s in context for uri=%s",
+						                    commandName,route.getUri()));
+			}
+			return null;
+		}
+
+		// prototype beans are bound by type only, a new instance is obtained per request.
+		if (beanFactory.isPrototype(commandName)) {
+			Class<?> type = beanFactory.getType(commandName);
+			if (type == null || !ICommand.class.isAssignableFrom(type)) {
+				logNotCommand(route, commandName, type);
+				return null;
+			}
+			return new RouteDispatch(commandName, null, beanFactory, type);
+		}
+
+		Object bean = beanFactory.getBean(commandName);
+		if (!(bean instanceof ICommand)) {
+			logNotCommand(route, commandName, bean != null ? bean.getClass() : null);
+			return null;
+		}
+
+		return new RouteDispatch(commandName, (ICommand) bean, null, bean.getClass());
+	}
+
+	private static void logNotCommand(IRoute route, String commandName, Class<?> type) {
+		if (_logger.isDebugEnabled()) {
+			_logger.debug(String.format("Named command %s (%s) for uri=%s is not a ICommand object",
+					                    commandName, type != null ? type.getName() : null, route.getUri()));
+		}
+	}
+
+	/**
+	 * getCommand: Returns the command to execute for the current request.
+	 * @return ICommand The command instance.
+	 */
+	public ICommand getCommand() {
+		if (command != null) return command;
+		return (ICommand) beanFactory.getBean(commandName);
+	}
+
+	/**
+	 * getCommandName: Returns the name of the command bean.
+	 * @return String The command name.
+	 */
+	public String getCommandName() {
+		return commandName;
+	}
+
+	/**
+	 * isFilter: Returns whether the command implements IFilter.
+	 * @return boolean <code>true</code> if the command is a filter.
+	 */
+	public boolean isFilter() {
+		return filter;
+	}
+
+	/**
+	 * isAuthorized: Returns whether the command implements IAuthorized.
+	 * @return boolean <code>true</code> if the command performs its own authorization check.
+	 */
+	public boolean isAuthorized() {
+		return authorized;
+	}
+
+	/**
+	 * isVersioned: Returns whether the command implements IVersioned.
+	 * @return boolean <code>true</code> if the command can tell the version of its data.
+	 */
+	public boolean isVersioned() {
+		return versioned;
+	}
+}
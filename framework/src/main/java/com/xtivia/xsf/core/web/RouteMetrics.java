@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * class RouteMetrics: Counters kept per route.
+ */
+public class RouteMetrics {
+
+	/**
+	 * lazyInputs: The number of requests whose input was left unparsed until the command asked for it.
+	 */
+	private final AtomicLong lazyInputs    = new AtomicLong();
+	/**
+	 * lazyParses: The number of lazy inputs the command did ask for.
+	 */
+	private final AtomicLong lazyParses    = new AtomicLong();
+	/**
+	 * parsesAvoided: The number of lazy inputs never asked for, i.e. request bodies never parsed.
+	 */
+	private final AtomicLong parsesAvoided = new AtomicLong();
+
+	void lazyInput() {
+		lazyInputs.incrementAndGet();
+	}
+
+	void lazyParse() {
+		lazyParses.incrementAndGet();
+	}
+
+	void parseAvoided() {
+		parsesAvoided.incrementAndGet();
+	}
+
+	public long getLazyInputs() {
+		return lazyInputs.get();
+	}
+
+	public long getLazyParses() {
+		return lazyParses.get();
+	}
+
+	public long getParsesAvoided() {
+		return parsesAvoided.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("RouteMetrics[lazyInputs=%d, lazyParses=%d, parsesAvoided=%d]",
+				             getLazyInputs(), getLazyParses(), getParsesAvoided());
+	}
+}
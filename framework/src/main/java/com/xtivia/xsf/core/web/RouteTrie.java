@@ -0,0 +1,402 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * class RouteTrie: A segment trie compiled from the URIs of a set of routes, indexed by HTTP method.
+ *
+ * Each route URI is split on '/' into segments which become literal, <code>{var}</code>, <code>*</code>,
+ * <code>**</code> or pattern (mixed text/wildcards/variables within one segment) nodes. Matching a request
+ * walks the trie one path segment at a time, so the cost depends on the depth of the path and not on the
+ * number of routes, and the path variables are captured during the same walk.
+ *
+ * When more than one route can match a request the most specific node is preferred at each segment: literal,
+ * then pattern, then <code>{var}</code>, then <code>*</code> and finally <code>**</code>. The matching rules
+ * otherwise follow Spring's AntPathMatcher, which the router previously used.
+ *
+ * Instances are built once and are then read-only, so they can be shared between request threads.
+ */
+public class RouteTrie {
+
+	/**
+	 * PATH_SEPARATOR: Separator between the segments of a URI.
+	 */
+	private static final char PATH_SEPARATOR = '/';
+
+	/**
+	 * DOUBLE_WILDCARD: Segment matching zero or more path segments.
+	 */
+	private static final String DOUBLE_WILDCARD = "**";
+
+	/**
+	 * WILDCARD: Segment matching exactly one path segment.
+	 */
+	private static final String WILDCARD = "*";
+
+	/**
+	 * VARIABLE_PATTERN: Matches a <code>{name}</code> template variable within a segment. The name cannot hold a
+	 * <code>}</code>, so that adjacent variables such as <code>{a}{b}</code> are two variables and not one.
+	 */
+	private static final Pattern VARIABLE_PATTERN = Pattern.compile("\\{([^/}]+)\\}");
+
+	/**
+	 * roots: The root node of the trie for each HTTP method.
+	 */
+	private final Map<String,Node> roots = new HashMap<String,Node>();
+
+	/**
+	 * size: Number of routes added to the trie.
+	 */
+	private int size = 0;
+
+	/**
+	 * maxCaptures: The largest number of variables declared by any one route.
+	 */
+	private int maxCaptures = 0;
+
+	/**
+	 * add: Compiles the URI of the given route into the trie.
+	 * @param route The route to add.
+	 */
+	public void add(IRoute route) {
+
+		// get (or create) the root node for the route's method.
+		Node node = roots.get(route.getHttpMethod());
+		if (node == null) {
+			node = new Node();
+			roots.put(route.getHttpMethod(), node);
+		}
+
+		String uri = route.getUri() != null ? route.getUri() : "";
+		List<String> varNames = new ArrayList<String>();
+		String lastSegment = null;
+
+		// walk down the trie creating nodes for each segment of the URI.
+		for (String segment : tokenize(uri)) {
+			node = node.child(segment, varNames);
+			lastSegment = segment;
+		}
+
+		// record the route at the node for the final segment. Routes added first win over later
+		// routes with an identical URI.
+		node.add(new Terminal(route,
+				              varNames.toArray(new String[varNames.size()]),
+				              uri.length() > 0 && uri.charAt(uri.length()-1) == PATH_SEPARATOR,
+				              DOUBLE_WILDCARD.equals(lastSegment)));
+		size++;
+		maxCaptures = Math.max(maxCaptures, varNames.size());
+	}
+
+	/**
+	 * match: Finds the route matching the given request URI and HTTP method.
+	 * @param requestUri The request URI.
+	 * @param httpMethod The HTTP method.
+	 * @return RoutingInfo The matched route and its path parameters or <code>null</code> if no route matches.
+	 */
+	public RoutingInfo match(String requestUri, String httpMethod) {
+
+		if (requestUri == null || httpMethod == null) return null;
+
+		// no routes for this method means no match.
+		Node root = roots.get(httpMethod);
+		if (root == null) return null;
+
+		Walk walk = new Walk(tokenize(requestUri),
+				             requestUri.length() > 0 && requestUri.charAt(requestUri.length()-1) == PATH_SEPARATOR,
+				             maxCaptures);
+
+		Terminal terminal = root.match(walk, 0, 0);
+		if (terminal == null) return null;
+
+		// map the captured values onto the variable names of the matched route.
+		Map<String,String> pathParams = new LinkedHashMap<String,String>();
+		for (int i = 0; i < terminal.varNames.length; i++) {
+			pathParams.put(terminal.varNames[i], walk.captures[i]);
+		}
+
+		RoutingInfo routingInfo = new RoutingInfo();
+		routingInfo.setRoute(terminal.route);
+		routingInfo.setPathParameters(pathParams);
+		return routingInfo;
+	}
+
+	/**
+	 * size: Returns the number of routes compiled into the trie.
+	 * @return int The number of routes.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * tokenize: Splits a URI into its non-empty, trimmed segments.
+	 * @param uri
+	 * @return String[] The segments.
+	 */
+	static String[] tokenize(String uri) {
+		List<String> segments = new ArrayList<String>();
+		int start = 0;
+		int length = uri.length();
+		for (int i = 0; i <= length; i++) {
+			if (i == length || uri.charAt(i) == PATH_SEPARATOR) {
+				if (i > start) {
+					String segment = uri.substring(start, i).trim();
+					if (segment.length() > 0) segments.add(segment);
+				}
+				start = i + 1;
+			}
+		}
+		return segments.toArray(new String[segments.size()]);
+	}
+
+	/**
+	 * class Walk: State of a single lookup, the request segments and the values captured so far.
+	 */
+	private static class Walk {
+
+		private final String[]  segments;
+		private final boolean   trailingSlash;
+		private final String[]  captures;
+
+		private Walk(String[] segments, boolean trailingSlash, int maxCaptures) {
+			this.segments = segments;
+			this.trailingSlash = trailingSlash;
+			this.captures = new String[maxCaptures];
+		}
+	}
+
+	/**
+	 * class Terminal: A route whose URI ends at a node.
+	 */
+	private static class Terminal {
+
+		private final IRoute   route;
+		private final String[] varNames;
+		private final boolean  trailingSlash;
+		private final boolean  endsWithDoubleWildcard;
+
+		private Terminal(IRoute route, String[] varNames, boolean trailingSlash, boolean endsWithDoubleWildcard) {
+			this.route = route;
+			this.varNames = varNames;
+			this.trailingSlash = trailingSlash;
+			this.endsWithDoubleWildcard = endsWithDoubleWildcard;
+		}
+
+		/**
+		 * accepts: Checks the trailing slash rule of AntPathMatcher once all segments have been consumed.
+		 */
+		private boolean accepts(Walk walk) {
+			return endsWithDoubleWildcard || trailingSlash == walk.trailingSlash;
+		}
+	}
+
+	/**
+	 * class SegmentPattern: A segment mixing literal text with <code>*</code>, <code>?</code> or
+	 * <code>{var}</code>, compiled into a regular expression.
+	 */
+	private static class SegmentPattern {
+
+		private final Pattern pattern;
+		private final int     groups;
+		private final Node    node = new Node();
+
+		private SegmentPattern(Pattern pattern, int groups) {
+			this.pattern = pattern;
+			this.groups = groups;
+		}
+	}
+
+	/**
+	 * class Node: A node in the trie, one per distinct route URI prefix.
+	 */
+	private static class Node {
+
+		private Map<String,Node>           literals;
+		private Map<String,SegmentPattern> patterns;
+		private Node                       variable;
+		private Node                       wildcard;
+		private Node                       doubleWildcard;
+		private List<Terminal>             terminals;
+
+		/**
+		 * child: Returns (creating it when needed) the child node for a route URI segment, collecting the names
+		 * of any variables declared by the segment.
+		 */
+		private Node child(String segment, List<String> varNames) {
+
+			if (DOUBLE_WILDCARD.equals(segment)) {
+				if (doubleWildcard == null) doubleWildcard = new Node();
+				return doubleWildcard;
+			}
+
+			if (WILDCARD.equals(segment)) {
+				if (wildcard == null) wildcard = new Node();
+				return wildcard;
+			}
+
+			// a segment that is exactly one {var}.
+			Matcher m = VARIABLE_PATTERN.matcher(segment);
+			if (m.matches()) {
+				varNames.add(m.group(1));
+				if (variable == null) variable = new Node();
+				return variable;
+			}
+
+			// a segment with no special characters at all.
+			if (segment.indexOf('*') == -1 && segment.indexOf('?') == -1 && segment.indexOf('{') == -1) {
+				if (literals == null) literals = new HashMap<String,Node>();
+				Node node = literals.get(segment);
+				if (node == null) {
+					node = new Node();
+					literals.put(segment, node);
+				}
+				return node;
+			}
+
+			// anything else is compiled into a regular expression the same way AntPathMatcher does.
+			StringBuilder regex = new StringBuilder();
+			int groups = 0;
+			int end = 0;
+			m.reset();
+			while (m.find()) {
+				regex.append(quote(segment.substring(end, m.start())));
+				regex.append("(.*)");
+				varNames.add(m.group(1));
+				groups++;
+				end = m.end();
+			}
+			regex.append(quote(segment.substring(end)));
+
+			if (patterns == null) patterns = new LinkedHashMap<String,SegmentPattern>();
+			String key = regex.toString();
+			SegmentPattern sp = patterns.get(key);
+			if (sp == null) {
+				sp = new SegmentPattern(Pattern.compile(key), groups);
+				patterns.put(key, sp);
+			}
+			return sp.node;
+		}
+
+		/**
+		 * quote: Quotes literal text for a regular expression, turning <code>*</code> and <code>?</code> into
+		 * their wildcard equivalents.
+		 */
+		private static String quote(String text) {
+			StringBuilder sb = new StringBuilder();
+			int start = 0;
+			for (int i = 0; i < text.length(); i++) {
+				char c = text.charAt(i);
+				if (c == '*' || c == '?') {
+					if (i > start) sb.append(Pattern.quote(text.substring(start, i)));
+					sb.append(c == '*' ? ".*" : ".");
+					start = i + 1;
+				}
+			}
+			if (start < text.length()) sb.append(Pattern.quote(text.substring(start)));
+			return sb.toString();
+		}
+
+		private void add(Terminal terminal) {
+			if (terminals == null) terminals = new ArrayList<Terminal>(1);
+			terminals.add(terminal);
+		}
+
+		/**
+		 * match: Matches the request segments from <code>index</code> on against this node and its children,
+		 * backtracking to less specific children when a more specific branch does not lead to a route.
+		 * @param walk The lookup state.
+		 * @param index Index of the next request segment to match.
+		 * @param captured Number of values captured so far.
+		 * @return Terminal The matched route or <code>null</code>.
+		 */
+		private Terminal match(Walk walk, int index, int captured) {
+
+			String[] segments = walk.segments;
+
+			// all segments consumed, so this node must end a route ...
+			if (index == segments.length) {
+				if (terminals != null) {
+					for (Terminal terminal : terminals) {
+						if (terminal.accepts(walk)) return terminal;
+					}
+				}
+				// ... or be followed by a '**' that matches nothing.
+				if (doubleWildcard != null) {
+					return doubleWildcard.match(walk, index, captured);
+				}
+				// a trailing '*' also matches the empty segment after a trailing slash.
+				if (wildcard != null && walk.trailingSlash && wildcard.terminals != null) {
+					return wildcard.terminals.get(0);
+				}
+				return null;
+			}
+
+			String segment = segments[index];
+			Terminal found;
+
+			if (literals != null) {
+				Node node = literals.get(segment);
+				if (node != null && (found = node.match(walk, index + 1, captured)) != null) {
+					return found;
+				}
+			}
+
+			if (patterns != null) {
+				for (SegmentPattern sp : patterns.values()) {
+					Matcher m = sp.pattern.matcher(segment);
+					if (m.matches()) {
+						for (int g = 1; g <= sp.groups; g++) {
+							walk.captures[captured + g - 1] = m.group(g);
+						}
+						if ((found = sp.node.match(walk, index + 1, captured + sp.groups)) != null) {
+							return found;
+						}
+					}
+				}
+			}
+
+			if (variable != null) {
+				walk.captures[captured] = segment;
+				if ((found = variable.match(walk, index + 1, captured + 1)) != null) {
+					return found;
+				}
+			}
+
+			if (wildcard != null && (found = wildcard.match(walk, index + 1, captured)) != null) {
+				return found;
+			}
+
+			if (doubleWildcard != null) {
+				// let the '**' swallow as few segments as possible.
+				for (int next = index; next <= segments.length; next++) {
+					if ((found = doubleWildcard.match(walk, next, captured)) != null) {
+						return found;
+					}
+				}
+			}
+
+			return null;
+		}
+	}
+}
@@ -15,9 +15,23 @@
  */
 package com.xtivia.xsf.core.web;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletConfig;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -25,24 +39,37 @@ import javax.servlet.http.HttpServletResponse;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.web.context.ServletConfigAware;
 import org.springframework.web.servlet.ModelAndView;
 import org.springframework.web.servlet.mvc.Controller;
 
 import com.xtivia.xsf.core.auth.IAuthorizer;
 import com.xtivia.xsf.core.auth.NullAuthorizer;
+import com.xtivia.xsf.core.cache.CachePartition;
+import com.xtivia.xsf.core.cache.DefaultCachePartitioner;
+import com.xtivia.xsf.core.cache.ICachePartitioner;
+import com.xtivia.xsf.core.cache.IResponseCache;
+import com.xtivia.xsf.core.cache.ResponseCacheKey;
 import com.xtivia.xsf.core.commands.CommandResult;
+import com.xtivia.xsf.core.commands.Deadline;
+import com.xtivia.xsf.core.commands.DeadlineExceededException;
 import com.xtivia.xsf.core.commands.ICommand;
 import com.xtivia.xsf.core.commands.IContext;
 import com.xtivia.xsf.core.commands.IFilter;
+import com.xtivia.xsf.core.commands.IVersioned;
+import com.xtivia.xsf.core.commands.StreamedInput;
 
 /**
  * class ServicesController: The main entry point into the XSF framework, it 
  * implements the controller Spring will dispatch to for every incoming request.
  */
-public abstract class ServicesController implements Controller, ServletConfigAware { 
+public abstract class ServicesController implements Controller, ServletConfigAware, DisposableBean,
+                                                    ApplicationListener<ContextRefreshedEvent> { 
 	
 	private static final Logger _logger = LoggerFactory.getLogger(ServicesController.class);
 
@@ -85,11 +112,119 @@ public abstract class ServicesController implements Controller, ServletConfigAwa
 	 */	
 	@Autowired protected ContextDecoratorManager contextDecoratorMgr;
 
+	/**
+	 * responseCache: Server-side cache of serialized responses for cached routes.
+	 */
+	@Autowired(required = false) protected IResponseCache responseCache;
+
+	/**
+	 * threadContextPropagators: Carry thread-bound state over to the threads running async commands.
+	 */
+	@Autowired(required = false) protected List<IThreadContextPropagator> threadContextPropagators;
+
+	/**
+	 * concurrencyLimiter: Optional admission control, limiting the requests each route processes at once.
+	 */
+	@Autowired(required = false) protected ConcurrencyLimiter concurrencyLimiter;
+
+	/**
+	 * cachePartitioner: Determines the partition of callers for coalesced requests of partitioned routes.
+	 */
+	@Autowired(required = false) protected ICachePartitioner cachePartitioner;
+
 	/**
 	 * authorizer: The framework authorizer. Responsible for framework authorization
 	 *  of individual commands/routes.
 	 */
     protected IAuthorizer authorizer = new NullAuthorizer();
+
+	/**
+	 * maxBodySize: Default maximum request body size in bytes for routes that do not declare one, negative for
+	 * no limit.
+	 */
+	private long maxBodySize = -1;
+
+	/**
+	 * stateless: Flag indicating whether all routes run without creating an HTTP session.
+	 */
+	private boolean stateless = false;
+
+	/**
+	 * HTTP_UNAVAILABLE: Status for requests the server cannot process in time.
+	 */
+	private static final int HTTP_UNAVAILABLE = 503;
+	/**
+	 * HTTP_BAD_REQUEST: Status for requests whose body cannot be read.
+	 */
+	private static final int HTTP_BAD_REQUEST = 400;
+	/**
+	 * RETRY_AFTER: Seconds a client turned away for lack of threads is asked to wait.
+	 */
+	private static final int RETRY_AFTER = 1;
+	/**
+	 * REQUEST_TIMEOUT_HEADER: Header a client sends to say how long (in milliseconds) it will wait for the answer.
+	 */
+	public static final String REQUEST_TIMEOUT_HEADER = "X-Request-Timeout";
+	/**
+	 * DEADLINE_ATTRIBUTE: Request attribute holding the deadline of the request until its context is created.
+	 */
+	private static final String DEADLINE_ATTRIBUTE = "xsf.deadline";
+
+	/**
+	 * async: Flag indicating whether all routes are processed asynchronously.
+	 */
+	private boolean async = false;
+	/**
+	 * asyncTimeout: Default time in milliseconds an async request may take.
+	 */
+	private long asyncTimeout = 30000;
+	/**
+	 * nonBlockingIo: Flag indicating whether async requests read and write their bodies without blocking, where the
+	 * container supports it (Servlet 3.1).
+	 */
+	private boolean nonBlockingIo = false;
+	/**
+	 * maxBufferedResponse: The most bytes of a response body held in memory with non-blocking I/O, larger bodies are
+	 * written with blocking writes as they are produced.
+	 */
+	private int maxBufferedResponse = 64 * 1024;
+	/**
+	 * virtualThreads: Flag indicating whether all routes run asynchronously with their commands on virtual threads
+	 * (Java 21 or newer).
+	 */
+	private boolean virtualThreads = false;
+	/**
+	 * requestTimeout: Default time in milliseconds routes have to answer a request, zero for no deadline.
+	 */
+	private long requestTimeout = 0;
+	/**
+	 * coalescer: Lets concurrent identical requests of coalesced routes share one command execution.
+	 */
+	private RequestCoalescer coalescer = new RequestCoalescer();
+	/**
+	 * executor: The default executor for async routes.
+	 */
+	private CommandExecutor executor;
+	/**
+	 * ownsExecutor: Flag indicating whether the controller created the default executor.
+	 */
+	private boolean ownsExecutor = false;
+	/**
+	 * executors: The executors named by routes, by bean name.
+	 */
+	private final ConcurrentMap<String,Executor> executors = new ConcurrentHashMap<String,Executor>();
+	/**
+	 * dispatches: The dispatch entry of each route, RouteDispatch.UNBOUND for routes without a usable command bean.
+	 */
+	private final ConcurrentMap<IRoute,RouteDispatch> dispatches = new ConcurrentHashMap<IRoute,RouteDispatch>();
+	/**
+	 * bulkheads: The bulkheads named by routes, by name.
+	 */
+	private final ConcurrentMap<String,CommandExecutor> bulkheads = new ConcurrentHashMap<String,CommandExecutor>();
+	/**
+	 * ownedBulkheads: The bulkheads the controller created rather than took from the Spring context.
+	 */
+	private final List<CommandExecutor> ownedBulkheads = new ArrayList<CommandExecutor>();
 	
 	/**
 	 * setServletConfig: Sets the servlet config injected by Spring's ServletConfigAware interface.
@@ -100,6 +235,54 @@ public abstract class ServicesController implements Controller, ServletConfigAwa
 		this.sc = sc;
 	}
 	
+	/**
+	 * onApplicationEvent: Rebuilds the route dispatch table whenever our Spring context is refreshed.
+	 * @param event
+	 */
+	@Override
+	public void onApplicationEvent(ContextRefreshedEvent event) {
+		// ignore refreshes of other (e.g. parent or child) contexts.
+		if (applicationContext == null || event.getApplicationContext() != applicationContext) {
+			return;
+		}
+		bindRoutes();
+	}
+
+	/**
+	 * bindRoutes: Resolves the command bean and capabilities of every route into its dispatch entry.
+	 */
+	protected void bindRoutes() {
+		executors.clear();
+		dispatches.clear();
+
+		// routes of a router that cannot list them are bound on their first request.
+		if (!(router instanceof IListableRouter)) return;
+
+		List<IRoute> routes = ((IListableRouter) router).getRoutes();
+		int bound = 0;
+		for (IRoute route : routes) {
+			if (getDispatch(route) != null) bound++;
+		}
+		_logger.info("Bound " + bound + " of " + routes.size() + " routes to command beans.");
+	}
+
+	/**
+	 * getDispatch: Returns the dispatch entry for the route, binding it on first use for routes that were
+	 * not present when the table was built. A route without a usable command bean is remembered as such, so its
+	 * bean is not looked up again until the context is refreshed.
+	 * @param route
+	 * @return RouteDispatch The dispatch entry or <code>null</code> if no command bean can be found.
+	 */
+	protected RouteDispatch getDispatch(IRoute route) {
+		RouteDispatch dispatch = dispatches.get(route);
+		if (dispatch == null) {
+			dispatch = RouteDispatch.bind(route, applicationContext);
+			if (dispatch == null) dispatch = RouteDispatch.UNBOUND;
+			dispatches.put(route, dispatch);
+		}
+		return dispatch != RouteDispatch.UNBOUND ? dispatch : null;
+	}
+
 	/**
 	 * handleRequest: Entry point for the spring controller.
 	 * @param request
@@ -121,7 +304,6 @@ public abstract class ServicesController implements Controller, ServletConfigAwa
 	 * @param request
 	 * @param response
 	 */
-	@SuppressWarnings("unchecked")
 	protected void findAndExecuteCommand(HttpServletRequest  request,
 			                             HttpServletResponse response) {
 		// get the request URI
@@ -140,50 +322,418 @@ public abstract class ServicesController implements Controller, ServletConfigAwa
 			    return;
 		}
 
-		// extract the route and the command name from the route.
+		// the deadline starts with the request, before it waits for admission, a thread or its body.
+		Deadline deadline = createDeadline(request, routingInfo.getRoute());
+		if (deadline != null) {
+			request.setAttribute(DEADLINE_ATTRIBUTE, deadline);
+		}
+
+		// admission control, a request over the route's limit is turned away before its body is read.
+		ConcurrencyLimit.Permit permit;
+		try {
+			permit = (concurrencyLimiter != null ? concurrencyLimiter.acquire(routingInfo.getRoute()) : null);
+		} catch (HttpStatusException e) {
+			marshaller.onException(getFullWebContext(request, response, null), routeUri, routingInfo.getRoute(), e);
+			return;
+		}
+
+		// async routes run on an executor, releasing the container thread while the command runs.
+		if (isAsync(routingInfo.getRoute())) {
+			if (request.isAsyncSupported()) {
+				try {
+					dispatchAsync(request, response, routeUri, routingInfo, permit);
+				} catch (RuntimeException e) {
+					if (permit != null) permit.drop();
+					throw e;
+				}
+				return;
+			}
+			if (_logger.isDebugEnabled()) {
+				_logger.debug(String.format("Async processing not supported for uri=%s, running it synchronously",
+						                    routeUri));
+			}
+		}
+
+		try {
+			processRoute(request, response, routeUri, routingInfo);
+		} finally {
+			if (permit != null) permit.release();
+		}
+	}
+
+	/**
+	 * dispatchAsync: Processes a request on the route's executor through Servlet 3.0 asynchronous processing. A
+	 * request not completed within the route's timeout, or arriving while the executor is full, is answered with
+	 * a 503 through the marshaller.
+	 *
+	 * With non-blocking I/O enabled on a Servlet 3.1 container no thread waits on the client either: the body is
+	 * read as it arrives, the command runs once it is complete, and the response is written as the client accepts it.
+	 * Routes streaming or lazily parsing their input read it as they go, so they keep blocking I/O, and responses
+	 * outgrowing maxBufferedResponse (or flushed by the command) are written with blocking writes.
+	 * @param request
+	 * @param response
+	 * @param routeUri
+	 * @param routingInfo
+	 * @param permit The admission of the request or <code>null</code>, released once the command is done.
+	 */
+	protected void dispatchAsync(final HttpServletRequest      request,
+			                     final HttpServletResponse     response,
+			                     final String                  routeUri,
+			                     final RoutingInfo             routingInfo,
+			                     final ConcurrencyLimit.Permit permit) {
+
+		AsyncContext asyncContext = request.startAsync(request, response);
+		Deadline deadline = (Deadline) request.getAttribute(DEADLINE_ATTRIBUTE);
+		asyncContext.setTimeout(getAsyncTimeout(routingInfo.getRoute(), deadline));
+
+		final AsyncRequest async = new AsyncRequest(request, response, routeUri, routingInfo, asyncContext,
+				                                            permit);
+		asyncContext.addListener(async);
+
+		// the command never writes to the response itself, only through a guard that is closed should the request
+		// be answered without it.
+		AbstractRoute options = AbstractRoute.of(routingInfo.getRoute());
+		if (!nonBlockingIo || !NonBlockingIO.isSupported() || options.isStreamInput() || options.isLazyInput()) {
+			async.submit(request, async.guarded);
+			return;
+		}
+
+		final NonBlockingIO.BufferedResponse buffered = new NonBlockingIO.BufferedResponse(async.guarded,
+				                                                                           maxBufferedResponse);
+		try {
+			NonBlockingIO.readBody(request.getInputStream(), getMaxBodySize(routingInfo.getRoute()),
+					               new NonBlockingIO.BodyHandler() {
+				@Override
+				public void onBody(byte[] body) {
+					async.submit(new NonBlockingIO.BufferedRequest(request, body), buffered);
+				}
+
+				@Override
+				public void onError(Throwable t) {
+					async.fail(t);
+					async.finish();
+				}
+			});
+		} catch (IOException e) {
+			async.fail(e);
+			async.finish();
+		}
+	}
+
+	/**
+	 * captureThreadContext: Captures the thread-bound state of the container thread.
+	 * @param propagators The propagators or <code>null</code>.
+	 * @return Object[] The state captured by each propagator.
+	 */
+	private static Object[] captureThreadContext(List<IThreadContextPropagator> propagators) {
+		if (propagators == null || propagators.isEmpty()) return null;
+
+		Object[] captured = new Object[propagators.size()];
+		for (int i = 0; i < captured.length; i++) {
+			captured[i] = propagators.get(i).capture();
+		}
+		return captured;
+	}
+
+	/**
+	 * applyThreadContext: Sets captured thread-bound state on the worker thread.
+	 * @param propagators The propagators or <code>null</code>.
+	 * @param captured The state returned by captureThreadContext().
+	 * @return Object[] The previous state of the worker thread.
+	 */
+	private static Object[] applyThreadContext(List<IThreadContextPropagator> propagators, Object[] captured) {
+		if (captured == null) return null;
+
+		Object[] previous = new Object[captured.length];
+		for (int i = 0; i < captured.length; i++) {
+			previous[i] = propagators.get(i).apply(captured[i]);
+		}
+		return previous;
+	}
+
+	/**
+	 * restoreThreadContext: Puts back the state of the worker thread, in reverse order.
+	 * @param propagators The propagators or <code>null</code>.
+	 * @param previous The state returned by applyThreadContext().
+	 */
+	private static void restoreThreadContext(List<IThreadContextPropagator> propagators, Object[] previous) {
+		if (previous == null) return;
+
+		for (int i = previous.length - 1; i >= 0; i--) {
+			try {
+				propagators.get(i).restore(previous[i]);
+			} catch (RuntimeException e) {
+				_logger.error("Error restoring thread context: " + e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * class AsyncRequest: State of a request being processed asynchronously. Whoever finishes the request first, the
+	 * command or the timeout, answers it: the command by completing the response it wrote, the timeout by detaching
+	 * the command from the response and writing the error in its place.
+	 */
+	private class AsyncRequest implements AsyncListener {
+		// the command is queued or running.
+		private static final int RUNNING    = 0;
+		// the command is done and its response is being completed.
+		private static final int RESPONDING = 1;
+		// the request was answered without the command.
+		private static final int FAILED     = 2;
+
+		private final HttpServletRequest  request;
+		private final HttpServletResponse response;
+		private final GuardedResponse     guarded;
+		private final String              routeUri;
+		private final RoutingInfo         routingInfo;
+		private final AsyncContext        asyncContext;
+		private final ConcurrencyLimit.Permit permit;
+		private final Deadline                deadline;
+		private final AtomicInteger           state = new AtomicInteger(RUNNING);
+		private final AtomicBoolean           submitted = new AtomicBoolean();
+		// the thread running the command for this request, guarded by this.
+		private Thread worker;
+
+		AsyncRequest(HttpServletRequest  request,
+				     HttpServletResponse response,
+				     String              routeUri,
+				     RoutingInfo         routingInfo,
+				     AsyncContext        asyncContext,
+				     ConcurrencyLimit.Permit permit) {
+			this.request = request;
+			this.response = response;
+			this.guarded = new GuardedResponse(response);
+			this.routeUri = routeUri;
+			this.routingInfo = routingInfo;
+			this.asyncContext = asyncContext;
+			this.permit = permit;
+			this.deadline = (Deadline) request.getAttribute(DEADLINE_ATTRIBUTE);
+		}
+
+		/**
+		 * submit: Processes the request on the route's executor.
+		 * @param req The request, possibly with its body already read.
+		 * @param resp The guarded response, possibly buffered.
+		 */
+		void submit(final HttpServletRequest req, final HttpServletResponse resp) {
+			final List<IThreadContextPropagator> propagators = threadContextPropagators;
+			final Object[] captured = captureThreadContext(propagators);
+			submitted.set(true);
+			try {
+				getExecutor(routingInfo.getRoute()).execute(new CommandExecutor.Expirable() {
+					@Override
+					public void expire() {
+						_logger.warn(String.format("Request for uri=%s waited too long for a thread", routeUri));
+						fail(new HttpStatusException(HTTP_UNAVAILABLE, "The server is too busy to process the request",
+								                     RETRY_AFTER));
+						finish();
+					}
+
+					@Override
+					public void run() {
+						// the request may have timed out while it was queued.
+						if (!begin()) {
+							finish();
+							return;
+						}
+
+						Object[] previous = applyThreadContext(propagators, captured);
+						try {
+							processRoute(req, resp, routeUri, routingInfo);
+						} finally {
+							restoreThreadContext(propagators, previous);
+							end();
+							finish();
+						}
+						respond(resp);
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				_logger.warn(String.format("Executor for uri=%s is full, rejecting the request", routeUri));
+				fail(new HttpStatusException(HTTP_UNAVAILABLE, "The server is too busy to process the request", RETRY_AFTER));
+				finish();
+			}
+		}
+
+		/**
+		 * finish: Gives back the request's admission once nothing of it runs anymore. A request answered without its
+		 * command, which may have kept running long after, counts as dropped.
+		 */
+		void finish() {
+			if (permit == null) return;
+			if (state.get() == FAILED) {
+				permit.drop();
+			} else {
+				permit.release();
+			}
+		}
+
+		/**
+		 * begin: Registers the current thread as the request's worker, unless the request is already answered.
+		 * @return boolean Whether the command should run.
+		 */
+		synchronized boolean begin() {
+			if (state.get() != RUNNING) return false;
+			worker = Thread.currentThread();
+			return true;
+		}
+
+		/**
+		 * end: Unregisters the worker. An interrupt for this request can only be sent while the worker is registered,
+		 * so clearing it here keeps it from leaking into the next task on the thread.
+		 */
+		synchronized void end() {
+			worker = null;
+			Thread.interrupted();
+		}
+
+		/**
+		 * interrupt: Interrupts the worker, if the command for this request is still running.
+		 */
+		synchronized void interrupt() {
+			if (worker != null) worker.interrupt();
+		}
+
+		/**
+		 * respond: Completes the request once the command is done, writing a buffered response without blocking
+		 * unless it was already written with blocking writes.
+		 * Nothing is done when the request was already answered.
+		 * @param resp
+		 */
+		void respond(HttpServletResponse resp) {
+			if (!state.compareAndSet(RUNNING, RESPONDING)) return;
+
+			if (resp instanceof NonBlockingIO.BufferedResponse) {
+				NonBlockingIO.BufferedResponse buffered = (NonBlockingIO.BufferedResponse) resp;
+				try {
+					List<byte[]> chunks = buffered.getChunks();
+					// a body which went straight to the response is written already.
+					if (!buffered.isStreaming()) {
+						NonBlockingIO.writeBody(response.getOutputStream(), chunks, new Runnable() {
+							@Override
+							public void run() {
+								asyncContext.complete();
+							}
+						});
+						return;
+					}
+				} catch (IOException e) {
+					if (_logger.isDebugEnabled()) {
+						_logger.debug(String.format("Error writing response for uri=%s: %s", routeUri, e.getMessage()));
+					}
+				}
+			}
+			asyncContext.complete();
+		}
+
+		/**
+		 * fail: Answers the request with an error through the marshaller, unless it is already answered.
+		 * @param t The failure, an HttpStatusException carries the status to answer with.
+		 * @return boolean Whether the request was answered with the error.
+		 */
+		boolean fail(Throwable t) {
+			if (!state.compareAndSet(RUNNING, FAILED)) return false;
+
+			// whatever of the command is still running should stop, and may no longer write to the response.
+			if (deadline != null) deadline.cancel();
+			guarded.close();
+
+			HttpStatusException e;
+			if (t instanceof HttpStatusException) {
+				e = (HttpStatusException) t;
+			} else {
+				_logger.warn(String.format("Error reading request for uri=%s: %s", routeUri, t));
+				e = new HttpStatusException(HTTP_BAD_REQUEST, "The request could not be read");
+			}
+
+			if (!response.isCommitted()) {
+				response.reset();
+				marshaller.onException(getFullWebContext(request, response, null), routeUri, routingInfo.getRoute(), e);
+			}
+			asyncContext.complete();
+			return true;
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) {
+			if (state.get() != RUNNING) return;
+
+			_logger.warn(String.format("Request for uri=%s timed out", routeUri));
+			if (fail(new HttpStatusException(HTTP_UNAVAILABLE, "The request timed out"))) {
+				// stop a command blocked on a remote call, once it can no longer write to the response.
+				interrupt();
+				// a request still reading its body has no command that could finish it.
+				if (!submitted.get()) finish();
+			}
+		}
+
+		@Override
+		public void onError(AsyncEvent event) {
+			_logger.warn(String.format("Async error for uri=%s", routeUri), event.getThrowable());
+
+			// most likely the client went away, nobody is waiting for the command anymore.
+			if (deadline != null) deadline.cancel();
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) {
+		}
+
+		@Override
+		public void onStartAsync(AsyncEvent event) {
+		}
+	}
+
+	/**
+	 * processRoute: Processes a request for a route: builds the context, authorizes the request, executes the
+	 * command and has the marshaller write the response.
+	 * @param request
+	 * @param response
+	 * @param routeUri
+	 * @param routingInfo
+	 */
+	@SuppressWarnings("unchecked")
+	protected void processRoute(HttpServletRequest  request,
+			                    HttpServletResponse response,
+			                    String              routeUri,
+			                    RoutingInfo         routingInfo) {
+
+		// extract the route from the routing info.
 		IRoute route = routingInfo.getRoute();
-		String commandName = route.getCommandName();
+
+		// a streamed or lazy input is read while the command runs, and closed once the request is done.
+		Closeable openInput = null;
+		// the flight led by this request, ended once the request is done.
+		RequestCoalescer.Ticket flight = null;
 
         try {
 
 	        // create a new command context with what we have.
-            IContext ctx = getFullWebContext(request, response, routingInfo.getPathParameters());
+            IContext ctx = getFullWebContext(request, response, routingInfo.getPathParameters(), route);
 
-	        // retrieve the command object based on the bean name.
-            Object commandObject = applicationContext.getBean(commandName);
+	        // get the command bound to the route.
+            RouteDispatch dispatch = getDispatch(route);
 
-	        // if the spring bean is not found
-            if (commandObject == null) {
-
-                if (_logger.isDebugEnabled()) {
-                  _logger.debug(String.format("Could not locate command bean named %s in context for uri=%s",
-                                              commandName,routeUri));
-                }
+	        // if no usable spring bean exists for the route
+            if (dispatch == null) {
 
 	            // treat as a route not found even though we do have a route config.
                 onRouteNotFound(ctx, routeUri);
                 return;
             }
 
-	        // If the found bean is not an instance of ICommand
-            if (!(commandObject instanceof ICommand)) {
-                if (_logger.isDebugEnabled()) {
-                      _logger.debug(String.format("Named command %s (%s) for uri=%s is not a ICommand object",
-                                                  commandName,commandObject.getClass().getName(), routeUri));
-                }
-
-	            // treat as a route not found even though we have a spring bean
-                onRouteNotFound(ctx, routeUri);
-                return;
-            }
-
-	        // cast as a command object
-            ICommand command = (ICommand) commandObject;
+            ICommand command = dispatch.getCommand();
             
 		    // save the routing info inside the context. This can be useful for commands
 		    // that act as a sub-dispatcher or proxy and need to have information about what
 		    // route was matched (and/or path parameters)
-		    ctx.put(ICommandKeys.ROUTING_INFO,routingInfo);
+		    ctx.set(ICommandKeys.ROUTING_INFO_KEY,routingInfo);
+
+		    // the deadline of the request, for commands to check or hand on to downstream calls.
+		    Deadline deadline = (Deadline) request.getAttribute(DEADLINE_ATTRIBUTE);
+		    if (deadline != null) {
+		    	ctx.set(ICommandKeys.DEADLINE_KEY, deadline);
+		    }
 
 	        // see if the authenticator allows access to the route
             boolean passesAuth = authorizer.authorize(route,command,ctx);
@@ -195,12 +745,50 @@ public abstract class ServicesController implements Controller, ServletConfigAwa
                 return;
             }
 
-	        // extract the request body
-		    byte[] requestBody = readRequestBody(request);
+	        // a versioned command can tell whether the caller already has the current data, without executing.
+	        String version = null;
+	        if (dispatch.isVersioned() && marshaller instanceof IRenderingMarshaller &&
+	        	"GET".equals(request.getMethod())) {
+
+	        	version = ((IVersioned) command).getVersion(ctx);
+	        	if (version != null) {
+	        		String etag = ETags.fromVersion(version);
+	        		if (ETags.matches(request.getHeader("If-None-Match"), etag)) {
+	        			((IRenderingMarshaller) marshaller).writeNotModified(ctx, routeUri, route, etag);
+	        			return;
+	        		}
+	        	}
+	        }
+
+	        // answer from the response cache when the route allows it.
+	        ResponseCacheKey cacheKey = getCacheKey(ctx, request, routeUri, route);
+	        if (cacheKey != null) {
+	        	RenderedResponse cached = responseCache.get(cacheKey);
+	        	if (cached != null) {
+	        		((IRenderingMarshaller) marshaller).writeRendered(ctx, routeUri, route, cached);
+	        		return;
+	        	}
+	        }
+
+	        // an identical request in flight answers this one as well, otherwise this one leads and answers the others.
+	        ResponseCacheKey flightKey = getCoalesceKey(ctx, request, routeUri, route);
+	        if (flightKey != null) {
+	        	RequestCoalescer.Ticket joined = coalescer.join(flightKey);
+	        	if (joined.isLeader()) {
+	        		flight = joined;
+	        	} else {
+	        		// wait no longer than the caller does.
+	        		long wait = (deadline != null ? deadline.getRemainingMillis() : Long.MAX_VALUE);
+	        		RenderedResponse shared = joined.await(wait);
+	        		if (shared != null) {
+	        			((IRenderingMarshaller) marshaller).writeRendered(ctx, routeUri, route, shared);
+	        			return;
+	        		}
+	        	}
+	        }
 
 	        // Parse the request into a concrete object.
-	        ProcessedInput processedInput = 
-	        		marshaller.fromRequest(ctx, routeUri, requestBody, route.getInputClass());
+	        ProcessedInput processedInput = readInput(ctx, request, routeUri, route);
 
 	        // if the input can be processed
 		    if (processedInput.isCanContinue()) {
@@ -208,6 +796,10 @@ public abstract class ServicesController implements Controller, ServletConfigAwa
 			    // extract the input data object
 		    	Object input = processedInput.getInputData();
 
+			    if (isOpenInput(input)) {
+			    	openInput = (Closeable) input;
+			    }
+
 			    // if the input data is not null
 			    if (input != null ) {
 				    // get the input name from either the route or use the defaut
@@ -218,11 +810,21 @@ public abstract class ServicesController implements Controller, ServletConfigAwa
 		    	   ctx.put(inputName, input);
 			    }
 			    
+			    // the request may have run out of time waiting for a thread or its body.
+			    if (deadline != null) {
+			    	deadline.check();
+			    }
+
 			    // let the command execute the result
 		        CommandResult cr = command.execute(ctx);
 
+		        // tag the result with the version looked up before execution, unless the command supplied one.
+		        if (version != null && cr.getVersion() == null) {
+		        	cr.setVersion(version);
+		        }
+
 			    // if the command implements the IFilter interface.
-			    if (command instanceof IFilter) {
+			    if (dispatch.isFilter()) {
 				    try {
 					    // let the filter post-process the result.
 					    ((IFilter) command).postProcess(cr, null);
@@ -232,14 +834,43 @@ public abstract class ServicesController implements Controller, ServletConfigAwa
 				    }
 			    }
 
-			    // have the marshaller return the response
-		        getMarshaller().toResponse(ctx, routeUri, route, cr);
+			    if ((cacheKey != null || flight != null) && !StreamedData.isStreamed(cr.getData())) {
+			    	// render the response once, keep it for later requests, hand it to those waiting and write it.
+			    	IRenderingMarshaller renderer = (IRenderingMarshaller) marshaller;
+			    	RenderedResponse rendered = renderer.render(ctx, routeUri, route, cr);
+			    	if (cacheKey != null && cr.isSucceeded()) {
+			    		responseCache.put(cacheKey, rendered, AbstractRoute.of(route).getCacheTtl() * 1000L);
+			    	}
+			    	// a failure is not shared, the requests waiting execute the command themselves.
+			    	if (flight != null && cr.isSucceeded()) {
+			    		flight.complete(rendered);
+			    	}
+			    	renderer.writeRendered(ctx, routeUri, route, rendered);
+			    } else {
+			    	// have the marshaller return the response
+			    	getMarshaller().toResponse(ctx, routeUri, route, cr);
+			    }
 		    }
 			
+		} catch (HttpStatusException e) {
+			_logger.warn("Error processing route: " + e.getMessage());
+
+			marshaller.onException(getFullWebContext(request, response, null), routeUri, route, e);
+		} catch (DeadlineExceededException e) {
+			_logger.warn(String.format("Stopped processing uri=%s: %s", routeUri, e.getMessage()));
+
+			marshaller.onException(getFullWebContext(request, response, null), routeUri, route, e);
 		} catch (Exception e) {
 	        _logger.error("Error processing route: " + e.getMessage(), e);
 
 			marshaller.onException(getFullWebContext(request, response, null), routeUri, route, e);
+		} finally {
+			IOUtils.closeQuietly(openInput);
+
+			// requests still waiting on a flight that ended without a response execute the command themselves.
+			if (flight != null) {
+				flight.finish();
+			}
 		}
 	}
 
@@ -284,13 +915,473 @@ public abstract class ServicesController implements Controller, ServletConfigAwa
 		return uri.substring(ndx+uriPrefix.length());
 	}
 			
+	/**
+	 * readInput: Parses the request body into the route's input object. Marshallers implementing
+	 * IStreamingMarshaller parse straight from the request stream, others are given the body as a byte array.
+	 * Either way a body larger than the route's maximum size is rejected with a 413, before anything is read
+	 * when the request declares its length. The request stream of a streamed or lazy input is left open, it is read
+	 * while the command runs.
+	 * @param ctx
+	 * @param request
+	 * @param routeUri
+	 * @param route
+	 * @return ProcessedInput The processed input.
+	 * @throws Exception
+	 */
+	protected ProcessedInput readInput(IContext           ctx,
+			                           HttpServletRequest request,
+			                           String             routeUri,
+			                           IRoute             route) throws Exception {
+
+		long maxSize = getMaxBodySize(route);
+		AbstractRoute options = AbstractRoute.of(route);
+
+		// reject a declared oversized body up front.
+		if (maxSize >= 0 && request.getContentLength() > maxSize) {
+			throw BoundedInputStream.tooLarge(maxSize);
+		}
+
+		if (!(marshaller instanceof IStreamingMarshaller)) {
+			if (options.isStreamInput()) {
+				throw new IllegalStateException(String.format(
+						"Route uri=%s streams its input, which requires an IStreamingMarshaller", route.getUri()));
+			}
+
+			// extract the request body
+			byte[] requestBody = readRequestBody(request, maxSize);
+			return marshaller.fromRequest(ctx, routeUri, requestBody, route.getInputClass());
+		}
+
+		InputStream inputStream = null;
+		ProcessedInput processedInput = null;
+		try {
+			inputStream = request.getInputStream();
+			if (inputStream != null && maxSize >= 0) {
+				inputStream = new BoundedInputStream(inputStream, maxSize);
+			}
+			IStreamingMarshaller streaming = (IStreamingMarshaller) marshaller;
+			if (options.isLazyInput() && route.getInputClass() != null && inputStream != null) {
+				// the body is only parsed when the command looks its input up.
+				processedInput = new ProcessedInput(true, new LazyInput(streaming, ctx, routeUri, options, inputStream,
+						                                                request.getCharacterEncoding()));
+			} else {
+				processedInput = streaming.fromRequest(ctx, routeUri, route, inputStream,
+						                               request.getCharacterEncoding());
+			}
+			return processedInput;
+		} finally {
+			if (processedInput == null || !isOpenInput(processedInput.getInputData())) {
+				IOUtils.closeQuietly(inputStream);
+			}
+		}
+	}
+
+	/**
+	 * isOpenInput: Returns whether an input still reads from the request stream.
+	 * @param input
+	 * @return boolean <code>true</code> for a StreamedInput or LazyInput.
+	 */
+	private static boolean isOpenInput(Object input) {
+		return input instanceof StreamedInput || input instanceof LazyInput;
+	}
+
+	/**
+	 * getCacheKey: Returns the response cache key for the request when its response may be served from (and kept
+	 * in) the response cache: a GET of a cached route declaring a cache time to live. Authenticated routes are
+	 * only cached when partitioned by caller, so that no caller gets another's data.
+	 * @param ctx
+	 * @param request
+	 * @param routeUri
+	 * @param route
+	 * @return ResponseCacheKey The key or <code>null</code> if the response is not cached.
+	 */
+	protected ResponseCacheKey getCacheKey(IContext           ctx,
+			                               HttpServletRequest request,
+			                               String             routeUri,
+			                               IRoute             route) {
+
+		if (responseCache == null || !(marshaller instanceof IRenderingMarshaller)) return null;
+		AbstractRoute options = AbstractRoute.of(route);
+		if (!route.isCached() || options.getCacheTtl() <= 0) return null;
+		if (!"GET".equals(request.getMethod())) return null;
+
+		CachePartition partition = options.getCachePartition();
+		boolean partitioned = (partition != null && partition != CachePartition.NONE);
+		if (route.isAuthenticated() && !partitioned) return null;
+
+		return responseCache.createKey(ctx, route, routeUri, ((IRenderingMarshaller) marshaller).getVariant(ctx));
+	}
+
+	/**
+	 * getCoalesceKey: Returns the key identical requests share a command execution under: the route, requested
+	 * path, full query string, caller partition and representation. Only GETs of coalesced routes are coalesced,
+	 * and authenticated routes only when partitioned by caller, so that no caller gets another's data.
+	 * @param ctx
+	 * @param request
+	 * @param routeUri
+	 * @param route
+	 * @return ResponseCacheKey The key or <code>null</code> if the request is not coalesced.
+	 */
+	protected ResponseCacheKey getCoalesceKey(IContext           ctx,
+			                                  HttpServletRequest request,
+			                                  String             routeUri,
+			                                  IRoute             route) {
+
+		AbstractRoute options = AbstractRoute.of(route);
+		if (!options.isCoalesce() || !(marshaller instanceof IRenderingMarshaller)) return null;
+		if (!"GET".equals(request.getMethod())) return null;
+
+		CachePartition partition = options.getCachePartition();
+		boolean partitioned = (partition != null && partition != CachePartition.NONE);
+		if (route.isAuthenticated() && !partitioned) return null;
+
+		ICachePartitioner partitioner = (cachePartitioner != null ? cachePartitioner : new DefaultCachePartitioner());
+		String partitionName = (partitioned ? partitioner.getPartition(partition, ctx) : null);
+
+		return new ResponseCacheKey(ResponseCacheKey.routeKey(route.getHttpMethod(), route.getUri()), routeUri,
+				                    request.getQueryString(), partitionName,
+				                    ((IRenderingMarshaller) marshaller).getVariant(ctx));
+	}
+
+	/**
+	 * getMaxBodySize: Returns the maximum request body size for a route, falling back to the controller default.
+	 * @param route
+	 * @return long The maximum size in bytes, negative for no limit.
+	 */
+	protected long getMaxBodySize(IRoute route) {
+		long routeMaxBodySize = AbstractRoute.of(route).getMaxBodySize();
+		return routeMaxBodySize >= 0 ? routeMaxBodySize : maxBodySize;
+	}
+
+	/**
+	 * getMaxBodySize: Returns the default maximum request body size.
+	 * @return long The maximum size in bytes, negative for no limit.
+	 */
+	public long getMaxBodySize() {
+		return maxBodySize;
+	}
+
+	/**
+	 * setMaxBodySize: Sets the default maximum request body size for routes that do not declare one.
+	 * @param maxBodySize The maximum size in bytes, negative for no limit.
+	 */
+	public void setMaxBodySize(long maxBodySize) {
+		this.maxBodySize = maxBodySize;
+	}
+
+	/**
+	 * isAsync: Returns whether a route is processed asynchronously, either because it is declared async or because
+	 * the controller is.
+	 * @param route The route.
+	 * @return boolean <code>true</code> if the command runs on an executor.
+	 */
+	protected boolean isAsync(IRoute route) {
+		if (async || virtualThreads) return true;
+
+		AbstractRoute options = AbstractRoute.of(route);
+		return options.isAsync() || options.getBulkhead() != null;
+	}
+
+	/**
+	 * getAsyncTimeout: Returns the time an async request for a route may take: the route's async timeout, the time
+	 * left until the request's deadline, whichever is shorter, or else the controller's default.
+	 * @param route The route.
+	 * @param deadline The deadline of the request or <code>null</code>.
+	 * @return long The time in milliseconds.
+	 */
+	protected long getAsyncTimeout(IRoute route, Deadline deadline) {
+		long routeTimeout = AbstractRoute.of(route).getAsyncTimeout();
+		if (deadline == null) {
+			return routeTimeout > 0 ? routeTimeout : asyncTimeout;
+		}
+
+		// zero would mean no timeout at all.
+		long remaining = Math.max(1, deadline.getRemainingMillis());
+		return routeTimeout > 0 ? Math.min(routeTimeout, remaining) : remaining;
+	}
+
+	/**
+	 * createDeadline: Creates the deadline of a request from the route's timeout or the controller's default,
+	 * shortened by the client's X-Request-Timeout header. A client cannot extend a route's timeout.
+	 * @param request
+	 * @param route
+	 * @return Deadline The deadline or <code>null</code> if the request has none.
+	 */
+	protected Deadline createDeadline(HttpServletRequest request, IRoute route) {
+		long routeTimeout = AbstractRoute.of(route).getTimeout();
+		long timeout = routeTimeout > 0 ? routeTimeout : requestTimeout;
+
+		String header = request.getHeader(REQUEST_TIMEOUT_HEADER);
+		if (header != null) {
+			try {
+				long requested = Long.parseLong(header.trim());
+				if (requested > 0 && (timeout <= 0 || requested < timeout)) {
+					timeout = requested;
+				}
+			} catch (NumberFormatException e) {
+				if (_logger.isDebugEnabled()) {
+					_logger.debug(String.format("Ignoring invalid %s header: %s", REQUEST_TIMEOUT_HEADER, header));
+				}
+			}
+		}
+
+		return timeout > 0 ? Deadline.after(timeout) : null;
+	}
+
+	/**
+	 * getExecutor: Returns the executor running the commands of an async route: its bulkhead, the bean named by
+	 * the route or the default executor.
+	 * @param route The route.
+	 * @return Executor The executor.
+	 */
+	protected Executor getExecutor(IRoute route) {
+		AbstractRoute options = AbstractRoute.of(route);
+		if (options.getBulkhead() != null) return getBulkhead(options.getBulkhead());
+
+		String name = options.getExecutor();
+		if (name == null) return getExecutor();
+
+		Executor named = executors.get(name);
+		if (named == null) {
+			named = applicationContext.getBean(name, Executor.class);
+			executors.put(name, named);
+		}
+		return named;
+	}
+
+	/**
+	 * getBulkhead: Returns a bulkhead, the CommandExecutor bean of that name or one the controller creates with
+	 * default settings.
+	 * @param name The bulkhead name.
+	 * @return CommandExecutor The bulkhead's executor.
+	 */
+	public CommandExecutor getBulkhead(String name) {
+		CommandExecutor bulkhead = bulkheads.get(name);
+		if (bulkhead == null) {
+			synchronized (bulkheads) {
+				bulkhead = bulkheads.get(name);
+				if (bulkhead == null) {
+					if (applicationContext != null && applicationContext.containsBean(name)) {
+						bulkhead = applicationContext.getBean(name, CommandExecutor.class);
+					} else {
+						bulkhead = createBulkhead(name);
+						ownedBulkheads.add(bulkhead);
+					}
+					bulkheads.put(name, bulkhead);
+				}
+			}
+		}
+		return bulkhead;
+	}
+
+	/**
+	 * createBulkhead: Creates a bulkhead not configured in the Spring context.
+	 * @param name The bulkhead name.
+	 * @return CommandExecutor The bulkhead's executor.
+	 */
+	protected CommandExecutor createBulkhead(String name) {
+		CommandExecutor bulkhead = new CommandExecutor();
+		bulkhead.setName(name);
+		return bulkhead;
+	}
+
+	/**
+	 * getBulkheads: Returns the bulkheads in use, for their queue wait and utilization metrics.
+	 * @return Map The bulkheads by name.
+	 */
+	public Map<String,CommandExecutor> getBulkheads() {
+		return Collections.unmodifiableMap(bulkheads);
+	}
+
+	/**
+	 * getExecutor: Returns the default executor for async routes, creating one with default settings if none was
+	 * configured.
+	 * @return CommandExecutor The executor.
+	 */
+	public synchronized CommandExecutor getExecutor() {
+		if (executor == null) {
+			executor = new CommandExecutor();
+			executor.setVirtualThreads(virtualThreads);
+			ownsExecutor = true;
+		}
+		return executor;
+	}
+
+	/**
+	 * setExecutor: Sets the default executor for async routes.
+	 * @param executor
+	 */
+	public synchronized void setExecutor(CommandExecutor executor) {
+		this.executor = executor;
+		this.ownsExecutor = false;
+	}
+
+	/**
+	 * isAsync: Returns whether all routes are processed asynchronously.
+	 * @return boolean The global async flag.
+	 */
+	public boolean isAsync() {
+		return async;
+	}
+
+	/**
+	 * setAsync: Sets whether all routes are processed asynchronously.
+	 * @param async
+	 */
+	public void setAsync(boolean async) {
+		this.async = async;
+	}
+
+	/**
+	 * getAsyncTimeout: Returns the default time an async request may take.
+	 * @return long The time in milliseconds.
+	 */
+	public long getAsyncTimeout() {
+		return asyncTimeout;
+	}
+
+	/**
+	 * setAsyncTimeout: Sets the default time an async request may take before it is answered with a 503.
+	 * @param asyncTimeout The time in milliseconds.
+	 */
+	public void setAsyncTimeout(long asyncTimeout) {
+		this.asyncTimeout = asyncTimeout;
+	}
+
+	/**
+	 * isNonBlockingIo: Returns whether async requests read and write their bodies without blocking.
+	 * @return boolean The non-blocking I/O flag.
+	 */
+	public boolean isNonBlockingIo() {
+		return nonBlockingIo;
+	}
+
+	/**
+	 * setNonBlockingIo: Sets whether async requests read and write their bodies without blocking. Only effective on
+	 * Servlet 3.1 containers, others keep blocking I/O. Request bodies are held in memory while the command runs,
+	 * except for routes streaming or lazily parsing their input, which keep reading it with blocking reads.
+	 * @param nonBlockingIo
+	 */
+	public void setNonBlockingIo(boolean nonBlockingIo) {
+		this.nonBlockingIo = nonBlockingIo;
+	}
+
+	/**
+	 * getMaxBufferedResponse: Returns the most bytes of a response body held in memory with non-blocking I/O.
+	 * @return int The number of bytes.
+	 */
+	public int getMaxBufferedResponse() {
+		return maxBufferedResponse;
+	}
+
+	/**
+	 * setMaxBufferedResponse: Sets the most bytes of a response body held in memory with non-blocking I/O. Larger
+	 * bodies, and streamed results, are written with blocking writes on the command's thread.
+	 * @param maxBufferedResponse The number of bytes.
+	 */
+	public void setMaxBufferedResponse(int maxBufferedResponse) {
+		this.maxBufferedResponse = maxBufferedResponse;
+	}
+
+	/**
+	 * getCoalescer: Returns the coalescer of identical requests, for its metrics.
+	 * @return RequestCoalescer The coalescer.
+	 */
+	public RequestCoalescer getCoalescer() {
+		return coalescer;
+	}
+
+	/**
+	 * setCoalescer: Sets the coalescer of identical requests, e.g. one with a different maximum wait.
+	 * @param coalescer
+	 */
+	public void setCoalescer(RequestCoalescer coalescer) {
+		this.coalescer = coalescer;
+	}
+
+	/**
+	 * getRequestTimeout: Returns the default time routes have to answer a request.
+	 * @return long The time in milliseconds, zero for no deadline.
+	 */
+	public long getRequestTimeout() {
+		return requestTimeout;
+	}
+
+	/**
+	 * setRequestTimeout: Sets the default time routes not declaring a timeout have to answer a request.
+	 * @param requestTimeout The time in milliseconds, zero for no deadline.
+	 */
+	public void setRequestTimeout(long requestTimeout) {
+		this.requestTimeout = requestTimeout;
+	}
+
+	/**
+	 * isVirtualThreads: Returns whether commands run on virtual threads.
+	 * @return boolean The virtual threads flag.
+	 */
+	public boolean isVirtualThreads() {
+		return virtualThreads;
+	}
+
+	/**
+	 * setVirtualThreads: Sets whether all routes run asynchronously with their commands on virtual threads of the
+	 * default executor, releasing the container thread while a command blocks. On JVMs before Java 21 the default
+	 * executor falls back to its thread pool. Routes naming an executor use that executor's setting.
+	 * @param virtualThreads
+	 */
+	public void setVirtualThreads(boolean virtualThreads) {
+		this.virtualThreads = virtualThreads;
+	}
+
+	/**
+	 * destroy: Shuts down the default executor and the bulkheads if the controller created them.
+	 */
+	@Override
+	public synchronized void destroy() {
+		if (ownsExecutor && executor != null) {
+			executor.destroy();
+		}
+		synchronized (bulkheads) {
+			for (CommandExecutor bulkhead : ownedBulkheads) {
+				bulkhead.destroy();
+			}
+		}
+	}
+
+	/**
+	 * isStateless: Returns whether a route runs without creating an HTTP session, either because it is declared
+	 * stateless or because the controller is.
+	 * @param route The route or <code>null</code>.
+	 * @return boolean <code>true</code> if no session may be created.
+	 */
+	protected boolean isStateless(IRoute route) {
+		return stateless || (route != null && AbstractRoute.of(route).isStateless());
+	}
+
+	/**
+	 * isStateless: Returns whether all routes run without creating an HTTP session.
+	 * @return boolean The global stateless flag.
+	 */
+	public boolean isStateless() {
+		return stateless;
+	}
+
+	/**
+	 * setStateless: Sets whether all routes run without creating an HTTP session.
+	 * @param stateless
+	 */
+	public void setStateless(boolean stateless) {
+		this.stateless = stateless;
+	}
+
 	/**
 	 * readRequestBody: read the contents of a POST/PUT or return null if no body contents exist
 	 * @param request
+	 * @param maxSize The maximum number of bytes to read, negative for no limit.
 	 * @return byte[] The byte array of request data or <code>null</code> if none available.
 	 * @throws Exception
 	 */
-	private byte[] readRequestBody(HttpServletRequest request) throws Exception {
+	private byte[] readRequestBody(HttpServletRequest request, long maxSize) throws Exception {
 
         InputStream inputStream = null;
 		byte[] data = null;
@@ -298,6 +1389,7 @@ public abstract class ServicesController implements Controller, ServletConfigAwa
 		try {
 			inputStream = request.getInputStream();
 			if (inputStream != null) {
+			   if (maxSize >= 0) inputStream = new BoundedInputStream(inputStream, maxSize);
 			   data = IOUtils.toByteArray(inputStream);
 			   // coerce an empty body into null for
 			   // subsequent marshalling logic
@@ -346,10 +1438,31 @@ public abstract class ServicesController implements Controller, ServletConfigAwa
 	protected IContext getFullWebContext(HttpServletRequest  request,
 	                                              HttpServletResponse   response,
 	                                              Map<String,String>    pathParameters) {
+		return getFullWebContext(request, response, pathParameters, null);
+	}
+
+	/**
+	 * getFullWebContext: Returns the full web context for a route including any modification by registered
+	 * decorators.
+	 * @param request
+	 * @param response
+	 * @param pathParameters
+	 * @param route The route being processed or <code>null</code>.
+	 * @return IContext The full context instance.
+	 */
+	protected IContext getFullWebContext(HttpServletRequest  request,
+	                                     HttpServletResponse response,
+	                                     Map<String,String>  pathParameters,
+	                                     IRoute              route) {
 
 		// start by getting the initial context.
 		IContext context = getWebContext(request, response, pathParameters);
 
+		// set the session mode before any decorator gets to look at the context.
+		if (context instanceof WebCommandContext) {
+			((WebCommandContext) context).setStateless(isStateless(route));
+		}
+
 		// allow for context decoration
 		if (contextDecoratorMgr != null) {
 			context = contextDecoratorMgr.decorateContext(context);
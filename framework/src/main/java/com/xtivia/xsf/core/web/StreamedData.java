@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import java.lang.reflect.Method;
+import java.util.Iterator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.xtivia.xsf.core.commands.IDataStream;
+import com.xtivia.xsf.core.commands.IItemWriter;
+
+/**
+ * class StreamedData: Utility functions for result data that is written item by item: an IDataStream, an Iterator
+ * or a java.util.stream.Stream. Streams are handled reflectively, the framework is built for Java 7.
+ */
+public final class StreamedData {
+
+	private static final Logger _logger = LoggerFactory.getLogger(StreamedData.class);
+
+	/**
+	 * STREAM_CLASS: java.util.stream.BaseStream, <code>null</code> before Java 8.
+	 */
+	private static final Class<?> STREAM_CLASS;
+	/**
+	 * STREAM_ITERATOR: BaseStream.iterator().
+	 */
+	private static final Method   STREAM_ITERATOR;
+
+	static {
+		Class<?> streamClass = null;
+		Method iterator = null;
+		try {
+			streamClass = Class.forName("java.util.stream.BaseStream");
+			iterator = streamClass.getMethod("iterator");
+		} catch (Exception e) {
+			streamClass = null;
+		}
+		STREAM_CLASS = streamClass;
+		STREAM_ITERATOR = iterator;
+	}
+
+	private StreamedData() {
+	}
+
+	/**
+	 * isStreamed: Returns whether result data is to be written item by item.
+	 * @param data The data of a command result.
+	 * @return boolean <code>true</code> for an IDataStream, Iterator or Stream.
+	 */
+	public static boolean isStreamed(Object data) {
+		return data instanceof IDataStream || data instanceof Iterator ||
+			   (STREAM_CLASS != null && STREAM_CLASS.isInstance(data));
+	}
+
+	/**
+	 * writeItems: Hands the items of streamed data to a writer, closing the data afterwards if it is closeable
+	 * (as streams over database cursors or files are).
+	 * @param data The streamed data.
+	 * @param writer The writer for the items.
+	 * @throws Exception Any exception thrown producing or writing the items.
+	 */
+	public static void writeItems(Object data, IItemWriter writer) throws Exception {
+		try {
+			if (data instanceof IDataStream) {
+				((IDataStream) data).writeItems(writer);
+				return;
+			}
+
+			Iterator<?> iterator = (data instanceof Iterator ? (Iterator<?>) data :
+				                    (Iterator<?>) STREAM_ITERATOR.invoke(data));
+			while (iterator.hasNext()) {
+				writer.write(iterator.next());
+			}
+		} finally {
+			close(data);
+		}
+	}
+
+	/**
+	 * close: Closes streamed data that is closeable, e.g. when it is not going to be written after all.
+	 * @param data The streamed data.
+	 */
+	public static void close(Object data) {
+		if (!(data instanceof AutoCloseable)) return;
+		try {
+			((AutoCloseable) data).close();
+		} catch (Exception e) {
+			_logger.warn("Error closing streamed result data", e);
+		}
+	}
+}
@@ -15,19 +15,30 @@
  */
 package com.xtivia.xsf.core.web;
 
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
+import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
 
 import com.xtivia.xsf.core.commands.CommandContext;
 import com.xtivia.xsf.core.commands.IContext;
 
 /**
  * class WebCommandContext: Extension of the simple CommandContext implementation to add support for the web objects.
+ *
+ * The session and servlet context are resolved on demand rather than up front, so that a request which never
+ * touches its session does not get one created. In stateless mode no session is ever created; an existing one
+ * is still visible.
+ *
+ * Values found in the request, session and servlet context scopes are remembered for the request; values a command
+ * needs to change during the request should be put into the context. Names not found are looked up again on each
+ * lookup, so that a value a filter or decorator sets later in the request is seen.
  */
 @SuppressWarnings({ "serial", "rawtypes" })
 public class WebCommandContext extends CommandContext implements IContext {
@@ -40,6 +51,14 @@ public class WebCommandContext extends CommandContext implements IContext {
 	 * updates: Set of updated keys used to track required changes to the request attributes.
 	 */
 	private HashSet updates = new HashSet();
+	/**
+	 * stateless: Flag indicating whether the context must not create an HTTP session.
+	 */
+	private boolean stateless = false;
+	/**
+	 * resolved: Values found in the request, session and servlet context scopes, by name.
+	 */
+	private HashMap<String,Object> resolved;
 
 	/**
 	 * WebCommandContext: Constructor.
@@ -53,13 +72,12 @@ public class WebCommandContext extends CommandContext implements IContext {
                              Map<String,String>  pathParameters) {
 		this.request = request;
 
-		super.put(ICommandKeys.HTTP_REQUEST,request);
-        super.put(ICommandKeys.HTTP_RESPONSE,response);
-        super.put(ICommandKeys.HTTP_SESSION,request.getSession());
-		super.put(ICommandKeys.SERVLET_CONTEXT,request.getSession().getServletContext());
+		// the typed keys are used so that the slots get filled.
+		super.put(ICommandKeys.HTTP_REQUEST_KEY.getName(),request);
+        super.put(ICommandKeys.HTTP_RESPONSE_KEY.getName(),response);
 
 		if (pathParameters != null) {
-			super.put(ICommandKeys.PATH_PARAMETERS, pathParameters);
+			super.put(ICommandKeys.PATH_PARAMETERS_KEY.getName(), pathParameters);
 		}
 	}
 
@@ -71,6 +89,38 @@ public class WebCommandContext extends CommandContext implements IContext {
 		return this.request;
 	}
 
+	/**
+	 * isStateless: Returns whether the context runs without creating an HTTP session.
+	 * @return boolean <code>true</code> if no session will be created.
+	 */
+	public boolean isStateless() {
+		return stateless;
+	}
+
+	/**
+	 * setStateless: Sets whether the context runs without creating an HTTP session.
+	 * @param stateless
+	 */
+	public void setStateless(boolean stateless) {
+		this.stateless = stateless;
+	}
+
+	/**
+	 * getSession: Returns the session for the request, creating it unless the context is stateless.
+	 * @return HttpSession The session or <code>null</code> if there is none and none may be created.
+	 */
+	public HttpSession getSession() {
+		return request.getSession(!stateless);
+	}
+
+	/**
+	 * getServletContext: Returns the servlet context for the request.
+	 * @return ServletContext The servlet context.
+	 */
+	public ServletContext getServletContext() {
+		return request.getServletContext();
+	}
+
 	/**
 	 * get: Returns an attribute from the context or the path parameters or request attributes or request parameters or the session or servlet context.
 	 * @param key
@@ -82,10 +132,20 @@ public class WebCommandContext extends CommandContext implements IContext {
 
 		// try the super class' get method and return it if found.
 		Object o = super.get(key);
+		if (o instanceof LazyInput) {
+			// a lazy input is parsed on its first lookup and replaced by the result.
+			o = ((LazyInput) o).get();
+			if (o != null) super.put(key, o);
+			return o;
+		}
 		if (o != null) return o;
 
+		// the session and servlet context are only looked up when asked for.
+		if (ICommandKeys.HTTP_SESSION.equals(key)) return getSession();
+		if (ICommandKeys.SERVLET_CONTEXT.equals(key)) return getServletContext();
+
 		// not in the super context, try the path parameters.
-		Map pathParameters = (Map) super.get(ICommandKeys.PATH_PARAMETERS);
+		Map pathParameters = peek(ICommandKeys.PATH_PARAMETERS_KEY);
         if (pathParameters != null) {
 	        // check path parameters and return if found.
             o = pathParameters.get(key);
@@ -94,12 +154,34 @@ public class WebCommandContext extends CommandContext implements IContext {
             }
         }
 
-		// not in path params, check the request attributes and return if found.
-		o = request.getAttribute(key.toString());
+		// not in path params, use the value found earlier for the name if there is one.
+		String name = key.toString();
+		if (resolved != null) {
+			o = resolved.get(name);
+			if (o != null) return o;
+		}
+
+		// a miss is not remembered, the value may still be set later in the request.
+		o = resolve(name);
+		if (o != null) {
+			if (resolved == null) resolved = new HashMap<String,Object>();
+			resolved.put(name, o);
+		}
+		return o;
+	}
+
+	/**
+	 * resolve: Looks a name up in the request attributes, request parameters, session and servlet context.
+	 * @param name
+	 * @return Object The found object or <code>null</code>.
+	 */
+	protected Object resolve(String name) {
+		// check the request attributes and return if found.
+		Object o = request.getAttribute(name);
 		if (o != null) return o;
 
 		// not in request attribs, check request parameters and return if found.
-		o = request.getParameterValues(key.toString());
+		o = request.getParameterValues(name);
 		if (o != null) {
 			// we only want to return a single string if it is not really an array.
 			String[] arr = (String[]) o;
@@ -107,12 +189,16 @@ public class WebCommandContext extends CommandContext implements IContext {
 			else return arr[0];
 		}
 
-		// not in the request parameters, check the session and return if found.
-		o = request.getSession().getAttribute(key.toString());
-		if (o != null) return o;
+		// not in the request parameters, check the session (if there is one) and return if found.
+		HttpSession session = request.getSession(false);
+		if (session != null) {
+			o = session.getAttribute(name);
+			if (o != null) return o;
+		}
 
 		// Not in the session, last chance is if it is in the servlet context attributes.
-		o = request.getSession().getServletContext().getAttribute(key.toString());		
+		ServletContext servletContext = getServletContext();
+		o = (servletContext != null ? servletContext.getAttribute(name) : null);
 
 		// will return either the found object or <code>null</code> if it was not in the servlet context attribs.
 		return o;
@@ -154,8 +240,8 @@ public class WebCommandContext extends CommandContext implements IContext {
 			String key = (String) iter.next();
 			Object value = super.get(key);
 
-			// null objects should not be handled.
-			if (value == null) continue;
+			// null objects should not be handled, nor inputs never parsed.
+			if (value == null || value instanceof LazyInput) continue;
 
 			// save as a request attribute.
 			request.setAttribute(key,value);
@@ -0,0 +1,259 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.deser.DefaultDeserializationContext;
+import com.fasterxml.jackson.databind.ser.DefaultSerializerProvider;
+import com.xtivia.xsf.core.commands.CommandResult;
+
+/**
+ * class WireFormat: A format request and response bodies are exchanged in, along with the Jackson mapper for it
+ * and the readers and writers built from that mapper. Readers and writers are immutable, so they are built once
+ * per type and shared by all requests.
+ */
+public final class WireFormat {
+
+	private static final Logger _logger = LoggerFactory.getLogger(WireFormat.class);
+
+	/**
+	 * JSON_TYPE: The media type of JSON.
+	 */
+	public static final String JSON_TYPE  = "application/json";
+	/**
+	 * SMILE_TYPE: The media type of Smile, Jackson's binary JSON.
+	 */
+	public static final String SMILE_TYPE = "application/x-jackson-smile";
+	/**
+	 * CBOR_TYPE: The media type of CBOR (RFC 7049).
+	 */
+	public static final String CBOR_TYPE  = "application/cbor";
+	/**
+	 * NDJSON_TYPE: The media type of newline delimited JSON, one value per line.
+	 */
+	public static final String NDJSON_TYPE = "application/x-ndjson";
+
+	private static final String SMILE_FACTORY = "com.fasterxml.jackson.dataformat.smile.SmileFactory";
+	private static final String CBOR_FACTORY  = "com.fasterxml.jackson.dataformat.cbor.CBORFactory";
+
+	/**
+	 * mediaType: The media type of the format.
+	 */
+	private final String       mediaType;
+	/**
+	 * text: Flag indicating whether the format is textual (UTF-8), i.e. can be logged.
+	 */
+	private final boolean      text;
+	/**
+	 * mapper: The mapper for the format.
+	 */
+	private final ObjectMapper mapper;
+	/**
+	 * resultWriter: Writer for command results.
+	 */
+	private final ObjectWriter resultWriter;
+	/**
+	 * readers: Readers for each route input class.
+	 */
+	private final ConcurrentMap<Class<?>,ObjectReader> readers = new ConcurrentHashMap<Class<?>,ObjectReader>();
+	/**
+	 * writers: Writers for each type of data returned in raw mode.
+	 */
+	private final ConcurrentMap<Class<?>,ObjectWriter> writers = new ConcurrentHashMap<Class<?>,ObjectWriter>();
+
+	/**
+	 * WireFormat: Constructor.
+	 * @param mediaType The media type of the format.
+	 * @param text Whether the format is textual.
+	 * @param mapper The mapper for the format.
+	 */
+	public WireFormat(String mediaType, boolean text, ObjectMapper mapper) {
+		this.mediaType = mediaType;
+		this.text = text;
+		this.mapper = mapper;
+		this.resultWriter = mapper.writerFor(CommandResult.class);
+	}
+
+	/**
+	 * json: Creates the JSON format.
+	 * @param mapper The mapper, whose configuration binary formats derived from it share.
+	 * @return WireFormat The format.
+	 */
+	public static WireFormat json(ObjectMapper mapper) {
+		return new WireFormat(JSON_TYPE, true, mapper);
+	}
+
+	/**
+	 * smile: Creates the Smile format bound the same way as a JSON format.
+	 * @param json The JSON format.
+	 * @return WireFormat The format or <code>null</code> if jackson-dataformat-smile is not available.
+	 */
+	public static WireFormat smile(WireFormat json) {
+		return derive(json, SMILE_TYPE, SMILE_FACTORY);
+	}
+
+	/**
+	 * cbor: Creates the CBOR format bound the same way as a JSON format, except for BigDecimals: Jackson's CBOR module
+	 * writes them under the wrong tag and cannot read them back, so the format handles them itself (see CborDecimals).
+	 * @param json The JSON format.
+	 * @return WireFormat The format or <code>null</code> if jackson-dataformat-cbor is not available.
+	 */
+	public static WireFormat cbor(WireFormat json) {
+		ObjectMapper mapper = deriveMapper(json, CBOR_TYPE, CBOR_FACTORY, false);
+		if (mapper == null) return null;
+
+		mapper.registerModule(CborDecimals.module());
+		return new WireFormat(CBOR_TYPE, false, mapper);
+	}
+
+	/**
+	 * derive: Creates a format on top of a Jackson data format factory, sharing the databinding of a JSON format.
+	 * The data format modules are optional, so the factory is loaded by name.
+	 * @param json The JSON format.
+	 * @param mediaType The media type of the format.
+	 * @param factoryClass The name of the JsonFactory subclass for the format.
+	 * @return WireFormat The format or <code>null</code> if the factory is not on the classpath.
+	 */
+	static WireFormat derive(WireFormat json, String mediaType, String factoryClass) {
+		ObjectMapper mapper = deriveMapper(json, mediaType, factoryClass, true);
+		return (mapper != null ? new WireFormat(mediaType, false, mapper) : null);
+	}
+
+	/**
+	 * deriveMapper: Creates the mapper for a format on top of a Jackson data format factory, configured like the
+	 * mapper of a JSON format.
+	 * @param json The JSON format.
+	 * @param mediaType The media type of the format.
+	 * @param factoryClass The name of the JsonFactory subclass for the format.
+	 * @param shareCaches Whether the mapper shares the serializer and deserializer caches of the JSON format, which
+	 *                    a format registering (de)serializers of its own must not.
+	 * @return ObjectMapper The mapper or <code>null</code> if the factory is not on the classpath.
+	 */
+	static ObjectMapper deriveMapper(WireFormat json, String mediaType, String factoryClass, boolean shareCaches) {
+		JsonFactory factory;
+		try {
+			Class<? extends JsonFactory> clazz = Class.forName(factoryClass, true, WireFormat.class.getClassLoader())
+					                                  .asSubclass(JsonFactory.class);
+			factory = clazz.getDeclaredConstructor().newInstance();
+		} catch (ClassNotFoundException e) {
+			if (_logger.isDebugEnabled()) {
+				_logger.debug(String.format("%s is not on the classpath, %s is not supported", factoryClass, mediaType));
+			}
+			return null;
+		} catch (InvocationTargetException e) {
+			_logger.error(String.format("Could not create %s, %s is not supported", factoryClass, mediaType),
+					      e.getCause());
+			return null;
+		} catch (ReflectiveOperationException e) {
+			_logger.error(String.format("Could not create %s, %s is not supported", factoryClass, mediaType), e);
+			return null;
+		} catch (ClassCastException e) {
+			_logger.error(String.format("%s is not a JsonFactory, %s is not supported", factoryClass, mediaType), e);
+			return null;
+		} catch (LinkageError e) {
+			// e.g. a data format module built for a different version of jackson-core.
+			_logger.error(String.format("Could not load %s, %s is not supported", factoryClass, mediaType), e);
+			return null;
+		}
+
+		// share the serializer and deserializer blueprints (and, unless told otherwise, their caches) as well as the
+		// configuration, so that dates, features, mix-ins and registered modules apply the same in every format.
+		ObjectMapper source = json.getMapper();
+		DefaultSerializerProvider serializers = (DefaultSerializerProvider) source.getSerializerProvider();
+		DefaultDeserializationContext deserializers = (DefaultDeserializationContext) source.getDeserializationContext();
+		if (!shareCaches) {
+			serializers = new DefaultSerializerProvider.Impl();
+			deserializers = new DefaultDeserializationContext.Impl(deserializers.getFactory());
+		}
+		ObjectMapper mapper = new ObjectMapper(factory, serializers, deserializers);
+		mapper.setSerializerFactory(source.getSerializerFactory());
+		mapper.setConfig(source.getSerializationConfig());
+		mapper.setConfig(source.getDeserializationConfig());
+		return mapper;
+	}
+
+	/**
+	 * getReader: Returns the reader for an input class, building it on first use.
+	 * @param clazz
+	 * @return ObjectReader The reader.
+	 */
+	public ObjectReader getReader(Class<?> clazz) {
+		ObjectReader reader = readers.get(clazz);
+		if (reader == null) {
+			reader = mapper.readerFor(clazz);
+			ObjectReader existing = readers.putIfAbsent(clazz, reader);
+			if (existing != null) reader = existing;
+		}
+		return reader;
+	}
+
+	/**
+	 * getWriter: Returns the writer for an output object, building it on first use for its type.
+	 * @param data
+	 * @return ObjectWriter The writer.
+	 */
+	public ObjectWriter getWriter(Object data) {
+		if (data == null || data instanceof CommandResult) return resultWriter;
+		Class<?> clazz = data.getClass();
+		ObjectWriter writer = writers.get(clazz);
+		if (writer == null) {
+			writer = mapper.writerFor(clazz);
+			ObjectWriter existing = writers.putIfAbsent(clazz, writer);
+			if (existing != null) writer = existing;
+		}
+		return writer;
+	}
+
+	/**
+	 * matches: Returns whether a media type (as found in a Content-Type or Accept header, parameters and all)
+	 * names this format.
+	 * @param type The media type.
+	 * @return boolean <code>true</code> if the type is this format's.
+	 */
+	public boolean matches(String type) {
+		if (type == null) return false;
+		int end = type.indexOf(';');
+		String bare = (end >= 0 ? type.substring(0, end) : type).trim();
+		return bare.equalsIgnoreCase(mediaType);
+	}
+
+	public String getMediaType() {
+		return mediaType;
+	}
+
+	public boolean isText() {
+		return text;
+	}
+
+	public ObjectMapper getMapper() {
+		return mapper;
+	}
+
+	@Override
+	public String toString() {
+		return mediaType;
+	}
+}
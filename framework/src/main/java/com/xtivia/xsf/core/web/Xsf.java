@@ -40,27 +40,28 @@ public class Xsf {
 	 */
 	public static CommandResult dispatch(ICommand targetObject, IContext ctx) {
 		
-		CommandResult cr = new CommandResult(false,"");
-		
-		RoutingInfo routingInfo = ctx.find(ICommandKeys.ROUTING_INFO);
+		RoutingInfo routingInfo = ctx.find(ICommandKeys.ROUTING_INFO_KEY);
 		if (routingInfo == null) {
-		  cr.setMessage("Method dispatch fails for unknown route");	
-		  return cr;
+		  return new CommandResult(false,"Method dispatch fails for unknown route");
 		}
 		
 		IRoute route = routingInfo.getRoute();
-		cr.setMessage("Unable to dispatch to route="+ route.getUri());
-		
+
 		Method method = route.getMethod();
-		
-		try {		    
-			return (CommandResult) method.invoke(targetObject, ctx);	    
+
+		try {
+			return (CommandResult) method.invoke(targetObject, ctx);
 		} catch (InvocationTargetException e) {
+			// unchecked exceptions (e.g. a passed deadline or unreadable input) reach the controller just as they
+			// would from execute().
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
 			logger.error("Exception when method dispatching to " + route.getUri(),e);
-			return cr;		
 		} catch (IllegalAccessException e) {
 			logger.error("Exception when method dispatching to " + route.getUri(),e);
-			return cr;				
-	    }
+		}
+		// the failure result is only built when the dispatch fails.
+		return new CommandResult(false,"Unable to dispatch to route="+ route.getUri());
 	}
 }
@@ -0,0 +1,311 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ * <p/>
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ * <p/>
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * <p/>
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.liferay;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.liferay.portal.model.User;
+import com.liferay.portal.service.UserLocalServiceUtil;
+
+/**
+ * class CredentialCache: Bounded cache of verified Basic auth credentials, so that a client sending the same
+ * credentials on every call is authenticated by the portal once per time-to-live rather than on every request.
+ *
+ * Entries are keyed by company and a salted SHA-256 digest of the login and password; neither is kept in clear.
+ * An entry maps straight to the user id and is only honored while the user is active, not locked out and has not
+ * changed their password since the credentials were verified. The least recently used entry is evicted once
+ * the cache is full.
+ */
+public class CredentialCache {
+
+	private static final Logger _logger = LoggerFactory.getLogger(CredentialCache.class);
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * maxSize: The maximum number of cached credentials.
+	 */
+	private int  maxSize    = 1000;
+	/**
+	 * timeToLive: The time in milliseconds a verified credential is trusted for.
+	 */
+	private long timeToLive = 5 * 60 * 1000L;
+
+	/**
+	 * salt: Random salt for the credential digests, unique to this cache instance.
+	 */
+	private final byte[] salt = new byte[16];
+
+	/**
+	 * entries: The cached credentials, in access order.
+	 */
+	private final LinkedHashMap<String,Entry> entries = new LinkedHashMap<String,Entry>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String,Entry> eldest) {
+			if (size() > maxSize) {
+				evictions.incrementAndGet();
+				return true;
+			}
+			return false;
+		}
+	};
+
+	/**
+	 * hits, misses, evictions, invalidations: Cache statistics.
+	 */
+	private final AtomicLong hits          = new AtomicLong();
+	private final AtomicLong misses        = new AtomicLong();
+	private final AtomicLong evictions     = new AtomicLong();
+	private final AtomicLong invalidations = new AtomicLong();
+
+	/**
+	 * CredentialCache: Constructor.
+	 */
+	public CredentialCache() {
+		new SecureRandom().nextBytes(salt);
+	}
+
+	/**
+	 * getUser: Returns the user for credentials verified earlier.
+	 * @param companyId The company the credentials are for.
+	 * @param login The login (email address or screen name).
+	 * @param password The password.
+	 * @return User The user or <code>null</code> if the credentials have not been verified or are no longer valid.
+	 */
+	public User getUser(long companyId, String login, String password) {
+		String key = toKey(companyId, login, password);
+
+		Entry entry;
+		synchronized (entries) {
+			entry = entries.get(key);
+		}
+
+		if (entry == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+
+		User user = null;
+		if (entry.expires > System.currentTimeMillis()) {
+			user = loadUser(entry.userId);
+		}
+
+		// the entry expired or the account changed since the credentials were verified.
+		if (user == null || !isValid(user, entry)) {
+			invalidations.incrementAndGet();
+			misses.incrementAndGet();
+			synchronized (entries) {
+				entries.remove(key);
+			}
+			return null;
+		}
+
+		hits.incrementAndGet();
+		return user;
+	}
+
+	/**
+	 * put: Remembers credentials that have just been verified for the user.
+	 * @param companyId The company the credentials are for.
+	 * @param login The login (email address or screen name).
+	 * @param password The password.
+	 * @param user The authenticated user.
+	 */
+	public void put(long companyId, String login, String password, User user) {
+		Entry entry = new Entry(user.getUserId(), toTime(user.getPasswordModifiedDate()),
+				                System.currentTimeMillis() + timeToLive);
+		String key = toKey(companyId, login, password);
+		synchronized (entries) {
+			entries.put(key, entry);
+		}
+	}
+
+	/**
+	 * clear: Removes all cached credentials.
+	 */
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	/**
+	 * isValid: Returns whether a cached credential may still be honored for the user.
+	 * @param user
+	 * @param entry
+	 * @return boolean <code>true</code> if the user is active, not locked out and has kept their password.
+	 */
+	protected boolean isValid(User user, Entry entry) {
+		return user.isActive() && !user.isLockout() &&
+			   toTime(user.getPasswordModifiedDate()) == entry.passwordModified;
+	}
+
+	/**
+	 * loadUser: Loads the user for a cached credential.
+	 * @param userId
+	 * @return User The user or <code>null</code> if it no longer exists.
+	 */
+	protected User loadUser(long userId) {
+		try {
+			return UserLocalServiceUtil.fetchUser(userId);
+		} catch (Exception e) {
+			_logger.error("Error loading user for cached credentials: " + e.getMessage(), e);
+			return null;
+		}
+	}
+
+	/**
+	 * toKey: Builds the cache key from the company and a salted digest of the credentials.
+	 * @param companyId
+	 * @param login
+	 * @param password
+	 * @return String The key.
+	 */
+	private String toKey(long companyId, String login, String password) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform is required to support SHA-256.
+			throw new IllegalStateException(e);
+		}
+		digest.update(salt);
+		digest.update(login.getBytes(UTF8));
+		digest.update((byte) 0);
+		digest.update(password.getBytes(UTF8));
+
+		StringBuilder sb = new StringBuilder(80);
+		sb.append(companyId).append(':');
+		for (byte b : digest.digest()) {
+			sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return sb.toString();
+	}
+
+	private static long toTime(Date date) {
+		return (date != null ? date.getTime() : 0L);
+	}
+
+	/**
+	 * getMaxSize: Returns the maximum number of cached credentials.
+	 * @return int The maximum size.
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * setMaxSize: Sets the maximum number of cached credentials.
+	 * @param maxSize
+	 */
+	public void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * getTimeToLive: Returns the time in milliseconds a verified credential is trusted for.
+	 * @return long The time to live.
+	 */
+	public long getTimeToLive() {
+		return timeToLive;
+	}
+
+	/**
+	 * setTimeToLive: Sets the time in milliseconds a verified credential is trusted for.
+	 * @param timeToLive
+	 */
+	public void setTimeToLive(long timeToLive) {
+		this.timeToLive = timeToLive;
+	}
+
+	/**
+	 * size: Returns the number of cached credentials.
+	 * @return int The size.
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	public long getInvalidations() {
+		return invalidations.get();
+	}
+
+	/**
+	 * getHitRatio: Returns the share of lookups answered from the cache.
+	 * @return double The hit ratio between 0 and 1.
+	 */
+	public double getHitRatio() {
+		long h = hits.get();
+		long total = h + misses.get();
+		return (total > 0 ? (double) h / total : 0d);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("CredentialCache[size=%d, hits=%d, misses=%d, evictions=%d, invalidations=%d]",
+				             size(), getHits(), getMisses(), getEvictions(), getInvalidations());
+	}
+
+	/**
+	 * class Entry: A verified credential.
+	 */
+	protected static final class Entry {
+		/**
+		 * userId: The user the credentials belong to.
+		 */
+		final long userId;
+		/**
+		 * passwordModified: The user's password modification time when the credentials were verified.
+		 */
+		final long passwordModified;
+		/**
+		 * expires: The time the entry expires.
+		 */
+		final long expires;
+
+		Entry(long userId, long passwordModified, long expires) {
+			this.userId = userId;
+			this.passwordModified = passwordModified;
+			this.expires = expires;
+		}
+	}
+}
@@ -15,6 +15,10 @@
  */
 package com.xtivia.xsf.liferay;
 
+import com.liferay.portal.model.User;
+import com.liferay.portal.security.permission.PermissionChecker;
+import com.xtivia.xsf.core.commands.ContextKey;
+
 /**
  * interface ILiferayCommandKeys: Key values for accessing Liferay values from the context.
  */
@@ -34,4 +38,19 @@ public interface ILiferayCommandKeys {
 	 * LIFERAY_PERMISSION_CHECKER: Key for the Liferay PermissionChecker instance.
 	 */
     String LIFERAY_PERMISSION_CHECKER = "_LIFERAY_PERMISSION_CHECKER";
+
+	/**
+	 * LIFERAY_USER_KEY: Typed key for the Liferay User object.
+	 */
+	ContextKey<User>              LIFERAY_USER_KEY               = ContextKey.of(LIFERAY_USER, User.class);
+
+	/**
+	 * LIFERAY_COMPANY_ID_KEY: Typed key for the Liferay company id.
+	 */
+	ContextKey<Long>              LIFERAY_COMPANY_ID_KEY         = ContextKey.of(LIFERAY_COMPANY_ID, Long.class);
+
+	/**
+	 * LIFERAY_PERMISSION_CHECKER_KEY: Typed key for the Liferay PermissionChecker instance.
+	 */
+	ContextKey<PermissionChecker> LIFERAY_PERMISSION_CHECKER_KEY = ContextKey.of(LIFERAY_PERMISSION_CHECKER, PermissionChecker.class);
 }
@@ -26,7 +26,7 @@ public class LiferayAuthorizer implements IAuthorizer {
         if (!route.isAuthenticated()) {
             return true;  // public routes always pass authentication check
         } else {
-        	User user = context.find(ILiferayCommandKeys.LIFERAY_USER);
+        	User user = context.find(ILiferayCommandKeys.LIFERAY_USER_KEY);
         	if (user == null) {
          		return false;
         	}
@@ -30,6 +30,7 @@ import org.slf4j.LoggerFactory;
 import com.liferay.portal.kernel.util.Base64;
 import com.liferay.portal.kernel.util.GetterUtil;
 import com.liferay.portal.model.Company;
+import com.liferay.portal.model.User;
 import com.liferay.portal.security.auth.Authenticator;
 import com.liferay.portal.service.UserLocalServiceUtil;
 import com.liferay.portal.util.PortalUtil;
@@ -47,6 +48,11 @@ public class LiferayBasicAuthDecorator implements IContextDecorator {
 	private static Logger _logger = LoggerFactory.getLogger(LiferayBasicAuthDecorator.class);
 	
 	private boolean useScreenName = false;
+
+	/**
+	 * credentialCache: Cache of verified credentials, <code>null</code> to authenticate every request.
+	 */
+	private CredentialCache credentialCache = new CredentialCache();
 	
 	/**
 	 * @return the useScreenName boolean (instead of email address)
@@ -62,12 +68,34 @@ public class LiferayBasicAuthDecorator implements IContextDecorator {
 		this.useScreenName = useScreenName;
 	}
 
+	/**
+	 * getCredentialCache: Returns the cache of verified credentials.
+	 * @return CredentialCache The cache or <code>null</code> if credentials are not cached.
+	 */
+	public CredentialCache getCredentialCache() {
+		return credentialCache;
+	}
+
+	/**
+	 * setCredentialCache: Sets the cache of verified credentials.
+	 * @param credentialCache The cache, <code>null</code> to authenticate every request.
+	 */
+	public void setCredentialCache(CredentialCache credentialCache) {
+		this.credentialCache = credentialCache;
+	}
+
 	/**
 	 * decorateContext: Top level function invoked by the XSF framework for context decoration.
 	 * @param context the XSF context.
 	 */
 	@Override
 	public IContext decorateContext(IContext context) {
+		// without an Authorization header there is nothing to do, and no need to resolve the logged in user.
+		HttpServletRequest request = context.find(ICommandKeys.HTTP_REQUEST_KEY);
+		if (request == null || request.getHeader("Authorization") == null) {
+			return context;
+		}
+
 		// if user is already logged in normally then do nothing
 		Object object = context.get(ILiferayCommandKeys.LIFERAY_USER);
 		if (object == null) {
@@ -82,7 +110,7 @@ public class LiferayBasicAuthDecorator implements IContextDecorator {
 	 */	
 	protected void processBasicAuth(IContext context) {
 		
-		HttpServletRequest request = context.find(ICommandKeys.HTTP_REQUEST);
+		HttpServletRequest request = context.find(ICommandKeys.HTTP_REQUEST_KEY);
 		
 		// Get the Authorization header, if one was supplied
 
@@ -140,53 +168,89 @@ public class LiferayBasicAuthDecorator implements IContextDecorator {
 			try{
 				Company company = PortalUtil.getCompany(request);
 				if (company == null) return;
-				
-				Map<String, String[]> headerMap = new HashMap<String, String[]>();
-
-				Enumeration<String> enu1 = request.getHeaderNames();
 
-				while (enu1.hasMoreElements()) {
-					String name = enu1.nextElement();
+				long companyId = company.getCompanyId();
 
-					Enumeration<String> enu2 = request.getHeaders(name);
-
-					List<String> headers = new ArrayList<String>();
-
-					while (enu2.hasMoreElements()) {
-						String value = enu2.nextElement();
-						headers.add(value);
+				// credentials verified earlier map straight to their user.
+				if (credentialCache != null) {
+					User user = credentialCache.getUser(companyId, login, password);
+					if (user != null) {
+						context.put(ILiferayCommandKeys.LIFERAY_USER, user);
+						return;
 					}
-
-					headerMap.put(name, headers.toArray(new String[headers.size()]));
 				}
 
-				Map<String, String[]> parameterMap = request.getParameterMap();
-				Map<String, Object> resultsMap = new HashMap<String, Object>();
-				
-				if (!useScreenName) {
-					int authResult = UserLocalServiceUtil.
-						authenticateByEmailAddress(company.getCompanyId(), login, password, 
-							                       headerMap, parameterMap, resultsMap);
-					
-					if (authResult == Authenticator.SUCCESS) { 
-						
-						context.put(ILiferayCommandKeys.LIFERAY_USER,
-								    UserLocalServiceUtil.getUserByEmailAddress(company.getCompanyId(), login));
-					}
-				} else {
-					int authResult = UserLocalServiceUtil.
-							authenticateByScreenName(company.getCompanyId(), login, password, 
-								                     headerMap, parameterMap, resultsMap);
-						
-					if (authResult == Authenticator.SUCCESS) { 
-						
-						context.put(ILiferayCommandKeys.LIFERAY_USER,
-								    UserLocalServiceUtil.getUserByScreenName(company.getCompanyId(), login));
+				User user = authenticate(request, companyId, login, password);
+				if (user != null) {
+					context.put(ILiferayCommandKeys.LIFERAY_USER, user);
+
+					if (credentialCache != null) {
+						credentialCache.put(companyId, login, password, user);
 					}
 				}
-				
+
 			} catch (Exception e) {_logger.error("Exception in BASIC auth handler",e);}				
 		}
 	}
-	
-}
+
+
+	/**
+	 * authenticate: Authenticates the credentials through the Liferay auth pipeline.
+	 * @param request the HTTP servlet request.
+	 * @param companyId the company of the request.
+	 * @param login the email address or screen name.
+	 * @param password the password.
+	 * @return User the authenticated user or <code>null</code> if authentication failed.
+	 * @throws Exception
+	 */
+	@SuppressWarnings("unchecked")
+	protected User authenticate(HttpServletRequest request, long companyId, String login, String password)
+			throws Exception {
+
+		Map<String, String[]> headerMap = new HashMap<String, String[]>();
+
+		Enumeration<String> enu1 = request.getHeaderNames();
+
+		while (enu1.hasMoreElements()) {
+			String name = enu1.nextElement();
+
+			Enumeration<String> enu2 = request.getHeaders(name);
+
+			List<String> headers = new ArrayList<String>();
+
+			while (enu2.hasMoreElements()) {
+				String value = enu2.nextElement();
+				headers.add(value);
+			}
+
+			headerMap.put(name, headers.toArray(new String[headers.size()]));
+		}
+
+		Map<String, String[]> parameterMap = request.getParameterMap();
+		Map<String, Object> resultsMap = new HashMap<String, Object>();
+
+		int authResult;
+		if (!useScreenName) {
+			authResult = UserLocalServiceUtil.
+				authenticateByEmailAddress(companyId, login, password,
+					                       headerMap, parameterMap, resultsMap);
+		} else {
+			authResult = UserLocalServiceUtil.
+				authenticateByScreenName(companyId, login, password,
+					                     headerMap, parameterMap, resultsMap);
+		}
+
+		if (authResult != Authenticator.SUCCESS) {
+			return null;
+		}
+
+		// the auth pipeline reports the user id, which is a cheaper lookup than by login.
+		Object userId = resultsMap.get("userId");
+		if (userId instanceof Long) {
+			return UserLocalServiceUtil.getUserById((Long) userId);
+		}
+
+		return useScreenName ? UserLocalServiceUtil.getUserByScreenName(companyId, login)
+				             : UserLocalServiceUtil.getUserByEmailAddress(companyId, login);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,64 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ * <p/>
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ * <p/>
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ * <p/>
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.liferay;
+
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import com.liferay.portal.model.User;
+import com.xtivia.xsf.core.cache.CachePartition;
+import com.xtivia.xsf.core.cache.DefaultCachePartitioner;
+import com.xtivia.xsf.core.cache.ICachePartitioner;
+import com.xtivia.xsf.core.commands.IContext;
+
+/**
+ * class LiferayCachePartitioner: Partitions cached responses by Liferay user or by the user's set of roles.
+ */
+@Component
+public class LiferayCachePartitioner implements ICachePartitioner {
+
+	private static final Logger _logger = LoggerFactory.getLogger(LiferayCachePartitioner.class);
+
+	/**
+	 * getPartition: Returns the user id or the sorted role ids of the user.
+	 * @param partition The kind of partitioning declared by the route.
+	 * @param context Context for the request.
+	 * @return String The partition.
+	 */
+	@Override
+	public String getPartition(CachePartition partition, IContext context) {
+		if (partition == CachePartition.NONE) return "";
+
+		User user = context.find(ILiferayCommandKeys.LIFERAY_USER_KEY);
+		if (user == null || user.isDefaultUser()) return DefaultCachePartitioner.GUEST;
+
+		if (partition == CachePartition.ROLE) {
+			try {
+				long[] roleIds = user.getRoleIds().clone();
+				Arrays.sort(roleIds);
+				return "roles:" + Arrays.toString(roleIds);
+			} catch (Exception e) {
+				_logger.error("Error getting roles of user: " + e.getMessage(), e);
+			}
+		}
+
+		// the user's own partition is always safe.
+		return "user:" + user.getUserId();
+	}
+}
@@ -20,7 +20,6 @@ import java.util.Map;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,13 +29,15 @@ import com.liferay.portal.model.User;
 import com.liferay.portal.security.permission.PermissionChecker;
 import com.liferay.portal.security.permission.PermissionCheckerFactoryUtil;
 import com.liferay.portal.util.PortalUtil;
-import com.xtivia.xsf.core.web.ICommandKeys;
 import com.xtivia.xsf.core.web.WebCommandContext;
 
 /**
  * LiferayCommandContext: An extension to the WebCommandContext to handle Liferay objects.  This should not be implemented
  * as an IContextDecorator interface because we really want this to be defined as part of the initial context where we
  * can control the ordering.
+ *
+ * The user, company id and permission checker are resolved from the portal on first use and remembered for the
+ * request, so that routes which never look at them (e.g. public routes) do not pay for the portal calls.
  */
 @SuppressWarnings("serial")
 public class LiferayCommandContext extends WebCommandContext {
@@ -55,72 +56,46 @@ public class LiferayCommandContext extends WebCommandContext {
 
 		// let the super class do the construction
 		super(request, response, pathParameters);
-
-		try {
-			// extract the user from the request
-			User user = this.getUser(request);
-
-			if (user != null) {
-				super.put(ILiferayCommandKeys.LIFERAY_USER, user);
-			}
-
-			// extract the company id from the request
-			Long companyId = this.getCompanyId(request);
-			if (companyId != null) {
-				super.put(ILiferayCommandKeys.LIFERAY_COMPANY_ID, companyId);
-			}
-
-		} catch (Exception e) {
-			_logger.error("Error extracting user: " + e.getMessage(), e);
-		}
 	}
 
 	/**
-	 * find: Override method to support lazy (on-demand) retrieveal of permission checker.
-	 * @param key The key for the value to find.
-	 * @param <T> Class of the return object.
-	 * @return T The found object or <code>null</code>.
+	 * resolve: Override method to support lazy (on-demand) retrieval of the user, company id and permission checker.
+	 * Anything else is looked up in the web scopes as usual.
+	 * @param name The name of the value.
+	 * @return Object The found object or <code>null</code>.
 	 */
-	@SuppressWarnings("unchecked")
 	@Override
-	public <T> T find(String key) {
-		// let the super class find the object.
-		T val = super.find(key);
-
-		// If the key is for the permission checker but it was not found in the context
-		if ((val == null) && (StringUtils.equals(key,ILiferayCommandKeys.LIFERAY_PERMISSION_CHECKER))) {
-
-			// extract the request object from the context.
-			HttpServletRequest request = super.find(ICommandKeys.HTTP_REQUEST);
+	protected Object resolve(String name) {
 
-			// if not found there isn't much we can do as a result.
-			if (request == null) {
+		if (ILiferayCommandKeys.LIFERAY_USER.equals(name)) {
+			try {
+				// extract the user from the request
+				return this.getUser(getRequest());
+			} catch (Exception e) {
+				_logger.error("Error extracting user: " + e.getMessage(), e);
 				return null;
 			}
+		}
 
-			// try to get the user from the incoming request
-			User user = null;
-
+		if (ILiferayCommandKeys.LIFERAY_COMPANY_ID.equals(name)) {
 			try {
-				user = this.getUser(request);
-			} catch (PortalException e) {
-				_logger.error("Error getting user from request: " + e.getMessage(), e);
-			} catch (SystemException e) {
-				_logger.error("Error getting user from request: " + e.getMessage(), e);
+				// extract the company id from the request
+				return this.getCompanyId(getRequest());
+			} catch (Exception e) {
+				_logger.error("Error extracting company id: " + e.getMessage(), e);
+				return null;
 			}
+		}
+
+		if (ILiferayCommandKeys.LIFERAY_PERMISSION_CHECKER.equals(name)) {
+			// the user may have been resolved already or put into the context by a decorator.
+			User user = find(ILiferayCommandKeys.LIFERAY_USER_KEY);
 
 			// if the user was found
 			if (user != null) {
-
 				try {
 					// create a new permission checker for the user.
-					PermissionChecker permissionChecker = this.getPermissionChecker(user);
-
-					// set it in the context so we don't create a new one later on
-					super.put(ILiferayCommandKeys.LIFERAY_PERMISSION_CHECKER, permissionChecker);
-
-					// return the permission checker
-					return (T) permissionChecker;
+					return this.getPermissionChecker(user);
 				} catch (Exception e) {
 					_logger.error("Error creating permission checker: " + e.getMessage(), e);
 				}
@@ -128,9 +103,10 @@ public class LiferayCommandContext extends WebCommandContext {
 
 			// if we get here the we did not find a permission checker or could not create one from the user, so
 			// little we can do but allow the null object to be returned.
+			return null;
 		}
 
-		return val;
+		return super.resolve(name);
 	}
 	
 	// the following methods are defined as protected
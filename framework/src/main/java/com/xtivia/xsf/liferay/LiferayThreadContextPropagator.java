@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.liferay;
+
+import java.util.LinkedList;
+
+import org.springframework.stereotype.Component;
+
+import com.liferay.portal.security.auth.CompanyThreadLocal;
+import com.liferay.portal.security.auth.PrincipalThreadLocal;
+import com.liferay.portal.security.permission.PermissionChecker;
+import com.liferay.portal.security.permission.PermissionThreadLocal;
+import com.liferay.portal.service.ServiceContext;
+import com.liferay.portal.service.ServiceContextThreadLocal;
+import com.xtivia.xsf.core.web.IThreadContextPropagator;
+
+/**
+ * class LiferayThreadContextPropagator: Propagates the thread locals Liferay's service layer relies on (permission
+ * checker, principal, company and service context) to the threads running asynchronous commands, so that service
+ * calls made by a command see the user of the request.
+ */
+@Component
+public class LiferayThreadContextPropagator implements IThreadContextPropagator {
+
+	/**
+	 * capture: Captures Liferay's thread locals of the current thread.
+	 * @return Object The captured state.
+	 */
+	@Override
+	public Object capture() {
+		return new State(PermissionThreadLocal.getPermissionChecker(),
+				         PrincipalThreadLocal.getName(),
+				         PrincipalThreadLocal.getPassword(),
+				         CompanyThreadLocal.getCompanyId(),
+				         ServiceContextThreadLocal.getServiceContext());
+	}
+
+	/**
+	 * apply: Sets captured thread locals on the current thread.
+	 * @param captured
+	 * @return Object The previous state of the thread.
+	 */
+	@Override
+	public Object apply(Object captured) {
+		State previous = (State) capture();
+		previous.depth = depth();
+		set((State) captured);
+		return previous;
+	}
+
+	/**
+	 * restore: Puts back the thread locals the thread had before apply().
+	 * @param previous
+	 */
+	@Override
+	public void restore(Object previous) {
+		// the service context is a stack, drop whatever was pushed since apply(), by it or by the command.
+		State state = (State) previous;
+		for (int n = depth() - state.depth; n > 0; n--) {
+			ServiceContextThreadLocal.popServiceContext();
+		}
+		set(state);
+	}
+
+	/**
+	 * depth: Returns the number of service contexts on the current thread's stack. Liferay does not expose it, so
+	 * the contexts are popped and pushed back in their order.
+	 * @return int The depth.
+	 */
+	private static int depth() {
+		LinkedList<ServiceContext> popped = new LinkedList<ServiceContext>();
+		ServiceContext serviceContext;
+		while ((serviceContext = ServiceContextThreadLocal.popServiceContext()) != null) {
+			popped.addFirst(serviceContext);
+		}
+		for (ServiceContext c : popped) {
+			ServiceContextThreadLocal.pushServiceContext(c);
+		}
+		return popped.size();
+	}
+
+	private static void set(State state) {
+		PermissionThreadLocal.setPermissionChecker(state.permissionChecker);
+		PrincipalThreadLocal.setName(state.name);
+		PrincipalThreadLocal.setPassword(state.password);
+		CompanyThreadLocal.setCompanyId(state.companyId);
+		if (state.serviceContext != null && ServiceContextThreadLocal.getServiceContext() != state.serviceContext) {
+			ServiceContextThreadLocal.pushServiceContext(state.serviceContext);
+		}
+	}
+
+	/**
+	 * class State: The captured thread locals.
+	 */
+	private static final class State {
+		final PermissionChecker permissionChecker;
+		final String            name;
+		final String            password;
+		final Long              companyId;
+		final ServiceContext    serviceContext;
+		// the depth of the service context stack, recorded for the state apply() replaces.
+		int depth = 0;
+
+		State(PermissionChecker permissionChecker, String name, String password, Long companyId,
+			  ServiceContext serviceContext) {
+			this.permissionChecker = permissionChecker;
+			this.name = name;
+			this.password = password;
+			this.companyId = companyId;
+			this.serviceContext = serviceContext;
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package com.xtivia.xsf.core.commands;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class CommandContextTest {
+
+	private static final ContextKey<String> KEY = ContextKey.of("commandContextTest.key", String.class);
+
+	private CommandContext ctx;
+
+	@Before
+	public void fillContext() {
+		ctx = new CommandContext();
+		ctx.put(KEY.getName(), "a");
+		ctx.put("other", "b");
+	}
+
+	@Test
+	public void testPutAndSet() {
+		assertEquals("a", ctx.find(KEY));
+		ctx.set(KEY, "c");
+		assertEquals("c", ctx.find(KEY));
+		assertEquals("c", ctx.get(KEY.getName()));
+		ctx.set(KEY, null);
+		assertNull(ctx.find(KEY));
+	}
+
+	@Test
+	public void testKeySetRemove() {
+		ctx.keySet().remove(KEY.getName());
+		assertNull(ctx.find(KEY));
+		assertEquals(1, ctx.size());
+	}
+
+	@Test
+	public void testValuesRemove() {
+		ctx.values().remove("a");
+		assertNull(ctx.find(KEY));
+	}
+
+	@Test
+	public void testEntryIteratorRemove() {
+		for (Iterator iter = ctx.entrySet().iterator(); iter.hasNext();) {
+			Map.Entry entry = (Map.Entry) iter.next();
+			if (KEY.getName().equals(entry.getKey())) iter.remove();
+		}
+		assertNull(ctx.find(KEY));
+		assertEquals("b", ctx.find("other"));
+	}
+
+	@Test
+	public void testEntrySetValue() {
+		for (Object o : ctx.entrySet()) {
+			Map.Entry entry = (Map.Entry) o;
+			if (KEY.getName().equals(entry.getKey())) entry.setValue("d");
+		}
+		assertEquals("d", ctx.find(KEY));
+	}
+
+	@Test
+	public void testClone() {
+		CommandContext clone = (CommandContext) ctx.clone();
+		clone.set(KEY, "e");
+		assertEquals("a", ctx.find(KEY));
+		assertEquals("e", clone.find(KEY));
+	}
+
+	@Test
+	public void testClear() {
+		ctx.entrySet().clear();
+		assertNull(ctx.find(KEY));
+		assertEquals(0, ctx.size());
+	}
+}
@@ -0,0 +1,44 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import org.springframework.stereotype.Component;
+
+import com.xtivia.xsf.core.annotation.Route;
+import com.xtivia.xsf.core.commands.CommandResult;
+import com.xtivia.xsf.core.commands.ICommand;
+import com.xtivia.xsf.core.commands.IContext;
+
+/*
+ * AsyncPostCommand : asynchronous route echoing the text of its input, whose body is read the way the controller's
+ * nonBlockingIo setting decides.
+ */
+@Component
+@Route(uri="/async/echo", method="POST", authenticated=false, async=true,
+       inputKey="inputData", inputClass="com.xtivia.xsf.core.web.TestResource")
+public class AsyncPostCommand implements ICommand {
+
+	@Override
+	public CommandResult execute(IContext context) {
+		TestResource tr_in = context.find("inputData");
+		CommandResult cr = new CommandResult();
+		cr.setSucceeded(true);
+		cr.setData(tr_in.getText().length());
+		cr.setMessage("ECHO" + tr_in.getText().substring(0, 8));
+		return cr;
+	}
+
+}
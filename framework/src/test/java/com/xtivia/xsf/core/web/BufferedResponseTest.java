@@ -0,0 +1,97 @@
+package com.xtivia.xsf.core.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class BufferedResponseTest {
+
+	private ByteArrayOutputStream sent;
+	private NonBlockingIO.BufferedResponse response;
+
+	@Before
+	public void createResponse() {
+		sent = new ByteArrayOutputStream();
+		final ServletOutputStream out = new ServletOutputStream() {
+			@Override
+			public void write(int b) {
+				sent.write(b);
+			}
+		};
+
+		// a response knowing only its output stream.
+		HttpServletResponse target = (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { HttpServletResponse.class }, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if ("getOutputStream".equals(method.getName())) return out;
+				return null;
+			}
+		});
+		response = new NonBlockingIO.BufferedResponse(target, 20000);
+	}
+
+	@Test
+	public void testSmallBodyHeld() throws IOException {
+		response.getOutputStream().write(bytes(10000));
+
+		List<byte[]> chunks = response.getChunks();
+		assertFalse(response.isStreaming());
+		assertEquals(0, sent.size());
+		assertEquals(10000, length(chunks));
+	}
+
+	@Test
+	public void testLargeBodyStreamed() throws IOException {
+		byte[] body = bytes(50000);
+		response.getOutputStream().write(body, 0, 30000);
+
+		// the body outgrew the buffer, what was held and all that follows goes straight to the response.
+		assertTrue(response.isStreaming());
+		response.getOutputStream().write(body, 30000, 20000);
+		assertEquals(0, length(response.getChunks()));
+		assertEquals(50000, sent.size());
+		assertEquals(body[49999], sent.toByteArray()[49999]);
+	}
+
+	@Test
+	public void testFlushedBodyStreamed() throws IOException {
+		response.getOutputStream().write(bytes(100));
+		response.flushBuffer();
+
+		assertTrue(response.isStreaming());
+		assertEquals(100, sent.size());
+		response.getOutputStream().write(1);
+		assertEquals(0, length(response.getChunks()));
+		assertEquals(101, sent.size());
+	}
+
+	private static byte[] bytes(int size) {
+		byte[] b = new byte[size];
+		for (int i = 0; i < size; i++) {
+			b[i] = (byte) i;
+		}
+		return b;
+	}
+
+	private static int length(List<byte[]> chunks) {
+		int n = 0;
+		for (byte[] c : chunks) {
+			n += c.length;
+		}
+		return n;
+	}
+}
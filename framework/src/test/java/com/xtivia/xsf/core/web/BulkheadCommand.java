@@ -0,0 +1,53 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.springframework.stereotype.Component;
+
+import com.xtivia.xsf.core.annotation.Route;
+import com.xtivia.xsf.core.commands.CommandResult;
+import com.xtivia.xsf.core.commands.ICommand;
+import com.xtivia.xsf.core.commands.IContext;
+
+/*
+ * BulkheadCommand : command of a route in the "tinyBulkhead" bulkhead (one thread, room for one more
+ * command in its queue). Each execution holds until gate is counted down, so that the bulkhead fills up.
+ */
+@Component
+@Route(uri="/bulkhead", method="GET", authenticated=false, bulkhead="tinyBulkhead")
+public class BulkheadCommand implements ICommand {
+
+	static volatile CountDownLatch entered = new CountDownLatch(1);
+	static volatile CountDownLatch gate = new CountDownLatch(1);
+
+	@Override
+	public CommandResult execute(IContext context) {
+		entered.countDown();
+		try {
+			gate.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		CommandResult cr = new CommandResult();
+		cr.setSucceeded(true);
+		cr.setMessage("BULKHEAD");
+		return cr;
+	}
+
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.liferay.portal.model.User;
+import com.xtivia.xsf.core.annotation.Route;
+import com.xtivia.xsf.core.cache.CachePartition;
+import com.xtivia.xsf.core.commands.CommandResult;
+import com.xtivia.xsf.core.commands.ICommand;
+import com.xtivia.xsf.core.commands.IContext;
+import com.xtivia.xsf.liferay.ILiferayCommandKeys;
+
+/*
+ * CachingCommand : routes with an HTTP cache policy, answering with a successful or a failed result, and
+ * routes kept in the response cache, answering with the number of times they executed.
+ */
+@Route(uri="/caching")
+public class CachingCommand implements ICommand {
+
+	private static final AtomicInteger counted = new AtomicInteger();
+	private static final AtomicInteger shortLived = new AtomicInteger();
+	private static final AtomicInteger user = new AtomicInteger();
+	private static final AtomicInteger query = new AtomicInteger();
+
+	@Route(uri="/ok", authenticated=false, cached=true, maxAge=60, vary="Accept-Language")
+	public CommandResult doGet(IContext ctx) {
+		return new CommandResult(true, "CACHED");
+	}
+
+	@Route(uri="/fail", authenticated=false, cached=true, maxAge=60, vary="Accept-Language")
+	public CommandResult doFailingGet(IContext ctx) {
+		return new CommandResult(false, "FAILED");
+	}
+
+	@Route(uri="/auth", authenticated=true, cached=true, maxAge=60)
+	public CommandResult doAuthenticatedGet(IContext ctx) {
+		return new CommandResult(true, "CACHED");
+	}
+
+	@Route(uri="/tagged", authenticated=false)
+	public CommandResult doTaggedGet(IContext ctx) {
+		return new CommandResult(true, LargeCommand.TEXT).setVersion("t");
+	}
+
+	@Route(uri="/counted", authenticated=false, cached=true, cacheTtl=60, cacheParams="q")
+	public CommandResult doCountedGet(IContext ctx) {
+		return new CommandResult(true, "counted" + counted.incrementAndGet());
+	}
+
+	@Route(uri="/short", authenticated=false, cached=true, cacheTtl=1)
+	public CommandResult doShortLivedGet(IContext ctx) {
+		return new CommandResult(true, "short" + shortLived.incrementAndGet());
+	}
+
+	@Route(uri="/user", authenticated=false, cached=true, cacheTtl=60, cachePartition=CachePartition.USER)
+	public CommandResult doUserGet(IContext ctx) {
+		return new CommandResult(true, "user" + user.incrementAndGet());
+	}
+
+	@Route(uri="/private", authenticated=true, cached=true, cacheTtl=60)
+	public CommandResult doPrivateGet(IContext ctx) {
+		User caller = ctx.find(ILiferayCommandKeys.LIFERAY_USER_KEY);
+		return new CommandResult(true, "private" + caller.getUserId());
+	}
+
+	@Route(uri="/query", authenticated=false, cached=true, cacheTtl=60)
+	public CommandResult doQueryGet(IContext ctx) {
+		return new CommandResult(true, "query" + query.incrementAndGet());
+	}
+
+	@Override
+	public CommandResult execute(IContext context) {
+		return Xsf.dispatch(this, context);
+	}
+
+}
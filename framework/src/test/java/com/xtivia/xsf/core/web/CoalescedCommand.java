@@ -0,0 +1,58 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.stereotype.Component;
+
+import com.xtivia.xsf.core.annotation.Route;
+import com.xtivia.xsf.core.commands.CommandResult;
+import com.xtivia.xsf.core.commands.ICommand;
+import com.xtivia.xsf.core.commands.IContext;
+
+/*
+ * CoalescedCommand : command of a coalesced route that counts its executions. The first execution
+ * holds until gate is counted down, so that identical requests arrive while it is in flight. Mode
+ * "fail" returns a failed result.
+ */
+@Component
+@Route(uri="/coalesced/{mode}", method="GET", authenticated=false, coalesce=true)
+public class CoalescedCommand implements ICommand {
+
+	static final AtomicInteger executions = new AtomicInteger();
+	static volatile CountDownLatch entered = new CountDownLatch(1);
+	static volatile CountDownLatch gate = new CountDownLatch(1);
+
+	@Override
+	public CommandResult execute(IContext context) {
+		int execution = executions.incrementAndGet();
+		entered.countDown();
+		try {
+			gate.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		String mode = context.find("mode");
+		CommandResult cr = new CommandResult();
+		cr.setSucceeded(!"fail".equals(mode));
+		cr.setMessage(mode + execution);
+		return cr;
+	}
+
+}
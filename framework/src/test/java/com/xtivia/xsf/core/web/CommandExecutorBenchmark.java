@@ -0,0 +1,69 @@
+package com.xtivia.xsf.core.web;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * class CommandExecutorBenchmark: Compares the throughput of the thread pool and the virtual thread executor for
+ * commands blocking on a slow backend, both running up to the same number of commands at once (all of them by
+ * default, as virtual threads have no queue). Not a unit test, run it by hand:
+ *
+ *   java -cp target/classes:target/test-classes:... com.xtivia.xsf.core.web.CommandExecutorBenchmark [commands] [backendMs] [concurrency]
+ */
+public class CommandExecutorBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int commands = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		long backendMillis = args.length > 1 ? Long.parseLong(args[1]) : 50;
+		int concurrency = args.length > 2 ? Integer.parseInt(args[2]) : commands;
+
+		CommandExecutor pool = new CommandExecutor();
+		pool.setName("bench-pool");
+		pool.setCorePoolSize(concurrency);
+		pool.setMaxPoolSize(concurrency);
+		pool.setQueueCapacity(commands);
+		run(pool, commands, backendMillis);
+
+		CommandExecutor virtual = new CommandExecutor();
+		virtual.setName("bench-virtual");
+		virtual.setVirtualThreads(true);
+		virtual.setMaxVirtualThreads(concurrency);
+		// the same pool where the JVM has no virtual threads.
+		virtual.setCorePoolSize(concurrency);
+		virtual.setMaxPoolSize(concurrency);
+		virtual.setQueueCapacity(commands);
+		run(virtual, commands, backendMillis);
+	}
+
+	private static void run(CommandExecutor executor, int commands, final long backendMillis) throws Exception {
+		final CountDownLatch done = new CountDownLatch(commands);
+		Runnable command = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					// the simulated backend call.
+					Thread.sleep(backendMillis);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					done.countDown();
+				}
+			}
+		};
+
+		long start = System.nanoTime();
+		for (int i = 0; i < commands; i++) {
+			try {
+				executor.execute(command);
+			} catch (RejectedExecutionException e) {
+				done.countDown();
+			}
+		}
+		done.await();
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.println(String.format("%s: %d commands of %d ms in %.2f s, %.0f commands/s", executor, commands,
+				                         backendMillis, seconds, executor.getCompleted() / seconds));
+		executor.destroy();
+	}
+}
@@ -0,0 +1,84 @@
+package com.xtivia.xsf.core.web;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+import org.junit.Test;
+
+public class CompressingOutputStreamTest {
+
+	private static final int HEADER_SIZE = 10;
+
+	@Test
+	public void testFlushSendsWrittenData() throws Exception {
+		ByteArrayOutputStream sent = new ByteArrayOutputStream();
+		CompressingOutputStream cos = new CompressingOutputStream(sent, ContentEncoding.GZIP);
+		try {
+			byte[] first = "{\"text\":\"item0\"}\n".getBytes("UTF-8");
+			cos.write(first, 0, first.length);
+			cos.flush();
+
+			// what was sent so far decompresses to everything written, before the stream is finished.
+			byte[] compressed = sent.toByteArray();
+			Inflater inflater = new Inflater(true);
+			inflater.setInput(compressed, HEADER_SIZE, compressed.length - HEADER_SIZE);
+			byte[] inflated = new byte[first.length];
+			assertEquals(first.length, inflater.inflate(inflated));
+			assertArrayEquals(first, inflated);
+			inflater.end();
+
+			// flushing again without new data sends nothing.
+			cos.flush();
+			assertEquals(compressed.length, sent.size());
+
+			cos.finish();
+		} finally {
+			cos.release();
+		}
+		assertEquals("{\"text\":\"item0\"}\n", new String(gunzip(sent.toByteArray()), "UTF-8"));
+	}
+
+	@Test
+	public void testLevelPerStream() throws Exception {
+		byte[] body = text(200000);
+
+		// the deflaters are pooled, each stream still compresses at its own level.
+		byte[] best = CompressingOutputStream.compress(body, ContentEncoding.GZIP, 9);
+		byte[] fastest = CompressingOutputStream.compress(body, ContentEncoding.GZIP, 1);
+		byte[] bestAgain = CompressingOutputStream.compress(body, ContentEncoding.GZIP, 9);
+
+		assertTrue(best.length < fastest.length);
+		assertArrayEquals(best, bestAgain);
+		assertArrayEquals(body, gunzip(fastest));
+	}
+
+	private static byte[] text(int size) {
+		String[] words = { "alpha ", "beta ", "gamma ", "delta ", "epsilon ", "zeta ", "eta ", "theta " };
+		Random random = new Random(42);
+		StringBuilder sb = new StringBuilder(size + 16);
+		while (sb.length() < size) {
+			sb.append(words[random.nextInt(words.length)]);
+		}
+		return Arrays.copyOf(sb.toString().getBytes(), size);
+	}
+
+	private static byte[] gunzip(byte[] compressed) throws IOException {
+		GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] b = new byte[8192];
+		int n;
+		while ((n = in.read(b)) != -1) {
+			out.write(b, 0, n);
+		}
+		return out.toByteArray();
+	}
+}
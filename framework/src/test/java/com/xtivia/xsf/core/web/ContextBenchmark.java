@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import com.xtivia.xsf.core.commands.CommandContext;
+import com.xtivia.xsf.core.commands.ContextKey;
+
+/**
+ * class ContextBenchmark: Compares context lookups and updates through string names and typed keys with the plain
+ * HashMap CommandContext used to be, and the memoized fall-through of WebCommandContext with resolving a name from
+ * the request every time. Not a unit test, run it by hand:
+ *
+ *   java -cp target/classes:target/test-classes:... com.xtivia.xsf.core.web.ContextBenchmark [operations]
+ */
+public class ContextBenchmark {
+
+	private static final ContextKey<String> TYPED_KEY = ContextKey.of("benchmark_typed", String.class);
+	private static final String             NAME      = "benchmark_name";
+
+	@SuppressWarnings("unchecked")
+	public static void main(String[] args) throws Exception {
+		int operations = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+
+		final HashMap<String,Object> map = new HashMap<String,Object>();
+		final CommandContext ctx = new CommandContext();
+		map.put(NAME, "value");
+		ctx.put(NAME, "value");
+		ctx.set(TYPED_KEY, "value");
+
+		// a request holding a single parameter, with no session.
+		final Map<String,String[]> parameters = new HashMap<String,String[]>();
+		parameters.put("q", new String[] { "xsf" });
+		HttpServletRequest request = (HttpServletRequest) Proxy.newProxyInstance(
+				HttpServletRequest.class.getClassLoader(), new Class<?>[] { HttpServletRequest.class },
+				new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						if ("getParameterValues".equals(method.getName())) return parameters.get(args[0]);
+						return null;
+					}
+				});
+		final WebCommandContext webCtx = new WebCommandContext(request, null, null);
+
+		new Microbench(operations).
+		add("put(String), HashMap (before)", new Microbench.Task() {
+			@Override
+			public Object run(int i) {
+				return map.put(NAME, "value");
+			}
+		}).
+		add("put(String), CommandContext", new Microbench.Task() {
+			@Override
+			public Object run(int i) {
+				return ctx.put(NAME, "value");
+			}
+		}).
+		add("put(String) of a typed key's name", new Microbench.Task() {
+			@Override
+			public Object run(int i) {
+				return ctx.put(TYPED_KEY.getName(), "value");
+			}
+		}).
+		add("set(ContextKey)", new Microbench.Task() {
+			@Override
+			public Object run(int i) {
+				ctx.set(TYPED_KEY, "value");
+				return ctx;
+			}
+		}).
+		add("find(String), HashMap (before)", new Microbench.Task() {
+			@Override
+			public Object run(int i) {
+				return map.get(NAME);
+			}
+		}).
+		add("find(String), CommandContext", new Microbench.Task() {
+			@Override
+			public Object run(int i) {
+				return ctx.find(NAME);
+			}
+		}).
+		add("find(ContextKey)", new Microbench.Task() {
+			@Override
+			public Object run(int i) {
+				return ctx.find(TYPED_KEY);
+			}
+		}).
+		add("request parameter, resolved (before)", new Microbench.Task() {
+			@Override
+			public Object run(int i) {
+				return webCtx.resolve("q");
+			}
+		}).
+		add("request parameter, memoized (after)", new Microbench.Task() {
+			@Override
+			public Object run(int i) {
+				return webCtx.find("q");
+			}
+		}).
+		add("missing name, resolved (before)", new Microbench.Task() {
+			@Override
+			public Object run(int i) {
+				return webCtx.resolve("missing");
+			}
+		}).
+		add("missing name, memoized (after)", new Microbench.Task() {
+			@Override
+			public Object run(int i) {
+				return webCtx.find("missing");
+			}
+		}).
+		run();
+	}
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import com.xtivia.xsf.core.annotation.Route;
+import com.xtivia.xsf.core.commands.CommandResult;
+import com.xtivia.xsf.core.commands.Deadline;
+import com.xtivia.xsf.core.commands.ICommand;
+import com.xtivia.xsf.core.commands.IContext;
+
+/*
+ * DeadlineCommand : routes with a timeout whose command works for the given number of milliseconds, then
+ * checks the request's deadline before answering.
+ */
+@Route(uri="/deadline")
+public class DeadlineCommand implements ICommand {
+
+	@Route(uri="/short/{work}", authenticated=false, timeout=100)
+	public CommandResult doShort(IContext ctx) throws InterruptedException {
+		return work(ctx);
+	}
+
+	@Route(uri="/long/{work}", authenticated=false, timeout=5000)
+	public CommandResult doLong(IContext ctx) throws InterruptedException {
+		return work(ctx);
+	}
+
+	private CommandResult work(IContext ctx) throws InterruptedException {
+		Thread.sleep(Long.parseLong((String) ctx.find("work")));
+		Deadline.check(ctx);
+		return new CommandResult(true, null, "DONE");
+	}
+
+	@Override
+	public CommandResult execute(IContext context) {
+		return Xsf.dispatch(this, context);
+	}
+
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import java.lang.reflect.Method;
+
+import com.xtivia.xsf.core.commands.CommandContext;
+import com.xtivia.xsf.core.commands.CommandResult;
+import com.xtivia.xsf.core.commands.ICommand;
+import com.xtivia.xsf.core.commands.IContext;
+
+/**
+ * class DispatchBenchmark: Compares Xsf.dispatch, which dispatches to method-level routes, with the reflective dispatch
+ * it did before, which also built its failure result up front on every request. Not a unit test, run it by hand:
+ *
+ *   java -cp target/classes:target/test-classes:... com.xtivia.xsf.core.web.DispatchBenchmark [operations]
+ */
+public class DispatchBenchmark {
+
+	/**
+	 * class Target: Command with method routes doing next to nothing, so that the dispatch dominates.
+	 */
+	public static class Target implements ICommand {
+		private final CommandResult result = new CommandResult(true, "GET");
+
+		public CommandResult doGet(IContext ctx) {
+			return result;
+		}
+
+		public CommandResult doList(IContext ctx) {
+			return result;
+		}
+
+		public CommandResult doPost(IContext ctx) {
+			return result;
+		}
+
+		public CommandResult doDelete(IContext ctx) {
+			return result;
+		}
+
+		@Override
+		public CommandResult execute(IContext context) {
+			return Xsf.dispatch(this, context);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int operations = args.length > 0 ? Integer.parseInt(args[0]) : 5000000;
+
+		final Target target = new Target();
+
+		// a service has more than one route, dispatching alternates between them.
+		String[] names = { "doGet", "doList", "doPost", "doDelete" };
+		final IContext[] contexts = new IContext[names.length];
+		for (int i = 0; i < names.length; i++) {
+			DefaultRoute route = new DefaultRoute("/benchmark/" + names[i], "GET", "target");
+			route.setMethod(Target.class.getMethod(names[i], IContext.class));
+			RoutingInfo routingInfo = new RoutingInfo();
+			routingInfo.setRoute(route);
+			contexts[i] = new CommandContext();
+			contexts[i].set(ICommandKeys.ROUTING_INFO_KEY, routingInfo);
+		}
+
+		new Microbench(operations).
+		add("reflective dispatch (before)", new Microbench.Task() {
+			@Override
+			public Object run(int i) throws Exception {
+				// what Xsf.dispatch did for every request.
+				IContext ctx = contexts[0];
+				CommandResult cr = new CommandResult(false, "");
+				RoutingInfo routingInfo = ctx.find(ICommandKeys.ROUTING_INFO_KEY);
+				IRoute route = routingInfo.getRoute();
+				cr.setMessage("Unable to dispatch to route=" + route.getUri());
+				Method method = route.getMethod();
+				return method.invoke(target, ctx);
+			}
+		}).
+		add("Xsf.dispatch (after)", new Microbench.Task() {
+			@Override
+			public Object run(int i) throws Exception {
+				return Xsf.dispatch(target, contexts[0]);
+			}
+		}).
+		add("reflective dispatch, 4 routes", new Microbench.Task() {
+			@Override
+			public Object run(int i) throws Exception {
+				IContext ctx = contexts[i & 3];
+				CommandResult cr = new CommandResult(false, "");
+				RoutingInfo routingInfo = ctx.find(ICommandKeys.ROUTING_INFO_KEY);
+				IRoute route = routingInfo.getRoute();
+				cr.setMessage("Unable to dispatch to route=" + route.getUri());
+				Method method = route.getMethod();
+				return method.invoke(target, ctx);
+			}
+		}).
+		add("Xsf.dispatch, 4 routes", new Microbench.Task() {
+			@Override
+			public Object run(int i) throws Exception {
+				return Xsf.dispatch(target, contexts[i & 3]);
+			}
+		}).
+		run();
+	}
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.util.Date;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * class FormatBenchmark: Compares the payload size and the encoding and decoding time of the JSON, Smile and CBOR
+ * formats NegotiatingMarshaller offers, for a list of resources. Not a unit test, run it by hand:
+ *
+ *   java -cp target/classes:target/test-classes:... com.xtivia.xsf.core.web.FormatBenchmark [operations] [items]
+ */
+public class FormatBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int operations = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		int items = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+
+		final TestResource[] data = new TestResource[items];
+		for (int i = 0; i < items; i++) {
+			data[i] = new TestResource("Resource number " + i + " of the listing", new BigDecimal(i * 7).movePointLeft(2),
+					                   new Date(1445000000000L + i * 60000L));
+		}
+
+		WireFormat json = new DefaultMarshaller().getJsonFormat();
+		WireFormat[] formats = { json, WireFormat.smile(json), WireFormat.cbor(json) };
+
+		Microbench bench = new Microbench(operations);
+		for (WireFormat format : formats) {
+			final ObjectWriter writer = format.getWriter(data);
+			final ObjectReader reader = format.getReader(TestResource[].class);
+			final byte[] encoded = writer.writeValueAsBytes(data);
+			final ByteArrayOutputStream out = new ByteArrayOutputStream(encoded.length);
+
+			System.out.println(String.format("%-40s %10d bytes", format.getMediaType(), encoded.length));
+			bench.add("encode " + format.getMediaType(), new Microbench.Task() {
+				@Override
+				public Object run(int i) throws Exception {
+					out.reset();
+					writer.writeValue(out, data);
+					return out;
+				}
+			});
+			bench.add("decode " + format.getMediaType(), new Microbench.Task() {
+				@Override
+				public Object run(int i) throws Exception {
+					return reader.readValue(encoded);
+				}
+			});
+		}
+		bench.run();
+	}
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import com.xtivia.xsf.core.annotation.Route;
+import com.xtivia.xsf.core.commands.CommandResult;
+import com.xtivia.xsf.core.commands.ICommand;
+import com.xtivia.xsf.core.commands.IContext;
+
+/*
+ * LargeCommand : answers with a body well above the marshaller's compression threshold.
+ */
+@Route(uri="/large", method="GET", authenticated=false)
+public class LargeCommand implements ICommand {
+
+	static final String TEXT;
+	static {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			sb.append("line ").append(i).append(" of a compressible response. ");
+		}
+		TEXT = sb.toString();
+	}
+
+	@Override
+	public CommandResult execute(IContext context) {
+		return new CommandResult(true, TEXT);
+	}
+
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.springframework.stereotype.Component;
+
+import com.xtivia.xsf.core.annotation.Route;
+import com.xtivia.xsf.core.commands.CommandResult;
+import com.xtivia.xsf.core.commands.ICommand;
+import com.xtivia.xsf.core.commands.IContext;
+
+/*
+ * LimitedAsyncCommand : async command of a route limited to one request at a time. While block is set it
+ * runs, ignoring interrupts, until release is counted down.
+ */
+@Component
+@Route(uri="/async/limited", method="GET", authenticated=false, async=true, asyncTimeout=300,
+       limitConcurrency=true, maxConcurrency=1)
+public class LimitedAsyncCommand implements ICommand {
+
+	static volatile boolean block = false;
+	static volatile CountDownLatch release = new CountDownLatch(1);
+	static volatile CountDownLatch done = new CountDownLatch(1);
+
+	@Override
+	public CommandResult execute(IContext context) {
+		if (block) {
+			boolean waited = false;
+			while (!waited) {
+				try {
+					release.await();
+					waited = true;
+				} catch (InterruptedException e) {
+					// keep running, as a command stuck in a remote call would.
+				}
+			}
+			done.countDown();
+		}
+
+		CommandResult cr = new CommandResult();
+		cr.setSucceeded(true);
+		cr.setMessage("LIMITED");
+		return cr;
+	}
+
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xtivia.xsf.core.commands.CommandResult;
+
+/**
+ * class MarshallerBenchmark: Compares reading a request body and writing a command result through the shared
+ * mapper and cached readers/writers of DefaultMarshaller with the mapper DefaultMarshaller used to build for every
+ * call. Not a unit test, run it by hand:
+ *
+ *   java -cp target/classes:target/test-classes:... com.xtivia.xsf.core.web.MarshallerBenchmark [operations] [items]
+ */
+public class MarshallerBenchmark {
+
+	private static final String JSON_DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss";
+
+	public static void main(String[] args) throws Exception {
+		int operations = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		int items = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+		// a posted resource, and a result listing resources.
+		final byte[] body = new ObjectMapper().writeValueAsBytes(
+				new TestResource("Hello Posted World", new BigDecimal("3.33"), new Date()));
+		List<TestResource> data = new ArrayList<TestResource>();
+		for (int i = 0; i < items; i++) {
+			data.add(new TestResource("item " + i, new BigDecimal(i).movePointLeft(2), new Date()));
+		}
+		final CommandResult result = new CommandResult(true, data, "LIST");
+
+		final WireFormat json = new DefaultMarshaller().getJsonFormat();
+		final ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+
+		new Microbench(operations).
+		add("read, mapper per call (before)", new Microbench.Task() {
+			@Override
+			public Object run(int i) throws Exception {
+				ObjectMapper mapper = new ObjectMapper();
+				mapper.setDateFormat(new SimpleDateFormat(JSON_DATE_FORMAT));
+				return mapper.readValue(new String(body), TestResource.class);
+			}
+		}).
+		add("read, shared reader (after)", new Microbench.Task() {
+			@Override
+			public Object run(int i) throws Exception {
+				return json.getReader(TestResource.class).readValue(body);
+			}
+		}).
+		add("write, mapper per call (before)", new Microbench.Task() {
+			@Override
+			public Object run(int i) throws Exception {
+				ObjectMapper mapper = new ObjectMapper();
+				mapper.setDateFormat(new SimpleDateFormat(JSON_DATE_FORMAT));
+				out.reset();
+				mapper.writeValue(out, result);
+				return out;
+			}
+		}).
+		add("write, shared writer (after)", new Microbench.Task() {
+			@Override
+			public Object run(int i) throws Exception {
+				out.reset();
+				json.getWriter(result).writeValue(out, result);
+				return out;
+			}
+		}).
+		run();
+	}
+}
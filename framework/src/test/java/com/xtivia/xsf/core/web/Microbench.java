@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * class Microbench: Timing loop shared by the hand-run benchmarks. The tasks of a benchmark are warmed up together
+ * and measured in rotation, so that none of them profits from the JIT having seen only its own code; each is
+ * reported with the best of its measured rounds in nanoseconds and, where the JVM can tell, the bytes it allocated
+ * per operation.
+ */
+final class Microbench {
+
+	/**
+	 * interface Task: The operation being measured.
+	 */
+	interface Task {
+
+		/**
+		 * run: Performs the operation once.
+		 * @param i The number of the operation within the round.
+		 * @return Object A result, kept so that the JIT cannot drop the operation.
+		 * @throws Exception
+		 */
+		Object run(int i) throws Exception;
+	}
+
+	private static final int WARMUP_ROUNDS   = 5;
+	private static final int MEASURED_ROUNDS = 5;
+
+	private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+	/**
+	 * sink: Holds the last task result, so that it escapes.
+	 */
+	static Object sink;
+
+	private final int          operations;
+	private final List<String> names = new ArrayList<String>();
+	private final List<Task>   tasks = new ArrayList<Task>();
+
+	/**
+	 * Microbench: Constructor.
+	 * @param operations The number of operations per round.
+	 */
+	Microbench(int operations) {
+		this.operations = operations;
+	}
+
+	/**
+	 * add: Adds a task to measure.
+	 * @param name The name to report the task under.
+	 * @param task The task.
+	 * @return Microbench This benchmark.
+	 */
+	Microbench add(String name, Task task) {
+		names.add(name);
+		tasks.add(task);
+		return this;
+	}
+
+	/**
+	 * run: Measures the tasks and prints the results.
+	 * @throws Exception Any exception thrown by a task.
+	 */
+	void run() throws Exception {
+		for (int round = 0; round < WARMUP_ROUNDS; round++) {
+			for (Task task : tasks) {
+				round(task);
+			}
+		}
+
+		long[] bestNanos = new long[tasks.size()];
+		long[] allocated = new long[tasks.size()];
+		Arrays.fill(bestNanos, Long.MAX_VALUE);
+		for (int round = 0; round < MEASURED_ROUNDS; round++) {
+			for (int t = 0; t < tasks.size(); t++) {
+				long allocatedBefore = allocatedBytes();
+				bestNanos[t] = Math.min(bestNanos[t], round(tasks.get(t)));
+				allocated[t] += allocatedBytes() - allocatedBefore;
+			}
+		}
+
+		for (int t = 0; t < tasks.size(); t++) {
+			String allocation = allocatedBytes() < 0 ? "n/a" :
+				String.format("%.0f B/op", (double) allocated[t] / ((long) operations * MEASURED_ROUNDS));
+			System.out.println(String.format("%-40s %10.1f ns/op %12s", names.get(t),
+					                         (double) bestNanos[t] / operations, allocation));
+		}
+	}
+
+	private long round(Task task) throws Exception {
+		long start = System.nanoTime();
+		for (int i = 0; i < operations; i++) {
+			sink = task.run(i);
+		}
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * allocatedBytes: Returns the bytes allocated by the current thread so far, where HotSpot reports them.
+	 * @return long The bytes or -1.
+	 */
+	private static long allocatedBytes() {
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+}
@@ -1,5 +1,8 @@
 package com.xtivia.xsf.core.web;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
@@ -22,15 +25,38 @@ public class MockLiferayCommandContext extends LiferayCommandContext {
 	
 	private static final long serialVersionUID = 1L;
 
+	static final String USER_HEADER = "X-Test-User";
+
 	public MockLiferayCommandContext(HttpServletRequest  request,
 			                         HttpServletResponse response, 
 			                         Map<String, String> pathParameters) {
 		super(request, response, pathParameters);
 	}
 
+	/*
+	 * A request may name its user in the X-Test-User header, for which a stand-in User knowing just its
+	 * id is returned. Without the header there is no user.
+	 */
 	@Override
 	protected User getUser(HttpServletRequest request) throws SystemException, PortalException {
-		return null;
+		String userId = request.getHeader(USER_HEADER);
+		return (userId != null ? mockUser(Long.parseLong(userId)) : null);
+	}
+
+	static User mockUser(final long userId) {
+		return (User) Proxy.newProxyInstance(User.class.getClassLoader(), new Class<?>[] { User.class },
+				                             new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				String name = method.getName();
+				if (name.equals("getUserId") || name.equals("getPrimaryKey")) return userId;
+				if (name.equals("isDefaultUser")) return false;
+				if (name.equals("hashCode")) return (int) userId;
+				if (name.equals("equals")) return proxy == args[0];
+				if (name.equals("toString")) return "MockUser[" + userId + "]";
+				throw new UnsupportedOperationException(name);
+			}
+		});
 	}
 
 	@Override
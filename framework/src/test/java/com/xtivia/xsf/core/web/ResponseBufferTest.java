@@ -0,0 +1,69 @@
+package com.xtivia.xsf.core.web;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+public class ResponseBufferTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static byte[] body(int length) {
+		byte[] b = new byte[length];
+		for (int i = 0; i < length; i++) b[i] = (byte) ('a' + i % 26);
+		return b;
+	}
+
+	@Test
+	public void testSmallBodyIsBuffered() throws Exception {
+		ByteArrayOutputStream target = new ByteArrayOutputStream();
+		ResponseBuffer buffer = new ResponseBuffer(target, 64, false);
+		buffer.write(body(40));
+
+		assertFalse(buffer.isSpilled());
+		assertEquals(40, buffer.size());
+		assertEquals(0, target.size());
+
+		buffer.finish();
+		buffer.release();
+		assertArrayEquals(body(40), target.toByteArray());
+	}
+
+	@Test
+	public void testLargeBodySpills() throws Exception {
+		ByteArrayOutputStream target = new ByteArrayOutputStream();
+		ResponseBuffer buffer = new ResponseBuffer(target, 64, false);
+		byte[] body = body(1000);
+		buffer.write(body, 0, 50);
+		buffer.write(body, 50, 30);
+		buffer.write(body, 80, 900);
+		for (int i = 980; i < 1000; i++) buffer.write(body[i]);
+
+		assertTrue(buffer.isSpilled());
+
+		buffer.finish();
+		buffer.release();
+		assertArrayEquals(body, target.toByteArray());
+	}
+
+	@Test
+	public void testCaptureKeepsWholeBody() throws Exception {
+		ByteArrayOutputStream target = new ByteArrayOutputStream();
+		ResponseBuffer buffer = new ResponseBuffer(target, 64, true);
+		buffer.write(body(500));
+
+		assertFalse(buffer.isSpilled());
+		assertEquals(500, buffer.size());
+		assertEquals(new String(body(500), UTF8), buffer.toString(UTF8));
+
+		buffer.finish();
+		buffer.release();
+		assertArrayEquals(body(500), target.toByteArray());
+	}
+}
@@ -0,0 +1,69 @@
+package com.xtivia.xsf.core.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class RouteTrieTest {
+
+	private RouteTrie trie;
+
+	@Before
+	public void buildTrie() {
+		trie = new RouteTrie();
+		trie.add(new DefaultRoute("/testing/{last}/{first}", "GET",    "getCommand"));
+		trie.add(new DefaultRoute("/testing/{last}/{first}", "DELETE", "deleteCommand"));
+		trie.add(new DefaultRoute("/people",                 "GET",    "allPeople"));
+		trie.add(new DefaultRoute("/people/{id}",            "GET",    "onePerson"));
+		trie.add(new DefaultRoute("/people/me",              "GET",    "currentPerson"));
+		trie.add(new DefaultRoute("/files/{name}.json",      "GET",    "jsonFile"));
+		trie.add(new DefaultRoute("/static/**",              "GET",    "staticFiles"));
+		trie.add(new DefaultRoute("/pair/{left}{right}",     "GET",    "pair"));
+	}
+
+	@Test
+	public void testMethodIndex() {
+		assertEquals("getCommand",    trie.match("/testing/bloggs/joe", "GET").getRoute().getCommandName());
+		assertEquals("deleteCommand", trie.match("/testing/bloggs/joe", "DELETE").getRoute().getCommandName());
+		assertNull(trie.match("/testing/bloggs/joe", "PUT"));
+	}
+
+	@Test
+	public void testPathParameters() {
+		RoutingInfo ri = trie.match("/testing/bloggs/joe", "GET");
+		assertEquals("bloggs", ri.getPathParameters().get("last"));
+		assertEquals("joe",    ri.getPathParameters().get("first"));
+
+		ri = trie.match("/files/report.json", "GET");
+		assertEquals("jsonFile", ri.getRoute().getCommandName());
+		assertEquals("report",   ri.getPathParameters().get("name"));
+	}
+
+	@Test
+	public void testAdjacentVariables() {
+		RoutingInfo ri = trie.match("/pair/ab", "GET");
+		assertEquals("pair", ri.getRoute().getCommandName());
+		assertEquals(2, ri.getPathParameters().size());
+		assertTrue(ri.getPathParameters().containsKey("left"));
+		assertTrue(ri.getPathParameters().containsKey("right"));
+		assertEquals("ab", ri.getPathParameters().get("left") + ri.getPathParameters().get("right"));
+	}
+
+	@Test
+	public void testLiteralPreferredOverVariable() {
+		assertEquals("currentPerson", trie.match("/people/me", "GET").getRoute().getCommandName());
+		assertEquals("onePerson",     trie.match("/people/7",  "GET").getRoute().getCommandName());
+		assertEquals("allPeople",     trie.match("/people",    "GET").getRoute().getCommandName());
+	}
+
+	@Test
+	public void testWildcardsAndMisses() {
+		assertEquals("staticFiles", trie.match("/static/css/site.css", "GET").getRoute().getCommandName());
+		assertNull(trie.match("/people/", "GET"));
+		assertNull(trie.match("/people/7/address", "GET"));
+		assertNull(trie.match("/badroute/bloggs/joe", "GET"));
+	}
+}
@@ -16,17 +16,40 @@
 package com.xtivia.xsf.core.web;
 
 import static com.jayway.restassured.RestAssured.given;
+import static com.jayway.restassured.config.DecoderConfig.decoderConfig;
+import static com.jayway.restassured.config.RestAssuredConfig.newConfig;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 import java.io.StringWriter;
 import java.math.BigDecimal;
 import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORParser;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.jayway.restassured.config.DecoderConfig.ContentDecoder;
+import com.jayway.restassured.config.RestAssuredConfig;
+import com.jayway.restassured.response.Response;
+import com.jayway.restassured.specification.RequestSpecification;
 
 /*
  * ServicesControllerTest : JUnit test case that spins up a embedded Jetty server and then runs
@@ -81,6 +104,19 @@ public class ServicesControllerTest {
               "data.text", equalTo("com.xtivia.xsf.core.web.DeleteCommand"));	
     }
 	
+	@Test
+	public void testGetCreatesNoSession() throws Exception {
+		// an anonymous call not touching the session is not given one ...
+		Response plain = given().when().get("/delegate/xsf/testing/bloggs/joe");
+		assertEquals(200, plain.getStatusCode());
+		assertThat(plain.getCookie("JSESSIONID"), nullValue());
+
+		// ... unlike one whose command asks for it.
+		Response touched = given().when().get("/delegate/xsf/session");
+		assertEquals(200, touched.getStatusCode());
+		assertThat(touched.getCookie("JSESSIONID"), notNullValue());
+	}
+
 	@Test
 	public void testPostOk() throws Exception {
 		ObjectMapper mapper = new ObjectMapper();
@@ -197,4 +233,646 @@ public class ServicesControllerTest {
               "succeeded",  equalTo(true));	   
 	}
 	
-}
\ No newline at end of file
+	/*
+	 *  Testing of async processing
+	 */
+	@Test
+	public void testAsyncOk() throws Exception {
+	   given().
+	   when().
+         get("/delegate/xsf/async/fast").
+       then().
+           assertThat().statusCode(200).
+           body("message",   equalTo("ASYNC"),
+                "succeeded", equalTo(true));
+	}
+
+	@Test
+	public void testAsyncTimeout() throws Exception {
+	   given().
+	   when().
+         get("/delegate/xsf/async/slow").
+       then().
+           assertThat().statusCode(503).
+           body("message",   equalTo("The request timed out"),
+                "succeeded", equalTo(false));
+
+	   // the command was interrupted, and what it returned after the timeout was dropped.
+	   assertTrue(SlowAsyncCommand.done.await(5, TimeUnit.SECONDS));
+	   assertTrue(SlowAsyncCommand.interrupted);
+
+	   // the interrupt does not leak into the next request on the worker.
+	   testAsyncOk();
+	}
+
+	/*
+	 *  Testing of admission control
+	 */
+	@Test
+	public void testConcurrencyLimit() throws Exception {
+	   LimitedAsyncCommand.block = true;
+	   LimitedAsyncCommand.release = new CountDownLatch(1);
+	   LimitedAsyncCommand.done = new CountDownLatch(1);
+	   try {
+		   given().
+		   when().
+	         get("/delegate/xsf/async/limited").
+	       then().
+	           assertThat().statusCode(503).
+	           body("message", equalTo("The request timed out"));
+
+		   // the timed out command still runs, and still holds the route's only permit.
+		   given().
+		   when().
+	         get("/delegate/xsf/async/limited").
+	       then().
+	           assertThat().statusCode(503).
+	           assertThat().header("Retry-After", "1").
+	           body("message",   equalTo("The server is too busy to process the request"),
+	                "succeeded", equalTo(false));
+	   } finally {
+		   LimitedAsyncCommand.block = false;
+		   LimitedAsyncCommand.release.countDown();
+	   }
+
+	   // the permit is given back once the command is done.
+	   assertTrue(LimitedAsyncCommand.done.await(5, TimeUnit.SECONDS));
+	   long until = System.currentTimeMillis() + 5000;
+	   int status;
+	   while ((status = given().when().get("/delegate/xsf/async/limited").getStatusCode()) != 200 &&
+			  System.currentTimeMillis() < until) {
+		   Thread.sleep(20);
+	   }
+	   assertEquals(200, status);
+	}
+
+	/*
+	 *  Testing of request coalescing
+	 */
+	@Test
+	public void testCoalescedGet() throws Exception {
+		CoalescedCommand.executions.set(0);
+		CoalescedCommand.entered = new CountDownLatch(1);
+		CoalescedCommand.gate = new CountDownLatch(1);
+
+		// the leader holds in the command while the follower joins its flight.
+		FutureTask<Response> leader = getInBackground("/delegate/xsf/coalesced/ok");
+		assertTrue(CoalescedCommand.entered.await(5, TimeUnit.SECONDS));
+		FutureTask<Response> follower = getInBackground("/delegate/xsf/coalesced/ok");
+		Thread.sleep(300);
+		CoalescedCommand.gate.countDown();
+
+		assertEquals(200, leader.get(5, TimeUnit.SECONDS).getStatusCode());
+		assertEquals(200, follower.get(5, TimeUnit.SECONDS).getStatusCode());
+		assertEquals("ok1", leader.get().path("message"));
+		assertEquals("ok1", follower.get().path("message"));
+		assertEquals(1, CoalescedCommand.executions.get());
+	}
+
+	@Test
+	public void testCoalescedGetFailingLeader() throws Exception {
+		CoalescedCommand.executions.set(0);
+		CoalescedCommand.entered = new CountDownLatch(1);
+		CoalescedCommand.gate = new CountDownLatch(1);
+
+		FutureTask<Response> leader = getInBackground("/delegate/xsf/coalesced/fail");
+		assertTrue(CoalescedCommand.entered.await(5, TimeUnit.SECONDS));
+		FutureTask<Response> follower = getInBackground("/delegate/xsf/coalesced/fail");
+		Thread.sleep(300);
+		CoalescedCommand.gate.countDown();
+
+		// a failed result is not shared, the follower executes the command itself.
+		assertEquals("fail1", leader.get(5, TimeUnit.SECONDS).path("message"));
+		assertEquals("fail2", follower.get(5, TimeUnit.SECONDS).path("message"));
+		assertEquals(2, CoalescedCommand.executions.get());
+	}
+
+	/*
+	 *  Testing of bulkheads
+	 */
+	@Test
+	public void testFullBulkhead() throws Exception {
+		BulkheadCommand.entered = new CountDownLatch(1);
+		BulkheadCommand.gate = new CountDownLatch(1);
+
+		// one request holds the bulkhead's only thread, of the two arriving next one is queued ...
+		FutureTask<Response> running = getInBackground("/delegate/xsf/bulkhead");
+		assertTrue(BulkheadCommand.entered.await(5, TimeUnit.SECONDS));
+		FutureTask<Response> second = getInBackground("/delegate/xsf/bulkhead");
+		FutureTask<Response> third = getInBackground("/delegate/xsf/bulkhead");
+		Thread.sleep(300);
+		BulkheadCommand.gate.countDown();
+
+		// ... and the other turned away with a 503.
+		assertEquals(200, running.get(5, TimeUnit.SECONDS).getStatusCode());
+		Response rejected = second.get(5, TimeUnit.SECONDS);
+		Response queued = third.get(5, TimeUnit.SECONDS);
+		if (rejected.getStatusCode() == 200) {
+			Response r = rejected;
+			rejected = queued;
+			queued = r;
+		}
+		assertEquals(200, queued.getStatusCode());
+		assertEquals("BULKHEAD", queued.path("message"));
+		assertEquals(503, rejected.getStatusCode());
+		assertEquals("1", rejected.getHeader("Retry-After"));
+		assertEquals(false, rejected.path("succeeded"));
+	}
+
+	/*
+	 *  Testing of request deadlines
+	 */
+	@Test
+	public void testDeadlineMet() throws Exception {
+	   given().
+	   when().
+         get("/delegate/xsf/deadline/short/0").
+       then().
+           assertThat().statusCode(200).
+           body("message",   equalTo("DONE"),
+                "succeeded", equalTo(true));
+	}
+
+	@Test
+	public void testDeadlineExceeded() throws Exception {
+	   given().
+	   when().
+         get("/delegate/xsf/deadline/short/300").
+       then().
+           assertThat().statusCode(504).
+           body("succeeded", equalTo(false));
+	}
+
+	@Test
+	public void testDeadlineShortenedByClient() throws Exception {
+	   // the client gives up long before the route's timeout ...
+	   given().
+	     header("X-Request-Timeout", "100").
+	   when().
+         get("/delegate/xsf/deadline/long/300").
+       then().
+           assertThat().statusCode(504);
+
+	   // ... but cannot extend it.
+	   given().
+	     header("X-Request-Timeout", "10000").
+	   when().
+         get("/delegate/xsf/deadline/short/300").
+       then().
+           assertThat().statusCode(504);
+	}
+
+	private static FutureTask<Response> getInBackground(final String path) {
+		FutureTask<Response> task = new FutureTask<Response>(new Callable<Response>() {
+			@Override
+			public Response call() {
+				return given().when().get(path);
+			}
+		});
+		new Thread(task).start();
+		return task;
+	}
+
+	/*
+	 *  Testing of HTTP caching headers
+	 */
+	@Test
+	public void testCacheHeadersOk() throws Exception {
+	   given().
+	   when().
+         get("/delegate/xsf/caching/ok").
+       then().
+           assertThat().statusCode(200).
+           assertThat().header("Cache-Control", "public, max-age=60").
+           // the route's Vary and the one for the compression end up in a single header.
+           assertThat().header("Vary", "Accept-Language, Accept, Accept-Encoding").
+           body("message", equalTo("CACHED"));
+	}
+
+	@Test
+	public void testCacheHeadersFailedResult() throws Exception {
+	   given().
+	   when().
+         get("/delegate/xsf/caching/fail").
+       then().
+           assertThat().statusCode(200).
+           assertThat().header("Cache-Control", "no-cache, no-store, must-revalidate").
+           assertThat().header("Pragma", "no-cache").
+           body("succeeded", equalTo(false));
+	}
+
+	@Test
+	public void testCacheHeadersAuthorizationFailure() throws Exception {
+	   given().
+	   when().
+         get("/delegate/xsf/caching/auth").
+       then().
+           assertThat().statusCode(200).
+           assertThat().header("Cache-Control", "no-cache, no-store, must-revalidate").
+           body("message",   equalTo("Authorization fails for route=/caching/auth"),
+                "succeeded", equalTo(false));
+	}
+
+	/*
+	 *  Testing of response compression
+	 */
+	@Test
+	public void testGzipResponse() throws Exception {
+	   given().
+	     config(accepting(ContentDecoder.GZIP)).
+	   when().
+         get("/delegate/xsf/large").
+       then().
+           assertThat().statusCode(200).
+           assertThat().header("Content-Encoding", "gzip").
+           assertThat().header("Vary", "Accept, Accept-Encoding").
+           // a body that fit into the response buffer goes out with its compressed length, not chunked.
+           assertThat().header("Content-Length", notNullValue()).
+           body("message", equalTo(LargeCommand.TEXT));
+	}
+
+	@Test
+	public void testDeflateResponse() throws Exception {
+	   given().
+	     config(accepting(ContentDecoder.DEFLATE)).
+	   when().
+         get("/delegate/xsf/large").
+       then().
+           assertThat().statusCode(200).
+           assertThat().header("Content-Encoding", "deflate").
+           assertThat().header("Content-Length", notNullValue()).
+           body("message", equalTo(LargeCommand.TEXT));
+	}
+
+	@Test
+	public void testUncompressedResponse() throws Exception {
+	   given().
+	     config(newConfig().decoderConfig(decoderConfig().noContentDecoders())).
+	   when().
+         get("/delegate/xsf/large").
+       then().
+           assertThat().statusCode(200).
+           assertThat().header("Content-Encoding", nullValue()).
+           body("message", equalTo(LargeCommand.TEXT));
+
+	   // small bodies are not worth compressing.
+	   given().
+	     config(accepting(ContentDecoder.GZIP)).
+	   when().
+         get("/delegate/xsf/testing/bloggs/joe").
+       then().
+           assertThat().statusCode(200).
+           assertThat().header("Content-Encoding", nullValue());
+	}
+
+	/*
+	 *  Testing of entity tags
+	 */
+	@Test
+	public void testETagCompressed() throws Exception {
+	   given().
+	     config(accepting(ContentDecoder.GZIP)).
+	   when().
+         get("/delegate/xsf/versioned").
+       then().
+           assertThat().statusCode(200).
+           assertThat().header("ETag", "\"v1-gzip\"").
+           body("message", equalTo(LargeCommand.TEXT));
+
+	   // the 304 carries the same tag as the 200.
+	   given().
+	     config(accepting(ContentDecoder.GZIP)).
+	     header("If-None-Match", "\"v1-gzip\"").
+	   when().
+         get("/delegate/xsf/versioned").
+       then().
+           assertThat().statusCode(304).
+           assertThat().header("ETag", "\"v1-gzip\"");
+	}
+
+	@Test
+	public void testETagUncompressed() throws Exception {
+	   given().
+	     config(newConfig().decoderConfig(decoderConfig().noContentDecoders())).
+	     header("If-None-Match", "\"v1\"").
+	   when().
+         get("/delegate/xsf/versioned").
+       then().
+           assertThat().statusCode(304).
+           assertThat().header("ETag", "\"v1\"");
+
+	   given().
+	     config(newConfig().decoderConfig(decoderConfig().noContentDecoders())).
+	     header("If-None-Match", "\"v0\"").
+	   when().
+         get("/delegate/xsf/versioned").
+       then().
+           assertThat().statusCode(200).
+           assertThat().header("ETag", "\"v1\"");
+	}
+
+	@Test
+	public void testETagOfRenderedResponse() throws Exception {
+	   // the command tags its result, so it executes before the tag is compared.
+	   given().
+	     config(accepting(ContentDecoder.GZIP)).
+	     header("If-None-Match", "\"vt\"").
+	   when().
+         get("/delegate/xsf/caching/tagged").
+       then().
+           assertThat().statusCode(304).
+           assertThat().header("ETag", "\"vt-gzip\"");
+	}
+
+	/*
+	 *  Testing of format negotiation
+	 */
+	@Test
+	public void testSmileResponse() throws Exception {
+		Response response =
+		   given().
+		     header("Accept", "application/x-jackson-smile").
+		   when().
+	         get("/delegate/xsf/testing/bloggs/joe").
+	       then().
+	           assertThat().statusCode(200).
+	           assertThat().contentType("application/x-jackson-smile").
+	           assertThat().header("Vary", "Accept, Accept-Encoding").
+	       extract().response();
+
+		JsonNode result = new ObjectMapper(new SmileFactory()).readTree(response.asByteArray());
+		assertEquals("GET", result.get("message").asText());
+		assertEquals("com.xtivia.xsf.core.web.GetCommand", result.get("data").get("text").asText());
+	}
+
+	@Test
+	public void testCborDecimals() throws Exception {
+		// Jackson's own CBOR encoding of a decimal is read ...
+		ObjectMapper cbor = new ObjectMapper(new CBORFactory());
+		byte[] body = cbor.writeValueAsBytes(new TestResource("Hello CBOR", new BigDecimal("3.33"), new Date()));
+
+		Response response =
+		   given().
+		     contentType("application/cbor").
+		     header("Accept", "application/cbor").
+		     body(body).
+		   when().
+	         post("/delegate/xsf/testing_post/bloggs/joe").
+	       then().
+	           assertThat().statusCode(200).
+	           assertThat().contentType("application/cbor").
+	       extract().response();
+
+		// ... and the answer holds the rate plus one as a decimal fraction, 433 * 10^-2 under tag 4.
+		JsonParser p = cbor.getFactory().createParser(response.asByteArray());
+		while (p.nextToken() != null && !"rate".equals(p.getCurrentName())) {
+			// skip to the rate.
+		}
+		assertEquals(JsonToken.START_ARRAY, p.nextToken());
+		assertEquals(4, ((CBORParser) p).getCurrentTag());
+		p.nextToken();
+		assertEquals(-2, p.getIntValue());
+		p.nextToken();
+		assertEquals(433, p.getIntValue());
+		assertEquals("POSTHello CBOR", cbor.readTree(response.asByteArray()).get("message").asText());
+	}
+
+	/*
+	 *  Testing of the response cache
+	 */
+	@Test
+	public void testResponseCacheHitAndMiss() throws Exception {
+		String first = getMessage(given(), "/delegate/xsf/caching/counted?q=1");
+
+		// the same key parameter is a hit, other parameters are not part of the key.
+		assertEquals(first, getMessage(given(), "/delegate/xsf/caching/counted?q=1"));
+		assertEquals(first, getMessage(given(), "/delegate/xsf/caching/counted?q=1&other=2"));
+
+		// another key parameter is a miss.
+		String second = getMessage(given(), "/delegate/xsf/caching/counted?q=2");
+		assertThat(second, not(equalTo(first)));
+		assertEquals(second, getMessage(given(), "/delegate/xsf/caching/counted?q=2"));
+	}
+
+	@Test
+	public void testResponseCacheTtl() throws Exception {
+		String first = getMessage(given(), "/delegate/xsf/caching/short");
+		assertEquals(first, getMessage(given(), "/delegate/xsf/caching/short"));
+
+		// the route keeps its responses for one second.
+		Thread.sleep(1100);
+		assertThat(getMessage(given(), "/delegate/xsf/caching/short"), not(equalTo(first)));
+	}
+
+	@Test
+	public void testResponseCachePartitions() throws Exception {
+		String first = getMessage(given().header(MockLiferayCommandContext.USER_HEADER, "1"), "/delegate/xsf/caching/user");
+		String second = getMessage(given().header(MockLiferayCommandContext.USER_HEADER, "2"), "/delegate/xsf/caching/user");
+
+		// each user has their own cached response.
+		assertThat(second, not(equalTo(first)));
+		assertEquals(first, getMessage(given().header(MockLiferayCommandContext.USER_HEADER, "1"), "/delegate/xsf/caching/user"));
+		assertEquals(second, getMessage(given().header(MockLiferayCommandContext.USER_HEADER, "2"), "/delegate/xsf/caching/user"));
+	}
+
+	@Test
+	public void testResponseCacheAuthenticatedRoute() throws Exception {
+		// an authenticated route not partitioned by caller is never answered from the cache.
+		assertEquals("private1", getMessage(given().header(MockLiferayCommandContext.USER_HEADER, "1"), "/delegate/xsf/caching/private"));
+		assertEquals("private2", getMessage(given().header(MockLiferayCommandContext.USER_HEADER, "2"), "/delegate/xsf/caching/private"));
+		assertEquals("private1", getMessage(given().header(MockLiferayCommandContext.USER_HEADER, "1"), "/delegate/xsf/caching/private"));
+	}
+
+	@Test
+	public void testResponseCacheQueryString() throws Exception {
+		String first = getMessage(given(), "/delegate/xsf/caching/query?id=1");
+		String second = getMessage(given(), "/delegate/xsf/caching/query?id=2");
+
+		// without cache key parameters the whole query string is part of the key.
+		assertThat(second, not(equalTo(first)));
+		assertEquals(first, getMessage(given(), "/delegate/xsf/caching/query?id=1"));
+		assertEquals(second, getMessage(given(), "/delegate/xsf/caching/query?id=2"));
+	}
+
+	private static String getMessage(RequestSpecification request, String path) {
+		return request.when().get(path).then().assertThat().statusCode(200).extract().path("message");
+	}
+
+	/*
+	 *  Testing of streamed results
+	 */
+	@Test
+	public void testStreamedResult() throws Exception {
+	   given().
+	   when().
+         get("/delegate/xsf/streaming/items/3").
+       then().
+           assertThat().statusCode(200).
+           assertThat().contentType("application/json").
+           body("message",      equalTo("ITEMS"),
+                "succeeded",    equalTo(true),
+                "data.size()",  equalTo(3),
+                "data[2].text", equalTo("item2"));
+	}
+
+	@Test
+	public void testStreamedResultAsNdjson() throws Exception {
+		String body =
+		   given().
+		     header("Accept", "application/x-ndjson").
+		   when().
+	         get("/delegate/xsf/streaming/items/2000").
+	       then().
+	           assertThat().statusCode(200).
+	           assertThat().contentType("application/x-ndjson").
+	       extract().asString();
+
+		// one item per line, the items of a large result are all there.
+		String[] lines = body.split("\n");
+		assertEquals(2000, lines.length);
+		ObjectMapper mapper = new ObjectMapper();
+		assertEquals("item0", mapper.readTree(lines[0]).get("text").asText());
+		assertEquals("item1999", mapper.readTree(lines[1999]).get("text").asText());
+	}
+
+	@Test
+	public void testStreamedResultGzip() throws Exception {
+		String body =
+		   given().
+		     config(accepting(ContentDecoder.GZIP)).
+		     header("Accept", "application/x-ndjson").
+		   when().
+	         get("/delegate/xsf/streaming/items/2000").
+	       then().
+	           assertThat().statusCode(200).
+	           assertThat().header("Content-Encoding", "gzip").
+	       extract().asString();
+
+		// the compressed stream is flushed every streamFlushInterval items and still decodes whole.
+		String[] lines = body.split("\n");
+		assertEquals(2000, lines.length);
+		ObjectMapper mapper = new ObjectMapper();
+		assertEquals("item1999", mapper.readTree(lines[1999]).get("text").asText());
+	}
+
+	/*
+	 *  Testing of streamed input
+	 */
+	@Test
+	public void testStreamedInputArray() throws Exception {
+		given().
+		     contentType("application/json").
+		     body("[{\"text\":\"a\",\"rate\":1.5},{\"text\":\"b\",\"rate\":2},{\"text\":\"c\",\"rate\":0.5}]").
+		when().
+          post("/delegate/xsf/streaming/input").
+        then().
+          assertThat().statusCode(200).
+          body("message",    equalTo("READ3"),
+               "data.rate",  equalTo(4.0f),
+               "succeeded",  equalTo(true));
+	}
+
+	@Test
+	public void testStreamedInputNdjson() throws Exception {
+		given().
+		     contentType("application/x-ndjson").
+		     body("{\"text\":\"a\",\"rate\":1.5}\n{\"text\":\"b\",\"rate\":2}\n".getBytes("UTF-8")).
+		when().
+          post("/delegate/xsf/streaming/input").
+        then().
+          assertThat().statusCode(200).
+          body("message",    equalTo("READ2"),
+               "data.rate",  equalTo(3.5f),
+               "succeeded",  equalTo(true));
+	}
+
+	@Test
+	public void testStreamedInputMalformedItem() throws Exception {
+		// the second item is broken, the error names its position.
+		given().
+		     contentType("application/json").
+		     body("[{\"text\":\"a\",\"rate\":1},{\"text\":\"b\",\"rate\":\"many\"}]").
+		when().
+          post("/delegate/xsf/streaming/input").
+        then().
+          body("message",    startsWith("Error parsing input item 2"),
+               "succeeded",  equalTo(false));
+	}
+
+	/*
+	 *  Testing of lazily parsed input
+	 */
+	@Test
+	public void testLazyInputRead() throws Exception {
+		given().
+		     contentType("application/json").
+		     body("{\"text\":\"lazy\",\"rate\":1}").
+		when().
+          post("/delegate/xsf/streaming/lazy/yes").
+        then().
+          assertThat().statusCode(200).
+          body("message",    equalTo("READlazy"),
+               "succeeded",  equalTo(true));
+	}
+
+	@Test
+	public void testLazyInputNeverParsed() throws Exception {
+		// a broken body goes unnoticed by a command not looking at its input.
+		given().
+		     contentType("application/json").
+		     body("{\"text\": not json").
+		when().
+          post("/delegate/xsf/streaming/lazy/no").
+        then().
+          assertThat().statusCode(200).
+          body("message",    equalTo("SKIPPED"),
+               "succeeded",  equalTo(true));
+	}
+
+	@Test
+	public void testLazyInputMalformed() throws Exception {
+		// ... and fails the request once the command looks at it.
+		given().
+		     contentType("application/json").
+		     body("{\"text\": not json").
+		when().
+          post("/delegate/xsf/streaming/lazy/yes").
+        then().
+          body("message",    equalTo("Error parsing input JSON"),
+               "succeeded",  equalTo(false));
+	}
+
+	/*
+	 *  Testing of async request bodies with nonBlockingIo set
+	 */
+	@Test
+	public void testAsyncPostBody() throws Exception {
+		// a body spanning several read chunks arrives whole, however the container lets it be read.
+		StringBuilder text = new StringBuilder("01234567");
+		while (text.length() < 40000) {
+			text.append(LargeCommand.TEXT);
+		}
+		ObjectMapper mapper = new ObjectMapper();
+		StringWriter sw = new StringWriter();
+		mapper.writeValue(sw, new TestResource(text.toString(), BigDecimal.ONE, new Date()));
+
+		given().
+		     contentType("application/json").
+		     body(sw.toString()).
+		when().
+          post("/delegate/xsf/async/echo").
+        then().
+          assertThat().statusCode(200).
+          body("message",    equalTo("ECHO01234567"),
+               "data",       equalTo(text.length()),
+               "succeeded",  equalTo(true));
+	}
+
+	/*
+	 *  Rest-assured configuration accepting (and decoding) a single content coding.
+	 */
+	private static RestAssuredConfig accepting(ContentDecoder decoder) {
+		return newConfig().decoderConfig(decoderConfig().contentDecoders(decoder));
+	}
+
+}
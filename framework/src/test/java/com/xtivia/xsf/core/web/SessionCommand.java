@@ -0,0 +1,44 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import javax.servlet.http.HttpSession;
+
+import org.springframework.stereotype.Component;
+
+import com.xtivia.xsf.core.annotation.Route;
+import com.xtivia.xsf.core.commands.CommandResult;
+import com.xtivia.xsf.core.commands.ICommand;
+import com.xtivia.xsf.core.commands.IContext;
+
+/*
+ * SessionCommand : anonymous route whose command looks the HTTP session up, creating one the way every request
+ * did when the context resolved the session up front.
+ */
+@Component
+@Route(uri="/session", method="GET", authenticated=false)
+public class SessionCommand implements ICommand {
+
+	@Override
+	public CommandResult execute(IContext context) {
+		HttpSession session = context.find(ICommandKeys.HTTP_SESSION);
+		CommandResult cr = new CommandResult();
+		cr.setSucceeded(session != null);
+		cr.setMessage("SESSION");
+		return cr;
+	}
+
+}
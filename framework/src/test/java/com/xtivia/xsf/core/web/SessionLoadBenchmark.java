@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * class SessionLoadBenchmark: Sends anonymous requests, none of them returning a session cookie, to the test server
+ * and reports how many sessions they created and how much heap is still held afterwards. Compares a route whose
+ * command looks the session up, which is what every request did while the context resolved the session up front,
+ * with an anonymous route not touching it. Not a unit test, run it by hand (adding the jdk9-tests profile's
+ * --add-opens on newer JDKs):
+ *
+ *   java -cp target/classes:target/test-classes:... com.xtivia.xsf.core.web.SessionLoadBenchmark [requests]
+ */
+public class SessionLoadBenchmark {
+
+	private static final String BASE = "http://localhost:" + JettyServer.TEST_PORT + JettyServer.TEST_CONTEXT + "/xsf";
+
+	public static void main(String[] args) throws Exception {
+		int requests = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+
+		JettyServer.startIfRequired();
+		try {
+			// warm the server up, then measure.
+			run("/testing/bloggs/joe", 500, true);
+			run("/testing/bloggs/joe", requests, false);
+			run("/session", requests, false);
+		} finally {
+			JettyServer.stop();
+		}
+	}
+
+	private static void run(String path, int requests, boolean warmup) throws Exception {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		System.gc();
+		long heapBefore = memory.getHeapMemoryUsage().getUsed();
+
+		int sessions = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < requests; i++) {
+			HttpURLConnection connection = (HttpURLConnection) new URL(BASE + path).openConnection();
+			InputStream in = connection.getInputStream();
+			try {
+				IOUtils.toByteArray(in);
+			} finally {
+				in.close();
+			}
+			// a new session comes with a cookie naming it.
+			List<String> cookies = connection.getHeaderFields().get("Set-Cookie");
+			if (cookies != null) {
+				for (String cookie : cookies) {
+					if (cookie.startsWith("JSESSIONID=")) sessions++;
+				}
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.gc();
+		long heapAfter = memory.getHeapMemoryUsage().getUsed();
+		if (warmup) return;
+
+		System.out.println(String.format("%-22s %d requests in %.2f s, %d sessions created, %+d KB heap held",
+				                         path, requests, seconds, sessions, (heapAfter - heapBefore) / 1024));
+	}
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.springframework.stereotype.Component;
+
+import com.xtivia.xsf.core.annotation.Route;
+import com.xtivia.xsf.core.commands.CommandResult;
+import com.xtivia.xsf.core.commands.ICommand;
+import com.xtivia.xsf.core.commands.IContext;
+
+/*
+ * SlowAsyncCommand : async command that outlives its timeout. It notes being interrupted, then keeps
+ * going and returns a result anyway, which must never reach the client.
+ */
+@Component
+@Route(uri="/async/slow", method="GET", authenticated=false, async=true, asyncTimeout=300)
+public class SlowAsyncCommand implements ICommand {
+
+	static volatile boolean interrupted = false;
+	static volatile CountDownLatch done = new CountDownLatch(1);
+
+	@Override
+	public CommandResult execute(IContext context) {
+		try {
+			Thread.sleep(2000);
+		} catch (InterruptedException e) {
+			interrupted = true;
+		}
+
+		// finish the work anyway, well after the request was answered.
+		try {
+			Thread.sleep(200);
+		} catch (InterruptedException e) {
+			// not expected, the interrupt was for the call above.
+		}
+
+		CommandResult cr = new CommandResult();
+		cr.setSucceeded(true);
+		cr.setMessage("SLOW");
+		done.countDown();
+		return cr;
+	}
+
+}
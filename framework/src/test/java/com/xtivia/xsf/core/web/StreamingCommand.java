@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import java.math.BigDecimal;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.xtivia.xsf.core.annotation.Route;
+import com.xtivia.xsf.core.commands.CommandResult;
+import com.xtivia.xsf.core.commands.ICommand;
+import com.xtivia.xsf.core.commands.IContext;
+import com.xtivia.xsf.core.commands.StreamedInput;
+
+/*
+ * StreamingCommand : routes whose results are produced item by item.
+ */
+@Route(uri="/streaming")
+public class StreamingCommand implements ICommand {
+
+	@Route(uri="/items/{count}", authenticated=false)
+	public CommandResult doItems(IContext ctx) {
+		final int count = Integer.parseInt((String) ctx.find("count"));
+		Iterator<TestResource> items = new Iterator<TestResource>() {
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < count;
+			}
+
+			@Override
+			public TestResource next() {
+				if (!hasNext()) throw new NoSuchElementException();
+				TestResource item = new TestResource();
+				item.setText("item" + next);
+				item.setRate(new BigDecimal(next++));
+				return item;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+		return new CommandResult(true, items, "ITEMS");
+	}
+
+	@SuppressWarnings("unchecked")
+	@Route(uri="/input", method="POST", authenticated=false, streamInput=true,
+	       inputKey="items", inputClass="com.xtivia.xsf.core.web.TestResource")
+	public CommandResult doInput(IContext ctx) {
+		StreamedInput<TestResource> items = (StreamedInput<TestResource>) ctx.find("items");
+		BigDecimal total = BigDecimal.ZERO;
+		while (items.hasNext()) {
+			total = total.add(items.next().getRate());
+		}
+		return new CommandResult(true, new TestResource("items", total, null), "READ" + items.getCount());
+	}
+
+	@Route(uri="/lazy/{read}", method="POST", authenticated=false, lazyInput=true,
+	       inputKey="inputData", inputClass="com.xtivia.xsf.core.web.TestResource")
+	public CommandResult doLazy(IContext ctx) {
+		// only look at the input when asked to, the body is never parsed otherwise.
+		if (!"yes".equals(ctx.find("read"))) {
+			return new CommandResult(true, null, "SKIPPED");
+		}
+		TestResource input = (TestResource) ctx.find("inputData");
+		return new CommandResult(true, null, "READ" + input.getText());
+	}
+
+	@Override
+	public CommandResult execute(IContext context) {
+		return Xsf.dispatch(this, context);
+	}
+
+}
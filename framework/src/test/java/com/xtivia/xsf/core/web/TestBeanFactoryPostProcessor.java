@@ -13,5 +13,16 @@ public class TestBeanFactoryPostProcessor implements BeanFactoryPostProcessor {
         if (bd != null && bd.getBeanClassName().endsWith("LiferayServicesController")) {
         	bd.setBeanClassName("com.xtivia.xsf.core.web.MockLiferayServicesController");
         }	
+        // read and write async bodies without blocking where the container allows it (Jetty 8 does not, so the
+        // tests see the fallback to blocking I/O).
+        if (bd != null) {
+        	bd.getPropertyValues().add("nonBlockingIo", true);
+        }
+        // negotiate formats and compress responses, so that the tests see the headers of a marshaller doing both.
+        BeanDefinition marshaller = bf.getBeanDefinition("marshaller");
+        if (marshaller != null) {
+        	marshaller.setBeanClassName("com.xtivia.xsf.core.web.NegotiatingMarshaller");
+        	marshaller.getPropertyValues().add("compression", true);
+        }
 	}
 }
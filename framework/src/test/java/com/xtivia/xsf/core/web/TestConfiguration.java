@@ -18,4 +18,26 @@ public class TestConfiguration {
     return new TestBeanFactoryPostProcessor();
   }
 
+  @Bean
+	/**
+	 * concurrencyLimiter: Returns the admission control for routes declaring @Route(limitConcurrency).
+	 */
+  public ConcurrencyLimiter concurrencyLimiter()
+  {
+    return new ConcurrencyLimiter();
+  }
+
+  @Bean
+	/**
+	 * tinyBulkhead: Returns the bulkhead of BulkheadCommand, running one command with one more queued.
+	 */
+  public CommandExecutor tinyBulkhead()
+  {
+    CommandExecutor bulkhead = new CommandExecutor();
+    bulkhead.setCorePoolSize(1);
+    bulkhead.setMaxPoolSize(1);
+    bulkhead.setQueueCapacity(1);
+    return bulkhead;
+  }
+
 }
@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) 2015 Xtivia, Inc. All rights reserved.
+ *
+ * This file is part of the Xtivia Services Framework (XSF) library.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+package com.xtivia.xsf.core.web;
+
+import com.xtivia.xsf.core.annotation.Route;
+import com.xtivia.xsf.core.commands.CommandResult;
+import com.xtivia.xsf.core.commands.ICommand;
+import com.xtivia.xsf.core.commands.IContext;
+import com.xtivia.xsf.core.commands.IVersioned;
+
+/*
+ * VersionedCommand : command whose version is known before it executes, answering with a body large
+ * enough to be compressed.
+ */
+@Route(uri="/versioned", method="GET", authenticated=false)
+public class VersionedCommand implements ICommand, IVersioned {
+
+	@Override
+	public String getVersion(IContext context) {
+		return "1";
+	}
+
+	@Override
+	public CommandResult execute(IContext context) {
+		return new CommandResult(true, LargeCommand.TEXT);
+	}
+
+}
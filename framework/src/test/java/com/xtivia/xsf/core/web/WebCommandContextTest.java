@@ -0,0 +1,55 @@
+package com.xtivia.xsf.core.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class WebCommandContextTest {
+
+	private Map<String,Object> attributes;
+	private WebCommandContext ctx;
+
+	@Before
+	public void createContext() {
+		attributes = new HashMap<String,Object>();
+
+		// a request with attributes only, no parameters, session or servlet context.
+		HttpServletRequest request = (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { HttpServletRequest.class }, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if ("getAttribute".equals(method.getName())) return attributes.get(args[0]);
+				return null;
+			}
+		});
+		ctx = new WebCommandContext(request, null, null);
+	}
+
+	@Test
+	public void testAttributeSetAfterMiss() {
+		assertNull(ctx.get("user"));
+
+		// e.g. a decorator setting the attribute after something looked for it.
+		attributes.put("user", "joe");
+		assertEquals("joe", ctx.get("user"));
+	}
+
+	@Test
+	public void testAttributeHitRemembered() {
+		attributes.put("user", "joe");
+		assertEquals("joe", ctx.get("user"));
+
+		attributes.remove("user");
+		assertEquals("joe", ctx.get("user"));
+	}
+}
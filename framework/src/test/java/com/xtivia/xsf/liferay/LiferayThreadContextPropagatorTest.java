@@ -0,0 +1,56 @@
+package com.xtivia.xsf.liferay;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.liferay.portal.service.ServiceContext;
+import com.liferay.portal.service.ServiceContextThreadLocal;
+
+public class LiferayThreadContextPropagatorTest {
+
+	private final LiferayThreadContextPropagator propagator = new LiferayThreadContextPropagator();
+
+	@Before
+	@After
+	public void clearServiceContexts() {
+		while (ServiceContextThreadLocal.popServiceContext() != null) {
+			// emptying the stack.
+		}
+	}
+
+	@Test
+	public void testRestoreDropsContextsLeftByCommand() {
+		ServiceContext request = new ServiceContext();
+		ServiceContextThreadLocal.pushServiceContext(request);
+		Object captured = propagator.capture();
+		ServiceContextThreadLocal.popServiceContext();
+
+		Object previous = propagator.apply(captured);
+		assertSame(request, ServiceContextThreadLocal.getServiceContext());
+
+		// the command pushes a context of its own and never pops it.
+		ServiceContextThreadLocal.pushServiceContext(new ServiceContext());
+		propagator.restore(previous);
+
+		assertNull(ServiceContextThreadLocal.getServiceContext());
+	}
+
+	@Test
+	public void testRestoreKeepsContextsOfThread() {
+		ServiceContext shared = new ServiceContext();
+		ServiceContextThreadLocal.pushServiceContext(shared);
+		Object captured = propagator.capture();
+
+		Object previous = propagator.apply(captured);
+		// ... pushing the same context again, which is on top already.
+		ServiceContextThreadLocal.pushServiceContext(shared);
+		propagator.restore(previous);
+
+		assertSame(shared, ServiceContextThreadLocal.popServiceContext());
+		assertNull(ServiceContextThreadLocal.getServiceContext());
+	}
+}